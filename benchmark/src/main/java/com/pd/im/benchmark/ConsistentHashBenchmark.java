@@ -0,0 +1,118 @@
+package com.pd.im.benchmark;
+
+import com.pd.im.common.route.algorithm.hash.AbstractConsistentHash;
+import com.pd.im.common.route.algorithm.hash.SortedArrayConsistentHash;
+import com.pd.im.common.route.algorithm.hash.TreeMapConsistentHash;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一致性哈希基准测试
+ * <p>
+ * 测量：
+ * - 节点列表不变时的路由查找（登录路由的热路径），单线程和多线程
+ * - 节点列表变化时的哈希环重建
+ * <p>
+ * 每组参数开始前用 100 万个 userId 统计各节点实际分到的用户数，输出最大值与平均值之比作为分布倾斜报告
+ *
+ * @author Parker
+ * @date 12/8/25
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConsistentHashBenchmark {
+
+    private static final int KEY_COUNT = 1 << 20;
+
+    @Param({"treemap", "sortedarray"})
+    private String ring;
+
+    @Param({"3", "16", "64"})
+    private int nodeCount;
+
+    @Param({"160"})
+    private int virtualNodes;
+
+    private AbstractConsistentHash hash;
+    private List<String> nodes;
+    /**
+     * 比 nodes 少一个节点，与 nodes 交替传入时每次调用都重建哈希环
+     */
+    private List<String> shrunkNodes;
+    private String[] keys;
+    private boolean toggle;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        hash = "treemap".equals(ring) ? new TreeMapConsistentHash() : new SortedArrayConsistentHash();
+        hash.setVirtualNodes(virtualNodes);
+        nodes = new ArrayList<>(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            nodes.add("10.0." + i / 256 + "." + i % 256 + ":19000");
+        }
+        shrunkNodes = new ArrayList<>(nodes.subList(0, nodeCount - 1));
+        if (shrunkNodes.isEmpty()) {
+            shrunkNodes.add("10.255.255.255:19000");
+        }
+        keys = new String[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            keys[i] = "user-" + i;
+        }
+        reportSkew();
+    }
+
+    @Benchmark
+    public String locate() {
+        return hash.process(nodes, keys[ThreadLocalRandom.current().nextInt(KEY_COUNT)]);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String locateContended() {
+        return hash.process(nodes, keys[ThreadLocalRandom.current().nextInt(KEY_COUNT)]);
+    }
+
+    @Benchmark
+    public String rebuild() {
+        toggle = !toggle;
+        return hash.process(toggle ? shrunkNodes : nodes, keys[0]);
+    }
+
+    private void reportSkew() {
+        Map<String, Integer> counts = new HashMap<>();
+        for (String key : keys) {
+            counts.merge(hash.process(nodes, key), 1, Integer::sum);
+        }
+        int max = 0;
+        int min = Integer.MAX_VALUE;
+        for (int count : counts.values()) {
+            max = Math.max(max, count);
+            min = Math.min(min, count);
+        }
+        double mean = (double) KEY_COUNT / nodeCount;
+        System.out.printf("%n[skew] ring=%s, nodes=%d, virtualNodes=%d, keys=%d: max/mean=%.3f, min/mean=%.3f%n",
+                ring, nodeCount, virtualNodes, KEY_COUNT, max / mean, (counts.size() < nodeCount ? 0 : min) / mean);
+    }
+}
@@ -0,0 +1,23 @@
+package com.pd.im.codec;
+
+import com.pd.im.codec.proto.EncodedFrame;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageEncoder;
+
+import java.util.List;
+
+/**
+ * Socket 已编码帧写出类
+ * 业务层预先编码好的客户端帧直接交给 Socket 写出，不做任何拷贝
+ *
+ * @author Parker
+ * @date 12/5/25
+ */
+public class EncodedFrameEncoder extends MessageToMessageEncoder<EncodedFrame> {
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, EncodedFrame msg, List<Object> out) {
+        // MessageToMessageEncoder 会在 encode 之后释放 msg，这里需要增加引用计数
+        out.add(msg.content().retain());
+    }
+}
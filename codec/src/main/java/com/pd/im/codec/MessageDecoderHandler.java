@@ -1,16 +1,39 @@
 package com.pd.im.codec;
 
+import com.pd.im.codec.config.ImBootstrapConfig;
 import com.pd.im.codec.proto.Message;
+import com.pd.im.codec.proto.MessageHeader;
+import com.pd.im.codec.proto.SessionHeader;
 import com.pd.im.codec.util.MessageCodecUtils;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.DecoderException;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.util.concurrent.ScheduledFuture;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Socket 消息解码类
+ * <p>
+ * 按首字节逐帧识别协议版本：v1 帧首字节恒为 0，紧凑协议（v2）帧首字节为 {@link MessageCodecUtils#COMPACT_MAGIC}，
+ * v2 帧只允许出现在登录时协商过紧凑协议的连接上
+ * <p>
+ * 有界、有状态的分帧：
+ * - 协议头只解析一次，解析后记住消息头，一帧分多个 TCP 段到达时只等待剩余的 imei 和消息体
+ * - 协议头解析后立即校验长度：imei 超过 {@link MessageCodecUtils#MAX_IMEI_LENGTH}、消息体为负数或超过该命令的上限时
+ * 丢弃缓冲区并关闭连接，累积缓冲区最多保留一帧
+ * - 长度前缀协议无法在损坏的字节流中找回帧边界，协议头损坏一律关闭连接，由客户端重连后重新同步
+ * - 一帧从收到第一个字节起超过 partialFrameTimeoutMillis 仍未收全时关闭连接，防止慢速发送长期占用缓冲区
+ * <p>
+ * 字段只在连接所属的 EventLoop 上读写
  *
  * @author Parker
  * @date 12/3/25
@@ -18,41 +41,173 @@ import java.util.List;
 @Slf4j
 public class MessageDecoderHandler extends ByteToMessageDecoder {
 
+    /**
+     * 是否延迟解析消息体，参见 {@link MessageCodecUtils#decode(ByteBuf, boolean)}
+     */
+    private final boolean lazyDecode;
+
+    private final int maxFrameLength;
+    private final Map<Integer, Integer> commandMaxFrameLengths;
+    private final long partialFrameTimeoutNanos;
+
+    /**
+     * 已解析协议头、等待 imei 和消息体的帧，为 null 时下一次从协议头开始解析
+     */
+    private MessageHeader pendingHeader;
+
+    /**
+     * 是否有未收全的帧，以及收到该帧第一个字节的时间
+     */
+    private boolean partialFrame;
+    private long partialFrameSinceNanos;
+    private ScheduledFuture<?> partialFrameTimeout;
+
+    public MessageDecoderHandler(ImBootstrapConfig.TcpConfig config) {
+        this.lazyDecode = config.isLazyDecode();
+        this.maxFrameLength = config.getMaxFrameLength();
+        this.commandMaxFrameLengths = config.getCommandMaxFrameLengths() != null
+                ? new HashMap<>(config.getCommandMaxFrameLengths())
+                : Collections.emptyMap();
+        this.partialFrameTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.getPartialFrameTimeoutMillis());
+    }
+
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
-        // TCP 流处理：检查协议头长度是否足够
-        if (in.readableBytes() < MessageCodecUtils.DECODE_HEADER_LENGTH) {
-            // 数据不足，等待更多数据到达
-            // ByteToMessageDecoder 会自动保留数据，等待下次 decode 调用
-            return;
+        if (pendingHeader == null) {
+            pendingHeader = decodeHeader(ctx, in);
+            if (pendingHeader == null) {
+                // 协议头数据不足，等待更多数据到达
+                awaitMore(ctx);
+                return;
+            }
         }
 
-        // 标记读取位置，如果解析失败可以重置
-        in.markReaderIndex();
-
-        // 解析消息
-        Message message = MessageCodecUtils.decode(in);
-        if (message == null) {
-            // 消息解析失败，可能是数据不完整或格式错误
-            // 重置读取位置，等待更多数据
-            in.resetReaderIndex();
+        MessageHeader header = pendingHeader;
+        if (in.readableBytes() < header.getImeiLength() + header.getLength()) {
+            // imei 或消息体数据不足，协议头已解析，下次只检查剩余长度
+            awaitMore(ctx);
             return;
         }
 
-        // 解析成功，添加到输出列表
+        pendingHeader = null;
+        partialFrame = false;
+        Message message = MessageCodecUtils.decodeFrame(header, in, lazyDecode);
         out.add(message);
 
         if (log.isDebugEnabled()) {
-            log.debug("Decoded TCP message from channel {}: command={}, imei={}",
+            log.debug("Decoded TCP message from channel {}: command={}, version={}, requestId={}, imei={}",
                     ctx.channel().id(),
-                    message.getMessageHeader().getCommand(),
-                    message.getMessageHeader().getImei());
+                    header.getCommand(),
+                    header.getVersion(),
+                    header.getRequestId(),
+                    header.getImei());
+        }
+    }
+
+    /**
+     * 解析协议头并校验长度
+     *
+     * @return 消息头，数据不足返回 null
+     * @throws CorruptedFrameException 协议头损坏
+     * @throws TooLongFrameException   消息体超过该命令的上限
+     */
+    private MessageHeader decodeHeader(ChannelHandlerContext ctx, ByteBuf in) {
+        MessageHeader header;
+        if (MessageCodecUtils.isCompactFrame(in)) {
+            SessionHeader sessionHeader = SessionHeader.get(ctx.channel());
+            if (sessionHeader == null) {
+                throw discard(in, new CorruptedFrameException("Compact frame received before protocol negotiation"));
+            }
+            try {
+                header = MessageCodecUtils.decodeCompactHeader(in, sessionHeader);
+            } catch (CorruptedFrameException e) {
+                throw discard(in, e);
+            }
+            if (header == null) {
+                return null;
+            }
+        } else {
+            // TCP 流处理：检查协议头长度是否足够
+            if (in.readableBytes() < MessageCodecUtils.DECODE_HEADER_LENGTH) {
+                return null;
+            }
+            header = MessageCodecUtils.decodeHeader(in);
+            // v1 命令号都小于 2^24，首字节不为 0 说明字节流已错位
+            if (header.getCommand() >>> 24 != 0 || header.getLength() < 0
+                    || header.getImeiLength() < 0 || header.getImeiLength() > MessageCodecUtils.MAX_IMEI_LENGTH) {
+                throw discard(in, new CorruptedFrameException("Invalid length: command=" + header.getCommand()
+                        + ", imeiLength=" + header.getImeiLength() + ", bodyLen=" + header.getLength()));
+            }
+        }
+
+        int limit = commandMaxFrameLengths.getOrDefault(header.getCommand(), maxFrameLength);
+        if (header.getLength() > limit) {
+            throw discard(in, new TooLongFrameException("Frame too long: command=" + header.getCommand()
+                    + ", bodyLen=" + header.getLength() + ", limit=" + limit));
+        }
+        return header;
+    }
+
+    /**
+     * 丢弃缓冲区中剩余的数据，连接关闭前到达的数据也不再解析
+     */
+    private DecoderException discard(ByteBuf in, DecoderException cause) {
+        in.skipBytes(in.readableBytes());
+        pendingHeader = null;
+        partialFrame = false;
+        return cause;
+    }
+
+    /**
+     * 记录未收全的帧，必要时启动半包超时检查
+     */
+    private void awaitMore(ChannelHandlerContext ctx) {
+        if (partialFrame) {
+            return;
+        }
+        partialFrame = true;
+        partialFrameSinceNanos = System.nanoTime();
+        if (partialFrameTimeoutNanos > 0 && partialFrameTimeout == null) {
+            partialFrameTimeout = ctx.executor().schedule(() -> checkPartialFrame(ctx),
+                    partialFrameTimeoutNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 半包超时检查：每个连接最多一个检查任务，帧已收全时结束，新的未收全帧按剩余时间重新调度
+     */
+    private void checkPartialFrame(ChannelHandlerContext ctx) {
+        partialFrameTimeout = null;
+        if (!partialFrame || !ctx.channel().isActive()) {
+            return;
+        }
+        long remaining = partialFrameSinceNanos + partialFrameTimeoutNanos - System.nanoTime();
+        if (remaining > 0) {
+            partialFrameTimeout = ctx.executor().schedule(() -> checkPartialFrame(ctx),
+                    remaining, TimeUnit.NANOSECONDS);
+            return;
+        }
+        log.warn("Partial frame timeout, closing channel {}: buffered={} bytes, header={}",
+                ctx.channel().id(), actualReadableBytes(), pendingHeader);
+        ctx.close();
+    }
+
+    @Override
+    protected void handlerRemoved0(ChannelHandlerContext ctx) throws Exception {
+        if (partialFrameTimeout != null) {
+            partialFrameTimeout.cancel(false);
+            partialFrameTimeout = null;
         }
     }
 
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
-        log.error("Error occurred in MessageDecoderHandler, channel: {}", ctx.channel().id(), cause);
+        if (cause instanceof CorruptedFrameException || cause instanceof TooLongFrameException) {
+            // 客户端发送了损坏或超长的帧，无需打印堆栈
+            log.warn("Malformed frame from channel {}, closing: {}", ctx.channel().id(), cause.getMessage());
+        } else {
+            log.error("Error occurred in MessageDecoderHandler, channel: {}", ctx.channel().id(), cause);
+        }
         ctx.close();
     }
 }
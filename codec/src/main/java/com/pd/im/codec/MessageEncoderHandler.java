@@ -18,6 +18,16 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class MessageEncoderHandler extends MessageToByteEncoder<MessagePack> {
 
+    /**
+     * 按编码后的精确长度从 Channel 的分配器（池化直接内存）申请缓冲区，
+     * 避免默认 256 字节初始容量导致的扩容拷贝
+     */
+    @Override
+    protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, MessagePack msg, boolean preferDirect) {
+        int size = MessageCodecUtils.calculateEncodedSize(msg);
+        return preferDirect ? ctx.alloc().ioBuffer(size) : ctx.alloc().heapBuffer(size);
+    }
+
     @Override
     protected void encode(ChannelHandlerContext ctx, MessagePack msg, ByteBuf out) throws Exception {
         try {
@@ -1,6 +1,7 @@
 package com.pd.im.codec;
 
 import com.pd.im.codec.proto.Message;
+import com.pd.im.codec.proto.SessionHeader;
 import com.pd.im.codec.util.MessageCodecUtils;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
@@ -12,15 +13,46 @@ import java.util.List;
 
 /**
  * WebSocket 解码器
+ * <p>
+ * 与 TCP 一样按首字节逐帧识别 v1 和紧凑协议（v2）
  * @author Parker
  * @date 12/3/25
  */
 @Slf4j
 public class WebSocketMessageDecoderHandler extends MessageToMessageDecoder<BinaryWebSocketFrame> {
+    /**
+     * 是否延迟解析消息体，参见 {@link MessageCodecUtils#decode(ByteBuf, boolean)}
+     */
+    private final boolean lazyDecode;
+
+    public WebSocketMessageDecoderHandler() {
+        this(false);
+    }
+
+    public WebSocketMessageDecoderHandler(boolean lazyDecode) {
+        this.lazyDecode = lazyDecode;
+    }
+
     @Override
     protected void decode(ChannelHandlerContext ctx, BinaryWebSocketFrame msg, List<Object> out) throws Exception {
         ByteBuf content = msg.content();
 
+        // 紧凑协议（v2）帧，仅允许出现在登录时协商过紧凑协议的连接上
+        if (content.isReadable() && MessageCodecUtils.isCompactFrame(content)) {
+            SessionHeader sessionHeader = SessionHeader.get(ctx.channel());
+            Message message = sessionHeader != null
+                    ? MessageCodecUtils.decodeCompact(content, sessionHeader, lazyDecode)
+                    : null;
+            if (message == null) {
+                log.error("Invalid compact WebSocket frame, negotiated: {}, channel: {}",
+                        sessionHeader != null, ctx.channel().id());
+                ctx.channel().close();
+                return;
+            }
+            out.add(message);
+            return;
+        }
+
         // 检查 WebSocket 帧数据长度
         // 注意：WebSocket 帧已经是完整的，不会像 TCP 那样分包
         // 如果数据不足，说明客户端发送了错误的数据
@@ -35,7 +67,7 @@ public class WebSocketMessageDecoderHandler extends MessageToMessageDecoder<Bina
         }
 
         // 解析消息
-        Message message = MessageCodecUtils.decode(content);
+        Message message = MessageCodecUtils.decode(content, lazyDecode);
         if (message == null) {
             // 消息解析失败，可能是格式错误
             log.error("Failed to decode WebSocket message, channel: {}", ctx.channel().id());
@@ -1,9 +1,9 @@
 package com.pd.im.codec;
 
+import com.pd.im.codec.proto.EncodedFrame;
 import com.pd.im.codec.proto.MessagePack;
 import com.pd.im.codec.util.MessageCodecUtils;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToMessageEncoder;
 import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
@@ -13,23 +13,43 @@ import java.util.List;
 
 /**
  * WebSocket 消息编码器
- * 遵循私有协议规则，将 MessagePack 编码为 WebSocket 二进制帧
+ * 遵循私有协议规则，将 MessagePack 编码为 WebSocket 二进制帧，
+ * 业务层预先编码好的 EncodedFrame 直接包装为二进制帧
  *
  * @author Parker
  * @date 12/3/25
  */
 @Slf4j
-public class WebSocketMessageEncoderHandler extends MessageToMessageEncoder<MessagePack> {
+public class WebSocketMessageEncoderHandler extends MessageToMessageEncoder<Object> {
 
     @Override
-    protected void encode(ChannelHandlerContext ctx, MessagePack msg, List<Object> out) throws Exception {
+    public boolean acceptOutboundMessage(Object msg) {
+        return msg instanceof MessagePack || msg instanceof EncodedFrame;
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, Object msg, List<Object> out) throws Exception {
+        if (msg instanceof EncodedFrame) {
+            // MessageToMessageEncoder 会在 encode 之后释放 msg，这里需要增加引用计数
+            out.add(new BinaryWebSocketFrame(((EncodedFrame) msg).content().retain()));
+            return;
+        }
+        encodeMessagePack(ctx, (MessagePack) msg, out);
+    }
+
+    private void encodeMessagePack(ChannelHandlerContext ctx, MessagePack msg, List<Object> out) throws Exception {
         try {
-            // 计算编码后的大小，分配合适的 ByteBuf
-            int estimatedSize = MessageCodecUtils.calculateEncodedSize(msg);
-            ByteBuf byteBuf = Unpooled.buffer(estimatedSize);
+            // 按编码后的精确长度从 Channel 的分配器（池化直接内存）申请 ByteBuf
+            int encodedSize = MessageCodecUtils.calculateEncodedSize(msg);
+            ByteBuf byteBuf = ctx.alloc().ioBuffer(encodedSize);
 
-            // 使用工具类编码
-            MessageCodecUtils.encode(msg, byteBuf);
+            // 使用工具类编码，失败时释放已申请的缓冲区
+            try {
+                MessageCodecUtils.encode(msg, byteBuf);
+            } catch (Exception e) {
+                byteBuf.release();
+                throw e;
+            }
 
             // 包装为 WebSocket 二进制帧
             out.add(new BinaryWebSocketFrame(byteBuf));
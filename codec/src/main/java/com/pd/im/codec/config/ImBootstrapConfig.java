@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.Map;
+
 /**
  * @author Parker
  * @date 12/3/25
@@ -24,16 +26,110 @@ public class ImBootstrapConfig {
         private boolean enableWebSocket;
         /** boss 线程数 默认为 1 */
         private Integer bossThreadSize;
-        /** work 线程数 */
+        /** work 线程数，TCP 与 WebSocket 共用，未配置时取 CPU 核数 */
         private Integer workThreadSize;
+        /** 是否优先使用 Linux 原生 epoll 传输，不可用时自动回退 NIO */
+        private boolean nativeTransport = true;
+        /** 是否开启 SO_REUSEPORT 多 acceptor 绑定（仅 epoll 下生效） */
+        private boolean reusePort;
+        /** SO_REUSEPORT 开启时同一端口绑定的 acceptor 数量 */
+        private Integer acceptorCount = 1;
+        /** 服务端可连接的最大队列数量 */
+        private Integer soBacklog = 10240;
+        /** 写缓冲区低水位（字节） */
+        private Integer writeBufferLowWaterMark = 32 * 1024;
+        /** 写缓冲区高水位（字节） */
+        private Integer writeBufferHighWaterMark = 64 * 1024;
+        /** 是否使用池化直接内存分配器 */
+        private boolean pooledDirectAllocator = true;
+        /** 是否延迟解析上行消息体（转发到 MQ 的消息不再解析 Protobuf） */
+        private boolean lazyDecode = true;
+        /** 是否接受客户端在登录时协商紧凑协议（v2），未协商的客户端继续使用 v1 */
+        private boolean compactProtocol = true;
+        /** 上行帧消息体的最大长度（字节），超过后关闭连接 */
+        private Integer maxFrameLength = 64 * 1024;
+        /** 按命令覆盖的上行帧消息体最大长度，key 为 command */
+        private Map<Integer, Integer> commandMaxFrameLengths;
+        /** 一帧从收到第一个字节起的最长接收时间（毫秒），超时未收全时关闭连接，0 表示不检查 */
+        private Long partialFrameTimeoutMillis = 10000L;
         /** 心跳超时时间 */
         private Long heartBeatTime;
+        /** 心跳时间轮每个槽位的时间跨度（毫秒） */
+        private Long heartBeatTickMillis = 1000L;
         /** 分布式 Id 区分服务 */
         private Integer brokerId;
-        /** Feign RPC 连接 TCP层和业务层内部地址 */
+        /** TCP层调用业务层的内部 HTTP 地址 */
         private String logicUrl;
+        /** 发送权限校验的在途请求上限，超过后直接按降级策略处理 */
+        private Integer checkMaxInFlight = 2048;
+        /** 发送权限校验超时时间（毫秒） */
+        private Long checkTimeoutMillis = 1000L;
+        /** 发送权限校验不可用（超时、异常、在途已满）时是否放行 */
+        private boolean checkFailOpen;
+        /** 单个连接的待校验消息上限，超过后暂停读取该连接 */
+        private Integer checkMaxPendingPerChannel = 64;
+        /** 发送权限本地缓存的最大条目数，0 表示关闭缓存 */
+        private Integer checkCacheMaxSize = 100000;
+        /** 发送权限本地缓存的有效期（毫秒） */
+        private Long checkCacheTtlMillis = 60000L;
+        /** 单聊接收方在本网关时，校验通过并由业务层分配序列号后直接推送给接收方，需业务层 appConfig.p2pLocalDelivery 同时开启 */
+        private boolean p2pLocalDelivery;
+        /** 广播每批写出的连接数 */
+        private Integer broadcastBatchSize = 2000;
+        /** 广播相邻两批的间隔（毫秒） */
+        private Long broadcastBatchIntervalMillis = 20L;
+        /** 上行 MQ 消息是否使用 JSON（调试用），默认使用二进制信封 */
+        private boolean mqJsonPayload;
+        /** MQ 发布失败或未确认消息的重试缓冲上限，超过后丢弃最早的消息 */
+        private Integer mqRetryBufferSize = 10000;
+        /** MQ 重试缓冲的重发间隔（毫秒） */
+        private Long mqRetryIntervalMillis = 1000L;
+        /** MQ 发布指标的日志输出间隔（秒），0 表示不输出 */
+        private Integer mqMetricsIntervalSeconds = 60;
+        /** 下行队列每个消费者的预取数量（basicQos） */
+        private Integer mqDownlinkPrefetch = 256;
+        /** 下行队列的消费者数量，大于 1 时不同消费者之间不保证同一连接的下发顺序 */
+        private Integer mqDownlinkConsumers = 1;
+        /** 下行消息累计多少条后批量应答 */
+        private Integer mqDownlinkAckBatch = 64;
+        /** 下行消息批量应答的最长等待时间（毫秒） */
+        private Long mqDownlinkAckIntervalMillis = 50L;
+        /** 单个连接累计多少次 flush 后立即写出，1 表示不合并 */
+        private Integer flushMaxWrites = 16;
+        /** 单个连接合并 flush 的最长等待时间（微秒） */
+        private Long flushMaxDelayMicros = 1000L;
+        /** 按客户端类型覆盖的 flush 合并策略，key 为 clientType */
+        private Map<Integer, FlushPolicy> clientFlushPolicies;
+        /** 连接不可写期间出站待发送队列的上限（消息数） */
+        private Integer outboundMaxPending = 256;
+        /** 出站待发送队列溢出策略：DISCONNECT / OFFLINE / SAMPLE */
+        private String slowConsumerPolicy = "SAMPLE";
+        /** 连接持续不可写超过该时间后断开（毫秒），0 表示不断开 */
+        private Long slowConsumerEvictMillis = 30000L;
+        /** 全局接入新连接的速率限制 */
+        private RateLimit acceptLimit;
+        /** 单 IP 建连的速率限制 */
+        private RateLimit ipConnectLimit;
+        /** 单用户上行命令的速率限制 */
+        private RateLimit userMessageLimit;
+        /** 单用户按命令的速率限制，key 为 command */
+        private Map<Integer, RateLimit> commandRateLimits;
         /** 端登录策略类型 */
         private Integer loginModel;
+        /** 节点权重，按机器容量配置，随负载一起上报给负载感知的路由策略 */
+        private Integer routeWeight = 100;
+        /** 节点负载写入 ZK 的间隔（毫秒） */
+        private Long loadReportIntervalMillis = 5000L;
+        /** 摘流时为客户端选择重连网关的路由策略，与业务层 appConfig.imRouteModel 保持一致 */
+        private Integer imRouteModel = 3;
+        /** 一致性哈希的底层数据结构，与业务层 appConfig.consistentHashModel 保持一致 */
+        private Integer consistentHashModel = 2;
+        /** 一致性哈希每个节点的虚拟节点数，与业务层 appConfig.consistentHashVirtualNodes 保持一致 */
+        private Integer consistentHashVirtualNodes = 160;
+        /** 摘流时客户端重连的打散窗口（毫秒），每个连接在窗口内随机延迟重连 */
+        private Long drainSpreadMillis = 10000L;
+        /** 摘流的最长等待时间（毫秒），超时后剩余连接直接关闭 */
+        private Long drainTimeoutMillis = 30000L;
         /** redis配置 */
         private RedisConfig redis;
         /** rabbitmq 配置 */
@@ -94,6 +190,33 @@ public class ImBootstrapConfig {
         private String password;
     }
 
+    /**
+     * 出站 flush 合并策略
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class FlushPolicy {
+        /** 累计多少次 flush 后立即写出，未配置时使用 flushMaxWrites */
+        private Integer maxWrites;
+        /** 最长等待时间（微秒），未配置时使用 flushMaxDelayMicros */
+        private Long maxDelayMicros;
+    }
+
+    /**
+     * 令牌桶速率限制
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RateLimit {
+        /** 每秒允许的次数，0 表示不限制 */
+        private Integer ratePerSecond;
+        /** 允许的突发次数，未配置时等于 ratePerSecond */
+        private Integer burst;
+    }
 
     @Data
     public static class ZkConfig {
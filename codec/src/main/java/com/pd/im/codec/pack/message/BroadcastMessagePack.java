@@ -0,0 +1,17 @@
+package com.pd.im.codec.pack.message;
+
+import lombok.Data;
+
+/**
+ * 系统广播消息
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+@Data
+public class BroadcastMessagePack {
+    private Integer appId;
+    private String messageId;
+    private String messageBody;
+    private Long messageTime;
+}
@@ -0,0 +1,19 @@
+package com.pd.im.codec.pack.user;
+
+import lombok.Data;
+
+/**
+ * 重连通知
+ * <p>
+ * 网关摘流时下发，客户端在 delayMillis 后断开并重连；ip/port 为按路由策略建议的网关，
+ * 客户端需要重新获取 ticket，没有可用网关时为空
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+@Data
+public class ReconnectPack {
+    private String ip;
+    private Integer port;
+    private Long delayMillis;
+}
@@ -0,0 +1,76 @@
+package com.pd.im.codec.proto;
+
+import io.netty.buffer.ByteBuf;
+import lombok.Data;
+
+/**
+ * 业务层 → 网关的广播信封
+ * <p>
+ * 一条信封携带过滤条件和同一个客户端帧，业务层向每个在线网关各发布一条；
+ * 网关遍历本地连接注册表，写给所有满足条件的已登录连接。
+ * 编解码见 {@link com.pd.im.codec.util.DownlinkCodecUtils}
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+@Data
+public class BroadcastEnvelope {
+
+    /**
+     * userId 分段数上限，分段位图为 64 位
+     */
+    public static final int MAX_SEGMENT_COUNT = 64;
+
+    /**
+     * 信封类型，取值见 {@link com.pd.im.codec.util.DownlinkCodecUtils} 的 TYPE_ 常量
+     */
+    private int type;
+    private int command;
+    private int appId;
+    /**
+     * 客户端类型位图，第 clientType 位为 1 表示下发给该类型，0 表示不按客户端类型过滤
+     */
+    private int clientTypeMask;
+    /**
+     * userId 分段数，按 userId 哈希取模分段，小于等于 1 表示不按分段过滤
+     */
+    private int segmentCount;
+    /**
+     * 分段位图，第 i 位为 1 表示下发给第 i 段的用户
+     */
+    private long segments;
+    /**
+     * 已编码的客户端帧（command + bodyLen + body）
+     */
+    private ByteBuf frame;
+
+    /**
+     * 连接是否满足广播的过滤条件
+     *
+     * @param appId      连接所属应用
+     * @param clientType 连接的客户端类型
+     * @param userId     连接的用户
+     * @return 满足返回 true
+     */
+    public boolean matches(int appId, int clientType, String userId) {
+        if (appId != this.appId) {
+            return false;
+        }
+        if (clientTypeMask != 0 && (clientType < 0 || clientType >= Integer.SIZE
+                || (clientTypeMask & (1 << clientType)) == 0)) {
+            return false;
+        }
+        return segmentCount <= 1 || (segments >>> segmentOf(userId, segmentCount) & 1L) != 0;
+    }
+
+    /**
+     * userId 所在的分段，String#hashCode 的算法由规范确定，业务层与网关的计算结果一致
+     *
+     * @param userId       用户ID
+     * @param segmentCount 分段数
+     * @return 分段下标
+     */
+    public static int segmentOf(String userId, int segmentCount) {
+        return Math.floorMod(userId.hashCode(), segmentCount);
+    }
+}
@@ -0,0 +1,24 @@
+package com.pd.im.codec.proto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 聊天消息路由信息
+ * <p>
+ * 网关转发聊天消息前只需要 messageId、fromId、toId，
+ * 由 {@link com.pd.im.codec.util.MessageCodecUtils#peekChatMessageRoute(Message)} 从原始消息体中直接读取，
+ * 不构建完整的 ChatMessagePack
+ *
+ * @author Parker
+ * @date 12/4/25
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatMessageRoute {
+    private String messageId;
+    private String fromId;
+    private String toId;
+}
@@ -0,0 +1,41 @@
+package com.pd.im.codec.proto;
+
+import io.netty.buffer.ByteBuf;
+import lombok.Data;
+
+/**
+ * 业务层 → 网关的下行消息信封
+ * <p>
+ * 由路由头和已编码的客户端帧组成，网关只读取路由头定位目标 Channel，
+ * 客户端帧原样写出，不做 JSON 解析和重新序列化。
+ * 编解码见 {@link com.pd.im.codec.util.DownlinkCodecUtils}
+ *
+ * @author Parker
+ * @date 12/5/25
+ */
+@Data
+public class DownlinkEnvelope {
+    /**
+     * 信封类型，取值见 {@link com.pd.im.codec.util.DownlinkCodecUtils} 的 TYPE_ 常量
+     */
+    private int type;
+    private int command;
+    private int appId;
+    private int clientType;
+    /**
+     * 接收方
+     */
+    private String toId;
+    /**
+     * 目标设备唯一标识
+     */
+    private String imei;
+    /**
+     * 去重键（消息ID），网关已本地直投过的消息按该键丢弃，未携带时为空
+     */
+    private String messageId;
+    /**
+     * 已编码的客户端帧（command + bodyLen + body）
+     */
+    private ByteBuf frame;
+}
@@ -0,0 +1,51 @@
+package com.pd.im.codec.proto;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.DefaultByteBufHolder;
+
+/**
+ * 已编码的客户端帧
+ * <p>
+ * 内容为完整的下行协议帧（command + bodyLen + body），由业务层预先编码，
+ * 网关直接写入 Channel，编码器不再做任何序列化：
+ * - TCP 连接原样写出
+ * - WebSocket 连接包装为 BinaryWebSocketFrame
+ *
+ * @author Parker
+ * @date 12/5/25
+ */
+public class EncodedFrame extends DefaultByteBufHolder {
+
+    public EncodedFrame(ByteBuf frame) {
+        super(frame);
+    }
+
+    @Override
+    public EncodedFrame replace(ByteBuf content) {
+        return new EncodedFrame(content);
+    }
+
+    @Override
+    public EncodedFrame retain() {
+        super.retain();
+        return this;
+    }
+
+    @Override
+    public EncodedFrame retain(int increment) {
+        super.retain(increment);
+        return this;
+    }
+
+    @Override
+    public EncodedFrame touch() {
+        super.touch();
+        return this;
+    }
+
+    @Override
+    public EncodedFrame touch(Object hint) {
+        super.touch(hint);
+        return this;
+    }
+}
@@ -0,0 +1,34 @@
+package com.pd.im.codec.proto;
+
+import io.netty.buffer.ByteBuf;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 业务层 → 网关的扇出信封
+ * <p>
+ * 一条信封携带同一个客户端帧和一批接收方，业务层按接收方会话所在的网关分组，每个网关只发布一条；
+ * 网关按本地连接注册表展开，写给每个接收方在本网关上的所有设备。
+ * 编解码见 {@link com.pd.im.codec.util.DownlinkCodecUtils}
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+@Data
+public class FanoutEnvelope {
+    /**
+     * 信封类型，取值见 {@link com.pd.im.codec.util.DownlinkCodecUtils} 的 TYPE_ 常量
+     */
+    private int type;
+    private int command;
+    private int appId;
+    /**
+     * 接收方
+     */
+    private List<String> userIds;
+    /**
+     * 已编码的客户端帧（command + bodyLen + body）
+     */
+    private ByteBuf frame;
+}
@@ -1,21 +1,114 @@
 package com.pd.im.codec.proto;
 
+import com.pd.im.codec.util.MessageCodecUtils;
+import io.netty.buffer.ByteBuf;
+import io.netty.util.ReferenceCounted;
 import lombok.Data;
 
 /**
+ * 客户端上行消息
+ * <p>
+ * 两种解码模式：
+ * - 立即解析：解码时即把消息体解析为 messagePack，body 为空
+ * - 延迟解析：body 持有消息体的 retained slice，首次调用 {@link #getMessagePack()} 时才解析 Protobuf，
+ *   无需解析的消息（如直接转发到 MQ）可以通过 body 透传原始字节
+ * <p>
+ * 延迟解析模式下消息持有引用计数，由 SimpleChannelInboundHandler 在处理完成后自动释放，
+ * 需要跨线程使用时调用方必须先 {@link #retain()}
+ *
  * @author Parker
  * @date 12/3/25
  */
 @Data
-public class Message {
+public class Message implements ReferenceCounted {
     private MessageHeader messageHeader;
     private Object messagePack;
 
+    /**
+     * 未解析的消息体（延迟解析模式），立即解析模式下为 null
+     */
+    private ByteBuf body;
+
+    /**
+     * 延迟解析模式下是否已尝试解析，避免解析失败时重复解析
+     */
+    private boolean bodyParsed;
+
+    /**
+     * 获取消息体对象
+     * <p>
+     * 延迟解析模式下首次调用时按 command 解析 body
+     *
+     * @return 消息体对象，解析失败返回 null
+     */
+    public Object getMessagePack() {
+        if (messagePack == null && body != null && !bodyParsed) {
+            bodyParsed = true;
+            messagePack = MessageCodecUtils.parseMessageBody(messageHeader, body);
+        }
+        return messagePack;
+    }
+
+    /**
+     * 是否持有未解析的原始消息体
+     */
+    public boolean hasRawBody() {
+        return body != null;
+    }
+
+    @Override
+    public int refCnt() {
+        return body != null ? body.refCnt() : 1;
+    }
+
+    @Override
+    public Message retain() {
+        if (body != null) {
+            body.retain();
+        }
+        return this;
+    }
+
+    @Override
+    public Message retain(int increment) {
+        if (body != null) {
+            body.retain(increment);
+        }
+        return this;
+    }
+
+    @Override
+    public Message touch() {
+        if (body != null) {
+            body.touch();
+        }
+        return this;
+    }
+
+    @Override
+    public Message touch(Object hint) {
+        if (body != null) {
+            body.touch(hint);
+        }
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        return body == null || body.release();
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        return body == null || body.release(decrement);
+    }
+
     @Override
     public String toString() {
         return "Message{" +
                 "messageHeader=" + messageHeader +
                 ", messagePack=" + messagePack +
+                ", bodyLength=" + (body != null ? body.readableBytes() : 0) +
                 '}';
     }
 }
@@ -4,6 +4,13 @@ import com.pd.im.common.enums.MessageType;
 import lombok.Data;
 
 /**
+ * 客户端消息头
+ * <p>
+ * 协议头均为定长 int，使用基本类型字段，解码时不产生装箱对象
+ * <p>
+ * 紧凑协议（v2）的帧只携带 command、requestId 和包体长度，其余字段由登录时绑定的
+ * {@link SessionHeader} 补齐
+ *
  * @author Parker
  * @date 12/3/25
  */
@@ -12,19 +19,23 @@ public class MessageHeader {
     /**
      * 消息操作指令(4字节) 十六进制 一个消息的开始通常以0x开头
      */
-    private Integer command;
+    private int command;
+    /**
+     * 请求序号，仅紧凑协议（v2）携带，由客户端按连接递增分配，v1 为 0
+     */
+    private int requestId;
     /**
      * 4字节 版本号
      */
-    private Integer version;
+    private int version;
     /**
      * 4字节 端类型
      */
-    private Integer clientType;
+    private int clientType;
     /**
      * 应用ID(4字节)
      */
-    private Integer appId;
+    private int appId;
     /**
      * 数据解析类型(4字节) 和具体业务无关
      * 后续根据解析类型解析data数据
@@ -33,12 +44,12 @@ public class MessageHeader {
      * 0x2:Xml,
      * 默认:0x0
      */
-    private Integer messageType = MessageType.DATA_TYPE_JSON.getCode();
+    private int messageType = MessageType.DATA_TYPE_JSON.getCode();
 
     /**
      * 4字节 imei长度
      */
-    private Integer imeiLength;
+    private int imeiLength;
 
     /**
      * 4字节 包体长度
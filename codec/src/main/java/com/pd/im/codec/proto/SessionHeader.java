@@ -0,0 +1,70 @@
+package com.pd.im.codec.proto;
+
+import com.pd.im.common.constant.Constants;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import lombok.Getter;
+
+/**
+ * 登录时绑定到连接的协议头字段
+ * <p>
+ * 协商使用紧凑协议（v2）的连接在登录成功后挂上本对象，此后 v2 帧不再携带 appId、clientType、messageType 和 imei，
+ * 解码时从本对象补齐，参见 {@link com.pd.im.codec.util.MessageCodecUtils#decodeCompact}：
+ * - 字段不可变，登录成功后在连接所属的 EventLoop 上绑定，之后只在同一个 EventLoop 上读取
+ * - 未绑定的连接收到 v2 帧视为协议错误
+ * - 同一连接以 v1 重新登录时解除绑定，之后的 v2 帧不会沿用旧的身份字段
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+@Getter
+public final class SessionHeader {
+
+    public static final AttributeKey<SessionHeader> KEY =
+            AttributeKey.valueOf(Constants.ChannelConstants.SESSION_HEADER);
+
+    private final int appId;
+    private final int clientType;
+    private final int messageType;
+    private final String imei;
+
+    private SessionHeader(int appId, int clientType, int messageType, String imei) {
+        this.appId = appId;
+        this.clientType = clientType;
+        this.messageType = messageType;
+        this.imei = imei;
+    }
+
+    /**
+     * 以登录帧的消息头为准绑定协议头字段，需在连接所属的 EventLoop 上调用
+     *
+     * @param channel 连接
+     * @param header  登录帧的消息头
+     * @return 绑定的协议头字段
+     */
+    public static SessionHeader bind(Channel channel, MessageHeader header) {
+        SessionHeader sessionHeader = new SessionHeader(header.getAppId(), header.getClientType(),
+                header.getMessageType(), header.getImei());
+        channel.attr(KEY).set(sessionHeader);
+        return sessionHeader;
+    }
+
+    /**
+     * 解除连接绑定的协议头字段，需在连接所属的 EventLoop 上调用
+     *
+     * @param channel 连接
+     */
+    public static void clear(Channel channel) {
+        channel.attr(KEY).set(null);
+    }
+
+    /**
+     * 获取连接绑定的协议头字段
+     *
+     * @param channel 连接
+     * @return 协议头字段，未协商紧凑协议返回 null
+     */
+    public static SessionHeader get(Channel channel) {
+        return channel.attr(KEY).get();
+    }
+}
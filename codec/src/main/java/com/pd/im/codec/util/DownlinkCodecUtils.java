@@ -0,0 +1,343 @@
+package com.pd.im.codec.util;
+
+import com.pd.im.codec.proto.BroadcastEnvelope;
+import com.pd.im.codec.proto.DownlinkEnvelope;
+import com.pd.im.codec.proto.FanoutEnvelope;
+import com.pd.im.codec.proto.MessagePack;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 下行消息信封编解码工具类
+ * <p>
+ * 各信封的首字节是信封类型而非版本号，解码时校验类型与 contentType 一致；格式变化时分配新的类型值
+ * <p>
+ * 信封格式：路由头 + 客户端帧
+ * - type(1) + command(4) + appId(4) + clientType(4)
+ * - toIdLength(2) + toId(变长) + imeiLength(2) + imei(变长)
+ * - frame(剩余全部字节，与 {@link MessageCodecUtils#encode} 的输出一致)
+ * <p>
+ * 下行消息携带 messageId 时使用带去重键的类型 {@link #TYPE_DEDUPE}，在 imei 之后追加
+ * messageIdLength(2) + messageId(变长)，其余与 {@link #TYPE_ENVELOPE} 一致
+ * <p>
+ * 客户端帧在业务层编码一次，网关只解析路由头
+ * <p>
+ * 扇出信封格式：接收方列表 + 客户端帧
+ * - type(1) + command(4) + appId(4) + userCount(4)
+ * - userCount 个 userIdLength(2) + userId(变长)
+ * - frame(剩余全部字节)
+ * <p>
+ * 广播信封格式：过滤条件 + 客户端帧
+ * - type(1) + command(4) + appId(4) + clientTypeMask(4) + segmentCount(4) + segments(8)
+ * - frame(剩余全部字节)
+ *
+ * @author Parker
+ * @date 12/5/25
+ */
+@Slf4j
+public class DownlinkCodecUtils {
+
+    /**
+     * 信封类型：单播
+     */
+    public static final int TYPE_ENVELOPE = 1;
+
+    /**
+     * 信封类型：扇出
+     */
+    public static final int TYPE_FANOUT = 2;
+
+    /**
+     * 信封类型：带去重键的单播
+     */
+    public static final int TYPE_DEDUPE = 3;
+
+    /**
+     * 信封类型：广播
+     */
+    public static final int TYPE_BROADCAST = 4;
+
+    /**
+     * 路由头固定部分长度：type(1) + command(4) + appId(4) + clientType(4) + toIdLength(2) + imeiLength(2)
+     */
+    private static final int ROUTE_HEADER_FIXED_LENGTH = 17;
+
+    /**
+     * 扇出信封固定部分长度：type(1) + command(4) + appId(4) + userCount(4)
+     */
+    private static final int FANOUT_HEADER_LENGTH = 13;
+
+    /**
+     * 广播信封固定部分长度：type(1) + command(4) + appId(4) + clientTypeMask(4) + segmentCount(4) + segments(8)
+     */
+    private static final int BROADCAST_HEADER_LENGTH = 25;
+
+    /**
+     * 编码下行消息信封（业务层调用）
+     *
+     * @param pack 下行消息
+     * @return 信封字节
+     */
+    public static byte[] encode(MessagePack pack) {
+        byte[] toId = toBytes(pack.getToId());
+        byte[] imei = toBytes(pack.getImei());
+        byte[] messageId = pack.getMessageId() != null ? toBytes(pack.getMessageId()) : null;
+        int capacity = ROUTE_HEADER_FIXED_LENGTH + toId.length + imei.length
+                + (messageId != null ? 2 + messageId.length : 0)
+                + MessageCodecUtils.calculateEncodedSize(pack);
+
+        ByteBuf buf = Unpooled.buffer(capacity);
+        try {
+            buf.writeByte(messageId != null ? TYPE_DEDUPE : TYPE_ENVELOPE);
+            buf.writeInt(pack.getCommand());
+            buf.writeInt(pack.getAppId() != null ? pack.getAppId() : 0);
+            buf.writeInt(pack.getClientType());
+            buf.writeShort(toId.length);
+            buf.writeBytes(toId);
+            buf.writeShort(imei.length);
+            buf.writeBytes(imei);
+            if (messageId != null) {
+                buf.writeShort(messageId.length);
+                buf.writeBytes(messageId);
+            }
+            MessageCodecUtils.encode(pack, buf);
+
+            // 预估长度准确时直接返回底层数组，避免再拷贝一次
+            if (buf.hasArray() && buf.arrayOffset() == 0 && buf.readerIndex() == 0
+                    && buf.writerIndex() == buf.array().length) {
+                return buf.array();
+            }
+            return ByteBufUtil.getBytes(buf);
+        } finally {
+            buf.release();
+        }
+    }
+
+    /**
+     * 解码下行消息信封（网关调用）
+     * <p>
+     * 只解析路由头，客户端帧以包装 ByteBuf 的形式返回，不拷贝
+     *
+     * @param bytes 信封字节
+     * @return 下行消息信封，格式错误返回 null
+     */
+    public static DownlinkEnvelope decode(byte[] bytes) {
+        if (bytes == null || bytes.length < ROUTE_HEADER_FIXED_LENGTH) {
+            log.error("Invalid downlink envelope length: {}", bytes == null ? 0 : bytes.length);
+            return null;
+        }
+
+        ByteBuf buf = Unpooled.wrappedBuffer(bytes);
+        try {
+            int type = buf.readUnsignedByte();
+            if (type != TYPE_ENVELOPE && type != TYPE_DEDUPE) {
+                log.error("Unsupported downlink envelope type: {}", type);
+                return null;
+            }
+
+            DownlinkEnvelope envelope = new DownlinkEnvelope();
+            envelope.setType(type);
+            envelope.setCommand(buf.readInt());
+            envelope.setAppId(buf.readInt());
+            envelope.setClientType(buf.readInt());
+            envelope.setToId(readString(buf));
+            envelope.setImei(readString(buf));
+            if (type == TYPE_DEDUPE) {
+                envelope.setMessageId(readString(buf));
+            }
+
+            if (buf.readableBytes() < MessageCodecUtils.ENCODE_HEADER_LENGTH) {
+                log.error("Downlink envelope has no client frame: command={}", envelope.getCommand());
+                return null;
+            }
+            envelope.setFrame(Unpooled.wrappedBuffer(bytes, buf.readerIndex(), buf.readableBytes()));
+            return envelope;
+        } catch (Exception e) {
+            log.error("Failed to decode downlink envelope", e);
+            return null;
+        } finally {
+            buf.release();
+        }
+    }
+
+    /**
+     * 编码客户端帧（业务层调用），同一条消息扇出到多个网关时只编码一次
+     *
+     * @param pack 下行消息
+     * @return 客户端帧字节
+     */
+    public static byte[] encodeFrame(MessagePack pack) {
+        ByteBuf buf = Unpooled.buffer(MessageCodecUtils.calculateEncodedSize(pack));
+        try {
+            MessageCodecUtils.encode(pack, buf);
+            return ByteBufUtil.getBytes(buf);
+        } finally {
+            buf.release();
+        }
+    }
+
+    /**
+     * 编码扇出信封（业务层调用）
+     *
+     * @param command 命令
+     * @param appId   应用ID
+     * @param userIds 接收方
+     * @param frame   {@link #encodeFrame} 编码的客户端帧
+     * @return 信封字节
+     */
+    public static byte[] encodeFanout(int command, int appId, Collection<String> userIds, byte[] frame) {
+        List<byte[]> encodedUserIds = new ArrayList<>(userIds.size());
+        int capacity = FANOUT_HEADER_LENGTH + frame.length;
+        for (String userId : userIds) {
+            byte[] bytes = toBytes(userId);
+            encodedUserIds.add(bytes);
+            capacity += 2 + bytes.length;
+        }
+
+        byte[] envelope = new byte[capacity];
+        ByteBuf buf = Unpooled.wrappedBuffer(envelope).clear();
+        buf.writeByte(TYPE_FANOUT);
+        buf.writeInt(command);
+        buf.writeInt(appId);
+        buf.writeInt(encodedUserIds.size());
+        for (byte[] userId : encodedUserIds) {
+            buf.writeShort(userId.length);
+            buf.writeBytes(userId);
+        }
+        buf.writeBytes(frame);
+        return envelope;
+    }
+
+    /**
+     * 解码扇出信封（网关调用）
+     *
+     * @param bytes 信封字节
+     * @return 扇出信封，客户端帧不拷贝；格式错误返回 null
+     */
+    public static FanoutEnvelope decodeFanout(byte[] bytes) {
+        if (bytes == null || bytes.length < FANOUT_HEADER_LENGTH) {
+            log.error("Invalid fanout envelope length: {}", bytes == null ? 0 : bytes.length);
+            return null;
+        }
+
+        ByteBuf buf = Unpooled.wrappedBuffer(bytes);
+        try {
+            int type = buf.readUnsignedByte();
+            if (type != TYPE_FANOUT) {
+                log.error("Unsupported fanout envelope type: {}", type);
+                return null;
+            }
+
+            FanoutEnvelope envelope = new FanoutEnvelope();
+            envelope.setType(type);
+            envelope.setCommand(buf.readInt());
+            envelope.setAppId(buf.readInt());
+            int userCount = buf.readInt();
+            // 每个接收方至少占 2 字节长度字段，提前校验避免按错误的数量分配列表
+            if (userCount < 0 || userCount > buf.readableBytes() / 2) {
+                log.error("Invalid fanout user count: {}", userCount);
+                return null;
+            }
+            List<String> userIds = new ArrayList<>(userCount);
+            for (int i = 0; i < userCount; i++) {
+                userIds.add(readString(buf));
+            }
+            envelope.setUserIds(userIds);
+
+            if (buf.readableBytes() < MessageCodecUtils.ENCODE_HEADER_LENGTH) {
+                log.error("Fanout envelope has no client frame: command={}", envelope.getCommand());
+                return null;
+            }
+            envelope.setFrame(Unpooled.wrappedBuffer(bytes, buf.readerIndex(), buf.readableBytes()));
+            return envelope;
+        } catch (Exception e) {
+            log.error("Failed to decode fanout envelope", e);
+            return null;
+        } finally {
+            buf.release();
+        }
+    }
+
+    /**
+     * 编码广播信封（业务层调用）
+     *
+     * @param command        命令
+     * @param appId          应用ID
+     * @param clientTypeMask 客户端类型位图，0 表示不过滤
+     * @param segmentCount   userId 分段数，小于等于 1 表示不过滤
+     * @param segments       分段位图
+     * @param frame          {@link #encodeFrame} 编码的客户端帧
+     * @return 信封字节
+     */
+    public static byte[] encodeBroadcast(int command, int appId, int clientTypeMask, int segmentCount, long segments,
+                                         byte[] frame) {
+        byte[] envelope = new byte[BROADCAST_HEADER_LENGTH + frame.length];
+        ByteBuf buf = Unpooled.wrappedBuffer(envelope).clear();
+        buf.writeByte(TYPE_BROADCAST);
+        buf.writeInt(command);
+        buf.writeInt(appId);
+        buf.writeInt(clientTypeMask);
+        buf.writeInt(segmentCount);
+        buf.writeLong(segments);
+        buf.writeBytes(frame);
+        return envelope;
+    }
+
+    /**
+     * 解码广播信封（网关调用）
+     *
+     * @param bytes 信封字节
+     * @return 广播信封，客户端帧不拷贝；格式错误返回 null
+     */
+    public static BroadcastEnvelope decodeBroadcast(byte[] bytes) {
+        if (bytes == null || bytes.length < BROADCAST_HEADER_LENGTH + MessageCodecUtils.ENCODE_HEADER_LENGTH) {
+            log.error("Invalid broadcast envelope length: {}", bytes == null ? 0 : bytes.length);
+            return null;
+        }
+
+        ByteBuf buf = Unpooled.wrappedBuffer(bytes);
+        try {
+            int type = buf.readUnsignedByte();
+            if (type != TYPE_BROADCAST) {
+                log.error("Unsupported broadcast envelope type: {}", type);
+                return null;
+            }
+
+            BroadcastEnvelope envelope = new BroadcastEnvelope();
+            envelope.setType(type);
+            envelope.setCommand(buf.readInt());
+            envelope.setAppId(buf.readInt());
+            envelope.setClientTypeMask(buf.readInt());
+            envelope.setSegmentCount(buf.readInt());
+            envelope.setSegments(buf.readLong());
+            if (envelope.getSegmentCount() > BroadcastEnvelope.MAX_SEGMENT_COUNT) {
+                log.error("Invalid broadcast segment count: {}", envelope.getSegmentCount());
+                return null;
+            }
+            envelope.setFrame(Unpooled.wrappedBuffer(bytes, buf.readerIndex(), buf.readableBytes()));
+            return envelope;
+        } finally {
+            buf.release();
+        }
+    }
+
+    private static byte[] toBytes(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+    }
+
+    private static String readString(ByteBuf buf) {
+        int length = buf.readUnsignedShort();
+        return buf.readCharSequence(length, StandardCharsets.UTF_8).toString();
+    }
+
+    private DownlinkCodecUtils() {
+        // 工具类，禁止实例化
+    }
+}
@@ -1,25 +1,41 @@
 package com.pd.im.codec.util;
 
+import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Descriptors;
 import com.google.protobuf.MessageLite;
+import com.google.protobuf.MessageOrBuilder;
+import com.google.protobuf.Parser;
+import com.google.protobuf.WireFormat;
+import com.pd.im.codec.proto.ChatMessageRoute;
 import com.pd.im.codec.proto.Message;
 import com.pd.im.codec.proto.MessageHeader;
 import com.pd.im.codec.proto.MessagePack;
+import com.pd.im.codec.proto.SessionHeader;
 import com.pd.im.codec.proto.generated.*;
-import com.pd.im.common.constant.Constants;
+import com.pd.im.common.enums.command.GroupEventCommand;
 import com.pd.im.common.enums.command.MessageCommand;
 import com.pd.im.common.enums.command.SystemCommand;
 import com.pd.im.common.enums.MessageType;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.handler.codec.CorruptedFrameException;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * 消息编解码工具类
  * <p>
  * 提供消息的编码和解码功能，支持非对称协议：
  * - decode(): 客户端 → 服务端（28字节头 + imei + body）
+ * - decodeCompact(): 客户端 → 服务端，紧凑协议 v2（1字节标识 + varint 头 + body）
  * - encode(): 服务端 → 客户端（8字节头 + body）
  *
  * @author Parker
@@ -44,13 +60,62 @@ public class MessageCodecUtils {
      */
     public static final int ENCODE_HEADER_LENGTH = 8;
 
+    /**
+     * JSON 消息体的预估长度
+     */
+    private static final int JSON_BODY_ESTIMATED_SIZE = 256;
+
     /**
      * 默认协议版本
      */
     public static final int DEFAULT_VERSION = 1;
 
+    /**
+     * 紧凑协议版本，客户端在登录帧的 version 字段中请求，服务端在登录响应中确认
+     */
+    public static final int COMPACT_VERSION = 2;
+
+    /**
+     * 紧凑协议帧的首字节
+     * <p>
+     * v1 帧以 4 字节 command 开头，命令号都小于 2^24，首字节恒为 0，据此逐帧区分两种协议
+     */
+    public static final byte COMPACT_MAGIC = (byte) 0xC2;
+
+    /**
+     * imei 的最大长度（字节），超过视为损坏的协议头
+     */
+    public static final int MAX_IMEI_LENGTH = 128;
+
+    /**
+     * Protobuf 消息体解析器映射表
+     * Key: 命令号, Value: 对应的 Protobuf 解析器
+     */
+    private static final Map<Integer, Parser<? extends MessageLite>> BODY_PARSERS;
+
+    static {
+        Map<Integer, Parser<? extends MessageLite>> map = new HashMap<>();
+        map.put(SystemCommand.LOGIN.getCommand(), LoginPack.parser());
+        map.put(MessageCommand.MSG_P2P.getCommand(), ChatMessagePack.parser());
+        map.put(GroupEventCommand.MSG_GROUP.getCommand(), ChatMessagePack.parser());
+        map.put(MessageCommand.MSG_READ.getCommand(), MessageReadPack.parser());
+        map.put(MessageCommand.MSG_RECALL_NOTIFY.getCommand(), RecallMessageNotifyPack.parser());
+        BODY_PARSERS = Collections.unmodifiableMap(map);
+    }
+
     // ==================== 解码方法（客户端 → 服务端） ====================
 
+    /**
+     * 将 ByteBuf 解码为 Message 对象（立即解析消息体）
+     *
+     * @param in ByteBuf 输入流
+     * @return Message 对象，解析失败返回 null
+     * @see #decode(ByteBuf, boolean)
+     */
+    public static Message decode(ByteBuf in) {
+        return decode(in, false);
+    }
+
     /**
      * 将 ByteBuf 解码为 Message 对象
      * <p>
@@ -58,70 +123,297 @@ public class MessageCodecUtils {
      * - command(4) + version(4) + clientType(4) + messageType(4)
      * - appId(4) + imeiLength(4) + bodyLen(4) + imei(变长) + body(变长)
      * <p>
-     * 注意：调用此方法前，调用方应确保 ByteBuf 中有足够的数据
-     * 此方法不做长度检查，不做 mark/reset 操作，只负责纯粹的解析
+     * 注意：调用此方法前，调用方应确保 ByteBuf 中有完整的一帧（如 WebSocket 帧）
+     * 此方法不做 mark/reset 操作；TCP 流按 {@link #decodeHeader} + {@link #decodeFrame} 分两步解码
      *
-     * @param in ByteBuf 输入流
+     * @param in   ByteBuf 输入流
+     * @param lazy true-延迟解析：消息体以 retained slice 形式保留在 Message 中，按需解析；
+     *             false-立即解析为 Protobuf 对象
      * @return Message 对象，解析失败返回 null
      */
-    public static Message decode(ByteBuf in) {
+    public static Message decode(ByteBuf in, boolean lazy) {
         try {
-            // 读取协议头（7个int字段，每个4字节）
-            int command = in.readInt();
-            int version = in.readInt();
-            int clientType = in.readInt();
-            int appId = in.readInt();
-            int messageType = in.readInt();
-            int imeiLength = in.readInt();
-            int bodyLen = in.readInt();
+            MessageHeader messageHeader = decodeHeader(in);
+            int imeiLength = messageHeader.getImeiLength();
+            int bodyLen = messageHeader.getLength();
 
             // 验证数据长度，避免负数或过大的长度
-            if (imeiLength < 0 || bodyLen < 0) {
+            if (imeiLength < 0 || imeiLength > MAX_IMEI_LENGTH || bodyLen < 0) {
                 log.error("Invalid length: imeiLength={}, bodyLen={}", imeiLength, bodyLen);
                 return null;
             }
 
             // 验证剩余数据是否足够
-            if (in.readableBytes() < imeiLength + bodyLen) {
+            if (in.readableBytes() < (long) imeiLength + bodyLen) {
                 log.error("Insufficient data: expected {} bytes, but only {} bytes available",
                         imeiLength + bodyLen, in.readableBytes());
                 return null;
             }
 
-            // 读取 imei
-            byte[] imeiData = new byte[imeiLength];
-            in.readBytes(imeiData);
-            String imei = new String(imeiData, StandardCharsets.UTF_8);
-
-            // 读取消息体
-            byte[] bodyData = new byte[bodyLen];
-            in.readBytes(bodyData);
-
-            // 构建消息头
-            MessageHeader messageHeader = new MessageHeader();
-            messageHeader.setCommand(command);
-            messageHeader.setVersion(version);
-            messageHeader.setClientType(clientType);
-            messageHeader.setMessageType(messageType);
-            messageHeader.setAppId(appId);
-            messageHeader.setImeiLength(imeiLength);
-            messageHeader.setLength(bodyLen);
-            messageHeader.setImei(imei);
-
-            // 构建消息对象
-            Message message = new Message();
-            message.setMessageHeader(messageHeader);
-
-            // 根据消息类型解析消息体
-            parseMessageBody(message, messageType, bodyData, imei, bodyLen);
-
-            return message;
+            return decodeFrame(messageHeader, in, lazy);
         } catch (Exception e) {
             log.error("Failed to decode message", e);
             return null;
         }
     }
 
+    /**
+     * 读取 v1 协议头（7个int字段，每个4字节），不读取 imei 和消息体，不校验长度
+     * <p>
+     * 调用方需保证至少有 {@link #DECODE_HEADER_LENGTH} 字节可读
+     *
+     * @param in ByteBuf 输入流
+     * @return 消息头，imei 为空，待 {@link #decodeFrame} 读取
+     */
+    public static MessageHeader decodeHeader(ByteBuf in) {
+        MessageHeader messageHeader = new MessageHeader();
+        messageHeader.setCommand(in.readInt());
+        messageHeader.setVersion(in.readInt());
+        messageHeader.setClientType(in.readInt());
+        messageHeader.setAppId(in.readInt());
+        messageHeader.setMessageType(in.readInt());
+        messageHeader.setImeiLength(in.readInt());
+        messageHeader.setLength(in.readInt());
+        return messageHeader;
+    }
+
+    /**
+     * 按已解码的消息头读取 imei（v1）和消息体，构建 Message 对象
+     * <p>
+     * 调用方需保证有 imeiLength + bodyLen 字节可读；紧凑协议的 imei 已由 {@link SessionHeader} 补齐，不再读取
+     *
+     * @param messageHeader 消息头
+     * @param in            ByteBuf 输入流
+     * @param lazy          是否延迟解析消息体
+     * @return Message 对象
+     */
+    public static Message decodeFrame(MessageHeader messageHeader, ByteBuf in, boolean lazy) {
+        if (messageHeader.getImei() == null) {
+            // 读取 imei（直接从 ByteBuf 解码字符串，不经过中间 byte[]）
+            messageHeader.setImei(in.readCharSequence(messageHeader.getImeiLength(), StandardCharsets.UTF_8).toString());
+        }
+
+        Message message = new Message();
+        message.setMessageHeader(messageHeader);
+        int bodyLen = messageHeader.getLength();
+        if (lazy) {
+            // 保留消息体切片，由 Message 的引用计数负责释放
+            message.setBody(in.readRetainedSlice(bodyLen));
+        } else {
+            // 直接在输入缓冲区上解析，不拷贝消息体
+            message.setMessagePack(parseMessageBody(messageHeader, in.readSlice(bodyLen)));
+        }
+        return message;
+    }
+
+    /**
+     * 可读数据是否以紧凑协议帧开头，调用方需保证至少有 1 字节可读
+     *
+     * @param in ByteBuf 输入流
+     * @return 紧凑协议帧返回 true
+     */
+    public static boolean isCompactFrame(ByteBuf in) {
+        return in.getByte(in.readerIndex()) == COMPACT_MAGIC;
+    }
+
+    /**
+     * 将紧凑协议（v2）帧解码为 Message 对象
+     * <p>
+     * 协议格式：标识(1) + command(varint) + requestId(varint) + bodyLen(varint) + body(变长)
+     * <p>
+     * 数据不足时由本方法恢复读指针并返回 null，等待更多数据
+     *
+     * @param in            ByteBuf 输入流，首字节为 {@link #COMPACT_MAGIC}
+     * @param sessionHeader 连接绑定的协议头字段
+     * @param lazy          是否延迟解析消息体，参见 {@link #decode(ByteBuf, boolean)}
+     * @return Message 对象，数据不足返回 null
+     * @throws CorruptedFrameException varint 格式错误或长度超出 int 范围
+     * @see #decodeCompactHeader(ByteBuf, SessionHeader)
+     */
+    public static Message decodeCompact(ByteBuf in, SessionHeader sessionHeader, boolean lazy) {
+        int start = in.readerIndex();
+        MessageHeader messageHeader = decodeCompactHeader(in, sessionHeader);
+        if (messageHeader == null) {
+            return null;
+        }
+        if (in.readableBytes() < messageHeader.getLength()) {
+            in.readerIndex(start);
+            return null;
+        }
+        return decodeFrame(messageHeader, in, lazy);
+    }
+
+    /**
+     * 读取紧凑协议（v2）头，不读取消息体
+     * <p>
+     * appId、clientType、messageType 和 imei 不在帧中传输，从登录时绑定的 {@link SessionHeader} 补齐。
+     * varint 头的长度不固定，头部数据不足时由本方法恢复读指针并返回 null
+     *
+     * @param in            ByteBuf 输入流，首字节为 {@link #COMPACT_MAGIC}
+     * @param sessionHeader 连接绑定的协议头字段
+     * @return 消息头，头部数据不足返回 null
+     * @throws CorruptedFrameException varint 格式错误或长度超出 int 范围
+     */
+    public static MessageHeader decodeCompactHeader(ByteBuf in, SessionHeader sessionHeader) {
+        int start = in.readerIndex();
+        in.skipBytes(1);
+        int command = readVarint(in);
+        int requestId = command < 0 ? -1 : readVarint(in);
+        int bodyLen = requestId < 0 ? -1 : readVarint(in);
+        if (bodyLen < 0) {
+            in.readerIndex(start);
+            return null;
+        }
+
+        MessageHeader messageHeader = new MessageHeader();
+        messageHeader.setCommand(command);
+        messageHeader.setRequestId(requestId);
+        messageHeader.setVersion(COMPACT_VERSION);
+        messageHeader.setClientType(sessionHeader.getClientType());
+        messageHeader.setMessageType(sessionHeader.getMessageType());
+        messageHeader.setAppId(sessionHeader.getAppId());
+        messageHeader.setImeiLength(0);
+        messageHeader.setLength(bodyLen);
+        messageHeader.setImei(sessionHeader.getImei());
+        return messageHeader;
+    }
+
+    /**
+     * 读取一个非负 varint（与 Protobuf 的 uint32 编码一致，最多5字节）
+     *
+     * @return 读取的值，数据不足返回 -1
+     * @throws CorruptedFrameException 超过5字节或超出 int 正数范围
+     */
+    private static int readVarint(ByteBuf in) {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (!in.isReadable()) {
+                return -1;
+            }
+            byte b = in.readByte();
+            if (shift == 28 && (b & 0xF8) != 0) {
+                break;
+            }
+            result |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new CorruptedFrameException("Malformed varint in compact header");
+    }
+
+    /**
+     * 解析消息体
+     * <p>
+     * 根据消息类型和命令号选择对应的 Protobuf 解析器，直接从 ByteBuf 的 NIO 视图解析，
+     * 不移动 ByteBuf 的读指针
+     *
+     * @param header 消息头
+     * @param body   消息体
+     * @return 解析后的对象；未知命令或非 Protobuf 类型返回原始字节；解析失败返回 null
+     */
+    public static Object parseMessageBody(MessageHeader header, ByteBuf body) {
+        if (header.getMessageType() != MessageType.DATA_TYPE_PROTOBUF.getCode()) {
+            log.warn("Unknown message type: {}, expected Protobuf=1, imei={}", header.getMessageType(), header.getImei());
+            return ByteBufUtil.getBytes(body);
+        }
+
+        Parser<? extends MessageLite> parser = BODY_PARSERS.get(header.getCommand());
+        if (parser == null) {
+            log.warn("Unknown command for Protobuf decoding: {}", header.getCommand());
+            return ByteBufUtil.getBytes(body);
+        }
+
+        try {
+            return parser.parseFrom(body.nioBuffer());
+        } catch (Exception e) {
+            log.error("Failed to parse Protobuf message body, imei={}, bodyLen={}",
+                    header.getImei(), body.readableBytes(), e);
+            return null;
+        }
+    }
+
+    /**
+     * 获取命令对应的 Protobuf 解析器
+     *
+     * @param command 命令号
+     * @return 解析器，未注册的命令返回 null
+     */
+    public static Parser<? extends MessageLite> getBodyParser(int command) {
+        return BODY_PARSERS.get(command);
+    }
+
+    /**
+     * 将 Protobuf 对象转换为 JSONObject
+     * <p>
+     * 字段名与 proto 定义保持一致，proto3 中取默认值的字段不会出现在结果中
+     *
+     * @param pack Protobuf 对象
+     * @return JSONObject
+     */
+    public static JSONObject toJsonObject(MessageOrBuilder pack) {
+        JSONObject json = new JSONObject();
+        for (Map.Entry<Descriptors.FieldDescriptor, Object> entry : pack.getAllFields().entrySet()) {
+            json.put(entry.getKey().getName(), entry.getValue());
+        }
+        return json;
+    }
+
+    /**
+     * 读取聊天消息的路由字段
+     * <p>
+     * 延迟解析模式下直接扫描原始消息体，只读取 messageId(1)、fromId(2)、toId(3)，跳过其余字段，
+     * 不构建完整的 ChatMessagePack；立即解析模式下从已解析的对象中读取
+     *
+     * @param message 消息
+     * @return 路由信息，消息体不是 ChatMessagePack 或解析失败返回 null
+     */
+    public static ChatMessageRoute peekChatMessageRoute(Message message) {
+        if (!message.hasRawBody()) {
+            Object pack = message.getMessagePack();
+            if (pack instanceof ChatMessagePack) {
+                ChatMessagePack chatPack = (ChatMessagePack) pack;
+                return new ChatMessageRoute(chatPack.getMessageId(), chatPack.getFromId(), chatPack.getToId());
+            }
+            return null;
+        }
+
+        if (message.getMessageHeader().getMessageType() != MessageType.DATA_TYPE_PROTOBUF.getCode()) {
+            return null;
+        }
+
+        try {
+            CodedInputStream input = CodedInputStream.newInstance(message.getBody().nioBuffer());
+            String messageId = null;
+            String fromId = null;
+            String toId = null;
+            while (messageId == null || fromId == null || toId == null) {
+                int tag = input.readTag();
+                if (tag == 0) {
+                    break;
+                }
+                int fieldNumber = WireFormat.getTagFieldNumber(tag);
+                if (fieldNumber == ChatMessagePack.MESSAGEID_FIELD_NUMBER) {
+                    messageId = input.readStringRequireUtf8();
+                } else if (fieldNumber == ChatMessagePack.FROMID_FIELD_NUMBER) {
+                    fromId = input.readStringRequireUtf8();
+                } else if (fieldNumber == ChatMessagePack.TOID_FIELD_NUMBER) {
+                    toId = input.readStringRequireUtf8();
+                } else {
+                    input.skipField(tag);
+                }
+            }
+            // proto3 中空字符串字段不会被序列化，与 ChatMessagePack 的默认值保持一致
+            return new ChatMessageRoute(
+                    messageId != null ? messageId : "",
+                    fromId != null ? fromId : "",
+                    toId != null ? toId : "");
+        } catch (Exception e) {
+            log.error("Failed to peek chat message route, imei={}", message.getMessageHeader().getImei(), e);
+            return null;
+        }
+    }
+
     // ==================== 编码方法（服务端 → 客户端） ====================
 
     /**
@@ -135,32 +427,28 @@ public class MessageCodecUtils {
      */
     public static void encode(MessagePack msg, ByteBuf out) {
         try {
-            byte[] bodyBytes;
-            int messageType = MessageType.DATA_TYPE_PROTOBUF.getCode();
-
-            if (msg.getData() instanceof MessageLite) {
-                // 如果是 Protobuf 对象
-                bodyBytes = ((MessageLite) msg.getData()).toByteArray();
+            Object data = msg.getData();
+            int bodyLen;
+            if (data instanceof MessageLite) {
+                MessageLite body = (MessageLite) data;
+                // getSerializedSize 结果由 Protobuf 对象缓存，后续 writeTo 不会重复计算
+                bodyLen = body.getSerializedSize();
+                out.ensureWritable(ENCODE_HEADER_LENGTH + bodyLen);
+                writeHeader(msg.getCommand(), bodyLen, out);
+                if (bodyLen > 0) {
+                    writeProtobuf(body, bodyLen, out);
+                }
             } else {
-                log.error("不支持的消息体类型，期待 MessageLite，实际为: {}", msg.getData() != null ? msg.getData().getClass().getName() : "null");
-                bodyBytes = new byte[0];
+                // 没有 Protobuf 定义的业务对象（如 ResponseVO、业务层下发的通知）以 JSON 编码
+                byte[] bodyBytes = data != null ? JSON.toJSONBytes(data) : new byte[0];
+                bodyLen = bodyBytes.length;
+                out.ensureWritable(ENCODE_HEADER_LENGTH + bodyLen);
+                writeHeader(msg.getCommand(), bodyLen, out);
+                out.writeBytes(bodyBytes);
             }
 
-            // 写入超轻量协议头（8字节）
-            // 注意：这里为了兼容，暂不改变协议头长度，但可以通过 command 或其他逻辑标记消息类型
-            // 实际上，服务端发往客户端的 8 字节头里没有 messageType，
-            // 我们可以考虑扩展协议头或通过特定的 command 范围来区分。
-            // 但如果客户端知道某个 command 必须是 Protobuf，也可以。
-            
-            out.writeInt(msg.getCommand());        // command (4字节)
-            out.writeInt(bodyBytes.length);        // bodyLen (4字节)
-
-            // 写入消息体
-            out.writeBytes(bodyBytes);
-
             if (log.isDebugEnabled()) {
-                log.debug("Encoded message: command={}, bodyLen={}, type={}",
-                        msg.getCommand(), bodyBytes.length, messageType);
+                log.debug("Encoded message: command={}, bodyLen={}", msg.getCommand(), bodyLen);
             }
         } catch (Exception e) {
             log.error("Failed to encode message: command={}", msg.getCommand(), e);
@@ -170,6 +458,8 @@ public class MessageCodecUtils {
 
     /**
      * 计算编码后的消息长度
+     * <p>
+     * JSON 消息体无法提前得知长度，返回预估值，写入时由 ByteBuf 自动扩容
      *
      * @param msg MessagePack 对象
      * @return 编码后的字节长度
@@ -179,6 +469,8 @@ public class MessageCodecUtils {
             int bodyLen = 0;
             if (msg.getData() instanceof MessageLite) {
                 bodyLen = ((MessageLite) msg.getData()).getSerializedSize();
+            } else if (msg.getData() != null) {
+                bodyLen = JSON_BODY_ESTIMATED_SIZE;
             }
             // 协议头(8字节) + body长度
             return ENCODE_HEADER_LENGTH + bodyLen;
@@ -188,43 +480,38 @@ public class MessageCodecUtils {
         }
     }
 
-    // ==================== 私有辅助方法 ====================
+    /**
+     * 写入超轻量协议头（8字节）
+     * <p>
+     * 注意：服务端发往客户端的 8 字节头里没有 messageType，客户端按 command 确定消息体格式
+     */
+    private static void writeHeader(int command, int bodyLen, ByteBuf out) {
+        out.writeInt(command);        // command (4字节)
+        out.writeInt(bodyLen);        // bodyLen (4字节)
+    }
 
     /**
-     * 解析消息体
+     * 将 Protobuf 对象直接序列化到 ByteBuf 的可写区域
+     * <p>
+     * 通过 CodedOutputStream 写入 ByteBuf 的 NIO 视图，不经过中间 byte[]；
+     * 直接内存缓冲区走 Unsafe 写入路径。ByteBuf 由多段内存组成时回退为 toByteArray
      *
-     * @param message     消息对象
-     * @param messageType 消息类型
-     * @param bodyData    消息体字节数组
-     * @param imei        设备标识
-     * @param bodyLen     消息体长度
-     */
-    private static void parseMessageBody(Message message, int messageType, byte[] bodyData, String imei, int bodyLen) {
-        if (messageType == MessageType.DATA_TYPE_PROTOBUF.getCode()) {
-            try {
-                int command = message.getMessageHeader().getCommand();
-                Object pack = null;
-                // 根据命令号选择对应的 Protobuf 类进行解析
-                if (command == SystemCommand.LOGIN.getCommand()) {
-                    pack = LoginPack.parseFrom(bodyData);
-                } else if (command == MessageCommand.MSG_P2P.getCommand()) {
-                    pack = ChatMessagePack.parseFrom(bodyData);
-                } else if (command == MessageCommand.MSG_READ.getCommand()) {
-                    pack = MessageReadPack.parseFrom(bodyData);
-                } else if (command == MessageCommand.MSG_RECALL_NOTIFY.getCommand()) {
-                    pack = RecallMessageNotifyPack.parseFrom(bodyData);
-                } else {
-                    log.warn("Unknown command for Protobuf decoding: {}", command);
-                    pack = bodyData;
-                }
-                message.setMessagePack(pack);
-            } catch (Exception e) {
-                log.error("Failed to parse Protobuf message body, imei={}, bodyLen={}", imei, bodyLen, e);
-            }
-        } else {
-            log.warn("Unknown message type: {}, expected Protobuf=1, imei={}", messageType, imei);
-            message.setMessagePack(bodyData);
+     * @param body    Protobuf 对象
+     * @param bodyLen 序列化后的长度
+     * @param out     输出 ByteBuf，调用方需保证有 bodyLen 字节的可写空间
+     * @throws IOException 序列化失败
+     */
+    private static void writeProtobuf(MessageLite body, int bodyLen, ByteBuf out) throws IOException {
+        int writerIndex = out.writerIndex();
+        if (out.nioBufferCount() != 1) {
+            out.writeBytes(body.toByteArray());
+            return;
         }
+        CodedOutputStream output = CodedOutputStream.newInstance(out.nioBuffer(writerIndex, bodyLen));
+        body.writeTo(output);
+        output.flush();
+        output.checkNoSpaceLeft();
+        out.writerIndex(writerIndex + bodyLen);
     }
 
     private MessageCodecUtils() {
@@ -34,6 +34,11 @@ public class AppConfig {
      */
     private Integer consistentHashModel;
 
+    /**
+     * 一致性哈希每个节点的虚拟节点数
+     */
+    private Integer consistentHashVirtualNodes = 160;
+
     /**
      * 回调地址
      */
@@ -153,4 +158,20 @@ public class AppConfig {
      * 发送单/群聊消息之后
      */
     private boolean sendMessageAfterCallback;
+
+    /**
+     * 下发到网关的 MQ 消息是否使用 JSON（调试用），默认使用二进制信封
+     */
+    private boolean mqJsonPayload;
+
+    /**
+     * 群聊消息按网关扇出：每个网关发布一条携带接收方列表的信封，关闭时逐个会话发送
+     */
+    private boolean groupBrokerFanout = true;
+
+    /**
+     * 单聊消息同网关直投：接收方与发送方在同一网关时，发送校验通过即分配序列号，由网关直接推送给接收方，
+     * 随后的正常分发由网关按 messageId 去重。开启了发送前回调时不生效（回调可能拒绝已推送的消息）
+     */
+    private boolean p2pLocalDelivery;
 }
@@ -7,46 +7,19 @@ package com.pd.im.common.constant;
 public class Constants {
     public static class ChannelConstants {
         /**
-         * channel 绑定的 userId Key
+         * channel 绑定的连接会话 Key，登录后的身份信息和关闭标志位都在连接会话中
          */
-        public static final String USER_ID = "userId";
-        /**
-         * channel 绑定的 appId Key
-         */
-        public static final String APP_ID = "appId";
-        /**
-         * channel 绑定的端类型
-         */
-        public static final String CLIENT_TYPE = "clientType";
-        /**
-         * channel 绑定的读写时间
-         */
-        public static final String READ_TIME = "readTime";
+        public static final String CONNECTION_SESSION = "connectionSession";
 
         /**
-         * channel 绑定的 imei 号，标识用户登录设备号
+         * channel 绑定的有序发送队列 Key，登录前的连接也可能发送消息，不放在连接会话中
          */
-        public static final String IMEI = "imei";
+        public static final String ORDERED_SEND_QUEUE = "orderedSendQueue";
 
         /**
-         * channel 绑定的 clientType 和 imei Key
+         * channel 绑定的协议头字段 Key，协商紧凑协议的连接在登录后绑定，解码器在连接会话之前使用
          */
-        public static final String CLIENT_IMEI = "clientImei";
-
-        /**
-         * 标志位：Channel正在被重新绑定而关闭（同设备重复登录）
-         */
-        public static final String CLOSING_BY_REBIND = "closingByRebind";
-
-        /**
-         * 标志位：Channel正在被用户主动登出而关闭
-         */
-        public static final String CLOSING_BY_LOGOUT = "closingByLogout";
-
-        /**
-         * 标志位：Channel正在被cleanupAndClose方法处理
-         */
-        public static final String CLOSING_BY_CLEANUP = "closingByCleanup";
+        public static final String SESSION_HEADER = "sessionHeader";
     }
 
     public static class RedisConstants {
@@ -54,10 +27,6 @@ public class Constants {
          * UserSign，格式：appId:UserSign:
          */
         public static final String USER_SIGN = ":userSign:";
-        /**
-         * 用户登录端消息通道信息
-         */
-        public static final String USER_LOGIN_CHANNEL = "signal/channel/LOGIN_USER_INNER_QUEUE";
         /**
          * 用户session：格式为 appId + userSessionConstants + 用户 ID
          * 例如：10001:userSession:userId
@@ -109,6 +78,41 @@ public class Constants {
 
         public static final String STORE_GROUP_MESSAGE = "storeGroupMessage";
 
+        /**
+         * 发送权限相关数据变更通知（fanout），每个网关各自绑定一个临时队列，用于失效本地权限缓存
+         */
+        public static final String PERMISSION_CHANGE_TO_IM = "permissionChange2Pipeline";
+
+        /**
+         * 网关透传的原始 Protobuf 消息体，消息头字段放在 AMQP headers 中
+         */
+        public static final String CONTENT_TYPE_PROTOBUF = "application/x-protobuf";
+
+        /**
+         * 业务层下发的二进制信封：路由头 + 已编码的客户端帧
+         */
+        public static final String CONTENT_TYPE_DOWNLINK_ENVELOPE = "application/x-im-envelope";
+
+        /**
+         * 业务层下发的扇出信封：接收方列表 + 已编码的客户端帧，网关按本地连接展开
+         */
+        public static final String CONTENT_TYPE_DOWNLINK_FANOUT = "application/x-im-fanout";
+
+        /**
+         * 业务层下发的广播信封：过滤条件 + 已编码的客户端帧，网关按本地连接注册表筛选后分批写出
+         */
+        public static final String CONTENT_TYPE_DOWNLINK_BROADCAST = "application/x-im-broadcast";
+
+        /**
+         * 网关上行到业务层的 protostuff 信封：消息头字段 + 消息体
+         */
+        public static final String CONTENT_TYPE_UPLINK_ENVELOPE = "application/x-im-uplink-envelope";
+
+        /**
+         * JSON 消息，便于调试时直接查看队列内容
+         */
+        public static final String CONTENT_TYPE_JSON = "application/json";
+
     }
 
     public static class CallbackCommand {
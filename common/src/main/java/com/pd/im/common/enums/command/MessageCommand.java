@@ -30,7 +30,10 @@ public enum MessageCommand implements Command {
     MSG_RECALL_NOTIFY(0x41C),  // 1052
 
     //消息撤回回报 1051
-    MSG_RECALL_ACK(0x41B);  // 1051
+    MSG_RECALL_ACK(0x41B),  // 1051
+
+    //系统广播 1055
+    MSG_BROADCAST(0x41F);  // 1055
 
     private Integer command;
 
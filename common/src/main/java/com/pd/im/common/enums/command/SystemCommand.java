@@ -28,7 +28,11 @@ public enum SystemCommand implements Command {
     /**
      * 消息发送 9005 --> 0x232d
      */
-    SENDMSG(0x232d);
+    SENDMSG(0x232d),
+    /**
+     * 重连通知 网关摘流时引导客户端重连到其他网关 9006 --> 0x232e
+     */
+    RECONNECT(0x232e);
 
     private Integer command;
 
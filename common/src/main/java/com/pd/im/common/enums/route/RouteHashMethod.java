@@ -11,9 +11,9 @@ public enum RouteHashMethod {
     TREE(1, "com.pd.im.common.route.algorithm.hash.TreeMapConsistentHash"),
 
     /**
-     * 自定义map
+     * 有序数组
      */
-    CUSTOMER(2, "com.pd.im.common.route.algorithm.hash.xxxx"),
+    SORTED_ARRAY(2, "com.pd.im.common.route.algorithm.hash.SortedArrayConsistentHash"),
 
     ;
 
@@ -17,6 +17,14 @@ public enum UrlRouteMode {
      * 一致性 HASH
      */
     HASH(3, "com.pd.im.common.route.algorithm.hash.ConsistentHashHandler"),
+    /**
+     * 加权最少连接
+     */
+    WEIGHTED_LEAST_CONNECTION(4, "com.pd.im.common.route.algorithm.load.WeightedLeastConnectionHandler"),
+    /**
+     * 随机两选一，取负载较低者
+     */
+    POWER_OF_TWO_CHOICES(5, "com.pd.im.common.route.algorithm.load.PowerOfTwoChoicesHandler"),
     ;
     private int code;
     private String clazz;
@@ -0,0 +1,31 @@
+package com.pd.im.common.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 发送权限相关数据变更事件
+ * <p>
+ * 业务层在用户禁言/封禁、好友关系、黑名单、群禁言、群成员角色等数据变更后发布，
+ * 网关收到后失效与 ids 中任一用户或群组相关的本地权限缓存
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PermissionChangeEvent {
+    private Integer appId;
+    /**
+     * 发生变更的用户ID或群组ID
+     */
+    private List<String> ids;
+    /**
+     * 变更原因，仅用于日志排查
+     */
+    private String reason;
+}
@@ -19,4 +19,12 @@ public class CheckSendMessageReq {
     private String toId;
     private Integer appId;
     private Integer command;
+    /**
+     * 客户端生成的消息ID
+     */
+    private String messageId;
+    /**
+     * [P2P] 网关请求本地直投：校验通过时由业务层分配消息序列号并在响应中返回
+     */
+    private Boolean assignSequence;
 }
@@ -0,0 +1,46 @@
+package com.pd.im.common.model.mq;
+
+import lombok.Data;
+
+/**
+ * 网关上行到业务层的 MQ 信封
+ * <p>
+ * 由 {@link com.pd.im.common.util.UplinkEnvelopeCodec} 按 protostuff schema 编解码，
+ * 消息头字段独立成字段，消息体保持原始字节，业务层按 messageType 和 command 解析
+ * <p>
+ * protostuff 运行时 schema 按字段声明顺序编号，新增字段只能追加在末尾
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+@Data
+public class UplinkEnvelope {
+    /**
+     * 信封版本，由编码器写入
+     */
+    private Integer version;
+    private Integer command;
+    private Integer appId;
+    private Integer clientType;
+    private String imei;
+    /**
+     * 消息目标（用户ID或群组ID），聊天消息由网关从消息体中读取，其余未解析的消息体为空
+     */
+    private String toId;
+    /**
+     * 发出该消息的网关
+     */
+    private Integer brokerId;
+    /**
+     * 消息体格式，取值见 {@link com.pd.im.common.enums.MessageType}
+     */
+    private Integer messageType;
+    /**
+     * 消息体：Protobuf 为客户端原始字节，JSON 为 UTF-8 字节
+     */
+    private byte[] payload;
+    /**
+     * 网关本地直投时业务层已在发送校验中分配的消息序列号，未分配时为空
+     */
+    private Long messageSequence;
+}
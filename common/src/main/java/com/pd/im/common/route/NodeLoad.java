@@ -0,0 +1,52 @@
+package com.pd.im.common.route;
+
+import lombok.Data;
+
+/**
+ * 网关节点负载
+ * <p>
+ * 网关定期以 JSON 写入自己的 ZK 临时节点数据，负载感知的路由策略据此选择节点，
+ * 业务层广播时也据此获取在线网关的 brokerId
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+@Data
+public class NodeLoad {
+    /**
+     * 网关唯一编号，即下行消息的路由键
+     */
+    private Integer brokerId;
+    /**
+     * 当前连接数
+     */
+    private Integer connections;
+    /**
+     * EventLoop 线程的平均 CPU 利用率，0 ~ 1
+     */
+    private Double eventLoopUtilisation;
+    /**
+     * 所有连接待写出的字节数
+     */
+    private Long outboundPendingBytes;
+    /**
+     * 已使用堆内存（字节）
+     */
+    private Long heapUsed;
+    /**
+     * 最大堆内存（字节）
+     */
+    private Long heapMax;
+    /**
+     * 节点权重，按机器容量配置
+     */
+    private Integer weight;
+    /**
+     * 上报时间戳（毫秒）
+     */
+    private Long reportTime;
+    /**
+     * 上报间隔（毫秒），超过数个间隔未更新视为负载未知
+     */
+    private Long reportIntervalMillis;
+}
@@ -1,6 +1,7 @@
 package com.pd.im.common.route;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author Parker
@@ -8,4 +9,16 @@ import java.util.List;
  */
 public interface RouteHandler {
     String routeServer(List<String> values, String key);
+
+    /**
+     * 结合节点负载选择服务节点，负载感知的策略需要覆盖，其他策略忽略负载
+     *
+     * @param values 节点列表 ip:port
+     * @param loads  节点 -> 负载，未上报负载的节点不存在
+     * @param key    路由 key，一般为 userId
+     * @return 选中的节点
+     */
+    default String routeServer(List<String> values, Map<String, NodeLoad> loads, String key) {
+        return routeServer(values, key);
+    }
 }
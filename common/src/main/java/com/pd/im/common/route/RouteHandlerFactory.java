@@ -0,0 +1,52 @@
+package com.pd.im.common.route;
+
+import com.pd.im.common.enums.route.RouteHashMethod;
+import com.pd.im.common.enums.route.UrlRouteMode;
+import com.pd.im.common.route.algorithm.hash.AbstractConsistentHash;
+import com.pd.im.common.route.algorithm.hash.ConsistentHashHandler;
+
+/**
+ * 路由策略工厂
+ * <p>
+ * 业务层分配网关和网关摘流时引导客户端重连使用同一套路由配置，保证两者选出的节点一致
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+public class RouteHandlerFactory {
+
+    /**
+     * 按配置创建路由策略
+     *
+     * @param imRouteModel        路由策略，见 {@link UrlRouteMode}
+     * @param consistentHashModel 一致性哈希的底层数据结构，见 {@link RouteHashMethod}，仅一致性哈希策略使用
+     * @param virtualNodes        一致性哈希每个节点的虚拟节点数，为空时使用默认值
+     * @return 路由策略
+     * @throws ReflectiveOperationException 策略类实例化失败
+     */
+    public static RouteHandler create(Integer imRouteModel, Integer consistentHashModel, Integer virtualNodes)
+            throws ReflectiveOperationException {
+        UrlRouteMode handler = UrlRouteMode.getHandler(imRouteModel);
+        if (handler == null) {
+            throw new IllegalArgumentException("未知的路由策略: " + imRouteModel);
+        }
+        RouteHandler routeHandler = (RouteHandler) Class.forName(handler.getClazz()).getDeclaredConstructor().newInstance();
+        // 特判，一致性哈希可以指定底层数据结构
+        if (routeHandler instanceof ConsistentHashHandler) {
+            RouteHashMethod hashHandler = RouteHashMethod.getHandler(consistentHashModel);
+            if (hashHandler == null) {
+                throw new IllegalArgumentException("未知的一致性哈希实现: " + consistentHashModel);
+            }
+            AbstractConsistentHash consistentHash = (AbstractConsistentHash) Class.forName(hashHandler.getClazz())
+                    .getDeclaredConstructor().newInstance();
+            if (virtualNodes != null) {
+                consistentHash.setVirtualNodes(virtualNodes);
+            }
+            ((ConsistentHashHandler) routeHandler).setHash(consistentHash);
+        }
+        return routeHandler;
+    }
+
+    private RouteHandlerFactory() {
+    }
+}
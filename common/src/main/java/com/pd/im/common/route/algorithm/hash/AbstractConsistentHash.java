@@ -1,75 +1,187 @@
 package com.pd.im.common.route.algorithm.hash;
 
-import java.io.UnsupportedEncodingException;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import com.pd.im.common.enums.user.UserErrorCode;
+import com.pd.im.common.exception.ApplicationException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 /**
+ * 一致性哈希
+ * <p>
+ * 哈希环是不可变快照，只在节点列表变化时重建：
+ * - 读路径只读取 volatile 快照，无锁、无对象分配
+ * - 节点列表变化时由调用线程构建新环并整体替换，并发重建的结果相同，后写入的覆盖先写入的即可
+ * - 哈希使用 FNV-1a + MurmurHash3 fmix64 混淆，直接按字符计算，不做编码转换
+ * - 每个节点的虚拟节点数可配置，重建时输出各节点占哈希环的比例，用于观察分布倾斜
+ *
  * @author Parker
  * @date 12/8/25
  */
+@Slf4j
 public abstract class AbstractConsistentHash {
-    protected abstract void add(long key, String value);
 
-    protected void sort() {
-    }
+    /**
+     * 默认每个节点的虚拟节点数，节点较少时 160 个虚拟节点的负载偏差在 10% 左右
+     */
+    public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
 
-    protected abstract String getFirstNodeValue(String value);
+    private volatile int virtualNodes = DEFAULT_VIRTUAL_NODES;
+    private volatile Snapshot snapshot;
 
     /**
-     * 处理之前事件
+     * 由哈希值有序的环上节点构建不可变的哈希环
+     *
+     * @param points 哈希值 -> 节点，按哈希值有序，不为空
+     * @return 哈希环
      */
-    protected abstract void processBefore();
+    protected abstract Ring buildRing(TreeMap<Long, String> points);
+
+    /**
+     * 设置每个节点的虚拟节点数，下次节点列表变化时生效
+     *
+     * @param virtualNodes 虚拟节点数
+     */
+    public void setVirtualNodes(int virtualNodes) {
+        this.virtualNodes = Math.max(1, virtualNodes);
+    }
 
     /**
      * 传入节点列表以及客户端信息获取一个服务节点
      *
-     * @param values
-     * @param key
-     * @return
+     * @param values 节点列表
+     * @param key    客户端信息
+     * @return 服务节点
      */
-    public synchronized String process(List<String> values, String key) {
-        // 节点是动态的，需要清空缓存的节点
-        processBefore();
-        for (String value : values) {
-            add(hash(value), value);
+    public String process(List<String> values, String key) {
+        Snapshot current = snapshot;
+        if (current == null || !current.matches(values)) {
+            current = rebuild(values);
         }
-        sort();
-        return getFirstNodeValue(key);
+        return current.ring.locate(hash(key));
     }
 
     /**
      * hash 运算
      *
-     * @param value
-     * @return
+     * @param value 字符串
+     * @return 64 位哈希值
+     */
+    public long hash(String value) {
+        long h = FNV_OFFSET_BASIS;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= FNV_PRIME;
+        }
+        return fmix64(h);
+    }
+
+    private Snapshot rebuild(List<String> values) {
+        if (values.isEmpty()) {
+            throw new ApplicationException(UserErrorCode.SERVER_NOT_AVAILABLE);
+        }
+        int replicas = virtualNodes;
+        TreeMap<Long, String> points = new TreeMap<>();
+        for (String value : values) {
+            long nodeHash = hash(value);
+            for (int i = 0; i < replicas; i++) {
+                points.put(fmix64(nodeHash + i * GOLDEN_GAMMA), value);
+            }
+        }
+        Snapshot rebuilt = new Snapshot(values, buildRing(points));
+        snapshot = rebuilt;
+        if (log.isInfoEnabled()) {
+            log.info("一致性哈希环已重建: nodes={}, virtualNodes={}, points={}, {}",
+                    values.size(), replicas, points.size(), skewReport(points));
+        }
+        return rebuilt;
+    }
+
+    /**
+     * 各节点占哈希环的比例，以及最大占比与平均占比之比
      */
-    public Long hash(String value) {
-        MessageDigest md5;
-        try {
-            md5 = MessageDigest.getInstance("MD5");
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("MD5 not supported", e);
+    private static String skewReport(TreeMap<Long, String> points) {
+        Map<String, Double> shares = new HashMap<>();
+        long previous = points.lastKey();
+        for (Map.Entry<Long, String> point : points.entrySet()) {
+            // 每个点负责 (上一个点, 当前点] 这段弧，无符号相减自然处理环的回绕
+            long arc = point.getKey() - previous;
+            shares.merge(point.getValue(), unsignedToDouble(arc) / 0x1p64, Double::sum);
+            previous = point.getKey();
         }
-        md5.reset();
-        byte[] keyBytes = null;
-        try {
-            keyBytes = value.getBytes("UTF-8");
-        } catch (UnsupportedEncodingException e) {
-            throw new RuntimeException("Unknown string :" + value, e);
+        if (points.size() == 1) {
+            shares.put(points.firstEntry().getValue(), 1.0);
         }
+        double max = Collections.max(shares.values());
+        double mean = 1.0 / shares.size();
+        return String.format("maxShare/mean=%.3f, shares=%s", max / mean, shares);
+    }
 
-        md5.update(keyBytes);
-        byte[] digest = md5.digest();
+    private static double unsignedToDouble(long value) {
+        double d = (double) (value >>> 1) * 2.0;
+        return d + (value & 1);
+    }
 
-        // hash code, Truncate to 32-bits
-        long hashCode = ((long) (digest[3] & 0xFF) << 24)
-                | ((long) (digest[2] & 0xFF) << 16)
-                | ((long) (digest[1] & 0xFF) << 8)
-                | (digest[0] & 0xFF);
+    private static long fmix64(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
 
-        long truncateHashCode = hashCode & 0xffffffffL;
-        return truncateHashCode;
+    /**
+     * 不可变哈希环
+     */
+    protected interface Ring {
+        /**
+         * 顺时针查找第一个哈希值不小于 hash 的节点，超过最大值时回到第一个节点
+         *
+         * @param hash 哈希值
+         * @return 节点
+         */
+        String locate(long hash);
+    }
+
+    private static final class Snapshot {
+        private final List<String> nodes;
+        private final Set<String> nodeSet;
+        private final Ring ring;
+
+        private Snapshot(List<String> nodes, Ring ring) {
+            // 保存副本，调用方原地修改节点列表后仍能识别出变化
+            this.nodes = List.copyOf(nodes);
+            this.nodeSet = new HashSet<>(this.nodes);
+            this.ring = ring;
+        }
+
+        /**
+         * 节点列表是否与构建时相同，不要求顺序一致
+         */
+        private boolean matches(List<String> values) {
+            if (nodes.equals(values)) {
+                return true;
+            }
+            if (values.size() != nodeSet.size()) {
+                return false;
+            }
+            for (String value : values) {
+                if (!nodeSet.contains(value)) {
+                    return false;
+                }
+            }
+            return true;
+        }
     }
 }
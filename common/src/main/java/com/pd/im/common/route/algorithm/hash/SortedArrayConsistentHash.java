@@ -0,0 +1,35 @@
+package com.pd.im.common.route.algorithm.hash;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 有序数组实现的一致性哈希
+ * <p>
+ * 环上的点按哈希值展开为两个平行数组，查找为一次二分查找，不经过装箱和树节点跳转，缓存友好
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+public class SortedArrayConsistentHash extends AbstractConsistentHash {
+
+    @Override
+    protected Ring buildRing(TreeMap<Long, String> points) {
+        long[] hashes = new long[points.size()];
+        String[] nodes = new String[points.size()];
+        int i = 0;
+        for (Map.Entry<Long, String> point : points.entrySet()) {
+            hashes[i] = point.getKey();
+            nodes[i] = point.getValue();
+            i++;
+        }
+        return hash -> {
+            int index = Arrays.binarySearch(hashes, hash);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            return nodes[index == hashes.length ? 0 : index];
+        };
+    }
+}
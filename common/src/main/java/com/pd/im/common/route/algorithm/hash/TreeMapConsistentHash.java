@@ -1,9 +1,6 @@
 package com.pd.im.common.route.algorithm.hash;
 
-import com.pd.im.common.enums.user.UserErrorCode;
-import com.pd.im.common.exception.ApplicationException;
-
-import java.util.SortedMap;
+import java.util.Map;
 import java.util.TreeMap;
 
 /**
@@ -11,32 +8,13 @@ import java.util.TreeMap;
  * @date 12/8/25
  */
 public class TreeMapConsistentHash extends AbstractConsistentHash {
-    private TreeMap<Long, String> treeMap = new TreeMap<>();
-    private static final int NODE_SIZE = 2;
-
-    @Override
-    protected void add(long key, String value) {
-        for (int i = 0; i < NODE_SIZE; i++) {
-            treeMap.put(super.hash("node" + key + i), value);
-        }
-        treeMap.put(key, value);
-    }
-
-    @Override
-    protected String getFirstNodeValue(String value) {
-        Long hash = super.hash(value);
-        SortedMap<Long, String> last = treeMap.tailMap(hash);
-        if (!last.isEmpty()) {
-            return last.get(last.firstKey());
-        }
-        if (treeMap.size() == 0) {
-            throw new ApplicationException(UserErrorCode.SERVER_NOT_AVAILABLE);
-        }
-        return treeMap.firstEntry().getValue();
-    }
 
     @Override
-    protected void processBefore() {
-        treeMap.clear();
+    protected Ring buildRing(TreeMap<Long, String> points) {
+        // 构建完成后不再修改，TreeMap 的只读访问是线程安全的
+        return hash -> {
+            Map.Entry<Long, String> entry = points.ceilingEntry(hash);
+            return entry != null ? entry.getValue() : points.firstEntry().getValue();
+        };
     }
 }
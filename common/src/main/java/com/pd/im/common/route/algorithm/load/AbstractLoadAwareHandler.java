@@ -0,0 +1,132 @@
+package com.pd.im.common.route.algorithm.load;
+
+import com.pd.im.common.enums.user.UserErrorCode;
+import com.pd.im.common.exception.ApplicationException;
+import com.pd.im.common.route.NodeLoad;
+import com.pd.im.common.route.RouteHandler;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 负载感知路由
+ * <p>
+ * 节点得分为 (连接数 + 本实例在该次上报后分配到该节点的登录数) / 权重，得分越低负载越轻：
+ * - 网关数秒才上报一次负载，上报间隔内的登录只能看到旧的连接数，本地累计的分配数用于抵消这段延迟，
+ * 避免上报间隔内的登录全部涌向同一个节点
+ * - EventLoop 利用率或堆内存使用率超过阈值的节点视为饱和，只在所有节点都饱和时参与选择
+ * - 未上报或超过 {@link #STALE_INTERVALS} 个上报间隔未更新的节点取已知节点的平均得分
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+public abstract class AbstractLoadAwareHandler implements RouteHandler {
+
+    private static final int STALE_INTERVALS = 3;
+    private static final double SATURATED_THRESHOLD = 0.9;
+
+    /**
+     * 节点 -> 最近一次上报后本实例分配到该节点的登录数
+     */
+    private final Map<String, Assigned> assigned = new ConcurrentHashMap<>();
+
+    @Override
+    public String routeServer(List<String> values, String key) {
+        return routeServer(values, Collections.emptyMap(), key);
+    }
+
+    @Override
+    public String routeServer(List<String> values, Map<String, NodeLoad> loads, String key) {
+        int size = values.size();
+        if (size == 0) {
+            throw new ApplicationException(UserErrorCode.SERVER_NOT_AVAILABLE);
+        }
+        long now = System.currentTimeMillis();
+        NodeLoad[] nodeLoads = new NodeLoad[size];
+        double[] scores = new double[size];
+        double knownSum = 0;
+        int known = 0;
+        for (int i = 0; i < size; i++) {
+            NodeLoad load = loads.get(values.get(i));
+            if (!isFresh(load, now)) {
+                scores[i] = Double.NaN;
+                continue;
+            }
+            nodeLoads[i] = load;
+            scores[i] = score(values.get(i), load);
+            if (!Double.isInfinite(scores[i])) {
+                knownSum += scores[i];
+                known++;
+            }
+        }
+        double unknownScore = known > 0 ? knownSum / known : 0;
+        for (int i = 0; i < size; i++) {
+            if (Double.isNaN(scores[i])) {
+                scores[i] = unknownScore;
+            }
+        }
+
+        int index = select(scores);
+        if (nodeLoads[index] != null) {
+            assign(values.get(index), nodeLoads[index].getReportTime());
+        }
+        return values.get(index);
+    }
+
+    /**
+     * 按节点得分选择节点
+     *
+     * @param scores 节点得分，越低负载越轻，饱和节点为正无穷
+     * @return 选中节点的下标
+     */
+    protected abstract int select(double[] scores);
+
+    private double score(String node, NodeLoad load) {
+        if (isSaturated(load)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        int connections = load.getConnections() == null ? 0 : load.getConnections();
+        Assigned a = assigned.get(node);
+        if (a != null && a.reportTime == load.getReportTime()) {
+            connections += a.count.get();
+        }
+        int weight = load.getWeight() == null || load.getWeight() <= 0 ? 1 : load.getWeight();
+        return (double) connections / weight;
+    }
+
+    private void assign(String node, long reportTime) {
+        assigned.compute(node, (k, v) -> {
+            Assigned a = v == null || v.reportTime != reportTime ? new Assigned(reportTime) : v;
+            a.count.incrementAndGet();
+            return a;
+        });
+    }
+
+    private static boolean isFresh(NodeLoad load, long now) {
+        if (load == null || load.getReportTime() == null) {
+            return false;
+        }
+        long interval = load.getReportIntervalMillis() == null ? 0 : load.getReportIntervalMillis();
+        return interval <= 0 || now - load.getReportTime() <= interval * STALE_INTERVALS;
+    }
+
+    private static boolean isSaturated(NodeLoad load) {
+        if (load.getEventLoopUtilisation() != null && load.getEventLoopUtilisation() >= SATURATED_THRESHOLD) {
+            return true;
+        }
+        return load.getHeapUsed() != null && load.getHeapMax() != null && load.getHeapMax() > 0
+                && (double) load.getHeapUsed() / load.getHeapMax() >= SATURATED_THRESHOLD;
+    }
+
+    private static final class Assigned {
+        private final long reportTime;
+        private final AtomicInteger count = new AtomicInteger();
+
+        private Assigned(long reportTime) {
+            this.reportTime = reportTime;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.pd.im.common.route.algorithm.load;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 随机两选一
+ * <p>
+ * 随机取两个不同节点，选择得分较低的一个。负载数据有延迟时，不会像最少连接那样让所有请求涌向同一个节点，
+ * 同时负载分布仍明显优于纯随机
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+public class PowerOfTwoChoicesHandler extends AbstractLoadAwareHandler {
+
+    @Override
+    protected int select(double[] scores) {
+        if (scores.length == 1) {
+            return 0;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(scores.length);
+        int second = random.nextInt(scores.length - 1);
+        if (second >= first) {
+            second++;
+        }
+        return scores[second] < scores[first] ? second : first;
+    }
+}
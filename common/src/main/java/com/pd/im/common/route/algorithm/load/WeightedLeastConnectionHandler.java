@@ -0,0 +1,30 @@
+package com.pd.im.common.route.algorithm.load;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 加权最少连接
+ * <p>
+ * 选择得分最低的节点，得分相同时随机选择，扩容后新节点会优先承接新登录直到与其他节点持平
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+public class WeightedLeastConnectionHandler extends AbstractLoadAwareHandler {
+
+    @Override
+    protected int select(double[] scores) {
+        int selected = 0;
+        int ties = 1;
+        for (int i = 1; i < scores.length; i++) {
+            if (scores[i] < scores[selected]) {
+                selected = i;
+                ties = 1;
+            } else if (scores[i] == scores[selected] && ThreadLocalRandom.current().nextInt(++ties) == 0) {
+                // 蓄水池抽样，在得分相同的节点中等概率选择
+                selected = i;
+            }
+        }
+        return selected;
+    }
+}
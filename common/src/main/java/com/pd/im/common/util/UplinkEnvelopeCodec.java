@@ -0,0 +1,71 @@
+package com.pd.im.common.util;
+
+import com.pd.im.common.model.mq.UplinkEnvelope;
+import io.protostuff.LinkedBuffer;
+import io.protostuff.ProtostuffIOUtil;
+import io.protostuff.Schema;
+import io.protostuff.runtime.RuntimeSchema;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 上行 MQ 信封编解码工具
+ * <p>
+ * 使用 protostuff 运行时 schema，序列化只遍历一次字段，不构建中间 JSON 树；
+ * 解码时校验信封版本，高于当前版本的信封直接拒绝，便于滚动升级时新旧版本共存
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+@Slf4j
+public class UplinkEnvelopeCodec {
+
+    /**
+     * 当前信封版本
+     */
+    public static final int ENVELOPE_VERSION = 1;
+
+    private static final Schema<UplinkEnvelope> SCHEMA = RuntimeSchema.getSchema(UplinkEnvelope.class);
+
+    private static final ThreadLocal<LinkedBuffer> BUFFER =
+            ThreadLocal.withInitial(() -> LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE));
+
+    private UplinkEnvelopeCodec() {
+    }
+
+    /**
+     * 编码信封
+     *
+     * @param envelope 信封
+     * @return 编码后的字节
+     */
+    public static byte[] encode(UplinkEnvelope envelope) {
+        envelope.setVersion(ENVELOPE_VERSION);
+        LinkedBuffer buffer = BUFFER.get();
+        try {
+            return ProtostuffIOUtil.toByteArray(envelope, SCHEMA, buffer);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    /**
+     * 解码信封
+     *
+     * @param bytes 编码后的字节
+     * @return 信封，版本不支持或格式错误返回 null
+     */
+    public static UplinkEnvelope decode(byte[] bytes) {
+        try {
+            UplinkEnvelope envelope = SCHEMA.newMessage();
+            ProtostuffIOUtil.mergeFrom(bytes, envelope, SCHEMA);
+            if (envelope.getVersion() == null || envelope.getVersion() > ENVELOPE_VERSION) {
+                log.warn("不支持的上行信封版本: version={}", envelope.getVersion());
+                return null;
+            }
+            return envelope;
+        } catch (Exception e) {
+            log.error("上行信封解码失败: length={}", bytes.length, e);
+            return null;
+        }
+    }
+}
@@ -34,6 +34,7 @@ import com.pd.im.service.seq.RedisSequence;
 import com.pd.im.service.user.dao.ImUserDataEntity;
 import com.pd.im.service.user.service.ImUserService;
 import com.pd.im.service.utils.MessageProducer;
+import com.pd.im.service.utils.PermissionChangePublisher;
 import com.pd.im.service.utils.UserSequenceRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
@@ -83,6 +84,9 @@ public class ImFriendServiceImpl implements ImFriendService {
     @Autowired
     private UserSequenceRepository userSequenceRepository;
 
+    @Autowired
+    private PermissionChangePublisher permissionChangePublisher;
+
     @Override
     @Transactional
     public ResponseVO<?> importFriendShip(ImportFriendShipReq req) {
@@ -541,6 +545,8 @@ public class ImFriendServiceImpl implements ImFriendService {
         update.setStatus(FriendshipStatus.FRIEND_STATUS_DELETE.getCode());
         imFriendShipMapper.update(update, query);
         userSequenceRepository.writeUserSeq(req.getAppId(), req.getFromId(), Constants.SeqConstants.FRIENDSHIP, seq);
+        permissionChangePublisher.publish(req.getAppId(), Constants.CallbackCommand.DELETE_FRIEND_AFTER,
+                req.getFromId(), req.getToId());
 
         // 发送TCP通知
         DeleteFriendPack deleteFriendPack = new DeleteFriendPack();
@@ -573,6 +579,8 @@ public class ImFriendServiceImpl implements ImFriendService {
         ImFriendShipEntity update = new ImFriendShipEntity();
         update.setStatus(FriendshipStatus.FRIEND_STATUS_DELETE.getCode());
         imFriendShipMapper.update(update, query);
+        permissionChangePublisher.publish(req.getAppId(), Constants.CallbackCommand.DELETE_FRIEND_AFTER,
+                req.getFromId());
 
         // 发送TCP通知
         DeleteAllFriendPack deleteFriendPack = new DeleteAllFriendPack();
@@ -775,6 +783,9 @@ public class ImFriendServiceImpl implements ImFriendService {
                             Constants.SeqConstants.FRIENDSHIP, seq);
                 }
 
+                permissionChangePublisher.publish(req.getAppId(), Constants.CallbackCommand.ADD_BLACK_AFTER,
+                        req.getFromId(), toId);
+
                 // 发送TCP通知
                 AddFriendBlackPack pack = new AddFriendBlackPack();
                 pack.setFromId(req.getFromId());
@@ -32,6 +32,7 @@ import com.pd.im.service.group.service.ImGroupService;
 import com.pd.im.service.user.dao.ImUserDataEntity;
 import com.pd.im.service.user.service.ImUserService;
 import com.pd.im.service.utils.GroupMessageProducer;
+import com.pd.im.service.utils.PermissionChangePublisher;
 import com.pd.im.service.interceptor.RequestHolder;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
@@ -66,6 +67,9 @@ public class ImGroupMemberServiceImpl implements ImGroupMemberService {
     @Autowired
     GroupMessageProducer groupMessageProducer;
 
+    @Autowired
+    PermissionChangePublisher permissionChangePublisher;
+
     @Override
     public ResponseVO importGroupMember(ImportGroupMemberReq req) {
         List<AddMemberResp> resp = new ArrayList<>();
@@ -316,6 +320,7 @@ public class ImGroupMemberServiceImpl implements ImGroupMemberService {
         imGroupMemberEntity.setLeaveTime(System.currentTimeMillis());
         imGroupMemberEntity.setGroupMemberId(data.getGroupMemberId());
         imGroupMemberMapper.updateById(imGroupMemberEntity);
+        permissionChangePublisher.publish(appId, Constants.CallbackCommand.GROUP_MEMBER_DELETE_AFTER, memberId);
         return ResponseVO.successResponse();
     }
 
@@ -396,6 +401,7 @@ public class ImGroupMemberServiceImpl implements ImGroupMemberService {
         ownerWrapper.eq(ImGroupMemberEntity::getGroupId, groupId);
         ownerWrapper.eq(ImGroupMemberEntity::getMemberId, owner);
         imGroupMemberMapper.update(newOwner, ownerWrapper);
+        permissionChangePublisher.publish(appId, Constants.CallbackCommand.TRANSFER_GROUP_AFTER, groupId);
 
         return ResponseVO.successResponse();
     }
@@ -460,6 +466,7 @@ public class ImGroupMemberServiceImpl implements ImGroupMemberService {
         }
         int i = imGroupMemberMapper.updateById(imGroupMemberEntity);
         if (i == 1) {
+            permissionChangePublisher.publish(req.getAppId(), "group.member.mute", req.getMemberId());
             GroupMemberMutePack pack = new GroupMemberMutePack();
             BeanUtils.copyProperties(req, pack);
             groupMessageProducer.producer(req.getOperator(), GroupEventCommand.MUTE_GROUP_MEMBER, pack,
@@ -536,6 +543,9 @@ public class ImGroupMemberServiceImpl implements ImGroupMemberService {
         objectUpdateWrapper.eq(ImGroupMemberEntity::getMemberId, req.getMemberId());
         objectUpdateWrapper.eq(ImGroupMemberEntity::getGroupId, req.getGroupId());
         imGroupMemberMapper.update(update, objectUpdateWrapper);
+        if (update.getRole() != null) {
+            permissionChangePublisher.publish(req.getAppId(), "group.member.role", req.getMemberId());
+        }
 
         UpdateGroupMemberPack pack = new UpdateGroupMemberPack();
         BeanUtils.copyProperties(req, pack);
@@ -32,6 +32,7 @@ import com.pd.im.service.group.service.ImGroupMemberService;
 import com.pd.im.service.group.service.ImGroupService;
 import com.pd.im.service.seq.RedisSequence;
 import com.pd.im.service.utils.GroupMessageProducer;
+import com.pd.im.service.utils.PermissionChangePublisher;
 import com.pd.im.service.interceptor.RequestHolder;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
@@ -62,6 +63,8 @@ public class ImGroupServiceImpl implements ImGroupService {
     GroupMessageProducer groupMessageProducer;
     @Autowired
     RedisSequence redisSequence;
+    @Autowired
+    PermissionChangePublisher permissionChangePublisher;
 
     @Override
     public ResponseVO importGroup(ImportGroupReq req) {
@@ -265,6 +268,8 @@ public class ImGroupServiceImpl implements ImGroupService {
         if (update1 != 1) {
             throw new ApplicationException(GroupErrorCode.UPDATE_GROUP_BASE_INFO_ERROR);
         }
+        permissionChangePublisher.publish(req.getAppId(), Constants.CallbackCommand.DESTROY_GROUP_AFTER,
+                req.getGroupId());
         // 发送 TCP 通知
         DestroyGroupPack pack = new DestroyGroupPack();
         pack.setSequence(seq);
@@ -398,6 +403,7 @@ public class ImGroupServiceImpl implements ImGroupService {
         imGroupMapper.update(update, new LambdaUpdateWrapper<ImGroupEntity>()
                 .eq(ImGroupEntity::getGroupId, req.getGroupId())
                 .eq(ImGroupEntity::getAppId, req.getAppId()));
+        permissionChangePublisher.publish(req.getAppId(), "group.mute", req.getGroupId());
         return ResponseVO.successResponse();
     }
 
@@ -3,7 +3,9 @@ package com.pd.im.service.message.controller;
 import com.pd.im.common.ResponseVO;
 import com.pd.im.common.model.SyncRequest;
 import com.pd.im.common.model.message.CheckSendMessageReq;
+import com.pd.im.service.message.model.req.BroadcastMessageReq;
 import com.pd.im.service.message.model.req.SendMessageReq;
+import com.pd.im.service.message.service.BroadcastMessageService;
 import com.pd.im.service.message.service.GroupMessageService;
 import com.pd.im.service.message.service.sync.MessageSyncService;
 import com.pd.im.service.message.service.P2PMessageService;
@@ -31,6 +33,9 @@ public class MessageController {
     @Autowired
     GroupMessageService groupMessageService;
 
+    @Autowired
+    BroadcastMessageService broadcastMessageService;
+
     /**
      * 后台消息发送接口
      * 参考: https://cloud.tencent.com/document/product/269/2282
@@ -43,6 +48,17 @@ public class MessageController {
         return ResponseVO.successResponse(p2PMessageService.send(req));
     }
 
+    /**
+     * 后台系统广播接口，推送给应用的所有在线用户，可按客户端类型、userId 分段筛选
+     *
+     * @param req BroadcastMessageReq
+     * @return ResponseVO
+     */
+    @RequestMapping("/broadcast")
+    public ResponseVO broadcast(@RequestBody @Validated BroadcastMessageReq req) {
+        return ResponseVO.successResponse(broadcastMessageService.broadcast(req));
+    }
+
     /**
      * Feign RPC 调用 [P2P] 内部接口
      *
@@ -51,7 +67,7 @@ public class MessageController {
      */
     @RequestMapping("/p2pCheckSend")
     public ResponseVO checkP2PSend(@RequestBody @Validated CheckSendMessageReq req) {
-        return p2PMessageService.serverPermissionCheck(req.getFromId(), req.getToId(), req.getAppId());
+        return p2PMessageService.checkAndAssignSequence(req);
     }
 
     /**
@@ -0,0 +1,35 @@
+package com.pd.im.service.message.model.req;
+
+import com.pd.im.common.model.RequestBase;
+import lombok.Data;
+
+import jakarta.validation.constraints.NotBlank;
+import java.util.List;
+
+/**
+ * 系统广播请求
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+@Data
+public class BroadcastMessageReq extends RequestBase {
+    /**
+     * 广播消息ID，为空时由服务端生成
+     */
+    private String messageId;
+    @NotBlank(message = "广播内容不能为空")
+    private String messageBody;
+    /**
+     * 只下发给这些客户端类型，为空表示所有客户端
+     */
+    private List<Integer> clientTypes;
+    /**
+     * userId 分段数，按 userId 哈希取模分段，最多 64 段；为空或小于等于 1 表示不分段
+     */
+    private Integer segmentCount;
+    /**
+     * 只下发给这些分段的用户，取值 0 ~ segmentCount-1
+     */
+    private List<Integer> segments;
+}
@@ -0,0 +1,17 @@
+package com.pd.im.service.message.model.resp;
+
+import lombok.Data;
+
+/**
+ * @author Parker
+ * @date 12/6/25
+ */
+@Data
+public class BroadcastMessageResp {
+    private String messageId;
+    private Long messageTime;
+    /**
+     * 发布到的网关数
+     */
+    private Integer brokerCount;
+}
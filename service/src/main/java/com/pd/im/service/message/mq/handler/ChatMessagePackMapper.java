@@ -0,0 +1,45 @@
+package com.pd.im.service.message.mq.handler;
+
+import com.pd.im.codec.proto.generated.ChatMessagePack;
+import com.pd.im.common.model.message.MessageContent;
+import com.pd.im.common.model.mq.UplinkEnvelope;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * ChatMessagePack 到消息内容的映射
+ * <p>
+ * 与 JSON 转换路径保持一致：Protobuf 未设置的字段（空字符串、0）映射为 null，
+ * appId、clientType、imei 以信封中的消息头为准，网关已分配的序列号同样取自信封
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+public class ChatMessagePackMapper {
+
+    private ChatMessagePackMapper() {
+    }
+
+    /**
+     * 填充消息内容
+     *
+     * @param target   目标消息内容
+     * @param envelope 上行信封
+     * @param pack     聊天消息
+     * @param <T>      消息内容类型
+     * @return 填充后的 target
+     */
+    public static <T extends MessageContent> T fill(T target, UplinkEnvelope envelope, ChatMessagePack pack) {
+        target.setAppId(envelope.getAppId());
+        target.setClientType(envelope.getClientType());
+        target.setImei(envelope.getImei());
+        target.setMessageId(StringUtils.defaultIfEmpty(pack.getMessageId(), null));
+        target.setFromId(StringUtils.defaultIfEmpty(pack.getFromId(), null));
+        target.setToId(StringUtils.defaultIfEmpty(pack.getToId(), null));
+        target.setMessageBody(StringUtils.defaultIfEmpty(pack.getMessageBody(), null));
+        target.setMessageTime(pack.getMessageTime() != 0 ? pack.getMessageTime() : null);
+        if (envelope.getMessageSequence() != null) {
+            target.setMessageSequence(envelope.getMessageSequence());
+        }
+        return target;
+    }
+}
@@ -1,6 +1,7 @@
 package com.pd.im.service.message.mq.handler;
 
 import com.alibaba.fastjson.JSONObject;
+import com.pd.im.common.model.mq.UplinkEnvelope;
 
 /**
  * 消息命令处理器接口
@@ -20,6 +21,20 @@ public interface MessageCommandHandler {
      */
     void handle(JSONObject messageBody) throws Exception;
 
+    /**
+     * 处理上行信封中的 JSON 消息体
+     * <p>
+     * 消息头字段已写入 messageBody；网关分配的字段（如 messageSequence）只能从信封读取，
+     * 消息体中的同名字段由客户端填写，不可信任
+     *
+     * @param envelope    上行信封
+     * @param messageBody 消息体
+     * @throws Exception 处理异常
+     */
+    default void handle(UplinkEnvelope envelope, JSONObject messageBody) throws Exception {
+        handle(messageBody);
+    }
+
     /**
      * 获取支持的命令代码
      *
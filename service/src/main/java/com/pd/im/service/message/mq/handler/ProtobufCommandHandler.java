@@ -0,0 +1,26 @@
+package com.pd.im.service.message.mq.handler;
+
+import com.google.protobuf.MessageLite;
+import com.pd.im.common.model.mq.UplinkEnvelope;
+
+/**
+ * Protobuf 消息命令处理器
+ * <p>
+ * 网关透传的 Protobuf 消息直接以解析后的对象交给处理器，不再经过 JSONObject 中转；
+ * JSON 格式的消息仍通过 {@link MessageCommandHandler#handle(com.alibaba.fastjson.JSONObject)} 处理
+ *
+ * @param <T> 消息体类型，与 command 对应的解析器一致
+ * @author Parker
+ * @date 12/6/25
+ */
+public interface ProtobufCommandHandler<T extends MessageLite> extends MessageCommandHandler {
+
+    /**
+     * 处理 Protobuf 消息命令
+     *
+     * @param envelope 上行信封，提供 appId、clientType、imei 等消息头字段
+     * @param pack     解析后的消息体
+     * @throws Exception 处理异常
+     */
+    void handle(UplinkEnvelope envelope, T pack) throws Exception;
+}
@@ -1,10 +1,13 @@
 package com.pd.im.service.message.mq.handler.group;
 
 import com.alibaba.fastjson.JSONObject;
+import com.pd.im.codec.proto.generated.ChatMessagePack;
 import com.pd.im.common.enums.command.GroupEventCommand;
 import com.pd.im.common.model.message.GroupChatMessageContent;
+import com.pd.im.common.model.mq.UplinkEnvelope;
 import com.pd.im.service.message.service.GroupMessageService;
-import com.pd.im.service.message.mq.handler.MessageCommandHandler;
+import com.pd.im.service.message.mq.handler.ChatMessagePackMapper;
+import com.pd.im.service.message.mq.handler.ProtobufCommandHandler;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -17,7 +20,7 @@ import org.springframework.stereotype.Component;
  */
 @Slf4j
 @Component
-public class GroupMessageHandler implements MessageCommandHandler {
+public class GroupMessageHandler implements ProtobufCommandHandler<ChatMessagePack> {
 
     @Autowired
     private GroupMessageService groupMessageService;
@@ -28,6 +31,14 @@ public class GroupMessageHandler implements MessageCommandHandler {
         groupMessageService.process(messageContent);
     }
 
+    @Override
+    public void handle(UplinkEnvelope envelope, ChatMessagePack pack) throws Exception {
+        GroupChatMessageContent messageContent = ChatMessagePackMapper.fill(new GroupChatMessageContent(), envelope, pack);
+        // 群聊消息的 toId 即群ID
+        messageContent.setGroupId(messageContent.getToId());
+        groupMessageService.process(messageContent);
+    }
+
     @Override
     public Integer getCommand() {
         return GroupEventCommand.MSG_GROUP.getCommand();
@@ -1,9 +1,12 @@
 package com.pd.im.service.message.mq.handler.p2p;
 
 import com.alibaba.fastjson.JSONObject;
+import com.pd.im.codec.proto.generated.ChatMessagePack;
 import com.pd.im.common.enums.command.MessageCommand;
 import com.pd.im.common.model.message.MessageContent;
-import com.pd.im.service.message.mq.handler.MessageCommandHandler;
+import com.pd.im.common.model.mq.UplinkEnvelope;
+import com.pd.im.service.message.mq.handler.ChatMessagePackMapper;
+import com.pd.im.service.message.mq.handler.ProtobufCommandHandler;
 import com.pd.im.service.message.service.P2PMessageService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,15 +20,33 @@ import org.springframework.stereotype.Component;
  */
 @Slf4j
 @Component
-public class P2PMessageHandler implements MessageCommandHandler {
+public class P2PMessageHandler implements ProtobufCommandHandler<ChatMessagePack> {
 
     @Autowired
     private P2PMessageService p2PMessageService;
 
     @Override
     public void handle(JSONObject messageBody) throws Exception {
+        p2PMessageService.process(toMessageContent(messageBody, null));
+    }
+
+    @Override
+    public void handle(UplinkEnvelope envelope, JSONObject messageBody) throws Exception {
+        p2PMessageService.process(toMessageContent(messageBody, envelope.getMessageSequence()));
+    }
+
+    @Override
+    public void handle(UplinkEnvelope envelope, ChatMessagePack pack) throws Exception {
+        p2PMessageService.process(ChatMessagePackMapper.fill(new MessageContent(), envelope, pack));
+    }
+
+    /**
+     * 消息体由客户端填写，其中的 messageSequence 一律丢弃，只使用网关在信封中携带的序列号
+     */
+    private static MessageContent toMessageContent(JSONObject messageBody, Long messageSequence) {
         MessageContent messageContent = messageBody.toJavaObject(MessageContent.class);
-        p2PMessageService.process(messageContent);
+        messageContent.setMessageSequence(messageSequence != null ? messageSequence : 0L);
+        return messageContent;
     }
 
     @Override
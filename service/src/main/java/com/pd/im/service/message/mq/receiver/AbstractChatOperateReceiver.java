@@ -2,7 +2,17 @@ package com.pd.im.service.message.mq.receiver;
 
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.MessageOrBuilder;
+import com.google.protobuf.Parser;
+import com.pd.im.codec.util.MessageCodecUtils;
+import com.pd.im.common.constant.Constants;
+import com.pd.im.common.enums.MessageType;
+import com.pd.im.common.enums.command.GroupEventCommand;
+import com.pd.im.common.model.mq.UplinkEnvelope;
+import com.pd.im.common.util.UplinkEnvelopeCodec;
 import com.pd.im.service.message.mq.handler.MessageCommandHandler;
+import com.pd.im.service.message.mq.handler.ProtobufCommandHandler;
 import com.rabbitmq.client.Channel;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.core.Message;
@@ -15,6 +25,7 @@ import jakarta.annotation.PostConstruct;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -61,6 +72,11 @@ public abstract class AbstractChatOperateReceiver {
 
     /**
      * 处理MQ消息
+     * <p>
+     * 按 contentType 选择解析方式：
+     * - 上行信封：Protobuf 消息体交给 {@link ProtobufCommandHandler} 直接处理，其余转换为 JSON
+     * - 旧版 Protobuf 透传（消息头在 AMQP headers 中）：转换为信封后按上行信封处理
+     * - 其他：按 JSON 解析，便于调试
      *
      * @param message MQ消息
      * @param headers 消息头
@@ -70,16 +86,30 @@ public abstract class AbstractChatOperateReceiver {
     public void onChatMessage(@Payload Message message,
                               @Headers Map<String, Object> headers,
                               Channel channel) throws Exception {
-        // 1. 解析消息体
-        String messageBody = new String(message.getBody(), StandardCharsets.UTF_8);
         Long deliveryTag = (Long) headers.get(AmqpHeaders.DELIVERY_TAG);
+        String contentType = message.getMessageProperties().getContentType();
+        boolean binary = Constants.RabbitmqConstants.CONTENT_TYPE_UPLINK_ENVELOPE.equals(contentType)
+                || Constants.RabbitmqConstants.CONTENT_TYPE_PROTOBUF.equals(contentType);
+        // 二进制消息体不可读，日志中只记录长度
+        String messageBody = binary
+                ? contentType + "[" + message.getBody().length + "]"
+                : new String(message.getBody(), StandardCharsets.UTF_8);
 
-        log.info("MQ接收到消息: queue={}, message={}", getQueueName(), messageBody);
+        log.debug("MQ接收到消息: queue={}, message={}", getQueueName(), messageBody);
 
         try {
-            // 2. 解析JSON
-            JSONObject jsonObject = JSON.parseObject(messageBody);
-            Integer command = jsonObject.getInteger("command");
+            // 1. 解析消息头
+            UplinkEnvelope envelope = null;
+            JSONObject jsonObject = null;
+            if (Constants.RabbitmqConstants.CONTENT_TYPE_UPLINK_ENVELOPE.equals(contentType)) {
+                envelope = UplinkEnvelopeCodec.decode(message.getBody());
+            } else if (Constants.RabbitmqConstants.CONTENT_TYPE_PROTOBUF.equals(contentType)) {
+                envelope = fromLegacyHeaders(message);
+            } else {
+                jsonObject = JSON.parseObject(messageBody);
+            }
+            Integer command = envelope != null ? envelope.getCommand()
+                    : jsonObject != null ? jsonObject.getInteger("command") : null;
 
             if (command == null) {
                 log.error("消息缺少command字段: queue={}, message={}", getQueueName(), messageBody);
@@ -87,7 +117,7 @@ public abstract class AbstractChatOperateReceiver {
                 return;
             }
 
-            // 3. 查找命令处理器
+            // 2. 查找命令处理器
             MessageCommandHandler handler = commandHandlers.get(command);
             if (handler == null) {
                 log.warn("未找到命令处理器: queue={}, command={}", getQueueName(), command);
@@ -96,10 +126,14 @@ public abstract class AbstractChatOperateReceiver {
                 return;
             }
 
-            // 4. 执行命令处理
-            handler.handle(jsonObject);
+            // 3. 执行命令处理
+            if (envelope != null) {
+                handleEnvelope(handler, envelope);
+            } else {
+                handler.handle(jsonObject);
+            }
 
-            // 5. 发送ACK成功应答
+            // 4. 发送ACK成功应答
             channel.basicAck(deliveryTag, false);
 
             log.debug("消息处理成功: queue={}, command={}", getQueueName(), command);
@@ -117,6 +151,68 @@ public abstract class AbstractChatOperateReceiver {
         }
     }
 
+    /**
+     * 处理上行信封
+     * <p>
+     * Protobuf 消息体且处理器支持时直接传入解析后的对象，否则转换为与网关 JSON 格式一致的 JSONObject
+     *
+     * @param handler  命令处理器
+     * @param envelope 上行信封
+     * @throws Exception 处理异常
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void handleEnvelope(MessageCommandHandler handler, UplinkEnvelope envelope) throws Exception {
+        Integer command = envelope.getCommand();
+        byte[] payload = envelope.getPayload() != null ? envelope.getPayload() : new byte[0];
+        JSONObject jsonObject;
+
+        if (Objects.equals(envelope.getMessageType(), MessageType.DATA_TYPE_PROTOBUF.getCode())) {
+            Parser<? extends MessageLite> parser = MessageCodecUtils.getBodyParser(command);
+            MessageLite pack = parser != null ? parser.parseFrom(payload) : null;
+            if (pack != null && handler instanceof ProtobufCommandHandler) {
+                ((ProtobufCommandHandler) handler).handle(envelope, pack);
+                return;
+            }
+            jsonObject = pack instanceof MessageOrBuilder
+                    ? MessageCodecUtils.toJsonObject((MessageOrBuilder) pack)
+                    : new JSONObject();
+        } else {
+            jsonObject = payload.length > 0 ? JSON.parseObject(new String(payload, StandardCharsets.UTF_8)) : new JSONObject();
+        }
+        // 群聊消息的 toId 即群ID，JSON 消息体可能已携带 groupId
+        if (GroupEventCommand.MSG_GROUP.getCommand().equals(command) && !jsonObject.containsKey("groupId")) {
+            jsonObject.put("groupId", jsonObject.getString("toId"));
+        }
+
+        jsonObject.put("command", command);
+        jsonObject.put("appId", envelope.getAppId());
+        jsonObject.put("clientType", envelope.getClientType());
+        jsonObject.put("imei", envelope.getImei());
+        handler.handle(envelope, jsonObject);
+    }
+
+    /**
+     * 将旧版 Protobuf 透传消息（消息头字段在 AMQP headers 中）转换为上行信封
+     *
+     * @param message MQ消息
+     * @return 上行信封
+     */
+    private UplinkEnvelope fromLegacyHeaders(Message message) {
+        Map<String, Object> headers = message.getMessageProperties().getHeaders();
+        UplinkEnvelope envelope = new UplinkEnvelope();
+        envelope.setCommand(toInteger(headers.get("command")));
+        envelope.setAppId(toInteger(headers.get("appId")));
+        envelope.setClientType(toInteger(headers.get("clientType")));
+        envelope.setImei(headers.get("imei") != null ? headers.get("imei").toString() : null);
+        envelope.setMessageType(MessageType.DATA_TYPE_PROTOBUF.getCode());
+        envelope.setPayload(message.getBody());
+        return envelope;
+    }
+
+    private static Integer toInteger(Object value) {
+        return value != null ? Integer.valueOf(value.toString()) : null;
+    }
+
     /**
      * 获取队列名称
      *
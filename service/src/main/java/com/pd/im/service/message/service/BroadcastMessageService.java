@@ -0,0 +1,103 @@
+package com.pd.im.service.message.service;
+
+import com.pd.im.codec.pack.message.BroadcastMessagePack;
+import com.pd.im.codec.proto.BroadcastEnvelope;
+import com.pd.im.common.enums.BaseErrorCode;
+import com.pd.im.common.enums.command.MessageCommand;
+import com.pd.im.common.exception.ApplicationException;
+import com.pd.im.service.message.model.req.BroadcastMessageReq;
+import com.pd.im.service.message.model.resp.BroadcastMessageResp;
+import com.pd.im.service.utils.MessageProducer;
+import com.pd.im.service.utils.ZKit;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 系统广播服务
+ * <p>
+ * 向应用的所有在线用户（可按客户端类型、userId 分段筛选）推送系统公告：
+ * - 从 ZK 获取在线网关，每个网关发布一条广播信封，发布次数与在线用户数无关
+ * - 不读取用户会话、不写离线消息，广播发出时不在线的用户收不到
+ * - 网关按本地连接注册表筛选并分批写出，避免瞬间写满 EventLoop
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+@Slf4j
+@Service
+public class BroadcastMessageService {
+
+    @Autowired
+    private MessageProducer messageProducer;
+
+    @Autowired
+    private ZKit zKit;
+
+    /**
+     * 广播系统消息
+     *
+     * @param req 广播请求
+     * @return 广播结果
+     */
+    public BroadcastMessageResp broadcast(BroadcastMessageReq req) {
+        int clientTypeMask = clientTypeMask(req.getClientTypes());
+        int segmentCount = req.getSegmentCount() != null ? req.getSegmentCount() : 0;
+        long segments = segmentMask(segmentCount, req.getSegments());
+
+        BroadcastMessagePack pack = new BroadcastMessagePack();
+        pack.setAppId(req.getAppId());
+        pack.setMessageId(StringUtils.defaultIfEmpty(req.getMessageId(), UUID.randomUUID().toString()));
+        pack.setMessageBody(req.getMessageBody());
+        pack.setMessageTime(System.currentTimeMillis());
+
+        Set<Integer> brokerIds = zKit.getBrokerIds();
+        int published = brokerIds.isEmpty() ? 0 : messageProducer.broadcast(brokerIds, MessageCommand.MSG_BROADCAST,
+                pack, req.getAppId(), clientTypeMask, segmentCount, segments);
+        log.info("系统广播: appId={}, messageId={}, clientTypeMask={}, segmentCount={}, segments={}, brokers={}",
+                req.getAppId(), pack.getMessageId(), clientTypeMask, segmentCount, Long.toBinaryString(segments),
+                published);
+
+        BroadcastMessageResp resp = new BroadcastMessageResp();
+        resp.setMessageId(pack.getMessageId());
+        resp.setMessageTime(pack.getMessageTime());
+        resp.setBrokerCount(published);
+        return resp;
+    }
+
+    private static int clientTypeMask(List<Integer> clientTypes) {
+        int mask = 0;
+        if (clientTypes == null) {
+            return mask;
+        }
+        for (Integer clientType : clientTypes) {
+            if (clientType == null || clientType < 0 || clientType >= Integer.SIZE) {
+                throw new ApplicationException(BaseErrorCode.PARAMETER_ERROR);
+            }
+            mask |= 1 << clientType;
+        }
+        return mask;
+    }
+
+    private static long segmentMask(int segmentCount, List<Integer> segments) {
+        if (segmentCount <= 1) {
+            return 0L;
+        }
+        if (segmentCount > BroadcastEnvelope.MAX_SEGMENT_COUNT || segments == null || segments.isEmpty()) {
+            throw new ApplicationException(BaseErrorCode.PARAMETER_ERROR);
+        }
+        long mask = 0L;
+        for (Integer segment : segments) {
+            if (segment == null || segment < 0 || segment >= segmentCount) {
+                throw new ApplicationException(BaseErrorCode.PARAMETER_ERROR);
+            }
+            mask |= 1L << segment;
+        }
+        return mask;
+    }
+}
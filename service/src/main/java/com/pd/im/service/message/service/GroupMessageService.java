@@ -26,6 +26,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -201,6 +202,18 @@ public class GroupMessageService {
      * @param messageContent 消息内容
      */
     private void dispatchToReceiver(GroupChatMessageContent messageContent) {
+        if (appConfig.isGroupBrokerFanout()) {
+            // 按网关扇出：每个网关一条 MQ 消息，由网关按本地连接展开
+            List<String> receivers = new ArrayList<>(messageContent.getMemberIds().size());
+            for (String memberId : messageContent.getMemberIds()) {
+                if (!memberId.equals(messageContent.getFromId())) {
+                    receivers.add(memberId);
+                }
+            }
+            messageProducer.sendToUsers(receivers, GroupEventCommand.MSG_GROUP, messageContent,
+                    messageContent.getAppId());
+            return;
+        }
         for (String memberId : messageContent.getMemberIds()) {
             if (!memberId.equals(messageContent.getFromId())) {
                 messageProducer.sendToAllClients(
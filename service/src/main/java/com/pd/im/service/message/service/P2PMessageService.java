@@ -9,6 +9,7 @@ import com.pd.im.common.constant.Constants;
 import com.pd.im.common.enums.command.MessageCommand;
 import com.pd.im.common.enums.conversation.ConversationType;
 import com.pd.im.common.model.ClientInfo;
+import com.pd.im.common.model.message.CheckSendMessageReq;
 import com.pd.im.common.model.message.MessageContent;
 import com.pd.im.common.model.message.OfflineMessageContent;
 import com.pd.im.service.callback.CallbackService;
@@ -40,6 +41,9 @@ import java.util.concurrent.ThreadPoolExecutor;
  * 4. 同步消息到发送方其他在线端
  * 5. 分发消息给接收方所有在线端
  * 6. 离线用户的接收确认处理
+ * <p>
+ * 开启 appConfig.p2pLocalDelivery 后，接收方与发送方在同一网关时，网关在发送校验中请求分配序列号，
+ * 校验通过即由网关直接推送给接收方；随后的正常分发携带 messageId，由网关对已直投的连接去重
  *
  * @author Parker
  * @date 12/5/25
@@ -177,10 +181,11 @@ public class P2PMessageService {
             return;
         }
 
-        // 2. 生成消息序列号
+        // 2. 生成消息序列号，网关本地直投的消息已在发送校验时分配，只接受网关信封携带的序列号（见 P2PMessageHandler）
         // Seq用于客户端排序，格式：appId + Seq + conversationId
-        long seq = generateMessageSequence(messageContent);
-        messageContent.setMessageSequence(seq);
+        if (messageContent.getMessageSequence() <= 0) {
+            messageContent.setMessageSequence(generateMessageSequence(messageContent));
+        }
 
         // 3. 异步执行持久化和分发
         try {
@@ -279,10 +284,13 @@ public class P2PMessageService {
      * @return 序列号
      */
     private long generateMessageSequence(MessageContent messageContent) {
-        String conversationId = ConversationIdGenerate.generateP2PId(
-                messageContent.getFromId(), messageContent.getToId());
+        return generateMessageSequence(messageContent.getAppId(), messageContent.getFromId(), messageContent.getToId());
+    }
+
+    private long generateMessageSequence(Integer appId, String fromId, String toId) {
+        String conversationId = ConversationIdGenerate.generateP2PId(fromId, toId);
 
-        String seqKey = messageContent.getAppId() + ":" + Constants.SeqConstants.MESSAGE_SEQ + ":" + conversationId;
+        String seqKey = appId + ":" + Constants.SeqConstants.MESSAGE_SEQ + ":" + conversationId;
 
         return redisSequence.doGetSeq(seqKey);
     }
@@ -361,11 +369,13 @@ public class P2PMessageService {
      * @return 成功接收的客户端列表（空列表表示接收方离线）
      */
     private List<ClientInfo> dispatchToReceiver(MessageContent messageContent) {
+        // 开启同网关直投时携带 messageId，网关对已直投过该消息的连接不再重复推送
         return messageProducer.sendToAllClients(
                 messageContent.getToId(),
                 MessageCommand.MSG_P2P,
                 messageContent,
-                messageContent.getAppId());
+                messageContent.getAppId(),
+                appConfig.isP2pLocalDelivery() ? messageContent.getMessageId() : null);
     }
 
     /**
@@ -415,6 +425,26 @@ public class P2PMessageService {
         return responseVO;
     }
 
+    /**
+     * 网关发送校验，网关请求本地直投时在校验通过后分配消息序列号
+     * <p>
+     * 序列号以 {@link ChatMessageAck} 放在响应数据中返回，网关随消息一起上行，
+     * 业务层处理该消息时不再重新分配。发送前回调可能拒绝消息，开启时不分配，网关按正常流程转发
+     *
+     * @param req 校验请求
+     * @return 校验结果
+     */
+    public ResponseVO checkAndAssignSequence(CheckSendMessageReq req) {
+        ResponseVO responseVO = serverPermissionCheck(req.getFromId(), req.getToId(), req.getAppId());
+        if (!responseVO.isSuccess() || !Boolean.TRUE.equals(req.getAssignSequence())
+                || !appConfig.isP2pLocalDelivery() || appConfig.isSendMessageBeforeCallback()) {
+            return responseVO;
+        }
+        long seq = generateMessageSequence(req.getAppId(), req.getFromId(), req.getToId());
+        responseVO.setData(new ChatMessageAck(req.getMessageId(), seq));
+        return responseVO;
+    }
+
     public SendMessageResp send(SendMessageReq req) {
         SendMessageResp sendMessageResp = new SendMessageResp();
 
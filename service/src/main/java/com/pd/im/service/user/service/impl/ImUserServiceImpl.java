@@ -16,6 +16,7 @@ import com.pd.im.common.enums.command.UserEventCommand;
 import com.pd.im.common.enums.user.UserErrorCode;
 import com.pd.im.common.enums.device.ClientType;
 import com.pd.im.common.exception.ApplicationException;
+import com.pd.im.common.route.NodeLoad;
 import com.pd.im.common.route.RouteHandler;
 import com.pd.im.common.util.RouteInfoParser;
 import com.pd.im.common.route.RouteInfo;
@@ -30,6 +31,7 @@ import com.pd.im.service.user.model.resp.ImUserDataVO;
 import com.pd.im.service.user.model.resp.LoginResp;
 import com.pd.im.service.user.service.ImUserService;
 import com.pd.im.service.utils.MessageProducer;
+import com.pd.im.service.utils.PermissionChangePublisher;
 import com.pd.im.service.utils.ZKit;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
@@ -64,6 +66,9 @@ public class ImUserServiceImpl implements ImUserService {
     @Autowired
     MessageProducer messageProducer;
 
+    @Autowired
+    PermissionChangePublisher permissionChangePublisher;
+
     @Autowired
     ImGroupService imGroupService;
 
@@ -163,6 +168,7 @@ public class ImUserServiceImpl implements ImUserService {
                 int update = imUserDataMapper.update(entity, wrapper);
                 if (update > 0) {
                     successId.add(userId);
+                    permissionChangePublisher.publish(req.getAppId(), "user.delete", userId);
                 } else {
                     errorId.add(userId);
                 }
@@ -196,6 +202,8 @@ public class ImUserServiceImpl implements ImUserService {
         int update1 = imUserDataMapper.update(update, query);
 
         if (update1 == 1) {
+            permissionChangePublisher.publish(req.getAppId(), Constants.CallbackCommand.MODIFY_USER_AFTER,
+                    req.getUserId());
             UserModifyPack pack = new UserModifyPack();
             BeanUtils.copyProperties(req, pack);
 
@@ -240,12 +248,15 @@ public class ImUserServiceImpl implements ImUserService {
 
         // 3.获取 IM 地址 (路由逻辑从 Controller 迁移至此)
         List<String> allNode;
+        Map<String, NodeLoad> nodeLoads;
         if (ClientType.WEB.getCode().equals(req.getClientType())) {
             allNode = zKit.getAllWebNode();
+            nodeLoads = zKit.getWebNodeLoads();
         } else {
             allNode = zKit.getAllTcpNode();
+            nodeLoads = zKit.getTcpNodeLoads();
         }
-        String s = routeHandler.routeServer(allNode, req.getUserId());
+        String s = routeHandler.routeServer(allNode, nodeLoads, req.getUserId());
         RouteInfo routeInfo = RouteInfoParser.parse(s);
 
         // 4. 返回 Ticket 和 RouteInfo 给 SDK
@@ -1,19 +1,28 @@
 package com.pd.im.service.utils;
 
-import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.JSON;
+import com.google.protobuf.MessageOrBuilder;
 import com.pd.im.codec.proto.MessagePack;
+import com.pd.im.codec.util.DownlinkCodecUtils;
+import com.pd.im.codec.util.MessageCodecUtils;
+import com.pd.im.common.config.AppConfig;
 import com.pd.im.common.constant.Constants;
 import com.pd.im.common.enums.command.Command;
 import com.pd.im.common.model.ClientInfo;
 import com.pd.im.common.model.UserSession;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -24,6 +33,8 @@ import java.util.Objects;
  * - 发送到用户的所有在线端
  * - 发送到用户的指定客户端
  * - 发送到用户的除指定客户端外的所有端（多端同步）
+ * - 扇出到一批用户的所有在线端（群聊），每个网关只发布一条
+ * - 广播到应用的所有在线端（系统公告），每个网关只发布一条
  *
  * @author Parker
  * @date 12/5/25
@@ -37,13 +48,20 @@ public class MessageProducer {
      */
     private static final String QUEUE_NAME = Constants.RabbitmqConstants.MESSAGE_SERVICE_TO_IM;
 
+    /**
+     * 单条扇出信封携带的接收方上限，避免超大群生成过大的 MQ 消息
+     */
+    private static final int FANOUT_MAX_RECIPIENTS = 1000;
+
     private final RabbitTemplate rabbitTemplate;
     private final UserSessionUtils userSessionUtils;
+    private final AppConfig appConfig;
 
     @Autowired
-    public MessageProducer(RabbitTemplate rabbitTemplate, UserSessionUtils userSessionUtils) {
+    public MessageProducer(RabbitTemplate rabbitTemplate, UserSessionUtils userSessionUtils, AppConfig appConfig) {
         this.rabbitTemplate = rabbitTemplate;
         this.userSessionUtils = userSessionUtils;
+        this.appConfig = appConfig;
     }
 
     /**
@@ -51,11 +69,12 @@ public class MessageProducer {
      * <p>
      * 将消息发送到指定用户会话对应的broker
      *
-     * @param session 用户会话信息
-     * @param msg     消息内容（已序列化为JSON字符串）
+     * @param session     用户会话信息
+     * @param body        消息体：下行信封（路由头 + 已编码的客户端帧）或 JSON
+     * @param contentType 消息体类型
      * @return true-发送成功，false-发送失败
      */
-    private boolean sendMessage(UserSession session, Object msg) {
+    private boolean sendMessage(UserSession session, byte[] body, String contentType) {
         if (session == null) {
             log.warn("发送消息失败: session为null");
             return false;
@@ -63,7 +82,9 @@ public class MessageProducer {
 
         try {
             String routingKey = String.valueOf(session.getBrokerId());
-            rabbitTemplate.convertAndSend(QUEUE_NAME, routingKey, msg);
+            MessageProperties properties = new MessageProperties();
+            properties.setContentType(contentType);
+            rabbitTemplate.send(QUEUE_NAME, routingKey, new Message(body, properties));
 
             log.debug("消息发送成功: brokerId={}, userId={}, clientType={}, imei={}",
                     session.getBrokerId(), session.getUserId(), session.getClientType(), session.getImei());
@@ -78,7 +99,8 @@ public class MessageProducer {
     /**
      * 包装消息并发送
      * <p>
-     * 将业务数据包装为MessagePack格式后发送到MQ
+     * 将业务数据包装为MessagePack格式，在业务层一次性编码为客户端帧后发送到MQ，
+     * 网关收到后直接写入连接，不再解析和序列化
      *
      * @param toId    接收方用户ID
      * @param command 消息命令
@@ -87,6 +109,20 @@ public class MessageProducer {
      * @return true-发送成功，false-发送失败
      */
     private boolean sendPack(String toId, Command command, Object msg, UserSession session) {
+        return sendPack(toId, command, msg, session, null);
+    }
+
+    /**
+     * 包装消息并发送，携带网关去重用的消息ID
+     *
+     * @param toId      接收方用户ID
+     * @param command   消息命令
+     * @param msg       消息数据
+     * @param session   目标会话
+     * @param messageId 消息ID，为空时不去重
+     * @return true-发送成功，false-发送失败
+     */
+    private boolean sendPack(String toId, Command command, Object msg, UserSession session, String messageId) {
         if (session == null) {
             log.warn("发送消息失败: session为null, toId={}, command={}", toId, command.getCommand());
             return false;
@@ -99,17 +135,21 @@ public class MessageProducer {
             messagePack.setClientType(session.getClientType());
             messagePack.setAppId(session.getAppId());
             messagePack.setImei(session.getImei());
+            messagePack.setMessageId(messageId);
             messagePack.setTimestamp(System.currentTimeMillis());  // 设置消息时间戳
 
-            // 直接设置数据，避免多余的序列化/反序列化
-            if (msg instanceof JSONObject) {
-                messagePack.setData((JSONObject) msg);
-            } else {
-                messagePack.setData((JSONObject) JSONObject.toJSON(msg));
-            }
+            // Protobuf 对象按 Protobuf 编码，其余业务对象按 JSON 编码
+            messagePack.setData(msg);
 
-            String body = JSONObject.toJSONString(messagePack);
-            return sendMessage(session, body);
+            if (appConfig.isMqJsonPayload()) {
+                // 调试模式：以 JSON 下发，Protobuf 对象先转换为字段 Map
+                if (msg instanceof MessageOrBuilder) {
+                    messagePack.setData(MessageCodecUtils.toJsonObject((MessageOrBuilder) msg));
+                }
+                return sendMessage(session, JSON.toJSONBytes(messagePack), Constants.RabbitmqConstants.CONTENT_TYPE_JSON);
+            }
+            return sendMessage(session, DownlinkCodecUtils.encode(messagePack),
+                    Constants.RabbitmqConstants.CONTENT_TYPE_DOWNLINK_ENVELOPE);
         } catch (Exception e) {
             log.error("包装消息失败: toId={}, command={}, sessionUserId={}",
                     toId, command.getCommand(), session.getUserId(), e);
@@ -140,6 +180,23 @@ public class MessageProducer {
      * @return 成功接收消息的客户端列表（空列表表示用户不在线或全部发送失败）
      */
     public List<ClientInfo> sendToAllClients(String userId, Command command, Object data, Integer appId) {
+        return sendToAllClients(userId, command, data, appId, null);
+    }
+
+    /**
+     * 发送消息到用户的所有在线客户端，并携带消息ID供网关去重
+     * <p>
+     * 场景：单聊消息已由发送方网关直投给同网关的接收方设备，网关按消息ID丢弃重复的推送
+     *
+     * @param userId    接收方用户ID
+     * @param command   消息命令
+     * @param data      消息数据
+     * @param appId     应用ID
+     * @param messageId 消息ID，为空时不去重
+     * @return 成功接收消息的客户端列表（空列表表示用户不在线或全部发送失败）
+     */
+    public List<ClientInfo> sendToAllClients(String userId, Command command, Object data, Integer appId,
+                                             String messageId) {
         List<UserSession> sessions = userSessionUtils.getUserSession(appId, userId);
         List<ClientInfo> successClients = new ArrayList<>();
 
@@ -152,7 +209,7 @@ public class MessageProducer {
                 appId, userId, sessions.size(), command.getCommand());
 
         for (UserSession session : sessions) {
-            boolean success = sendPack(userId, command, data, session);
+            boolean success = sendPack(userId, command, data, session, messageId);
             if (success) {
                 successClients.add(new ClientInfo(session.getAppId(), session.getClientType(), session.getImei()));
             }
@@ -253,4 +310,113 @@ public class MessageProducer {
         log.debug("消息发送完成（排除指定端）: appId={}, userId={}, 成功={}/总数={}",
                 excludeClient.getAppId(), userId, successCount, totalCount);
     }
+
+    /**
+     * 扇出消息到一批用户的所有在线客户端
+     * <p>
+     * 场景：群聊消息分发。批量读取接收方会话后按所在网关（brokerId）分组，每个网关发布一条扇出信封，
+     * 客户端帧只编码一次，由网关按本地连接展开；JSON 调试模式下退化为逐个会话发送
+     *
+     * @param userIds 接收方用户ID
+     * @param command 消息命令
+     * @param data    消息数据
+     * @param appId   应用ID
+     */
+    public void sendToUsers(List<String> userIds, Command command, Object data, Integer appId) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        if (appConfig.isMqJsonPayload()) {
+            for (String userId : userIds) {
+                sendToAllClients(userId, command, data, appId);
+            }
+            return;
+        }
+
+        // brokerId -> 在该网关上有在线会话的接收方
+        Map<Integer, List<String>> recipientsByBroker = new HashMap<>();
+        List<List<UserSession>> sessions = userSessionUtils.getUserSessions(appId, userIds);
+        for (int i = 0; i < userIds.size(); i++) {
+            String userId = userIds.get(i);
+            List<Integer> brokers = new ArrayList<>(2);
+            for (UserSession session : sessions.get(i)) {
+                // 同一用户多台设备在同一网关时只需列出一次，网关会写给该用户的所有本地设备
+                if (session.getBrokerId() != null && !brokers.contains(session.getBrokerId())) {
+                    brokers.add(session.getBrokerId());
+                    recipientsByBroker.computeIfAbsent(session.getBrokerId(), k -> new ArrayList<>()).add(userId);
+                }
+            }
+        }
+        if (recipientsByBroker.isEmpty()) {
+            log.debug("扇出接收方均不在线: appId={}, recipients={}", appId, userIds.size());
+            return;
+        }
+
+        MessagePack messagePack = new MessagePack();
+        messagePack.setCommand(command.getCommand());
+        messagePack.setAppId(appId);
+        messagePack.setData(data);
+        byte[] frame = DownlinkCodecUtils.encodeFrame(messagePack);
+
+        for (Map.Entry<Integer, List<String>> entry : recipientsByBroker.entrySet()) {
+            List<String> recipients = entry.getValue();
+            for (int from = 0; from < recipients.size(); from += FANOUT_MAX_RECIPIENTS) {
+                List<String> batch = recipients.subList(from, Math.min(from + FANOUT_MAX_RECIPIENTS, recipients.size()));
+                sendFanout(entry.getKey(), DownlinkCodecUtils.encodeFanout(command.getCommand(), appId, batch, frame));
+            }
+        }
+        log.debug("扇出消息发送完成: appId={}, command={}, recipients={}, brokers={}",
+                appId, command.getCommand(), userIds.size(), recipientsByBroker.size());
+    }
+
+    /**
+     * 广播消息到所有在线网关
+     * <p>
+     * 场景：系统公告。客户端帧只编码一次，每个网关发布一条广播信封，由网关遍历本地连接注册表，
+     * 按应用、客户端类型和 userId 分段筛选后分批写出，不读取任何用户会话
+     *
+     * @param brokerIds      在线网关
+     * @param command        消息命令
+     * @param data           消息数据
+     * @param appId          应用ID
+     * @param clientTypeMask 客户端类型位图，0 表示不过滤
+     * @param segmentCount   userId 分段数，小于等于 1 表示不过滤
+     * @param segments       分段位图
+     * @return 发布成功的网关数
+     */
+    public int broadcast(Collection<Integer> brokerIds, Command command, Object data, Integer appId,
+                         int clientTypeMask, int segmentCount, long segments) {
+        MessagePack messagePack = new MessagePack();
+        messagePack.setCommand(command.getCommand());
+        messagePack.setAppId(appId);
+        messagePack.setData(data);
+        byte[] body = DownlinkCodecUtils.encodeBroadcast(command.getCommand(), appId, clientTypeMask,
+                segmentCount, segments, DownlinkCodecUtils.encodeFrame(messagePack));
+
+        int published = 0;
+        for (Integer brokerId : brokerIds) {
+            if (sendToBroker(brokerId, body, Constants.RabbitmqConstants.CONTENT_TYPE_DOWNLINK_BROADCAST)) {
+                published++;
+            }
+        }
+        log.info("广播消息发布完成: appId={}, command={}, brokers={}/{}",
+                appId, command.getCommand(), published, brokerIds.size());
+        return published;
+    }
+
+    private void sendFanout(Integer brokerId, byte[] body) {
+        sendToBroker(brokerId, body, Constants.RabbitmqConstants.CONTENT_TYPE_DOWNLINK_FANOUT);
+    }
+
+    private boolean sendToBroker(Integer brokerId, byte[] body, String contentType) {
+        try {
+            MessageProperties properties = new MessageProperties();
+            properties.setContentType(contentType);
+            rabbitTemplate.send(QUEUE_NAME, String.valueOf(brokerId), new Message(body, properties));
+            return true;
+        } catch (Exception e) {
+            log.error("网关消息发送失败: brokerId={}, contentType={}", brokerId, contentType, e);
+            return false;
+        }
+    }
 }
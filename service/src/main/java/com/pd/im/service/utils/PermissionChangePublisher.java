@@ -0,0 +1,73 @@
+package com.pd.im.service.utils;
+
+import com.alibaba.fastjson.JSONObject;
+import com.pd.im.common.constant.Constants;
+import com.pd.im.common.model.PermissionChangeEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 发送权限变更事件发布者
+ * <p>
+ * 用户禁言/封禁、好友关系、黑名单、群禁言、群成员角色等影响发送权限校验的数据变更后调用，
+ * 通过 fanout 交换机通知所有网关失效本地权限缓存
+ * <p>
+ * 处于事务中时在事务提交后发布，避免网关在提交前重新校验并缓存旧结果
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+@Slf4j
+@Service
+public class PermissionChangePublisher {
+
+    private final RabbitTemplate rabbitTemplate;
+
+    @Autowired
+    public PermissionChangePublisher(RabbitTemplate rabbitTemplate) {
+        this.rabbitTemplate = rabbitTemplate;
+    }
+
+    /**
+     * 发布变更事件
+     *
+     * @param appId  应用ID
+     * @param reason 变更原因，仅用于日志
+     * @param ids    发生变更的用户ID或群组ID
+     */
+    public void publish(Integer appId, String reason, String... ids) {
+        PermissionChangeEvent event = new PermissionChangeEvent(appId, Arrays.asList(ids), reason);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    send(event);
+                }
+            });
+        } else {
+            send(event);
+        }
+    }
+
+    private void send(PermissionChangeEvent event) {
+        try {
+            MessageProperties properties = new MessageProperties();
+            properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+            byte[] body = JSONObject.toJSONString(event).getBytes(StandardCharsets.UTF_8);
+            rabbitTemplate.send(Constants.RabbitmqConstants.PERMISSION_CHANGE_TO_IM, "", new Message(body, properties));
+        } catch (Exception e) {
+            // 发布失败时网关缓存最迟在有效期后过期
+            log.error("发送权限变更事件发布失败: appId={}, ids={}, reason={}",
+                    event.getAppId(), event.getIds(), event.getReason(), e);
+        }
+    }
+}
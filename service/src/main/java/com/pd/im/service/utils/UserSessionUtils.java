@@ -5,9 +5,11 @@ import com.pd.im.common.constant.Constants;
 import com.pd.im.common.enums.device.ConnectState;
 import com.pd.im.common.model.UserSession;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -44,4 +46,38 @@ public class UserSessionUtils {
         UserSession session = JSONObject.parseObject(o.toString(), UserSession.class);
         return session;
     }
+
+    /**
+     * 批量获取用户的在线会话
+     * <p>
+     * 所有用户的 HVALS 在一次 pipeline 中发出，只有一次网络往返
+     *
+     * @param appId   应用ID
+     * @param userIds 用户ID列表
+     * @return 与 userIds 顺序一致的在线会话列表，用户不在线时为空列表
+     */
+    public List<List<UserSession>> getUserSessions(Integer appId, List<String> userIds) {
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String userId : userIds) {
+                String userSessionKey = appId + Constants.RedisConstants.USER_SESSION + userId;
+                connection.hashCommands().hVals(userSessionKey.getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        });
+
+        List<List<UserSession>> sessions = new ArrayList<>(results.size());
+        for (Object result : results) {
+            List<UserSession> list = new ArrayList<>();
+            if (result instanceof Collection) {
+                for (Object o : (Collection<?>) result) {
+                    UserSession session = JSONObject.parseObject((String) o, UserSession.class);
+                    if (session.getConnectState().equals(ConnectState.CONNECT_STATE_ONLINE.getCode())) {
+                        list.add(session);
+                    }
+                }
+            }
+            sessions.add(list);
+        }
+        return sessions;
+    }
 }
@@ -1,12 +1,22 @@
 package com.pd.im.service.utils;
 
 import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.pd.im.common.route.NodeLoad;
 import lombok.extern.slf4j.Slf4j;
+import org.I0Itec.zkclient.IZkChildListener;
 import org.I0Itec.zkclient.ZkClient;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.pd.im.common.constant.Constants.ZKConstants.*;
 
@@ -17,18 +27,31 @@ import static com.pd.im.common.constant.Constants.ZKConstants.*;
 @Slf4j
 @Component
 public class ZKit {
+    /**
+     * 节点负载本地缓存时间（毫秒），网关每隔数秒才上报一次，无需每次登录都逐个读取节点数据
+     */
+    private static final long LOAD_CACHE_MILLIS = 1000;
+
     @Autowired
     private ZkClient zkClient;
 
+    /**
+     * 父节点路径 -> 子节点列表，通过子节点监听更新，同一列表实例在节点变化前保持不变
+     */
+    private final Map<String, List<String>> childrenCache = new ConcurrentHashMap<>();
+
+    /**
+     * 父节点路径 -> 节点负载快照
+     */
+    private final Map<String, LoadSnapshot> loadSnapshots = new ConcurrentHashMap<>();
+
     /**
      * 从 Zk 获取所有 TCP 服务节点地址
      *
      * @return
      */
     public List<String> getAllTcpNode() {
-        List<String> children = zkClient.getChildren(IM_CORE_ZK_ROOT + IM_CORE_ZK_ROOT_TCP);
-        log.info("Query all [TCP] node =[{}] success.", JSON.toJSONString(children));
-        return children;
+        return getChildren(IM_CORE_ZK_ROOT + IM_CORE_ZK_ROOT_TCP);
     }
 
     /**
@@ -37,8 +60,115 @@ public class ZKit {
      * @return
      */
     public List<String> getAllWebNode() {
-        List<String> children = zkClient.getChildren(IM_CORE_ZK_ROOT + IM_CORE_ZK_ROOT_WEB);
-        log.info("Query all [WEB] node =[{}] success.", JSON.toJSONString(children));
-        return children;
+        return getChildren(IM_CORE_ZK_ROOT + IM_CORE_ZK_ROOT_WEB);
+    }
+
+    /**
+     * 读取子节点列表
+     * <p>
+     * 首次读取时注册子节点监听，之后直接返回缓存的不可变列表；一致性哈希按列表内容判断节点是否变化，
+     * 节点不变时不会重建哈希环
+     *
+     * @param parentPath 父节点路径
+     * @return 子节点列表
+     */
+    private List<String> getChildren(String parentPath) {
+        List<String> children = childrenCache.get(parentPath);
+        if (children != null) {
+            return children;
+        }
+        // 先注册监听再读取，监听回调的写入会等待首次读取写入完成后再覆盖，不会丢失变化；
+        // 读取失败时不会写入缓存，移除本次注册的监听，避免每次重试都多注册一个
+        return childrenCache.computeIfAbsent(parentPath, path -> {
+            IZkChildListener listener = (parent, current) -> {
+                List<String> updated = current == null
+                        ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(current));
+                childrenCache.put(parent, updated);
+                log.info("Node changed, path=[{}], nodes=[{}]", parent, JSON.toJSONString(updated));
+            };
+            zkClient.subscribeChildChanges(path, listener);
+            List<String> current;
+            try {
+                current = Collections.unmodifiableList(new ArrayList<>(zkClient.getChildren(path)));
+            } catch (RuntimeException e) {
+                zkClient.unsubscribeChildChanges(path, listener);
+                throw e;
+            }
+            log.info("Query all node success, path=[{}], nodes=[{}]", path, JSON.toJSONString(current));
+            return current;
+        });
+    }
+
+    /**
+     * 获取所有 TCP 服务节点上报的负载
+     *
+     * @return ip:port -> 负载，未上报的节点不存在
+     */
+    public Map<String, NodeLoad> getTcpNodeLoads() {
+        return getNodeLoads(IM_CORE_ZK_ROOT + IM_CORE_ZK_ROOT_TCP);
+    }
+
+    /**
+     * 获取所有 WEB 服务节点上报的负载
+     *
+     * @return ip:port -> 负载，未上报的节点不存在
+     */
+    public Map<String, NodeLoad> getWebNodeLoads() {
+        return getNodeLoads(IM_CORE_ZK_ROOT + IM_CORE_ZK_ROOT_WEB);
+    }
+
+    /**
+     * 获取所有在线网关的 brokerId
+     * <p>
+     * 取自网关上报的节点负载，同一网关的 TCP 与 WEB 节点只计一次；网关启动后首次上报前不在结果中
+     *
+     * @return brokerId 集合
+     */
+    public Set<Integer> getBrokerIds() {
+        Set<Integer> brokerIds = new HashSet<>();
+        for (NodeLoad load : getTcpNodeLoads().values()) {
+            if (load.getBrokerId() != null) {
+                brokerIds.add(load.getBrokerId());
+            }
+        }
+        for (NodeLoad load : getWebNodeLoads().values()) {
+            if (load.getBrokerId() != null) {
+                brokerIds.add(load.getBrokerId());
+            }
+        }
+        return brokerIds;
+    }
+
+    private Map<String, NodeLoad> getNodeLoads(String parentPath) {
+        long now = System.currentTimeMillis();
+        LoadSnapshot snapshot = loadSnapshots.get(parentPath);
+        if (snapshot != null && now - snapshot.loadTime < LOAD_CACHE_MILLIS) {
+            return snapshot.loads;
+        }
+        Map<String, NodeLoad> loads = new HashMap<>();
+        try {
+            for (String child : getChildren(parentPath)) {
+                Object data = zkClient.readData(parentPath + "/" + child, true);
+                if (data instanceof String) {
+                    loads.put(child, JSONObject.parseObject((String) data, NodeLoad.class));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Query node load failed, path=[{}]", parentPath, e);
+            return snapshot != null ? snapshot.loads : Collections.emptyMap();
+        }
+        loads = Collections.unmodifiableMap(loads);
+        loadSnapshots.put(parentPath, new LoadSnapshot(loads, now));
+        return loads;
+    }
+
+    private static final class LoadSnapshot {
+        private final Map<String, NodeLoad> loads;
+        private final long loadTime;
+
+        private LoadSnapshot(Map<String, NodeLoad> loads, long loadTime) {
+            this.loads = loads;
+            this.loadTime = loadTime;
+        }
     }
 }
@@ -1,13 +1,27 @@
 package com.pd.im.tcp;
 
 import com.pd.im.codec.config.ImBootstrapConfig;
+import com.pd.im.tcp.feign.MessageCheckClient;
+import com.pd.im.tcp.feign.SendPermissionCache;
+import com.pd.im.tcp.handler.AdmissionControl;
+import com.pd.im.tcp.handler.HeartBeatManager;
+import com.pd.im.tcp.handler.SlowConsumerMonitor;
 import com.pd.im.tcp.rabbitmq.MqFactory;
+import com.pd.im.tcp.rabbitmq.process.BroadcastDispatcher;
+import com.pd.im.tcp.rabbitmq.publish.MqMessageProducer;
+import com.pd.im.tcp.rabbitmq.publish.MqPublisher;
 import com.pd.im.tcp.rabbitmq.receiver.MqMessageReceiver;
+import com.pd.im.tcp.rabbitmq.receiver.PermissionChangeReceiver;
 import com.pd.im.tcp.redis.RedissonManager;
+import com.pd.im.tcp.server.GatewayDrainer;
 import com.pd.im.tcp.server.ImServer;
 import com.pd.im.tcp.server.ImWebSocketServer;
+import com.pd.im.tcp.server.TransportRuntime;
 import com.pd.im.tcp.strategy.command.factory.CommandFactory;
+import com.pd.im.tcp.strategy.login.LoginKickRouter;
 import com.pd.im.tcp.strategy.login.factory.LoginStrategyFactory;
+import com.pd.im.tcp.utils.UserChannelRepository;
+import com.pd.im.tcp.zookeeper.LoadReporter;
 import com.pd.im.tcp.zookeeper.RegistryZK;
 import com.pd.im.tcp.zookeeper.ZKit;
 import lombok.extern.slf4j.Slf4j;
@@ -30,9 +44,15 @@ import java.net.UnknownHostException;
 @Slf4j
 public class Starter {
 
+    private static TransportRuntime transportRuntime;
+    private static HeartBeatManager heartBeatManager;
     private static ImServer imServer;
     private static ImWebSocketServer imWebSocketServer;
     private static ZkClient zkClient;
+    private static RegistryZK registryZK;
+    private static LoadReporter loadReporter;
+    private static GatewayDrainer gatewayDrainer;
+    private static ImBootstrapConfig.TcpConfig tcpConfig;
 
     public static void main(String[] args) {
         if (args.length == 0) {
@@ -60,27 +80,41 @@ public class Starter {
             // 1. 加载配置文件
             config = loadConfig(configPath);
             log.info("配置文件加载成功: {}", configPath);
+            tcpConfig = config.getIm();
 
-            // 2. 启动网络服务器
-            imServer = new ImServer(config.getIm());
+            // 2. 启动网络服务器（TCP 与 WebSocket 共用同一个传输层运行时和心跳管理器）
+            AdmissionControl.init(config.getIm());
+            SlowConsumerMonitor.init(config.getIm());
+            UserChannelRepository.init(config.getIm());
+            transportRuntime = new TransportRuntime(config.getIm());
+            heartBeatManager = new HeartBeatManager(config.getIm().getHeartBeatTime(),
+                    config.getIm().getHeartBeatTickMillis());
+            imServer = new ImServer(config.getIm(), transportRuntime, heartBeatManager);
             imServer.start();
 
-            imWebSocketServer = new ImWebSocketServer(config.getIm());
+            imWebSocketServer = new ImWebSocketServer(config.getIm(), transportRuntime, heartBeatManager);
             imWebSocketServer.start();
 
-            // 3. 初始化Redis连接池并启动用户登录监听
+            // 3. 初始化Redis连接池
             RedissonManager.init(config);
             log.info("Redis连接池初始化成功");
 
-            // 4. 初始化策略工厂
-            CommandFactory.init();
+            // 4. 初始化策略工厂、发送权限本地缓存和校验客户端
+            SendPermissionCache.init(config.getIm());
+            MessageCheckClient.init(config.getIm());
+            CommandFactory.init(config.getIm());
             LoginStrategyFactory.init();
+            LoginKickRouter.init(config.getIm());
             log.info("命令策略工厂初始化成功");
 
             // 5. 初始化MQ
             MqFactory.init(config.getIm().getRabbitmq());
             MqFactory.createExchange();
-            MqMessageReceiver.init(String.valueOf(config.getIm().getBrokerId()));
+            MqPublisher.init(config.getIm());
+            MqMessageProducer.init(config.getIm());
+            BroadcastDispatcher.init(config.getIm(), transportRuntime.getAllocator());
+            MqMessageReceiver.init(config.getIm());
+            PermissionChangeReceiver.init();
             log.info("RabbitMQ初始化成功");
 
             // 6. 注册到Zookeeper
@@ -128,9 +162,10 @@ public class Starter {
      * 对于每一个IP地址，都开启一个线程去注册ZK节点
      *
      * @param config 配置对象
-     * @throws UnknownHostException 获取本机地址失败
+     * @throws UnknownHostException        获取本机地址失败
+     * @throws ReflectiveOperationException 摘流路由策略创建失败
      */
-    private static void registerZK(ImBootstrapConfig config) throws UnknownHostException {
+    private static void registerZK(ImBootstrapConfig config) throws UnknownHostException, ReflectiveOperationException {
         // 使用NetworkUtils获取局域网IP地址，而不是InetAddress.getLocalHost()
         // InetAddress.getLocalHost()在Mac上通常返回127.0.0.1
         String hostAddress = com.pd.im.tcp.utils.NetworkUtils.getLocalIpAddress();
@@ -146,11 +181,16 @@ public class Starter {
         );
 
         ZKit zKit = new ZKit(zkClient);
-        RegistryZK registryZK = new RegistryZK(zKit, hostAddress, config.getIm());
+        registryZK = new RegistryZK(zKit, hostAddress, config.getIm());
+        gatewayDrainer = new GatewayDrainer(config.getIm(), zKit);
 
         Thread zkThread = new Thread(registryZK, "zk-registry-thread");
         zkThread.setDaemon(true);
         zkThread.start();
+
+        // 定期把连接数、EventLoop 利用率等负载写入节点数据
+        loadReporter = new LoadReporter(config.getIm(), registryZK, transportRuntime.getWorkerGroup());
+        loadReporter.start();
     }
 
     /**
@@ -164,20 +204,67 @@ public class Starter {
         }, "shutdown-hook-thread"));
     }
 
+    /**
+     * 摘流
+     * <p>
+     * 顺序不能调整：先注销ZK节点，业务层不再把新登录分配到本网关；停止接入和消费后，
+     * 连接上不会再有新的推送，此时引导客户端重连，待出站数据写完再关闭连接
+     */
+    private static void drain() {
+        if (loadReporter != null) {
+            loadReporter.shutdown();
+        }
+        if (registryZK != null) {
+            registryZK.deregister();
+        }
+        if (imServer != null) {
+            imServer.shutdown();
+        }
+        if (imWebSocketServer != null) {
+            imWebSocketServer.shutdown();
+        }
+        if (tcpConfig != null) {
+            MqMessageReceiver.stopConsuming(tcpConfig.getDrainTimeoutMillis());
+        }
+        if (gatewayDrainer != null) {
+            gatewayDrainer.drain();
+        }
+    }
+
     /**
      * 优雅关闭所有资源
      */
     private static void shutdown() {
         try {
-            // 关闭网络服务器
-            if (imServer != null) {
-                imServer.shutdown();
+            // 摘流：注销ZK节点、停止接入新连接、停止消费下行队列，再引导已有连接重连到其他网关
+            drain();
+
+            // 关闭心跳、连接治理组件和传输层线程组
+            if (heartBeatManager != null) {
+                heartBeatManager.shutdown();
+            }
+            if (SlowConsumerMonitor.getInstance() != null) {
+                SlowConsumerMonitor.getInstance().shutdown();
+            }
+            if (AdmissionControl.getInstance() != null) {
+                AdmissionControl.getInstance().shutdown();
             }
-            if (imWebSocketServer != null) {
-                imWebSocketServer.shutdown();
+            if (transportRuntime != null) {
+                transportRuntime.shutdown();
             }
 
-            // 关闭MQ连接
+            if (MessageCheckClient.getInstance() != null) {
+                MessageCheckClient.getInstance().shutdown();
+            }
+
+            // 关闭MQ消费、发布通道和连接
+            MqMessageReceiver.shutdown();
+            if (BroadcastDispatcher.getInstance() != null) {
+                BroadcastDispatcher.getInstance().shutdown();
+            }
+            if (MqPublisher.getInstance() != null) {
+                MqPublisher.getInstance().shutdown();
+            }
             MqFactory.shutdown();
 
             // 关闭Redis连接
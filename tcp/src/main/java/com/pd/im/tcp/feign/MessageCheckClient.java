@@ -0,0 +1,175 @@
+package com.pd.im.tcp.feign;
+
+import com.alibaba.fastjson.JSON;
+import com.pd.im.codec.config.ImBootstrapConfig;
+import com.pd.im.common.ResponseVO;
+import com.pd.im.common.model.message.CheckSendMessageReq;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 发送权限异步校验客户端
+ * <p>
+ * 替代在 Netty 工作线程上同步调用 Feign 的方式：
+ * - 网关全局共用一个 HttpClient，复用连接（服务端支持时使用 HTTP/2 多路复用）
+ * - 请求异步发送，不占用 EventLoop，结果由调用方切回 Channel 所属的 EventLoop 处理
+ * - 使用信号量限制在途请求数，超过上限时不再排队，直接按降级策略返回
+ * - 超时、网络异常、非 200 响应同样按降级策略返回
+ * - 先查询 {@link SendPermissionCache}，命中时不发起远程校验；业务层明确放行的结果写回缓存
+ * - 请求分配序列号（单聊同网关直投）的校验不查缓存，结果仍写回缓存
+ *
+ * @author Parker
+ * @date 12/5/25
+ */
+@Slf4j
+public class MessageCheckClient {
+
+    private static final String P2P_CHECK_PATH = "/message/p2pCheckSend";
+    private static final String GROUP_CHECK_PATH = "/message/groupCheckSend";
+
+    private static volatile MessageCheckClient instance;
+
+    private final String logicUrl;
+    private final HttpClient httpClient;
+    private final ExecutorService callbackExecutor;
+    private final Semaphore inFlight;
+    private final Duration timeout;
+
+    /**
+     * 降级策略：true-校验不可用时放行，false-校验不可用时拒绝发送
+     */
+    private final boolean failOpen;
+
+    private MessageCheckClient(ImBootstrapConfig.TcpConfig config) {
+        this.logicUrl = config.getLogicUrl();
+        this.inFlight = new Semaphore(config.getCheckMaxInFlight());
+        this.timeout = Duration.ofMillis(config.getCheckTimeoutMillis());
+        this.failOpen = config.isCheckFailOpen();
+        this.callbackExecutor = Executors.newFixedThreadPool(2, new DefaultThreadFactory("im-message-check", true));
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(timeout)
+                .executor(callbackExecutor)
+                .build();
+    }
+
+    /**
+     * 初始化校验客户端
+     *
+     * @param config 配置
+     */
+    public static void init(ImBootstrapConfig.TcpConfig config) {
+        instance = new MessageCheckClient(config);
+        log.info("发送权限校验客户端初始化完成: logicUrl={}, maxInFlight={}, timeout={}ms, failOpen={}",
+                config.getLogicUrl(), config.getCheckMaxInFlight(), config.getCheckTimeoutMillis(), config.isCheckFailOpen());
+    }
+
+    public static MessageCheckClient getInstance() {
+        return instance;
+    }
+
+    /**
+     * 检查 [P2P] 发送方是否有权限
+     *
+     * @param req 校验请求
+     * @return 校验结果，不会异常完成
+     */
+    public CompletableFuture<ResponseVO> checkP2PSendMessage(CheckSendMessageReq req) {
+        return post(P2P_CHECK_PATH, req);
+    }
+
+    /**
+     * 检查 [GROUP] 发送方是否有权限
+     *
+     * @param req 校验请求
+     * @return 校验结果，不会异常完成
+     */
+    public CompletableFuture<ResponseVO> checkGroupSendMessage(CheckSendMessageReq req) {
+        return post(GROUP_CHECK_PATH, req);
+    }
+
+    /**
+     * 关闭回调线程池
+     */
+    public void shutdown() {
+        callbackExecutor.shutdown();
+    }
+
+    private CompletableFuture<ResponseVO> post(String path, CheckSendMessageReq req) {
+        SendPermissionCache cache = SendPermissionCache.getInstance();
+        // 请求分配序列号的校验必须到达业务层，不使用缓存结果
+        boolean assignSequence = Boolean.TRUE.equals(req.getAssignSequence());
+        if (cache != null && !assignSequence && cache.isAllowed(req)) {
+            return CompletableFuture.completedFuture(ResponseVO.successResponse());
+        }
+        // 版本戳必须在发起请求前获取，请求期间收到的变更事件会使本次结果不被缓存
+        long stamp = cache != null ? cache.stamp(req) : 0L;
+
+        // 请求在获取许可前构建，构建失败时不占用在途窗口
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(logicUrl + path))
+                    .timeout(timeout)
+                    .header("Content-Type", "application/json")
+                    .header("Accept", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(JSON.toJSONBytes(req)))
+                    .build();
+        } catch (Exception e) {
+            log.error("发送权限校验请求构建失败，按降级策略处理: path={}, fromId={}", path, req.getFromId(), e);
+            return CompletableFuture.completedFuture(fallback());
+        }
+
+        // 在途请求已满，不再排队等待，直接降级
+        if (!inFlight.tryAcquire()) {
+            log.warn("发送权限校验在途请求已满，按降级策略处理: path={}, fromId={}", path, req.getFromId());
+            return CompletableFuture.completedFuture(fallback());
+        }
+
+        CompletableFuture<HttpResponse<byte[]>> pending;
+        try {
+            pending = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (Exception e) {
+            // 同步抛出时回调不会执行，在这里归还许可
+            inFlight.release();
+            log.error("发送权限校验请求发送失败，按降级策略处理: path={}, fromId={}", path, req.getFromId(), e);
+            return CompletableFuture.completedFuture(fallback());
+        }
+
+        return pending.handle((response, e) -> {
+            inFlight.release();
+            if (e != null) {
+                log.error("发送权限校验失败，按降级策略处理: path={}, fromId={}, toId={}",
+                        path, req.getFromId(), req.getToId(), e);
+                return fallback();
+            }
+            if (response.statusCode() != 200) {
+                log.error("发送权限校验响应异常，按降级策略处理: path={}, status={}", path, response.statusCode());
+                return fallback();
+            }
+            try {
+                ResponseVO responseVO = JSON.parseObject(response.body(), ResponseVO.class);
+                if (cache != null && responseVO.isSuccess()) {
+                    cache.put(req, stamp);
+                }
+                return responseVO;
+            } catch (Exception parseException) {
+                log.error("发送权限校验响应解析失败，按降级策略处理: path={}", path, parseException);
+                return fallback();
+            }
+        });
+    }
+
+    private ResponseVO fallback() {
+        return failOpen ? ResponseVO.successResponse() : ResponseVO.errorResponse();
+    }
+}
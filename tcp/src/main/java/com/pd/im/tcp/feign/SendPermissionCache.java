@@ -0,0 +1,166 @@
+package com.pd.im.tcp.feign;
+
+import com.pd.im.codec.config.ImBootstrapConfig;
+import com.pd.im.common.model.message.CheckSendMessageReq;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 发送权限本地缓存
+ * <p>
+ * 缓存业务层对 (command, appId, fromId, toId) 的放行结果，同一对用户连续发消息时不再每条都远程校验：
+ * - 只缓存业务层明确放行的结果，拒绝和降级结果不缓存
+ * - 条目数量有上限，超过有效期的条目在读取或清理时删除
+ * - 每个用户/群组对应一个版本号槽位，业务层推送变更事件时递增版本号，
+ *   条目写入时记录双方版本号之和，读取时不一致即视为失效，失效操作为 O(1)
+ * <p>
+ * 版本号按 hash 分槽，不同 ID 落到同一槽位时只会多失效一些条目，不会放行过期结果
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+@Slf4j
+public class SendPermissionCache {
+
+    private static final int VERSION_SLOTS = 1 << 16;
+    private static final long PURGE_INTERVAL_MILLIS = 1000L;
+
+    private static volatile SendPermissionCache instance;
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_SLOTS);
+    private volatile long nextPurgeAt;
+
+    private SendPermissionCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * 初始化权限缓存
+     *
+     * @param config 配置
+     */
+    public static void init(ImBootstrapConfig.TcpConfig config) {
+        int maxSize = config.getCheckCacheMaxSize() == null ? 0 : config.getCheckCacheMaxSize();
+        long ttlMillis = config.getCheckCacheTtlMillis() == null ? 0L : config.getCheckCacheTtlMillis();
+        instance = new SendPermissionCache(maxSize, ttlMillis);
+        log.info("发送权限本地缓存初始化完成: maxSize={}, ttl={}ms", maxSize, ttlMillis);
+    }
+
+    public static SendPermissionCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * 缓存是否已放行该请求
+     *
+     * @param req 校验请求
+     * @return true-命中且未失效
+     */
+    public boolean isAllowed(CheckSendMessageReq req) {
+        if (!isEnabled()) {
+            return false;
+        }
+        String key = keyOf(req);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return false;
+        }
+        if (entry.expireAt <= System.currentTimeMillis() || entry.stamp != stamp(req)) {
+            entries.remove(key, entry);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 获取双方当前的版本号之和
+     * <p>
+     * 必须在发起远程校验之前获取，校验期间发生的变更会使写入的条目立即失效
+     *
+     * @param req 校验请求
+     * @return 版本戳
+     */
+    public long stamp(CheckSendMessageReq req) {
+        return versions.get(slotOf(req.getAppId(), req.getFromId()))
+                + versions.get(slotOf(req.getAppId(), req.getToId()));
+    }
+
+    /**
+     * 写入放行结果
+     *
+     * @param req   校验请求
+     * @param stamp 发起校验前获取的版本戳
+     */
+    public void put(CheckSendMessageReq req, long stamp) {
+        if (!isEnabled()) {
+            return;
+        }
+        if (entries.size() >= maxSize) {
+            purge();
+            // 清理后仍然已满，本次不缓存
+            if (entries.size() >= maxSize) {
+                return;
+            }
+        }
+        entries.put(keyOf(req), new Entry(stamp, System.currentTimeMillis() + ttlMillis));
+    }
+
+    /**
+     * 失效与指定用户或群组相关的所有条目
+     *
+     * @param appId 应用ID
+     * @param id    用户ID或群组ID
+     */
+    public void invalidate(Integer appId, String id) {
+        versions.incrementAndGet(slotOf(appId, id));
+    }
+
+    private boolean isEnabled() {
+        return maxSize > 0 && ttlMillis > 0;
+    }
+
+    /**
+     * 删除过期条目，最多每秒执行一次
+     */
+    private void purge() {
+        long now = System.currentTimeMillis();
+        if (now < nextPurgeAt) {
+            return;
+        }
+        nextPurgeAt = now + PURGE_INTERVAL_MILLIS;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().expireAt <= now) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static String keyOf(CheckSendMessageReq req) {
+        return req.getCommand() + ":" + req.getAppId() + ":" + req.getFromId() + ":" + req.getToId();
+    }
+
+    private static int slotOf(Integer appId, String id) {
+        int h = 31 * (appId == null ? 0 : appId) + (id == null ? 0 : id.hashCode());
+        h ^= (h >>> 16);
+        return h & (VERSION_SLOTS - 1);
+    }
+
+    private static final class Entry {
+        private final long stamp;
+        private final long expireAt;
+
+        private Entry(long stamp, long expireAt) {
+            this.stamp = stamp;
+            this.expireAt = expireAt;
+        }
+    }
+}
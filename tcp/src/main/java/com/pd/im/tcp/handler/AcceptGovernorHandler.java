@@ -0,0 +1,42 @@
+package com.pd.im.tcp.handler;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetSocketAddress;
+
+/**
+ * 接入速率控制处理器
+ * <p>
+ * 挂在 ServerChannel 的 pipeline 上，在新连接交给 ServerBootstrapAcceptor 注册到 worker 线程之前检查
+ * 全局接入速率和单 IP 建连速率，被拒绝的连接直接关闭，不占用 worker 线程和连接内存
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+@Slf4j
+@ChannelHandler.Sharable
+public class AcceptGovernorHandler extends ChannelInboundHandlerAdapter {
+
+    private final AdmissionControl admissionControl;
+
+    public AcceptGovernorHandler(AdmissionControl admissionControl) {
+        this.admissionControl = admissionControl;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        Channel child = (Channel) msg;
+        InetSocketAddress remote = (InetSocketAddress) child.remoteAddress();
+        String ip = remote != null && remote.getAddress() != null ? remote.getAddress().getHostAddress() : null;
+        if (!admissionControl.tryAccept(ip)) {
+            log.debug("接入速率超限，拒绝连接: {}", remote);
+            child.unsafe().closeForcibly();
+            return;
+        }
+        ctx.fireChannelRead(msg);
+    }
+}
@@ -0,0 +1,227 @@
+package com.pd.im.tcp.handler;
+
+import com.pd.im.codec.config.ImBootstrapConfig;
+import com.pd.im.tcp.session.ConnectionSession;
+import com.pd.im.tcp.utils.TokenBucket;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 网关准入控制
+ * <p>
+ * 所有限流都基于 {@link TokenBucket}，速率配置为 0 表示不限制：
+ * - 全局接入速率：boss 线程接入新连接前检查，超过后直接关闭新连接（{@link AcceptGovernorHandler}）
+ * - 单 IP 建连速率：同上
+ * - 单用户消息速率和单用户按命令的消息速率：{@link AdmissionControlHandler} 在分发命令前检查
+ * <p>
+ * 单 IP 和单用户的令牌桶按需创建，长时间未使用（桶已满）的定期清理；拒绝次数按类型计数并定期输出
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+@Slf4j
+public class AdmissionControl {
+
+    private static final long SWEEP_INTERVAL_SECONDS = 60;
+
+    private static volatile AdmissionControl instance;
+
+    private final TokenBucket acceptBucket;
+    private final ImBootstrapConfig.RateLimit ipConnectLimit;
+    private final ImBootstrapConfig.RateLimit userMessageLimit;
+
+    /**
+     * command -> 单用户命令令牌桶在 {@link UserLimiter#commandBuckets} 中的下标
+     */
+    private final Map<Integer, Integer> commandIndex = new HashMap<>();
+    private final ImBootstrapConfig.RateLimit[] commandLimits;
+
+    private final Map<String, TokenBucket> ipBuckets = new ConcurrentHashMap<>();
+    private final Map<String, UserLimiter> userLimiters = new ConcurrentHashMap<>();
+
+    private final LongAdder acceptRejected = new LongAdder();
+    private final LongAdder ipRejected = new LongAdder();
+    private final LongAdder userRejected = new LongAdder();
+    private final LongAdder commandRejected = new LongAdder();
+    private final ScheduledExecutorService scheduler;
+
+    private AdmissionControl(ImBootstrapConfig.TcpConfig config) {
+        this.acceptBucket = enabled(config.getAcceptLimit()) ? newBucket(config.getAcceptLimit()) : null;
+        this.ipConnectLimit = enabled(config.getIpConnectLimit()) ? config.getIpConnectLimit() : null;
+        this.userMessageLimit = enabled(config.getUserMessageLimit()) ? config.getUserMessageLimit() : null;
+
+        Map<Integer, ImBootstrapConfig.RateLimit> commandRateLimits = config.getCommandRateLimits() == null
+                ? Collections.emptyMap() : config.getCommandRateLimits();
+        List<ImBootstrapConfig.RateLimit> limits = new ArrayList<>();
+        for (Map.Entry<Integer, ImBootstrapConfig.RateLimit> entry : commandRateLimits.entrySet()) {
+            if (enabled(entry.getValue())) {
+                commandIndex.put(entry.getKey(), limits.size());
+                limits.add(entry.getValue());
+            }
+        }
+        this.commandLimits = limits.toArray(new ImBootstrapConfig.RateLimit[0]);
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("im-admission", true));
+        scheduler.scheduleWithFixedDelay(this::sweep, SWEEP_INTERVAL_SECONDS, SWEEP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        Integer metricsInterval = config.getMqMetricsIntervalSeconds();
+        if (metricsInterval != null && metricsInterval > 0) {
+            scheduler.scheduleAtFixedRate(() -> log.info("准入控制指标: {}", snapshotAndReset()),
+                    metricsInterval, metricsInterval, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 初始化准入控制，需在网络服务器创建之前调用
+     *
+     * @param config 配置
+     */
+    public static void init(ImBootstrapConfig.TcpConfig config) {
+        instance = new AdmissionControl(config);
+        log.info("准入控制初始化完成: accept={}, ipConnect={}, userMessage={}, commands={}",
+                config.getAcceptLimit(), config.getIpConnectLimit(), config.getUserMessageLimit(),
+                instance.commandIndex.keySet());
+    }
+
+    public static AdmissionControl getInstance() {
+        return instance;
+    }
+
+    /**
+     * 是否允许接入新连接，在 boss 线程上调用
+     *
+     * @param ip 客户端 IP
+     * @return 允许返回 true
+     */
+    boolean tryAccept(String ip) {
+        if (acceptBucket != null && !acceptBucket.tryAcquire()) {
+            acceptRejected.increment();
+            return false;
+        }
+        if (ipConnectLimit != null && ip != null
+                && !ipBuckets.computeIfAbsent(ip, k -> newBucket(ipConnectLimit)).tryAcquire()) {
+            ipRejected.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 获取用户的限流器
+     *
+     * @param session 连接会话
+     * @return 限流器，未配置用户和命令限流时返回 null
+     */
+    UserLimiter limiterOf(ConnectionSession session) {
+        if (userMessageLimit == null && commandLimits.length == 0) {
+            return null;
+        }
+        return userLimiters.computeIfAbsent(session.getAppId() + ":" + session.getUserId(), k -> new UserLimiter());
+    }
+
+    /**
+     * 单用户限流器
+     * <p>
+     * 被清理后标记为失效，连接持有的引用需要重新获取，保证同一用户的多个连接共用一个限流器
+     */
+    final class UserLimiter {
+        private final TokenBucket messageBucket = userMessageLimit != null ? newBucket(userMessageLimit) : null;
+        private final TokenBucket[] commandBuckets = new TokenBucket[commandLimits.length];
+        private volatile boolean evicted;
+
+        private UserLimiter() {
+            for (int i = 0; i < commandLimits.length; i++) {
+                commandBuckets[i] = newBucket(commandLimits[i]);
+            }
+        }
+
+        /**
+         * 是否允许处理该命令
+         *
+         * @param command 命令码
+         * @return 允许返回 true
+         */
+        boolean tryAcquire(Integer command) {
+            if (messageBucket != null && !messageBucket.tryAcquire()) {
+                userRejected.increment();
+                return false;
+            }
+            Integer index = commandIndex.get(command);
+            if (index != null && !commandBuckets[index].tryAcquire()) {
+                commandRejected.increment();
+                return false;
+            }
+            return true;
+        }
+
+        boolean isEvicted() {
+            return evicted;
+        }
+
+        private boolean isIdle(long now) {
+            if (messageBucket != null && !messageBucket.isIdle(now)) {
+                return false;
+            }
+            for (TokenBucket bucket : commandBuckets) {
+                if (!bucket.isIdle(now)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 输出本周期拒绝次数并重置
+     *
+     * @return 指标描述
+     */
+    public String snapshotAndReset() {
+        return "acceptRejected=" + acceptRejected.sumThenReset()
+                + ", ipRejected=" + ipRejected.sumThenReset()
+                + ", userRejected=" + userRejected.sumThenReset()
+                + ", commandRejected=" + commandRejected.sumThenReset()
+                + ", ipBuckets=" + ipBuckets.size()
+                + ", userLimiters=" + userLimiters.size();
+    }
+
+    public void shutdown() {
+        scheduler.shutdown();
+        log.info("准入控制已关闭: {}", snapshotAndReset());
+    }
+
+    /**
+     * 清理长时间未使用的令牌桶
+     */
+    private void sweep() {
+        long now = System.nanoTime();
+        ipBuckets.values().removeIf(bucket -> bucket.isIdle(now));
+        userLimiters.values().removeIf(limiter -> {
+            if (limiter.isIdle(now)) {
+                limiter.evicted = true;
+                return true;
+            }
+            return false;
+        });
+    }
+
+    private static TokenBucket newBucket(ImBootstrapConfig.RateLimit limit) {
+        // 未配置突发容量时取一秒的令牌数
+        int burst = limit.getBurst() != null ? limit.getBurst() : limit.getRatePerSecond();
+        return new TokenBucket(limit.getRatePerSecond(), burst);
+    }
+
+    private static boolean enabled(ImBootstrapConfig.RateLimit limit) {
+        return limit != null && limit.getRatePerSecond() != null && limit.getRatePerSecond() > 0;
+    }
+}
@@ -0,0 +1,56 @@
+package com.pd.im.tcp.handler;
+
+import com.pd.im.codec.proto.Message;
+import com.pd.im.tcp.session.ConnectionSession;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.ReferenceCountUtil;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 消息准入处理器
+ * <p>
+ * 放在 {@link NettyServerHandler} 之前，登录后的每条命令先经过单用户和单用户按命令的令牌桶，
+ * 超限的命令直接丢弃，不再占用 EventLoop、MQ 和业务层的处理能力；客户端按 ACK 超时重发。
+ * 未登录的连接只会发送登录命令，由建连速率限制兜底。
+ * <p>
+ * 字段只在连接所属的 EventLoop 上读写
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+@Slf4j
+public class AdmissionControlHandler extends ChannelInboundHandlerAdapter {
+
+    private final AdmissionControl admissionControl;
+    private AdmissionControl.UserLimiter limiter;
+
+    public AdmissionControlHandler(AdmissionControl admissionControl) {
+        this.admissionControl = admissionControl;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        if (msg instanceof Message && !admit(ctx, (Message) msg)) {
+            log.debug("命令速率超限，丢弃消息: channel={}, command={}",
+                    ctx.channel(), ((Message) msg).getMessageHeader().getCommand());
+            ReferenceCountUtil.release(msg);
+            return;
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    private boolean admit(ChannelHandlerContext ctx, Message msg) {
+        if (limiter == null || limiter.isEvicted()) {
+            ConnectionSession session = ConnectionSession.get(ctx.channel());
+            if (session == null) {
+                return true;
+            }
+            limiter = admissionControl.limiterOf(session);
+            if (limiter == null) {
+                return true;
+            }
+        }
+        return limiter.tryAcquire(msg.getMessageHeader().getCommand());
+    }
+}
@@ -0,0 +1,166 @@
+package com.pd.im.tcp.handler;
+
+import com.pd.im.codec.config.ImBootstrapConfig;
+import com.pd.im.tcp.session.ConnectionSession;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 出站 flush 合并处理器
+ * <p>
+ * 放在 pipeline 最前面，拦截所有出站 flush：同一连接在一次事件循环内的多次 writeAndFlush 合并为一次写出，
+ * 群聊消息密集下发时不再每条消息一次 write 系统调用。满足任一条件立即写出：
+ * - 累计 flush 次数达到 maxWrites
+ * - 距第一次未写出的 flush 超过 maxDelayMicros
+ * - 入站读取完成（读取期间产生的应答随 channelReadComplete 一起写出）
+ * 否则向 EventLoop 提交一次写出任务，在当前已排队的任务执行完后写出。
+ * <p>
+ * 策略按登录后的 clientType 取 clientFlushPolicies，未登录或未配置时使用默认策略，单个策略中未配置的字段沿用默认值。字段只在连接所属的 EventLoop 上读写
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+public class FlushCoalescingHandler extends ChannelDuplexHandler {
+
+    private final ImBootstrapConfig.FlushPolicy defaultPolicy;
+    private final Map<Integer, ImBootstrapConfig.FlushPolicy> clientPolicies;
+
+    /**
+     * 登录后按 clientType 确定的策略
+     */
+    private ImBootstrapConfig.FlushPolicy sessionPolicy;
+    private ChannelHandlerContext ctx;
+    private boolean readInProgress;
+    private boolean flushScheduled;
+    private int pendingFlushes;
+    private long firstPendingNanos;
+
+    private final Runnable flushTask = () -> {
+        flushScheduled = false;
+        if (!readInProgress) {
+            flushIfNeeded();
+        }
+    };
+
+    public FlushCoalescingHandler(ImBootstrapConfig.TcpConfig config) {
+        this.defaultPolicy = ImBootstrapConfig.FlushPolicy.builder()
+                .maxWrites(config.getFlushMaxWrites())
+                .maxDelayMicros(config.getFlushMaxDelayMicros())
+                .build();
+        this.clientPolicies = withDefaults(config.getClientFlushPolicies(), defaultPolicy);
+    }
+
+    /**
+     * 补齐按客户端类型配置的策略中未配置的字段，未配置的字段沿用默认策略
+     */
+    private static Map<Integer, ImBootstrapConfig.FlushPolicy> withDefaults(
+            Map<Integer, ImBootstrapConfig.FlushPolicy> policies, ImBootstrapConfig.FlushPolicy defaultPolicy) {
+        if (policies == null || policies.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<Integer, ImBootstrapConfig.FlushPolicy> resolved = new HashMap<>();
+        policies.forEach((clientType, policy) -> resolved.put(clientType, ImBootstrapConfig.FlushPolicy.builder()
+                .maxWrites(policy != null && policy.getMaxWrites() != null
+                        ? policy.getMaxWrites() : defaultPolicy.getMaxWrites())
+                .maxDelayMicros(policy != null && policy.getMaxDelayMicros() != null
+                        ? policy.getMaxDelayMicros() : defaultPolicy.getMaxDelayMicros())
+                .build()));
+        return resolved;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) {
+        if (pendingFlushes++ == 0) {
+            firstPendingNanos = System.nanoTime();
+        }
+        ImBootstrapConfig.FlushPolicy policy = policy();
+        if (pendingFlushes >= policy.getMaxWrites()
+                || System.nanoTime() - firstPendingNanos >= TimeUnit.MICROSECONDS.toNanos(policy.getMaxDelayMicros())) {
+            flushNow();
+            return;
+        }
+        if (!readInProgress && !flushScheduled) {
+            flushScheduled = true;
+            ctx.channel().eventLoop().execute(flushTask);
+        }
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        readInProgress = true;
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) {
+        readInProgress = false;
+        flushIfNeeded();
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+        if (!ctx.channel().isWritable()) {
+            // 出站缓冲已到高水位，尽快写出腾出空间
+            flushIfNeeded();
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        flushIfNeeded();
+        ctx.fireExceptionCaught(cause);
+    }
+
+    @Override
+    public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) {
+        flushIfNeeded();
+        ctx.disconnect(promise);
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) {
+        flushIfNeeded();
+        ctx.close(promise);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        flushIfNeeded();
+    }
+
+    private ImBootstrapConfig.FlushPolicy policy() {
+        if (sessionPolicy != null) {
+            return sessionPolicy;
+        }
+        ConnectionSession session = ConnectionSession.get(ctx.channel());
+        if (session == null) {
+            return defaultPolicy;
+        }
+        sessionPolicy = clientPolicies.getOrDefault(session.getClientType(), defaultPolicy);
+        return sessionPolicy;
+    }
+
+    private void flushIfNeeded() {
+        if (pendingFlushes > 0) {
+            flushNow();
+        }
+    }
+
+    private void flushNow() {
+        pendingFlushes = 0;
+        ctx.flush();
+    }
+}
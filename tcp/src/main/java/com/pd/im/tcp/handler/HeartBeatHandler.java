@@ -1,52 +1,71 @@
 package com.pd.im.tcp.handler;
 
-import com.pd.im.common.constant.Constants;
-import com.pd.im.tcp.utils.UserChannelRepository;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
-import io.netty.handler.timeout.IdleState;
-import io.netty.handler.timeout.IdleStateEvent;
-import io.netty.util.AttributeKey;
 import lombok.extern.slf4j.Slf4j;
 
 /**
+ * 连接心跳处理器
+ * <p>
+ * 放在入站处理器的最前面，任何入站数据都刷新最后读取时间，超时检测由 {@link HeartBeatManager} 的时间轮统一完成。
+ * 字段只在连接所属的 EventLoop 上读写
+ *
  * @author Parker
  * @date 12/3/25
  */
 @Slf4j
 public class HeartBeatHandler extends ChannelInboundHandlerAdapter {
-    private Long heartBeatTime;
+    private final HeartBeatManager heartBeatManager;
+    private Channel channel;
 
-    public HeartBeatHandler(Long heartBeatTime) {
-        this.heartBeatTime = heartBeatTime;
+    /**
+     * 最后一次读取到数据的时间（毫秒）
+     */
+    private long lastReadTime;
+
+    /**
+     * 当前所在的时间轮槽位，-1 表示不在时间轮中
+     */
+    private int slot = -1;
+
+    public HeartBeatHandler(HeartBeatManager heartBeatManager) {
+        this.heartBeatManager = heartBeatManager;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        this.channel = ctx.channel();
+        this.lastReadTime = System.currentTimeMillis();
+        heartBeatManager.register(this);
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        lastReadTime = System.currentTimeMillis();
+        super.channelRead(ctx, msg);
     }
 
     @Override
-    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
-        // 判断 evt 是否是 IdleStateEvent (用于触发用户事件，包含 读空闲/写空闲/读写空闲)
-        if (evt instanceof IdleStateEvent) {
-            IdleStateEvent event = (IdleStateEvent) evt;
-
-            if (event.state() == IdleState.READER_IDLE) {
-                log.debug("进入读空闲: {}", ctx.channel().remoteAddress());
-            } else if (event.state() == IdleState.WRITER_IDLE) {
-                log.debug("进入写空闲: {}", ctx.channel().remoteAddress());
-            } else if (event.state() == IdleState.ALL_IDLE) {
-                // 检查心跳超时
-                Long lastReadTime = (Long) ctx.channel()
-                        .attr(AttributeKey.valueOf(Constants.ChannelConstants.READ_TIME))
-                        .get();
-                long nowTime = System.currentTimeMillis();
-
-                if (lastReadTime != null && nowTime - lastReadTime > heartBeatTime) {
-                    // 心跳超时，用户离线（保留Session）
-                    log.warn("心跳超时，用户离线: channel={}, 超时时长={}ms",
-                            ctx.channel().remoteAddress(), nowTime - lastReadTime);
-                    UserChannelRepository.setOffline(ctx.channel());
-                } else {
-                    log.debug("读写空闲但心跳未超时: channel={}", ctx.channel().remoteAddress());
-                }
-            }
-        }
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        heartBeatManager.unregister(this);
+        super.channelInactive(ctx);
+    }
+
+    Channel channel() {
+        return channel;
+    }
+
+    long getLastReadTime() {
+        return lastReadTime;
+    }
+
+    int getSlot() {
+        return slot;
+    }
+
+    void setSlot(int slot) {
+        this.slot = slot;
     }
 }
@@ -0,0 +1,200 @@
+package com.pd.im.tcp.handler;
+
+import com.pd.im.tcp.session.ConnectionSession;
+import com.pd.im.tcp.utils.UserChannelRepository;
+import io.netty.channel.EventLoop;
+import io.netty.util.concurrent.ScheduledFuture;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 网关心跳管理器
+ * <p>
+ * TCP 与 WebSocket 共用，替代每个连接一个 IdleStateHandler 定时任务的方式：
+ * - 每个 EventLoop 一个哈希时间轮，连接按心跳截止时间向上取整的 tick 落入对应槽位，
+ * 槽位被扫描时其中连接的截止时间都已过，不会有未到期的连接在原槽位多等一整圈
+ * - 每个 EventLoop 只有一个定时任务，每次 tick 只检查到期的槽位
+ * - 连接的最后读取时间保存在 {@link HeartBeatHandler} 的基本类型字段中，只在所属 EventLoop 上读写，无需加锁
+ * - 到期槽位中仍有读取的连接重新按新的截止时间落槽，真正超时的连接批量离线
+ *
+ * @author Parker
+ * @date 12/5/25
+ */
+@Slf4j
+public class HeartBeatManager {
+
+    /**
+     * 心跳超时时间（毫秒）
+     */
+    private final long heartBeatTime;
+
+    /**
+     * 时间轮每个槽位的时间跨度（毫秒）
+     */
+    private final long tickMillis;
+
+    /**
+     * 时间轮槽位数，覆盖一个完整的心跳超时周期
+     */
+    private final int wheelSize;
+
+    private final Map<EventLoop, TimingWheel> wheels = new ConcurrentHashMap<>();
+
+    private volatile boolean shutdown;
+
+    public HeartBeatManager(long heartBeatTime, long tickMillis) {
+        this.heartBeatTime = heartBeatTime;
+        this.tickMillis = Math.max(1, tickMillis);
+        this.wheelSize = (int) (heartBeatTime / this.tickMillis) + 2;
+        log.info("心跳管理器初始化完成: heartBeatTime={}ms, tick={}ms, wheelSize={}",
+                heartBeatTime, this.tickMillis, wheelSize);
+    }
+
+    /**
+     * 注册连接，必须在连接所属的 EventLoop 上调用
+     *
+     * @param handler 连接的心跳处理器
+     */
+    void register(HeartBeatHandler handler) {
+        if (shutdown) {
+            return;
+        }
+        EventLoop eventLoop = handler.channel().eventLoop();
+        wheels.computeIfAbsent(eventLoop, TimingWheel::new).add(handler);
+    }
+
+    /**
+     * 注销连接，必须在连接所属的 EventLoop 上调用
+     *
+     * @param handler 连接的心跳处理器
+     */
+    void unregister(HeartBeatHandler handler) {
+        TimingWheel wheel = wheels.get(handler.channel().eventLoop());
+        if (wheel != null) {
+            wheel.remove(handler);
+        }
+    }
+
+    /**
+     * 停止所有时间轮
+     */
+    public void shutdown() {
+        shutdown = true;
+        for (TimingWheel wheel : wheels.values()) {
+            wheel.cancel();
+        }
+        wheels.clear();
+        log.info("心跳管理器已关闭");
+    }
+
+    /**
+     * 截止时间所在的 tick，向上取整：第 n 个 tick 开始时扫描的槽位只包含截止时间不晚于该时刻的连接
+     */
+    private long tickOf(long deadline) {
+        return (deadline + tickMillis - 1) / tickMillis;
+    }
+
+    private int slotOf(long deadline) {
+        return (int) (tickOf(deadline) % wheelSize);
+    }
+
+    /**
+     * 单个 EventLoop 的时间轮，所有方法都只在该 EventLoop 上执行
+     */
+    private final class TimingWheel implements Runnable {
+        private final Set<HeartBeatHandler>[] slots;
+        private final ScheduledFuture<?> future;
+        private long lastTick;
+
+        @SuppressWarnings("unchecked")
+        TimingWheel(EventLoop eventLoop) {
+            this.slots = new Set[wheelSize];
+            for (int i = 0; i < wheelSize; i++) {
+                slots[i] = new HashSet<>();
+            }
+            this.lastTick = System.currentTimeMillis() / tickMillis;
+            this.future = eventLoop.scheduleAtFixedRate(this, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        }
+
+        void add(HeartBeatHandler handler) {
+            // 截止时间落在已扫描过的 tick 时放入下一个待扫描的槽位，否则要等一整圈才会被检查
+            long tick = Math.max(tickOf(handler.getLastReadTime() + heartBeatTime), lastTick + 1);
+            int slot = (int) (tick % wheelSize);
+            slots[slot].add(handler);
+            handler.setSlot(slot);
+        }
+
+        void remove(HeartBeatHandler handler) {
+            int slot = handler.getSlot();
+            if (slot >= 0) {
+                slots[slot].remove(handler);
+                handler.setSlot(-1);
+            }
+        }
+
+        void cancel() {
+            future.cancel(false);
+        }
+
+        @Override
+        public void run() {
+            long now = System.currentTimeMillis();
+            long currentTick = now / tickMillis;
+            List<HeartBeatHandler> expired = null;
+            List<HeartBeatHandler> renewed = null;
+
+            // EventLoop 繁忙导致 tick 延迟时，补扫期间经过的所有槽位（最多一整圈）
+            long ticks = Math.min(currentTick - lastTick, wheelSize);
+            for (long i = 0; i < ticks; i++) {
+                int slot = (int) ((lastTick + 1 + i) % wheelSize);
+                Iterator<HeartBeatHandler> iterator = slots[slot].iterator();
+                while (iterator.hasNext()) {
+                    HeartBeatHandler handler = iterator.next();
+                    long deadline = handler.getLastReadTime() + heartBeatTime;
+                    if (deadline <= now) {
+                        iterator.remove();
+                        handler.setSlot(-1);
+                        if (expired == null) {
+                            expired = new ArrayList<>();
+                        }
+                        expired.add(handler);
+                    } else if (slotOf(deadline) != slot) {
+                        // 期间有读取，按新的截止时间重新落槽
+                        iterator.remove();
+                        if (renewed == null) {
+                            renewed = new ArrayList<>();
+                        }
+                        renewed.add(handler);
+                    }
+                }
+            }
+            lastTick = currentTick;
+
+            if (renewed != null) {
+                for (HeartBeatHandler handler : renewed) {
+                    add(handler);
+                }
+            }
+            if (expired != null) {
+                log.warn("心跳超时，批量离线: count={}", expired.size());
+                for (HeartBeatHandler handler : expired) {
+                    if (log.isDebugEnabled()) {
+                        ConnectionSession session = ConnectionSession.get(handler.channel());
+                        log.debug("心跳超时，用户离线: channel={}, userId={}, 超时时长={}ms",
+                                handler.channel().remoteAddress(), session != null ? session.getUserId() : null,
+                                now - handler.getLastReadTime());
+                    }
+                    UserChannelRepository.setOffline(handler.channel());
+                }
+            }
+        }
+    }
+}
@@ -1,16 +1,11 @@
 package com.pd.im.tcp.handler;
 
 import com.pd.im.codec.proto.Message;
-import com.pd.im.tcp.feign.FeignMessageService;
 import com.pd.im.tcp.rabbitmq.publish.MqMessageProducer;
 import com.pd.im.tcp.strategy.command.factory.CommandFactory;
 import com.pd.im.tcp.strategy.command.CommandStrategy;
 import com.pd.im.tcp.strategy.command.model.CommandContext;
 import com.pd.im.tcp.utils.UserChannelRepository;
-import feign.Feign;
-import feign.Request;
-import feign.jackson.JacksonDecoder;
-import feign.jackson.JacksonEncoder;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import lombok.extern.slf4j.Slf4j;
@@ -27,15 +22,11 @@ import lombok.extern.slf4j.Slf4j;
 public class NettyServerHandler extends SimpleChannelInboundHandler<Message> {
 
     private final Integer brokerId;
-    private final FeignMessageService feignMessageService;
+    private final int maxPendingChecks;
 
-    public NettyServerHandler(Integer brokerId, String logicUrl) {
+    public NettyServerHandler(Integer brokerId, int maxPendingChecks) {
         this.brokerId = brokerId;
-        this.feignMessageService = Feign.builder()
-                .encoder(new JacksonEncoder())
-                .decoder(new JacksonDecoder())
-                .options(new Request.Options(1000, 3500))
-                .target(FeignMessageService.class, logicUrl);
+        this.maxPendingChecks = maxPendingChecks;
     }
 
     @Override
@@ -51,7 +42,7 @@ public class NettyServerHandler extends SimpleChannelInboundHandler<Message> {
         } else {
             // 未注册的命令，直接转发到MQ
             log.debug("未找到命令策略，转发到MQ: command={}", command);
-            MqMessageProducer.sendMessage(msg, command);
+            MqMessageProducer.sendMessage(ctx.channel().eventLoop(), msg, command);
         }
     }
 
@@ -72,7 +63,7 @@ public class NettyServerHandler extends SimpleChannelInboundHandler<Message> {
         commandContext.setCtx(ctx);
         commandContext.setBrokeId(brokerId);
         commandContext.setMsg(msg);
-        commandContext.setFeignMessageService(feignMessageService);
+        commandContext.setMaxPendingChecks(maxPendingChecks);
         return commandContext;
     }
 
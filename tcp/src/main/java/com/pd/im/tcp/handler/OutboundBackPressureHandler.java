@@ -0,0 +1,223 @@
+package com.pd.im.tcp.handler;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.ScheduledFuture;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 出站背压处理器
+ * <p>
+ * 放在 pipeline 最后面，出站消息在编码前经过这里。连接超过写缓冲高水位（Channel 不可写）后，
+ * 新的出站消息进入有界的待发送队列，不再无限堆积在 Netty 出站缓冲中；恢复可写后按顺序写出。
+ * 队列溢出时按 {@link SlowConsumerPolicy} 处理，持续不可写超过 evictAfterMillis 的连接直接断开，
+ * 客户端重连后通过离线消息同步补齐。
+ * <p>
+ * 字段只在连接所属的 EventLoop 上读写
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+@Slf4j
+public class OutboundBackPressureHandler extends ChannelDuplexHandler {
+
+    private static final IllegalStateException DROPPED = new IllegalStateException("慢连接出站队列已满，消息被丢弃");
+
+    static {
+        DROPPED.setStackTrace(new StackTraceElement[0]);
+    }
+
+    private final SlowConsumerMonitor monitor;
+    private final ArrayDeque<PendingWrite> pending = new ArrayDeque<>();
+
+    /**
+     * 离线同步模式：恢复可写并清空队列前丢弃所有新的推送
+     */
+    private boolean offline;
+    private boolean slow;
+    private ScheduledFuture<?> evictTask;
+
+    public OutboundBackPressureHandler(SlowConsumerMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        if (offline) {
+            drop(msg, promise);
+            return;
+        }
+        if (!pending.isEmpty() && ctx.channel().isWritable()) {
+            drain(ctx);
+        }
+        if (pending.isEmpty() && ctx.channel().isWritable()) {
+            ctx.write(msg, promise);
+            return;
+        }
+        if (pending.size() >= monitor.getMaxPending() && !overflow(ctx, msg, promise)) {
+            return;
+        }
+        pending.addLast(new PendingWrite(msg, promise));
+        monitor.recordQueued();
+    }
+
+    /**
+     * 待发送队列是否为空，在连接所属的 EventLoop 上调用
+     *
+     * @return 为空返回 true
+     */
+    public boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+        if (ctx.channel().isWritable()) {
+            if (slow) {
+                slow = false;
+                monitor.recordWritable();
+                cancelEvict();
+            }
+            drain(ctx);
+            if (pending.isEmpty()) {
+                offline = false;
+            }
+        } else if (!slow) {
+            slow = true;
+            monitor.recordUnwritable();
+            scheduleEvict(ctx);
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        release();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        release();
+    }
+
+    /**
+     * 待发送队列已满
+     *
+     * @return 新消息仍需入队返回 true
+     */
+    private boolean overflow(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        switch (monitor.getPolicy()) {
+            case DISCONNECT:
+                drop(msg, promise);
+                log.warn("慢连接出站队列溢出，断开连接: channel={}, pending={}", ctx.channel(), pending.size());
+                monitor.recordEvicted();
+                ctx.close();
+                return false;
+            case SAMPLE:
+                if (monitor.isLowPriority(msg)) {
+                    monitor.recordSampled();
+                    drop(msg, promise);
+                    return false;
+                }
+                if (dropOldestLowPriority()) {
+                    return true;
+                }
+                // 队列中全是普通消息，按离线同步模式处理
+            case OFFLINE:
+            default:
+                drop(msg, promise);
+                dropAll();
+                offline = true;
+                log.warn("慢连接出站队列溢出，进入离线同步模式: channel={}", ctx.channel());
+                return false;
+        }
+    }
+
+    private boolean dropOldestLowPriority() {
+        Iterator<PendingWrite> iterator = pending.iterator();
+        while (iterator.hasNext()) {
+            PendingWrite write = iterator.next();
+            if (monitor.isLowPriority(write.msg)) {
+                iterator.remove();
+                monitor.recordSampled();
+                drop(write.msg, write.promise);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void drain(ChannelHandlerContext ctx) {
+        boolean written = false;
+        while (!pending.isEmpty() && ctx.channel().isWritable()) {
+            PendingWrite write = pending.pollFirst();
+            ctx.write(write.msg, write.promise);
+            written = true;
+        }
+        if (written) {
+            ctx.flush();
+        }
+    }
+
+    private void scheduleEvict(ChannelHandlerContext ctx) {
+        long evictAfterMillis = monitor.getEvictAfterMillis();
+        if (evictAfterMillis <= 0) {
+            return;
+        }
+        evictTask = ctx.executor().schedule(() -> {
+            evictTask = null;
+            if (!ctx.channel().isWritable()) {
+                log.warn("连接持续不可写超过 {}ms，断开慢连接: channel={}, pending={}",
+                        evictAfterMillis, ctx.channel(), pending.size());
+                monitor.recordEvicted();
+                ctx.close();
+            }
+        }, evictAfterMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelEvict() {
+        if (evictTask != null) {
+            evictTask.cancel(false);
+            evictTask = null;
+        }
+    }
+
+    private void release() {
+        dropAll();
+        cancelEvict();
+        if (slow) {
+            slow = false;
+            monitor.recordWritable();
+        }
+    }
+
+    private void dropAll() {
+        PendingWrite write;
+        while ((write = pending.pollFirst()) != null) {
+            drop(write.msg, write.promise);
+        }
+    }
+
+    private void drop(Object msg, ChannelPromise promise) {
+        monitor.recordDropped();
+        ReferenceCountUtil.release(msg);
+        promise.tryFailure(DROPPED);
+    }
+
+    private static final class PendingWrite {
+        private final Object msg;
+        private final ChannelPromise promise;
+
+        private PendingWrite(Object msg, ChannelPromise promise) {
+            this.msg = msg;
+            this.promise = promise;
+        }
+    }
+}
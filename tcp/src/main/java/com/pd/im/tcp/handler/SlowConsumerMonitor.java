@@ -0,0 +1,168 @@
+package com.pd.im.tcp.handler;
+
+import com.pd.im.codec.config.ImBootstrapConfig;
+import com.pd.im.codec.proto.EncodedFrame;
+import com.pd.im.codec.proto.MessagePack;
+import com.pd.im.common.enums.command.FriendshipEventCommand;
+import com.pd.im.common.enums.command.GroupEventCommand;
+import com.pd.im.common.enums.command.MessageCommand;
+import com.pd.im.common.enums.command.UserEventCommand;
+import io.netty.buffer.ByteBuf;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 慢连接监控
+ * <p>
+ * 保存 {@link OutboundBackPressureHandler} 共用的出站限制配置，并汇总所有连接的慢连接指标：
+ * - unwritable：连接超过写缓冲高水位的次数
+ * - queued / dropped / sampled：进入待发送队列、溢出丢弃、按低优先级丢弃的消息数
+ * - evicted：不可写超时被断开的连接数
+ * - slowConsumers：当前处于不可写状态的连接数
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+@Slf4j
+public class SlowConsumerMonitor {
+
+    /**
+     * 低优先级通知：丢弃后只影响状态展示，不影响消息本身
+     */
+    private static final Set<Integer> LOW_PRIORITY_COMMANDS = new HashSet<>();
+
+    static {
+        LOW_PRIORITY_COMMANDS.add(MessageCommand.MSG_READ_NOTIFY.getCommand());
+        LOW_PRIORITY_COMMANDS.add(MessageCommand.MSG_READ_RECEIPT.getCommand());
+        LOW_PRIORITY_COMMANDS.add(GroupEventCommand.MSG_GROUP_READ_NOTIFY.getCommand());
+        LOW_PRIORITY_COMMANDS.add(GroupEventCommand.MSG_GROUP_READ_RECEIPT.getCommand());
+        LOW_PRIORITY_COMMANDS.add(UserEventCommand.USER_ONLINE_STATUS_CHANGE_NOTIFY.getCommand());
+        LOW_PRIORITY_COMMANDS.add(UserEventCommand.USER_ONLINE_STATUS_CHANGE_NOTIFY_SYNC.getCommand());
+        LOW_PRIORITY_COMMANDS.add(FriendshipEventCommand.FRIEND_REQUEST_READ.getCommand());
+    }
+
+    private static volatile SlowConsumerMonitor instance;
+
+    /**
+     * 连接不可写期间待发送队列的上限
+     */
+    @Getter
+    private final int maxPending;
+    /**
+     * 待发送队列溢出策略
+     */
+    @Getter
+    private final SlowConsumerPolicy policy;
+    /**
+     * 连接持续不可写超过该时间后断开（毫秒），0 表示不断开
+     */
+    @Getter
+    private final long evictAfterMillis;
+
+    private final LongAdder unwritable = new LongAdder();
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder sampled = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder slowConsumers = new LongAdder();
+    private final ScheduledExecutorService scheduler;
+
+    private SlowConsumerMonitor(ImBootstrapConfig.TcpConfig config) {
+        this.maxPending = Math.max(1, config.getOutboundMaxPending());
+        this.policy = SlowConsumerPolicy.of(config.getSlowConsumerPolicy());
+        this.evictAfterMillis = Math.max(0, config.getSlowConsumerEvictMillis());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("im-slow-consumer", true));
+
+        Integer metricsInterval = config.getMqMetricsIntervalSeconds();
+        if (metricsInterval != null && metricsInterval > 0) {
+            scheduler.scheduleAtFixedRate(() -> log.info("慢连接指标: {}", snapshotAndReset()),
+                    metricsInterval, metricsInterval, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 初始化慢连接监控，需在网络服务器启动之前调用
+     *
+     * @param config 配置
+     */
+    public static void init(ImBootstrapConfig.TcpConfig config) {
+        instance = new SlowConsumerMonitor(config);
+        log.info("慢连接监控初始化完成: maxPending={}, policy={}, evictAfter={}ms",
+                instance.maxPending, instance.policy, instance.evictAfterMillis);
+    }
+
+    public static SlowConsumerMonitor getInstance() {
+        return instance;
+    }
+
+    /**
+     * 是否为低优先级通知
+     *
+     * @param msg 出站消息
+     * @return 低优先级返回 true
+     */
+    public boolean isLowPriority(Object msg) {
+        if (msg instanceof MessagePack) {
+            Integer command = ((MessagePack) msg).getCommand();
+            return command != null && LOW_PRIORITY_COMMANDS.contains(command);
+        }
+        if (msg instanceof EncodedFrame) {
+            // 预编码帧以 command 开头
+            ByteBuf frame = ((EncodedFrame) msg).content();
+            return frame.readableBytes() >= 4 && LOW_PRIORITY_COMMANDS.contains(frame.getInt(frame.readerIndex()));
+        }
+        return false;
+    }
+
+    void recordUnwritable() {
+        unwritable.increment();
+        slowConsumers.increment();
+    }
+
+    void recordWritable() {
+        slowConsumers.decrement();
+    }
+
+    void recordQueued() {
+        queued.increment();
+    }
+
+    void recordDropped() {
+        dropped.increment();
+    }
+
+    void recordSampled() {
+        sampled.increment();
+    }
+
+    void recordEvicted() {
+        evicted.increment();
+    }
+
+    /**
+     * 输出本周期指标并重置周期计数，slowConsumers 为当前值不重置
+     *
+     * @return 指标描述
+     */
+    public String snapshotAndReset() {
+        return "unwritable=" + unwritable.sumThenReset()
+                + ", queued=" + queued.sumThenReset()
+                + ", dropped=" + dropped.sumThenReset()
+                + ", sampled=" + sampled.sumThenReset()
+                + ", evicted=" + evicted.sumThenReset()
+                + ", slowConsumers=" + slowConsumers.sum();
+    }
+
+    public void shutdown() {
+        scheduler.shutdown();
+        log.info("慢连接监控已关闭: {}", snapshotAndReset());
+    }
+}
@@ -0,0 +1,38 @@
+package com.pd.im.tcp.handler;
+
+/**
+ * 慢连接出站队列溢出策略
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+public enum SlowConsumerPolicy {
+    /**
+     * 断开连接，客户端重连后通过离线消息同步补齐
+     */
+    DISCONNECT,
+    /**
+     * 进入离线同步模式：恢复可写前丢弃新的推送，客户端通过离线消息同步补齐
+     */
+    OFFLINE,
+    /**
+     * 优先丢弃低优先级通知（已读回执、在线状态变更等），队列中没有低优先级通知时按 OFFLINE 处理
+     */
+    SAMPLE,
+    ;
+
+    /**
+     * 按名称解析策略
+     *
+     * @param name 策略名称，忽略大小写
+     * @return 策略，无法识别时返回 SAMPLE
+     */
+    public static SlowConsumerPolicy of(String name) {
+        for (SlowConsumerPolicy policy : values()) {
+            if (policy.name().equalsIgnoreCase(name)) {
+                return policy;
+            }
+        }
+        return SAMPLE;
+    }
+}
@@ -97,6 +97,18 @@ public class MqFactory {
         return channel;
     }
 
+    /**
+     * 创建一个不进入缓存池的新Channel
+     * <p>
+     * 由调用方独占并负责关闭，用于发布确认等需要单线程持有的场景
+     *
+     * @return RabbitMQ Channel
+     * @throws IOException 创建失败
+     */
+    public static Channel createChannel() throws IOException {
+        return getConnection().createChannel();
+    }
+
     /**
      * 创建Exchange（如果不存在）
      */
@@ -106,6 +118,8 @@ public class MqFactory {
             channel = getConnection().createChannel();
             channel.exchangeDeclare(Constants.RabbitmqConstants.MESSAGE_SERVICE_TO_IM, "direct", true);
             log.info("Exchange创建成功: {}", Constants.RabbitmqConstants.MESSAGE_SERVICE_TO_IM);
+            channel.exchangeDeclare(Constants.RabbitmqConstants.PERMISSION_CHANGE_TO_IM, "fanout", true);
+            log.info("Exchange创建成功: {}", Constants.RabbitmqConstants.PERMISSION_CHANGE_TO_IM);
         } catch (IOException e) {
             log.error("创建Exchange失败", e);
             throw new RuntimeException("无法创建Exchange", e);
@@ -1,8 +1,22 @@
 package com.pd.im.tcp.rabbitmq.process;
 
+import com.pd.im.codec.proto.DownlinkEnvelope;
+import com.pd.im.codec.proto.EncodedFrame;
+import com.pd.im.codec.proto.FanoutEnvelope;
 import com.pd.im.codec.proto.MessagePack;
+import com.pd.im.tcp.session.ConnectionSession;
+import com.pd.im.tcp.session.LocalDeliveryDedupe;
 import com.pd.im.tcp.utils.UserChannelRepository;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.ReferenceCountUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * @author Parker
@@ -10,17 +24,136 @@ import io.netty.channel.Channel;
  */
 public abstract class BaseProcess {
 
-    public void process(MessagePack messagePack) {
+    /**
+     * 处理业务层下发的 JSON 消息
+     *
+     * @param messagePack 消息
+     * @return 写出结果，目标连接不可投递时返回 null
+     */
+    public ChannelFuture process(MessagePack messagePack) {
         processBefore();
 
+        ChannelFuture future = null;
         Channel userChannel = UserChannelRepository.getUserChannel(messagePack.getAppId(),
                 messagePack.getToId(), messagePack.getClientType(), messagePack.getImei());
-        if (userChannel != null) {
+        if (isDeliverable(userChannel)) {
             // 数据通道写入消息内容
-            userChannel.writeAndFlush(messagePack);
+            future = handOff(userChannel, messagePack, messagePack.getMessageId());
         }
 
         processAfter();
+        return future;
+    }
+
+    /**
+     * 处理业务层下发的二进制信封
+     * <p>
+     * 客户端帧已由业务层编码，直接写入目标 Channel，不做 JSON 解析和重新序列化
+     *
+     * @param envelope 下行消息信封
+     * @return 写出结果，目标连接不可投递时返回 null
+     */
+    public ChannelFuture process(DownlinkEnvelope envelope) {
+        processBefore();
+
+        ChannelFuture future = null;
+        Channel userChannel = UserChannelRepository.getUserChannel(envelope.getAppId(),
+                envelope.getToId(), envelope.getClientType(), envelope.getImei());
+        if (isDeliverable(userChannel)) {
+            // 数据通道写入已编码的客户端帧，写出后由 Netty 释放
+            future = handOff(userChannel, new EncodedFrame(envelope.getFrame()), envelope.getMessageId());
+        } else {
+            envelope.getFrame().release();
+        }
+
+        processAfter();
+        return future;
+    }
+
+    /**
+     * 处理业务层下发的扇出信封
+     * <p>
+     * 按本地连接注册表展开到每个接收方在本网关上的所有设备。投递给多个连接时，客户端帧先拷贝到一块直接内存，
+     * 各连接共享同一块内存写出，不再各自从堆内存拷贝
+     *
+     * @param envelope 扇出信封
+     * @return 每个投递连接的写出结果，没有可投递的连接时为空
+     */
+    public List<ChannelFuture> process(FanoutEnvelope envelope) {
+        processBefore();
+
+        List<Channel> channels = new ArrayList<>();
+        for (String userId : envelope.getUserIds()) {
+            for (Channel userChannel : UserChannelRepository.getUserChannels(envelope.getAppId(), userId)) {
+                if (isDeliverable(userChannel)) {
+                    channels.add(userChannel);
+                }
+            }
+        }
+
+        List<ChannelFuture> futures;
+        ByteBuf frame = envelope.getFrame();
+        if (channels.isEmpty()) {
+            frame.release();
+            futures = Collections.emptyList();
+        } else if (channels.size() == 1) {
+            futures = Collections.singletonList(handOff(channels.get(0), new EncodedFrame(frame), null));
+        } else {
+            // 使用连接上配置的分配器，与连接自身的出站缓冲共用同一个内存池
+            ByteBuf shared = channels.get(0).alloc().directBuffer(frame.readableBytes());
+            shared.writeBytes(frame);
+            frame.release();
+            futures = new ArrayList<>(channels.size());
+            for (Channel userChannel : channels) {
+                futures.add(handOff(userChannel, new EncodedFrame(shared.retainedDuplicate()), null));
+            }
+            shared.release();
+        }
+
+        processAfter();
+        return futures;
+    }
+
+    /**
+     * 把写出交给目标连接所属的 EventLoop
+     * <p>
+     * 同一个消费者投递的消息按到达顺序进入 EventLoop 任务队列，连接内的下发顺序不变；
+     * 消费者线程只做路由查找，编码和写出都在 EventLoop 上完成。
+     * 携带 messageId 且该消息已由发送方网关直投给该连接时，丢弃消息并视为写出成功
+     *
+     * @param userChannel 目标连接
+     * @param msg         待写出的消息
+     * @param messageId   去重键，为空时不去重
+     * @return 写出结果
+     */
+    private ChannelFuture handOff(Channel userChannel, Object msg, String messageId) {
+        ChannelPromise promise = userChannel.newPromise();
+        try {
+            userChannel.eventLoop().execute(() -> {
+                if (LocalDeliveryDedupe.consume(userChannel, messageId)) {
+                    ReferenceCountUtil.release(msg);
+                    promise.trySuccess();
+                    return;
+                }
+                userChannel.writeAndFlush(msg, promise);
+            });
+        } catch (RejectedExecutionException e) {
+            // EventLoop 已关闭
+            ReferenceCountUtil.release(msg);
+            promise.tryFailure(e);
+        }
+        return promise;
+    }
+
+    /**
+     * 目标连接是否可以投递：已登录且未进入关闭流程
+     */
+    private boolean isDeliverable(Channel userChannel) {
+        if (userChannel == null) {
+            return false;
+        }
+        ConnectionSession session = ConnectionSession.get(userChannel);
+        return session != null && !session.isClosing();
     }
 
     /**
@@ -0,0 +1,214 @@
+package com.pd.im.tcp.rabbitmq.process;
+
+import com.pd.im.codec.config.ImBootstrapConfig;
+import com.pd.im.codec.proto.BroadcastEnvelope;
+import com.pd.im.codec.proto.EncodedFrame;
+import com.pd.im.tcp.session.ConnectionSession;
+import com.pd.im.tcp.utils.UserChannelRepository;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 广播下发
+ * <p>
+ * 业务层的广播信封每个网关只收到一条，由本类遍历本地连接注册表写给所有满足过滤条件的已登录连接：
+ * - 客户端帧拷贝到一块直接内存，所有连接共享同一块内存写出，内存从连接使用的分配器中分配
+ * - 按 broadcastBatchSize 条一批、每隔 broadcastBatchIntervalMillis 写出一批，同一批内按 EventLoop 分组，
+ * 每个 EventLoop 只提交一个任务，避免一次性向 EventLoop 塞入数十万个写任务
+ * - 多条广播按到达顺序逐条下发，所有状态只在调度线程上访问
+ * - 广播开始时对连接注册表取快照，下发期间新登录的连接收不到
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+@Slf4j
+public class BroadcastDispatcher {
+
+    private static volatile BroadcastDispatcher instance;
+
+    private final int batchSize;
+    private final long batchIntervalMillis;
+    private final ByteBufAllocator allocator;
+    private final ScheduledExecutorService scheduler;
+
+    private final ArrayDeque<Broadcast> pending = new ArrayDeque<>();
+    private Broadcast current;
+
+    /**
+     * 尚未释放共享帧的广播，停止时由调用线程统一释放
+     */
+    private final Set<Broadcast> unreleased = ConcurrentHashMap.newKeySet();
+
+    private BroadcastDispatcher(ImBootstrapConfig.TcpConfig config, ByteBufAllocator allocator) {
+        this.batchSize = Math.max(1, config.getBroadcastBatchSize());
+        this.batchIntervalMillis = Math.max(1, config.getBroadcastBatchIntervalMillis());
+        this.allocator = allocator;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("im-broadcast", true));
+    }
+
+    /**
+     * 初始化广播下发，需在下行队列开始消费之前调用
+     *
+     * @param config    配置
+     * @param allocator 子连接使用的分配器，共享帧从中分配
+     */
+    public static void init(ImBootstrapConfig.TcpConfig config, ByteBufAllocator allocator) {
+        instance = new BroadcastDispatcher(config, allocator);
+        log.info("广播下发初始化完成: batchSize={}, batchInterval={}ms",
+                instance.batchSize, instance.batchIntervalMillis);
+    }
+
+    public static BroadcastDispatcher getInstance() {
+        return instance;
+    }
+
+    /**
+     * 提交一条广播，立即返回，由调度线程分批写出
+     *
+     * @param envelope 广播信封，客户端帧由本方法接管释放
+     */
+    public void submit(BroadcastEnvelope envelope) {
+        ByteBuf frame = envelope.getFrame();
+        ByteBuf shared = allocator.directBuffer(frame.readableBytes());
+        shared.writeBytes(frame);
+        frame.release();
+        Broadcast broadcast = new Broadcast(envelope, shared);
+        unreleased.add(broadcast);
+        try {
+            scheduler.execute(() -> {
+                pending.add(broadcast);
+                if (current == null) {
+                    startNext();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            release(broadcast);
+            log.warn("广播下发已关闭，丢弃广播: appId={}, command={}", envelope.getAppId(), envelope.getCommand());
+        }
+    }
+
+    /**
+     * 停止广播下发，未写完的广播直接丢弃并释放共享帧
+     */
+    public void shutdown() {
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        unreleased.forEach(this::release);
+    }
+
+    private void startNext() {
+        current = pending.poll();
+        if (current == null) {
+            return;
+        }
+        current.startNanos = System.nanoTime();
+        writeBatch();
+    }
+
+    /**
+     * 写出一批连接，任何异常都结束当前广播并继续下发后续广播，不会使调度停滞
+     */
+    private void writeBatch() {
+        Broadcast broadcast = current;
+        try {
+            if (broadcast.channels == null) {
+                broadcast.channels = UserChannelRepository.getAllChannels();
+            }
+            Map<EventLoop, List<Channel>> batch = new HashMap<>();
+            int written = 0;
+            while (written < batchSize && broadcast.position < broadcast.channels.size()) {
+                Channel channel = broadcast.channels.get(broadcast.position++);
+                ConnectionSession session = ConnectionSession.get(channel);
+                if (session == null || session.isClosing()
+                        || !broadcast.envelope.matches(session.getAppId(), session.getClientType(), session.getUserId())) {
+                    continue;
+                }
+                batch.computeIfAbsent(channel.eventLoop(), k -> new ArrayList<>()).add(channel);
+                written++;
+            }
+            for (Map.Entry<EventLoop, List<Channel>> entry : batch.entrySet()) {
+                handOff(entry.getKey(), entry.getValue(), broadcast.frame);
+            }
+            broadcast.recipients += written;
+
+            if (broadcast.position < broadcast.channels.size()) {
+                scheduler.schedule(this::writeBatch, batchIntervalMillis, TimeUnit.MILLISECONDS);
+                return;
+            }
+            log.info("广播下发完成: appId={}, command={}, recipients={}, scanned={}, cost={}ms",
+                    broadcast.envelope.getAppId(), broadcast.envelope.getCommand(), broadcast.recipients,
+                    broadcast.channels.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - broadcast.startNanos));
+        } catch (Exception e) {
+            log.error("广播下发异常，放弃剩余连接: appId={}, command={}, recipients={}",
+                    broadcast.envelope.getAppId(), broadcast.envelope.getCommand(), broadcast.recipients, e);
+        }
+        release(broadcast);
+        current = null;
+        if (!scheduler.isShutdown()) {
+            startNext();
+        }
+    }
+
+    /**
+     * 释放广播的共享帧，每条广播只释放一次
+     */
+    private void release(Broadcast broadcast) {
+        if (unreleased.remove(broadcast)) {
+            broadcast.frame.release();
+        }
+    }
+
+    /**
+     * 在 EventLoop 上写出同一批连接，每个连接持有共享帧的一个引用
+     */
+    private static void handOff(EventLoop eventLoop, List<Channel> channels, ByteBuf frame) {
+        List<ByteBuf> duplicates = new ArrayList<>(channels.size());
+        for (int i = 0; i < channels.size(); i++) {
+            duplicates.add(frame.retainedDuplicate());
+        }
+        try {
+            eventLoop.execute(() -> {
+                for (int i = 0; i < channels.size(); i++) {
+                    channels.get(i).writeAndFlush(new EncodedFrame(duplicates.get(i)));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // EventLoop 已关闭，连接也随之关闭
+            duplicates.forEach(ByteBuf::release);
+        }
+    }
+
+    private static final class Broadcast {
+        private final BroadcastEnvelope envelope;
+        private final ByteBuf frame;
+        private List<Channel> channels;
+        private int position;
+        private int recipients;
+        private long startNanos;
+
+        private Broadcast(BroadcastEnvelope envelope, ByteBuf frame) {
+            this.envelope = envelope;
+            this.frame = frame;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.pd.im.tcp.rabbitmq.process;
+
+import com.alibaba.fastjson.JSONObject;
+import com.pd.im.codec.proto.MessagePack;
+import com.pd.im.common.model.UserClientDto;
+import com.pd.im.tcp.strategy.login.LoginKickRouter;
+import io.netty.channel.ChannelFuture;
+
+/**
+ * 多端登录踢出指令处理
+ * <p>
+ * 其他网关上的新设备登录后，按旧设备 Session 中的 brokerId 定向发来 MUTALOGIN 指令，
+ * 指令的 toId/clientType/imei 为本网关上的旧设备，data 为新登录的设备信息
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+public class KickProcess extends BaseProcess {
+
+    @Override
+    public ChannelFuture process(MessagePack messagePack) {
+        UserClientDto oldLogin = UserClientDto.builder()
+                .appId(messagePack.getAppId())
+                .userId(messagePack.getToId())
+                .clientType(messagePack.getClientType())
+                .imei(messagePack.getImei())
+                .build();
+        UserClientDto newLogin = JSONObject.toJavaObject((JSONObject) messagePack.getData(), UserClientDto.class);
+        LoginKickRouter.getInstance().kickLocal(oldLogin, newLogin);
+        return null;
+    }
+
+    @Override
+    public void processBefore() {
+
+    }
+
+    @Override
+    public void processAfter() {
+
+    }
+}
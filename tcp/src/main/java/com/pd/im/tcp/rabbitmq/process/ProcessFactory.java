@@ -1,5 +1,10 @@
 package com.pd.im.tcp.rabbitmq.process;
 
+import com.pd.im.common.enums.command.SystemCommand;
+
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * @author Parker
  * @date 12/5/25
@@ -7,6 +12,11 @@ package com.pd.im.tcp.rabbitmq.process;
 public class ProcessFactory {
     private static BaseProcess defaultProcess;
 
+    /**
+     * 需要网关自行处理（而不是直接写入客户端）的指令
+     */
+    private static final Map<Integer, BaseProcess> PROCESS_MAP = new HashMap<>();
+
     static {
         defaultProcess = new BaseProcess() {
             @Override
@@ -19,9 +29,10 @@ public class ProcessFactory {
 
             }
         };
+        PROCESS_MAP.put(SystemCommand.MUTALOGIN.getCommand(), new KickProcess());
     }
 
     public static BaseProcess getMessageProcess(Integer command) {
-        return defaultProcess;
+        return PROCESS_MAP.getOrDefault(command, defaultProcess);
     }
 }
@@ -2,22 +2,39 @@ package com.pd.im.tcp.rabbitmq.publish;
 
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.MessageOrBuilder;
+import com.pd.im.codec.config.ImBootstrapConfig;
+import com.pd.im.codec.proto.ChatMessageRoute;
 import com.pd.im.codec.proto.Message;
 import com.pd.im.codec.proto.MessageHeader;
+import com.pd.im.codec.proto.MessagePack;
+import com.pd.im.codec.proto.generated.ChatMessagePack;
+import com.pd.im.codec.util.MessageCodecUtils;
 import com.pd.im.common.constant.Constants;
+import com.pd.im.common.enums.MessageType;
 import com.pd.im.common.enums.command.CommandType;
-import com.pd.im.tcp.rabbitmq.MqFactory;
-import com.rabbitmq.client.Channel;
+import com.pd.im.common.enums.command.GroupEventCommand;
+import com.pd.im.common.model.mq.UplinkEnvelope;
+import com.pd.im.common.util.UplinkEnvelopeCodec;
+import com.rabbitmq.client.AMQP;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.util.concurrent.EventExecutor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
  * MQ消息生产者
  * <p>
- * 负责将IM消息发送到RabbitMQ，根据命令类型路由到不同的服务队列
+ * 负责将IM消息发送到RabbitMQ，根据命令类型路由到不同的服务队列，
+ * 实际发送由 {@link MqPublisher} 在调用方传入的事件循环独占的 Channel 上异步完成
+ * <p>
+ * 默认以 {@link UplinkEnvelope} 二进制信封发送，配置 mqJsonPayload 后改为 JSON，便于调试时直接查看队列内容
  *
  * @author Parker
  * @date 12/4/25
@@ -41,20 +58,161 @@ public class MqMessageProducer {
         COMMAND_TYPE_TO_QUEUE_MAP = map;
     }
 
+    private static final AMQP.BasicProperties ENVELOPE_PROPERTIES = new AMQP.BasicProperties.Builder()
+            .contentType(Constants.RabbitmqConstants.CONTENT_TYPE_UPLINK_ENVELOPE)
+            .build();
+
+    private static final AMQP.BasicProperties JSON_PROPERTIES = new AMQP.BasicProperties.Builder()
+            .contentType(Constants.RabbitmqConstants.CONTENT_TYPE_JSON)
+            .build();
+
+    private static volatile Integer brokerId;
+    private static volatile boolean jsonPayload;
+
+    /**
+     * 初始化消息格式和网关标识
+     *
+     * @param config 配置
+     */
+    public static void init(ImBootstrapConfig.TcpConfig config) {
+        brokerId = config.getBrokerId();
+        jsonPayload = config.isMqJsonPayload();
+        log.info("MQ上行消息格式: {}", jsonPayload ? "json" : "envelope");
+    }
+
     /**
      * 发送消息到MQ（Message对象）
+     * <p>
+     * 延迟解析模式下消息体未被解析，直接透传原始 Protobuf 字节，
+     * 消息头字段放在信封中，由业务层按 command 解析
      *
-     * @param message 消息对象
-     * @param command 命令代码
+     * @param executor 调用方所在连接的事件循环，为空时由发布器的专用线程发送
+     * @param message  消息对象
+     * @param command  命令代码
      */
-    public static void sendMessage(Message message, Integer command) {
-        if (message == null || message.getMessagePack() == null || message.getMessageHeader() == null) {
+    public static void sendMessage(EventExecutor executor, Message message, Integer command) {
+        sendMessage(executor, message, command, null);
+    }
+
+    /**
+     * 发送消息到MQ（Message对象），携带业务层已分配的消息序列号
+     *
+     * @param executor        调用方所在连接的事件循环，为空时由发布器的专用线程发送
+     * @param message         消息对象
+     * @param command         命令代码
+     * @param messageSequence 消息序列号，未分配时为空
+     */
+    public static void sendMessage(EventExecutor executor, Message message, Integer command, Long messageSequence) {
+        if (message == null || message.getMessageHeader() == null) {
             log.warn("发送消息失败：消息对象或消息头为空");
             return;
         }
 
         MessageHeader header = message.getMessageHeader();
-        sendMessage(message.getMessagePack(), header, command);
+        if (!jsonPayload && message.hasRawBody()
+                && header.getMessageType() == MessageType.DATA_TYPE_PROTOBUF.getCode()) {
+            sendRawMessage(executor, message.getBody(), header, command, messageSequence, peekToId(message, command));
+            return;
+        }
+        sendMessage(executor, message.getMessagePack(), header, command, messageSequence);
+    }
+
+    /**
+     * 透传原始 Protobuf 消息体到MQ
+     *
+     * @param executor        调用方所在连接的事件循环，为空时由发布器的专用线程发送
+     * @param body            原始消息体
+     * @param header          消息头
+     * @param command         命令代码
+     * @param messageSequence 消息序列号，未分配时为空
+     * @param toId            消息目标，未解析时为空
+     */
+    private static void sendRawMessage(EventExecutor executor, ByteBuf body, MessageHeader header, Integer command,
+                                       Long messageSequence, String toId) {
+        if (command == null) {
+            log.warn("发送消息失败：命令为空");
+            return;
+        }
+
+        String queueName = resolveQueueName(command);
+        if (queueName == null) {
+            log.warn("发送消息失败：无法解析队列名称, command={}", command);
+            return;
+        }
+
+        try {
+            // AMQP 客户端只接受 byte[]，这里是消息体唯一的一次拷贝
+            byte[] bodyBytes = ByteBufUtil.getBytes(body, body.readerIndex(), body.readableBytes(), false);
+            UplinkEnvelope envelope = buildEnvelope(header, command, MessageType.DATA_TYPE_PROTOBUF, bodyBytes, toId);
+            envelope.setMessageSequence(messageSequence);
+            MqPublisher.getInstance().publish(executor, queueName, "", ENVELOPE_PROPERTIES,
+                    UplinkEnvelopeCodec.encode(envelope));
+
+            log.debug("透传消息成功: queueName={}, command={}, appId={}, bodyLen={}",
+                    queueName, command, header.getAppId(), bodyBytes.length);
+        } catch (Exception e) {
+            log.error("透传消息失败: queueName={}, command={}, appId={}, clientType={}, imei={}",
+                    queueName, command, header.getAppId(), header.getClientType(), header.getImei(), e);
+        }
+    }
+
+    /**
+     * 读取原始消息体中的消息目标
+     * <p>
+     * 只有消息体为 ChatMessagePack 的命令按字段扫描读取，其余命令不解析消息体
+     *
+     * @param message 消息
+     * @param command 命令代码
+     * @return 消息目标，无法读取时返回 null
+     */
+    private static String peekToId(Message message, Integer command) {
+        if (command == null || MessageCodecUtils.getBodyParser(command) != ChatMessagePack.parser()) {
+            return null;
+        }
+        ChatMessageRoute route = MessageCodecUtils.peekChatMessageRoute(message);
+        return route != null ? StringUtils.defaultIfEmpty(route.getToId(), null) : null;
+    }
+
+    /**
+     * 读取已解析消息体中的消息目标
+     *
+     * @param messagePack 消息内容，Protobuf 对象或 Map
+     * @return 消息目标，消息体没有 toId 字段时返回 null
+     */
+    private static String resolveToId(Object messagePack) {
+        Object toId = null;
+        if (messagePack instanceof MessageOrBuilder) {
+            MessageOrBuilder pack = (MessageOrBuilder) messagePack;
+            Descriptors.FieldDescriptor field = pack.getDescriptorForType().findFieldByName("toId");
+            toId = field != null ? pack.getField(field) : null;
+        } else if (messagePack instanceof Map) {
+            toId = ((Map<?, ?>) messagePack).get("toId");
+        }
+        return toId != null ? StringUtils.defaultIfEmpty(toId.toString(), null) : null;
+    }
+
+    /**
+     * 构建上行信封
+     *
+     * @param header      消息头
+     * @param command     命令代码
+     * @param messageType 消息体格式
+     * @param payload     消息体
+     * @param toId        消息目标，未解析时为空
+     * @return 上行信封
+     */
+    private static UplinkEnvelope buildEnvelope(MessageHeader header, Integer command,
+                                                MessageType messageType, byte[] payload, String toId) {
+        UplinkEnvelope envelope = new UplinkEnvelope();
+        envelope.setCommand(command);
+        envelope.setAppId(header.getAppId());
+        envelope.setClientType(header.getClientType());
+        envelope.setImei(header.getImei());
+        envelope.setToId(toId);
+        envelope.setBrokerId(brokerId);
+        envelope.setMessageType(messageType.getCode());
+        envelope.setPayload(payload);
+        return envelope;
     }
 
     /**
@@ -66,11 +224,26 @@ public class MqMessageProducer {
      * - 命令以3开头 → FriendshipService
      * - 命令以4开头 → UserService
      *
+     * @param executor    调用方所在连接的事件循环，为空时由发布器的专用线程发送
      * @param messagePack 消息内容对象
      * @param header      消息头
      * @param command     命令代码
      */
-    public static void sendMessage(Object messagePack, MessageHeader header, Integer command) {
+    public static void sendMessage(EventExecutor executor, Object messagePack, MessageHeader header, Integer command) {
+        sendMessage(executor, messagePack, header, command, null);
+    }
+
+    /**
+     * 发送消息到MQ（通用对象），携带业务层已分配的消息序列号
+     *
+     * @param executor        调用方所在连接的事件循环，为空时由发布器的专用线程发送
+     * @param messagePack     消息内容对象
+     * @param header          消息头
+     * @param command         命令代码
+     * @param messageSequence 消息序列号，未分配时为空
+     */
+    private static void sendMessage(EventExecutor executor, Object messagePack, MessageHeader header, Integer command,
+                                    Long messageSequence) {
         // 参数校验
         if (!validateParameters(messagePack, header, command)) {
             return;
@@ -84,7 +257,7 @@ public class MqMessageProducer {
         }
 
         // 发送消息
-        doSendMessage(messagePack, header, command, queueName);
+        doSendMessage(executor, messagePack, header, command, queueName, messageSequence);
     }
 
     /**
@@ -141,41 +314,62 @@ public class MqMessageProducer {
         }
     }
 
+    /**
+     * 发送网关间指令到指定网关
+     * <p>
+     * 复用业务层下发使用的交换机和按 brokerId 的路由键，由目标网关的下行消费者按 command 分发处理
+     *
+     * @param executor       调用方所在连接的事件循环，为空时由发布器的专用线程发送
+     * @param targetBrokerId 目标网关
+     * @param messagePack    指令内容
+     */
+    public static void sendToBroker(EventExecutor executor, Integer targetBrokerId, MessagePack<?> messagePack) {
+        try {
+            MqPublisher.getInstance().publish(executor, Constants.RabbitmqConstants.MESSAGE_SERVICE_TO_IM,
+                    String.valueOf(targetBrokerId), JSON_PROPERTIES, JSON.toJSONBytes(messagePack));
+        } catch (Exception e) {
+            log.error("发送网关指令失败: brokerId={}, command={}, toId={}",
+                    targetBrokerId, messagePack.getCommand(), messagePack.getToId(), e);
+        }
+    }
+
     /**
      * 执行消息发送
      *
-     * @param messagePack 消息内容
-     * @param header      消息头
-     * @param command     命令代码
-     * @param queueName   队列名称
+     * @param executor        调用方所在连接的事件循环，为空时由发布器的专用线程发送
+     * @param messagePack     消息内容
+     * @param header          消息头
+     * @param command         命令代码
+     * @param queueName       队列名称
+     * @param messageSequence 消息序列号，未分配时为空
      */
-    private static void doSendMessage(Object messagePack, MessageHeader header, Integer command, String queueName) {
-        Channel channel = null;
+    private static void doSendMessage(EventExecutor executor, Object messagePack, MessageHeader header,
+                                      Integer command, String queueName, Long messageSequence) {
         try {
-            // 获取MQ Channel
-            channel = MqFactory.getChannel(queueName);
-            if (channel == null) {
-                log.error("发送消息失败：无法获取MQ Channel, queueName={}", queueName);
-                return;
+            // 异步发布，失败和未确认的消息由发布器缓冲重试
+            // 业务层只信任信封中的序列号，携带序列号的消息即使在调试模式下也使用信封
+            if (jsonPayload && messageSequence == null) {
+                JSONObject messageBody = buildMessageBody(messagePack, header, command);
+                MqPublisher.getInstance().publish(executor, queueName, "", JSON_PROPERTIES,
+                        messageBody.toJSONString().getBytes(StandardCharsets.UTF_8));
+            } else {
+                // 消息头进信封，消息体一次序列化为 JSON 字节，不构建中间 JSON 树
+                Object body = messagePack instanceof MessageOrBuilder
+                        ? MessageCodecUtils.toJsonObject((MessageOrBuilder) messagePack)
+                        : messagePack;
+                UplinkEnvelope envelope = buildEnvelope(header, command, MessageType.DATA_TYPE_JSON,
+                        JSON.toJSONBytes(body), resolveToId(messagePack));
+                envelope.setMessageSequence(messageSequence);
+                MqPublisher.getInstance().publish(executor, queueName, "", ENVELOPE_PROPERTIES,
+                        UplinkEnvelopeCodec.encode(envelope));
             }
 
-            // 构建消息体
-            JSONObject messageBody = buildMessageBody(messagePack, header, command);
-
-            // 发送消息
-            // TODO 开启镜像队列防止 MQ 丢失数据
-            channel.basicPublish(queueName, "", null, messageBody.toJSONString().getBytes());
-
             log.debug("发送消息成功: queueName={}, command={}, userId={}, appId={}",
                     queueName, command, header.getAppId(), header.getClientType());
 
         } catch (Exception e) {
             log.error("发送消息失败: queueName={}, command={}, appId={}, clientType={}, imei={}",
                     queueName, command, header.getAppId(), header.getClientType(), header.getImei(), e);
-            // TODO 可以在这里添加消息发送失败的补偿机制，如：
-            // 1. 重试机制
-            // 2. 写入死信队列
-            // 3. 写入数据库待补偿
         }
     }
 
@@ -188,11 +382,17 @@ public class MqMessageProducer {
      * @return JSON消息体
      */
     private static JSONObject buildMessageBody(Object messagePack, MessageHeader header, Integer command) {
-        JSONObject messageBody = (JSONObject) JSON.toJSON(messagePack);
+        JSONObject messageBody = messagePack instanceof MessageOrBuilder
+                ? MessageCodecUtils.toJsonObject((MessageOrBuilder) messagePack)
+                : (JSONObject) JSON.toJSON(messagePack);
         messageBody.put("command", command);
         messageBody.put("clientType", header.getClientType());
         messageBody.put("imei", header.getImei());
         messageBody.put("appId", header.getAppId());
+        // 群聊消息的 toId 即群ID，与业务层解析信封时的处理一致
+        if (GroupEventCommand.MSG_GROUP.getCommand().equals(command) && !messageBody.containsKey("groupId")) {
+            messageBody.put("groupId", messageBody.getString("toId"));
+        }
         return messageBody;
     }
 }
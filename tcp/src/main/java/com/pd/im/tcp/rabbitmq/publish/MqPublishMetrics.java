@@ -0,0 +1,94 @@
+package com.pd.im.tcp.rabbitmq.publish;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * MQ 发布指标
+ * <p>
+ * 各事件循环并发累加，{@link #snapshotAndReset()} 输出一个统计周期内的数据：
+ * - publish：调用 basicPublish 的耗时
+ * - confirm：从发布到收到 Broker 确认的延迟
+ * - outstanding / buffered：当前未确认数和重试缓冲中的消息数（确认积压）
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+public class MqPublishMetrics {
+    private final LongAdder published = new LongAdder();
+    private final LongAdder confirmed = new LongAdder();
+    private final LongAdder nacked = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder publishNanos = new LongAdder();
+    private final LongAdder confirmNanos = new LongAdder();
+    private final LongAccumulator maxConfirmNanos = new LongAccumulator(Math::max, 0L);
+    private final LongAdder outstanding = new LongAdder();
+    private final LongAdder buffered = new LongAdder();
+
+    void recordPublish(long nanos) {
+        published.increment();
+        publishNanos.add(nanos);
+        outstanding.increment();
+    }
+
+    void recordConfirm(long nanos) {
+        confirmed.increment();
+        confirmNanos.add(nanos);
+        maxConfirmNanos.accumulate(nanos);
+        outstanding.decrement();
+    }
+
+    void recordNack() {
+        nacked.increment();
+        outstanding.decrement();
+    }
+
+    /**
+     * 未确认消息因 Channel 关闭被移入重试缓冲
+     */
+    void recordAbandoned() {
+        outstanding.decrement();
+    }
+
+    void recordRetry() {
+        retried.increment();
+    }
+
+    void recordBuffered() {
+        buffered.increment();
+    }
+
+    void recordUnbuffered() {
+        buffered.decrement();
+    }
+
+    void recordDropped() {
+        dropped.increment();
+        buffered.decrement();
+    }
+
+    /**
+     * 输出本周期指标并重置周期计数，outstanding / buffered 为当前值不重置
+     *
+     * @return 指标描述
+     */
+    public String snapshotAndReset() {
+        long publishCount = published.sumThenReset();
+        long confirmCount = confirmed.sumThenReset();
+        long publishTotal = publishNanos.sumThenReset();
+        long confirmTotal = confirmNanos.sumThenReset();
+        long confirmMax = maxConfirmNanos.getThenReset();
+        return "published=" + publishCount
+                + ", confirmed=" + confirmCount
+                + ", nacked=" + nacked.sumThenReset()
+                + ", retried=" + retried.sumThenReset()
+                + ", dropped=" + dropped.sumThenReset()
+                + ", avgPublishUs=" + (publishCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(publishTotal / publishCount))
+                + ", avgConfirmMs=" + (confirmCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(confirmTotal / confirmCount))
+                + ", maxConfirmMs=" + TimeUnit.NANOSECONDS.toMillis(confirmMax)
+                + ", outstanding=" + outstanding.sum()
+                + ", buffered=" + buffered.sum();
+    }
+}
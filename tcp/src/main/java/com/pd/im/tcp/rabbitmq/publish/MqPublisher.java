@@ -0,0 +1,121 @@
+package com.pd.im.tcp.rabbitmq.publish;
+
+import com.pd.im.codec.config.ImBootstrapConfig;
+import com.rabbitmq.client.AMQP;
+import io.netty.util.concurrent.DefaultEventExecutor;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MQ 发布器
+ * <p>
+ * 每个 Netty 事件循环独占一个开启发布确认的 AMQP Channel（{@link PublisherChannel}），
+ * 工作线程之间不再争用同一个 Channel。调用方显式传入所在连接的事件循环，不在该事件循环上调用时切过去执行；
+ * 未传入事件循环的发布统一切到一个专用线程上执行。
+ * 发布失败和未确认的消息进入有界重试缓冲，Broker 故障切换期间不再直接丢失
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+@Slf4j
+public class MqPublisher {
+
+    private static volatile MqPublisher instance;
+
+    private final int retryBufferSize;
+    private final long retryIntervalMillis;
+    private final MqPublishMetrics metrics = new MqPublishMetrics();
+    private final Map<EventExecutor, PublisherChannel> channels = new ConcurrentHashMap<>();
+    private final EventExecutor fallbackExecutor;
+    private final ExecutorService connectExecutor;
+
+    private MqPublisher(ImBootstrapConfig.TcpConfig config) {
+        this.retryBufferSize = config.getMqRetryBufferSize();
+        this.retryIntervalMillis = config.getMqRetryIntervalMillis();
+        this.fallbackExecutor = new DefaultEventExecutor(new DefaultThreadFactory("im-mq-publisher", true));
+        this.connectExecutor = Executors.newSingleThreadExecutor(new DefaultThreadFactory("im-mq-connect", true));
+
+        Integer metricsInterval = config.getMqMetricsIntervalSeconds();
+        if (metricsInterval != null && metricsInterval > 0) {
+            fallbackExecutor.scheduleAtFixedRate(() -> log.info("MQ发布指标: {}", metrics.snapshotAndReset()),
+                    metricsInterval, metricsInterval, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 初始化发布器，需在 {@link com.pd.im.tcp.rabbitmq.MqFactory#init} 之后调用
+     *
+     * @param config 配置
+     */
+    public static void init(ImBootstrapConfig.TcpConfig config) {
+        instance = new MqPublisher(config);
+        log.info("MQ发布器初始化完成: retryBufferSize={}, retryInterval={}ms",
+                config.getMqRetryBufferSize(), config.getMqRetryIntervalMillis());
+    }
+
+    public static MqPublisher getInstance() {
+        return instance;
+    }
+
+    /**
+     * 异步发布消息
+     * <p>
+     * 在传入事件循环的发布通道上发送，结果由发布确认跟踪，调用方不阻塞
+     *
+     * @param executor   调用方所在连接的事件循环，为空或已关闭时由专用线程发送
+     * @param exchange   交换机
+     * @param routingKey 路由键
+     * @param properties AMQP 属性
+     * @param body       消息体
+     */
+    public void publish(EventExecutor executor, String exchange, String routingKey, AMQP.BasicProperties properties,
+                        byte[] body) {
+        PublisherChannel.PendingPublish pending = new PublisherChannel.PendingPublish(exchange, routingKey, properties, body);
+        if (executor != null && !executor.isShuttingDown()) {
+            if (executor.inEventLoop()) {
+                channelOf(executor).publish(pending);
+                return;
+            }
+            try {
+                executor.execute(() -> channelOf(executor).publish(pending));
+                return;
+            } catch (RejectedExecutionException e) {
+                // 事件循环正在关闭，改由专用线程发送
+            }
+        }
+        fallbackExecutor.execute(() -> channelOf(fallbackExecutor).publish(pending));
+    }
+
+    /**
+     * 输出当前指标并重置周期计数
+     *
+     * @return 指标描述
+     */
+    public String metrics() {
+        return metrics.snapshotAndReset();
+    }
+
+    /**
+     * 关闭所有发布通道，需在 {@link com.pd.im.tcp.rabbitmq.MqFactory#shutdown()} 之前调用
+     */
+    public void shutdown() {
+        channels.values().forEach(PublisherChannel::close);
+        channels.clear();
+        fallbackExecutor.shutdownGracefully();
+        connectExecutor.shutdown();
+        log.info("MQ发布器已关闭: {}", metrics.snapshotAndReset());
+    }
+
+    private PublisherChannel channelOf(EventExecutor executor) {
+        return channels.computeIfAbsent(executor, e -> new PublisherChannel(e, connectExecutor,
+                retryBufferSize, retryIntervalMillis, metrics));
+    }
+}
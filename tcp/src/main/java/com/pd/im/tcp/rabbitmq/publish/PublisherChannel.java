@@ -0,0 +1,318 @@
+package com.pd.im.tcp.rabbitmq.publish;
+
+import com.pd.im.tcp.rabbitmq.MqFactory;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.ShutdownListener;
+import com.rabbitmq.client.ShutdownSignalException;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.ScheduledFuture;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个事件循环独占的发布通道
+ * <p>
+ * - 发布、建立 Channel、重发都只在所属事件循环上执行，AMQP Channel 不会被并发调用
+ * - Channel 开启发布确认，未确认的消息按发布序号记录，Broker 的批量确认（multiple）一次移除一段
+ * - 发布失败、被 nack、Channel 关闭时未确认的消息进入有界重试缓冲，由定时任务按顺序重发
+ * - 建立 Channel 可能因 Broker 不可达而阻塞，交给独立线程执行，期间消息先进入重试缓冲
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+@Slf4j
+class PublisherChannel {
+
+    private final EventExecutor executor;
+    private final Executor connectExecutor;
+    private final int maxBuffered;
+    private final long retryIntervalMillis;
+    private final MqPublishMetrics metrics;
+
+    private final ConcurrentLinkedDeque<PendingPublish> retryBuffer = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger bufferedCount = new AtomicInteger();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final ScheduledFuture<?> retryTask;
+
+    /**
+     * 以下字段只在所属事件循环上访问
+     */
+    private ConfirmTracker tracker;
+    private boolean connecting;
+    private long nextConnectAt;
+
+    PublisherChannel(EventExecutor executor, Executor connectExecutor, int maxBuffered,
+                     long retryIntervalMillis, MqPublishMetrics metrics) {
+        this.executor = executor;
+        this.connectExecutor = connectExecutor;
+        this.maxBuffered = maxBuffered;
+        this.retryIntervalMillis = retryIntervalMillis;
+        this.metrics = metrics;
+        this.retryTask = executor.scheduleAtFixedRate(this::flushRetryBuffer,
+                retryIntervalMillis, retryIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 发布消息，必须在所属事件循环上调用
+     *
+     * @param pending 待发布消息
+     */
+    void publish(PendingPublish pending) {
+        // 缓冲中还有消息时先排队，保持同一事件循环内的发布顺序
+        if (bufferedCount.get() > 0) {
+            buffer(pending);
+            flushRetryBuffer();
+            return;
+        }
+        if (!tryPublish(pending)) {
+            buffer(pending);
+        }
+    }
+
+    /**
+     * 关闭通道，未确认和缓冲中的消息不再重发
+     */
+    void close() {
+        retryTask.cancel(false);
+        ConfirmTracker current = tracker;
+        tracker = null;
+        if (current != null && current.channel.isOpen()) {
+            try {
+                current.channel.close();
+            } catch (Exception e) {
+                log.warn("关闭发布Channel失败", e);
+            }
+        }
+        int remaining = bufferedCount.get() + (current != null ? current.outstanding.size() : 0);
+        if (remaining > 0) {
+            log.warn("发布通道关闭时仍有消息未确认或未发送: count={}", remaining);
+        }
+    }
+
+    private boolean tryPublish(PendingPublish pending) {
+        ConfirmTracker current = ensureChannel();
+        if (current == null) {
+            return false;
+        }
+
+        long seqNo = current.channel.getNextPublishSeqNo();
+        long start = System.nanoTime();
+        pending.publishedAt = start;
+        current.outstanding.put(seqNo, pending);
+        try {
+            current.channel.basicPublish(pending.exchange, pending.routingKey, pending.properties, pending.body);
+        } catch (Exception e) {
+            log.warn("MQ发布失败，进入重试缓冲: exchange={}, cause={}", pending.exchange, e.toString());
+            // 已被 Channel 关闭回调移入重试缓冲时不再重复缓冲
+            return current.outstanding.remove(seqNo) == null;
+        }
+        metrics.recordPublish(System.nanoTime() - start);
+        return true;
+    }
+
+    /**
+     * 获取可用的发布 Channel，不可用时异步建立，本次返回 null
+     */
+    private ConfirmTracker ensureChannel() {
+        if (tracker != null) {
+            if (tracker.channel.isOpen()) {
+                return tracker;
+            }
+            onClosed(tracker);
+        }
+        long now = System.currentTimeMillis();
+        if (!connecting && now >= nextConnectAt) {
+            connecting = true;
+            connectExecutor.execute(this::connect);
+        }
+        return null;
+    }
+
+    /**
+     * 在独立线程上建立 Channel，完成后切回所属事件循环
+     */
+    private void connect() {
+        ConfirmTracker created = null;
+        try {
+            Channel channel = MqFactory.createChannel();
+            channel.confirmSelect();
+            created = new ConfirmTracker(channel);
+            channel.addConfirmListener(created);
+            channel.addShutdownListener(created);
+        } catch (Exception e) {
+            log.warn("创建MQ发布Channel失败，{}ms 后重试: {}", retryIntervalMillis, e.toString());
+        }
+
+        ConfirmTracker result = created;
+        executor.execute(() -> {
+            connecting = false;
+            if (result == null) {
+                nextConnectAt = System.currentTimeMillis() + retryIntervalMillis;
+                return;
+            }
+            tracker = result;
+            flushRetryBuffer();
+        });
+    }
+
+    /**
+     * Channel 关闭，未确认的消息放回重试缓冲头部，在所属事件循环上调用
+     */
+    private void onClosed(ConfirmTracker closed) {
+        if (tracker == closed) {
+            tracker = null;
+        }
+        // 放弃自动恢复，下次发布时重新建立并开启确认
+        try {
+            closed.channel.abort();
+        } catch (Exception ignored) {
+            // Channel 已关闭
+        }
+
+        List<PendingPublish> unconfirmed = new ArrayList<>();
+        Map.Entry<Long, PendingPublish> entry;
+        while ((entry = closed.outstanding.pollFirstEntry()) != null) {
+            metrics.recordAbandoned();
+            unconfirmed.add(entry.getValue());
+        }
+        if (unconfirmed.isEmpty()) {
+            return;
+        }
+        log.warn("MQ发布Channel已关闭，未确认消息进入重试缓冲: count={}", unconfirmed.size());
+        for (int i = unconfirmed.size() - 1; i >= 0; i--) {
+            retryBuffer.addFirst(unconfirmed.get(i));
+            bufferedCount.incrementAndGet();
+            metrics.recordBuffered();
+        }
+        trimBuffer();
+    }
+
+    /**
+     * 按顺序重发缓冲中的消息，遇到失败即停止，在所属事件循环上调用
+     */
+    private void flushRetryBuffer() {
+        PendingPublish pending;
+        while ((pending = retryBuffer.pollFirst()) != null) {
+            bufferedCount.decrementAndGet();
+            metrics.recordUnbuffered();
+            if (!tryPublish(pending)) {
+                retryBuffer.addFirst(pending);
+                bufferedCount.incrementAndGet();
+                metrics.recordBuffered();
+                return;
+            }
+            metrics.recordRetry();
+        }
+    }
+
+    /**
+     * 消息进入重试缓冲尾部，可能在 AMQP 回调线程上调用
+     */
+    private void buffer(PendingPublish pending) {
+        retryBuffer.addLast(pending);
+        bufferedCount.incrementAndGet();
+        metrics.recordBuffered();
+        trimBuffer();
+    }
+
+    /**
+     * 缓冲超过上限时丢弃最早的消息
+     */
+    private void trimBuffer() {
+        while (bufferedCount.get() > maxBuffered) {
+            PendingPublish dropped = retryBuffer.pollFirst();
+            if (dropped == null) {
+                return;
+            }
+            bufferedCount.decrementAndGet();
+            metrics.recordDropped();
+            long total = droppedCount.incrementAndGet();
+            if (total % 1000 == 1) {
+                log.error("MQ重试缓冲已满，丢弃最早的消息: exchange={}, droppedTotal={}", dropped.exchange, total);
+            }
+        }
+    }
+
+    /**
+     * 待发布消息
+     */
+    static final class PendingPublish {
+        private final String exchange;
+        private final String routingKey;
+        private final AMQP.BasicProperties properties;
+        private final byte[] body;
+        private volatile long publishedAt;
+
+        PendingPublish(String exchange, String routingKey, AMQP.BasicProperties properties, byte[] body) {
+            this.exchange = exchange;
+            this.routingKey = routingKey;
+            this.properties = properties;
+            this.body = body;
+        }
+    }
+
+    /**
+     * 单个 AMQP Channel 的发布确认跟踪
+     * <p>
+     * 每次重建 Channel 都会新建跟踪器，旧 Channel 迟到的确认不会误删新 Channel 的发布序号
+     */
+    private final class ConfirmTracker implements ConfirmListener, ShutdownListener {
+        private final Channel channel;
+        private final ConcurrentNavigableMap<Long, PendingPublish> outstanding = new ConcurrentSkipListMap<>();
+
+        private ConfirmTracker(Channel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void handleAck(long deliveryTag, boolean multiple) {
+            long now = System.nanoTime();
+            for (PendingPublish pending : take(deliveryTag, multiple)) {
+                metrics.recordConfirm(now - pending.publishedAt);
+            }
+        }
+
+        @Override
+        public void handleNack(long deliveryTag, boolean multiple) {
+            for (PendingPublish pending : take(deliveryTag, multiple)) {
+                metrics.recordNack();
+                buffer(pending);
+            }
+        }
+
+        @Override
+        public void shutdownCompleted(ShutdownSignalException cause) {
+            if (!executor.isShuttingDown()) {
+                executor.execute(() -> onClosed(this));
+            }
+        }
+
+        private List<PendingPublish> take(long deliveryTag, boolean multiple) {
+            if (!multiple) {
+                PendingPublish pending = outstanding.remove(deliveryTag);
+                return pending == null ? Collections.emptyList() : Collections.singletonList(pending);
+            }
+            List<PendingPublish> taken = new ArrayList<>();
+            Map.Entry<Long, PendingPublish> entry;
+            while ((entry = outstanding.firstEntry()) != null && entry.getKey() <= deliveryTag) {
+                if (outstanding.remove(entry.getKey(), entry.getValue())) {
+                    taken.add(entry.getValue());
+                }
+            }
+            return taken;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.pd.im.tcp.rabbitmq.receiver;
+
+import com.alibaba.fastjson.JSONObject;
+import com.pd.im.codec.proto.BroadcastEnvelope;
+import com.pd.im.codec.proto.DownlinkEnvelope;
+import com.pd.im.codec.proto.FanoutEnvelope;
+import com.pd.im.codec.proto.MessagePack;
+import com.pd.im.codec.util.DownlinkCodecUtils;
+import com.pd.im.common.constant.Constants;
+import com.pd.im.tcp.rabbitmq.process.BroadcastDispatcher;
+import com.pd.im.tcp.rabbitmq.process.ProcessFactory;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.DefaultConsumer;
+import com.rabbitmq.client.Envelope;
+import io.netty.channel.ChannelFuture;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 下行队列消费者
+ * <p>
+ * 同一个 AMQP Channel 上的投递由客户端串行回调，消费者线程只解析路由头并查找目标连接，
+ * 写出交给目标连接所属的 EventLoop（见 {@link com.pd.im.tcp.rabbitmq.process.BaseProcess}），
+ * 同一连接的消息按投递顺序写出。
+ * <p>
+ * 应答采用 multiple=true 累计应答：交接完成的消息累计到 ackBatch 条或等待超过应答间隔后，
+ * 一次应答到最新的 deliveryTag
+ * <p>
+ * 停止消费时取消订阅并等待 CancelOk 回调：客户端按顺序回调同一 Channel 上的事件，
+ * 收到 CancelOk 时取消前已投递的消息都已交接给连接
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+@Slf4j
+class DownlinkConsumer extends DefaultConsumer {
+
+    private final int ackBatch;
+    private final DownlinkMetrics metrics;
+
+    /**
+     * 最近一条完成交接的 deliveryTag
+     */
+    private long completedTag;
+    /**
+     * 已应答到的 deliveryTag
+     */
+    private long ackedTag;
+
+    private final CountDownLatch cancelled = new CountDownLatch(1);
+
+    DownlinkConsumer(Channel channel, int ackBatch, DownlinkMetrics metrics) {
+        super(channel);
+        this.ackBatch = Math.max(1, ackBatch);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties, byte[] body) {
+        long receivedAt = System.nanoTime();
+        long deliveryTag = envelope.getDeliveryTag();
+        metrics.recordReceived();
+        try {
+            ChannelFuture future;
+            if (Constants.RabbitmqConstants.CONTENT_TYPE_DOWNLINK_ENVELOPE.equals(properties.getContentType())) {
+                // 二进制信封：只解析路由头，客户端帧直接写入数据通道
+                DownlinkEnvelope downlinkEnvelope = DownlinkCodecUtils.decode(body);
+                if (downlinkEnvelope == null) {
+                    reject(deliveryTag);
+                    return;
+                }
+                future = ProcessFactory.getMessageProcess(downlinkEnvelope.getCommand()).process(downlinkEnvelope);
+            } else if (Constants.RabbitmqConstants.CONTENT_TYPE_DOWNLINK_FANOUT.equals(properties.getContentType())) {
+                // 扇出信封：按本地连接展开到每个接收方的所有设备
+                FanoutEnvelope fanoutEnvelope = DownlinkCodecUtils.decodeFanout(body);
+                if (fanoutEnvelope == null) {
+                    reject(deliveryTag);
+                    return;
+                }
+                List<ChannelFuture> futures = ProcessFactory.getMessageProcess(fanoutEnvelope.getCommand())
+                        .process(fanoutEnvelope);
+                metrics.recordFanout(fanoutEnvelope.getUserIds().size(), futures.size());
+                if (futures.isEmpty()) {
+                    metrics.recordUndeliverable();
+                }
+                for (ChannelFuture fanoutFuture : futures) {
+                    track(fanoutFuture, receivedAt);
+                }
+                complete(deliveryTag);
+                return;
+            } else if (Constants.RabbitmqConstants.CONTENT_TYPE_DOWNLINK_BROADCAST.equals(properties.getContentType())) {
+                // 广播信封：交给广播下发按本地连接注册表分批写出，不等待写完
+                BroadcastEnvelope broadcastEnvelope = DownlinkCodecUtils.decodeBroadcast(body);
+                if (broadcastEnvelope == null) {
+                    reject(deliveryTag);
+                    return;
+                }
+                BroadcastDispatcher.getInstance().submit(broadcastEnvelope);
+                complete(deliveryTag);
+                return;
+            } else {
+                if (log.isDebugEnabled()) {
+                    log.debug("服务端监听消息信息为 {}", new String(body, StandardCharsets.UTF_8));
+                }
+                MessagePack messagePack = JSONObject.parseObject(body, MessagePack.class);
+                future = ProcessFactory.getMessageProcess(messagePack.getCommand()).process(messagePack);
+            }
+
+            if (future == null) {
+                metrics.recordUndeliverable();
+            } else {
+                track(future, receivedAt);
+            }
+            complete(deliveryTag);
+        } catch (Exception e) {
+            log.error("下行消息处理失败: deliveryTag={}, length={}", deliveryTag, body.length, e);
+            reject(deliveryTag);
+        }
+    }
+
+    private void track(ChannelFuture future, long receivedAt) {
+        future.addListener(f -> {
+            if (f.isSuccess()) {
+                metrics.recordWritten(System.nanoTime() - receivedAt);
+            } else {
+                metrics.recordWriteFailed();
+            }
+        });
+    }
+
+    @Override
+    public void handleCancelOk(String consumerTag) {
+        cancelled.countDown();
+    }
+
+    /**
+     * 停止消费，等待已投递的消息交接完成后应答
+     *
+     * @param timeoutMillis 最长等待时间（毫秒）
+     * @return 在超时前完成返回 true
+     */
+    boolean cancel(long timeoutMillis) {
+        String consumerTag = getConsumerTag();
+        if (consumerTag == null) {
+            return true;
+        }
+        boolean done = false;
+        try {
+            getChannel().basicCancel(consumerTag);
+            done = cancelled.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("取消下行消息订阅失败: consumerTag={}", consumerTag, e);
+        }
+        flushAck();
+        return done;
+    }
+
+    /**
+     * 应答所有已完成交接的消息，由定时任务和关闭流程调用
+     */
+    synchronized void flushAck() {
+        if (completedTag <= ackedTag) {
+            return;
+        }
+        try {
+            getChannel().basicAck(completedTag, true);
+            ackedTag = completedTag;
+        } catch (Exception e) {
+            log.warn("下行消息批量应答失败: deliveryTag={}", completedTag, e);
+        }
+    }
+
+    private synchronized void complete(long deliveryTag) {
+        completedTag = deliveryTag;
+        if (completedTag - ackedTag >= ackBatch) {
+            flushAck();
+        }
+    }
+
+    private synchronized void reject(long deliveryTag) {
+        metrics.recordRejected();
+        try {
+            getChannel().basicNack(deliveryTag, false, false);
+        } catch (Exception e) {
+            log.warn("下行消息拒绝失败: deliveryTag={}", deliveryTag, e);
+        }
+    }
+}
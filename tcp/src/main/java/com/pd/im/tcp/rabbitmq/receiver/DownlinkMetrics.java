@@ -0,0 +1,77 @@
+package com.pd.im.tcp.rabbitmq.receiver;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 下行消费指标
+ * <p>
+ * 各消费者和事件循环并发累加，{@link #snapshotAndReset()} 输出一个统计周期内的数据：
+ * - received：从下行队列收到的消息数
+ * - written / writeFailed：写入 Socket 成功和失败的消息数
+ * - undeliverable：目标连接不在本网关或不可投递的消息数
+ * - rejected：无法解析被拒绝的消息数
+ * - fanoutRecipients / fanoutDeliveries：扇出信封携带的接收方数和实际投递的连接数
+ * - latency：从收到投递到写入 Socket 完成的延迟
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+public class DownlinkMetrics {
+    private final LongAdder received = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder writeFailed = new LongAdder();
+    private final LongAdder undeliverable = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder fanoutRecipients = new LongAdder();
+    private final LongAdder fanoutDeliveries = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+    private final LongAccumulator maxLatencyNanos = new LongAccumulator(Math::max, 0L);
+
+    void recordReceived() {
+        received.increment();
+    }
+
+    void recordWritten(long nanos) {
+        written.increment();
+        latencyNanos.add(nanos);
+        maxLatencyNanos.accumulate(nanos);
+    }
+
+    void recordWriteFailed() {
+        writeFailed.increment();
+    }
+
+    void recordUndeliverable() {
+        undeliverable.increment();
+    }
+
+    void recordRejected() {
+        rejected.increment();
+    }
+
+    void recordFanout(int recipients, int deliveries) {
+        fanoutRecipients.add(recipients);
+        fanoutDeliveries.add(deliveries);
+    }
+
+    /**
+     * 输出本周期指标并重置计数
+     *
+     * @return 指标描述
+     */
+    public String snapshotAndReset() {
+        long writtenCount = written.sumThenReset();
+        long latencyTotal = latencyNanos.sumThenReset();
+        return "received=" + received.sumThenReset()
+                + ", written=" + writtenCount
+                + ", writeFailed=" + writeFailed.sumThenReset()
+                + ", undeliverable=" + undeliverable.sumThenReset()
+                + ", rejected=" + rejected.sumThenReset()
+                + ", fanoutRecipients=" + fanoutRecipients.sumThenReset()
+                + ", fanoutDeliveries=" + fanoutDeliveries.sumThenReset()
+                + ", avgLatencyUs=" + (writtenCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(latencyTotal / writtenCount))
+                + ", maxLatencyUs=" + TimeUnit.NANOSECONDS.toMicros(maxLatencyNanos.getThenReset());
+    }
+}
@@ -1,75 +1,101 @@
 package com.pd.im.tcp.rabbitmq.receiver;
 
-import com.alibaba.fastjson.JSONObject;
-import com.pd.im.codec.proto.MessagePack;
+import com.pd.im.codec.config.ImBootstrapConfig;
 import com.pd.im.common.constant.Constants;
 import com.pd.im.tcp.rabbitmq.MqFactory;
-import com.pd.im.tcp.rabbitmq.process.BaseProcess;
-import com.pd.im.tcp.rabbitmq.process.ProcessFactory;
-import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Channel;
-import com.rabbitmq.client.DefaultConsumer;
-import com.rabbitmq.client.Envelope;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.StringUtils;
 
-import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
+ * 下行消息接收
+ * <p>
+ * 每个下行队列启动 mqDownlinkConsumers 个消费者，每个消费者独占一个 AMQP Channel 并按
+ * mqDownlinkPrefetch 设置预取；应答由 {@link DownlinkConsumer} 批量累计，定时任务兜底刷出
+ *
  * @author Parker
  * @date 12/5/25
  */
 @Slf4j
 public class MqMessageReceiver {
 
-    private static String brokerId;
+    private static final List<DownlinkConsumer> CONSUMERS = new CopyOnWriteArrayList<>();
+    private static final DownlinkMetrics METRICS = new DownlinkMetrics();
+
+    private static ScheduledExecutorService scheduler;
 
     /**
      * 每一个服务器节点，都绑定一个对应的queue，格式为 MessageService2Im + brokerId（每一个服务端的唯一编号）
      */
-    private static void startReceiveMessage() {
+    private static void startReceiveMessage(ImBootstrapConfig.TcpConfig config) {
+        String brokerId = String.valueOf(config.getBrokerId());
+        String queueName = Constants.RabbitmqConstants.MESSAGE_SERVICE_TO_IM + brokerId;
+        int consumers = Math.max(1, config.getMqDownlinkConsumers());
         try {
-            Channel channel = MqFactory.getChannel(Constants.RabbitmqConstants.MESSAGE_SERVICE_TO_IM + brokerId);
-            channel.queueDeclare(Constants.RabbitmqConstants.MESSAGE_SERVICE_TO_IM + brokerId, true, false, false, null);
-            channel.queueBind(Constants.RabbitmqConstants.MESSAGE_SERVICE_TO_IM + brokerId,
-                    Constants.RabbitmqConstants.MESSAGE_SERVICE_TO_IM, brokerId);
-            channel.basicConsume(Constants.RabbitmqConstants.MESSAGE_SERVICE_TO_IM + brokerId, false, new DefaultConsumer(channel) {
-                @Override
-                public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties, byte[] body) throws IOException {
-                    String msgStr = "";
-                    try {
-                        msgStr = new String(body);
-                        log.info("服务端监听消息信息为 {} ", msgStr);
-
-                        // 消息写入数据通道
-                        MessagePack messagePack = JSONObject.parseObject(msgStr, MessagePack.class);
-                        BaseProcess messageProcess = ProcessFactory.getMessageProcess(messagePack.getCommand());
-                        messageProcess.process(messagePack);
-
-                        // 消息成功写入通道后发送应答 Ack
-                        channel.basicAck(envelope.getDeliveryTag(), false);
-
-                    } catch (Exception e) {
-                        log.error("Failed to process message from MQ: {}", msgStr, e);
-
-                        // 消息不能正常写入通道，发送失败应答 NAck
-                        channel.basicNack(envelope.getDeliveryTag(), false, false);
-                    }
+            for (int i = 0; i < consumers; i++) {
+                Channel channel = MqFactory.createChannel();
+                if (i == 0) {
+                    channel.queueDeclare(queueName, true, false, false, null);
+                    channel.queueBind(queueName, Constants.RabbitmqConstants.MESSAGE_SERVICE_TO_IM, brokerId);
                 }
-            });
+                channel.basicQos(config.getMqDownlinkPrefetch());
+                DownlinkConsumer consumer = new DownlinkConsumer(channel, config.getMqDownlinkAckBatch(), METRICS);
+                channel.basicConsume(queueName, false, consumer);
+                CONSUMERS.add(consumer);
+            }
+            log.info("下行队列消费者启动完成: queue={}, consumers={}, prefetch={}, ackBatch={}",
+                    queueName, consumers, config.getMqDownlinkPrefetch(), config.getMqDownlinkAckBatch());
         } catch (Exception e) {
             log.error("Failed to start receiving messages for brokerId: {}", brokerId, e);
         }
     }
 
-    public static void init() {
-        startReceiveMessage();
+    public static void init(ImBootstrapConfig.TcpConfig config) {
+        scheduler = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("im-mq-downlink", true));
+        long ackInterval = config.getMqDownlinkAckIntervalMillis();
+        scheduler.scheduleWithFixedDelay(() -> CONSUMERS.forEach(DownlinkConsumer::flushAck),
+                ackInterval, ackInterval, TimeUnit.MILLISECONDS);
+
+        Integer metricsInterval = config.getMqMetricsIntervalSeconds();
+        if (metricsInterval != null && metricsInterval > 0) {
+            scheduler.scheduleAtFixedRate(() -> log.info("MQ下行指标: {}", METRICS.snapshotAndReset()),
+                    metricsInterval, metricsInterval, TimeUnit.SECONDS);
+        }
+        startReceiveMessage(config);
+    }
+
+    /**
+     * 停止消费下行队列，摘流时在引导客户端重连之前调用
+     * <p>
+     * 取消订阅后等待已投递的消息全部交接给连接并应答，队列中剩余的消息留给同一 brokerId 的下一个实例，
+     * 其中目标用户已迁移的由业务层离线消息兜底
+     *
+     * @param timeoutMillis 每个消费者的最长等待时间（毫秒）
+     */
+    public static void stopConsuming(long timeoutMillis) {
+        for (DownlinkConsumer consumer : CONSUMERS) {
+            if (!consumer.cancel(timeoutMillis)) {
+                log.warn("下行消息消费者未在 {}ms 内停止", timeoutMillis);
+            }
+        }
+        log.info("下行队列已停止消费");
     }
 
-    public static void init(String brokerId) {
-        if (StringUtils.isBlank(MqMessageReceiver.brokerId)) {
-            MqMessageReceiver.brokerId = brokerId;
+    /**
+     * 刷出剩余应答并停止定时任务，需在 {@link MqFactory#shutdown()} 之前调用
+     */
+    public static void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
         }
-        startReceiveMessage();
+        CONSUMERS.forEach(DownlinkConsumer::flushAck);
+        CONSUMERS.clear();
+        log.info("下行消息接收已关闭: {}", METRICS.snapshotAndReset());
     }
 }
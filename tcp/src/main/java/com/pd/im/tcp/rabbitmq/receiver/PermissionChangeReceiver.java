@@ -0,0 +1,60 @@
+package com.pd.im.tcp.rabbitmq.receiver;
+
+import com.alibaba.fastjson.JSONObject;
+import com.pd.im.common.constant.Constants;
+import com.pd.im.common.model.PermissionChangeEvent;
+import com.pd.im.tcp.feign.SendPermissionCache;
+import com.pd.im.tcp.rabbitmq.MqFactory;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.DefaultConsumer;
+import com.rabbitmq.client.Envelope;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+
+/**
+ * 发送权限变更监听
+ * <p>
+ * 每个网关声明一个独占、自动删除的临时队列绑定到 fanout 交换机，
+ * 收到业务层的变更事件后失效本地 {@link SendPermissionCache} 中的相关条目
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+@Slf4j
+public class PermissionChangeReceiver {
+
+    private static void startReceiveMessage() {
+        try {
+            Channel channel = MqFactory.getChannel(Constants.RabbitmqConstants.PERMISSION_CHANGE_TO_IM);
+            String queue = channel.queueDeclare().getQueue();
+            channel.queueBind(queue, Constants.RabbitmqConstants.PERMISSION_CHANGE_TO_IM, "");
+            channel.basicConsume(queue, true, new DefaultConsumer(channel) {
+                @Override
+                public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties, byte[] body) throws IOException {
+                    try {
+                        PermissionChangeEvent event = JSONObject.parseObject(body, PermissionChangeEvent.class);
+                        SendPermissionCache cache = SendPermissionCache.getInstance();
+                        if (event == null || event.getIds() == null || cache == null) {
+                            return;
+                        }
+                        for (String id : event.getIds()) {
+                            cache.invalidate(event.getAppId(), id);
+                        }
+                        log.debug("发送权限缓存失效: appId={}, ids={}, reason={}",
+                                event.getAppId(), event.getIds(), event.getReason());
+                    } catch (Exception e) {
+                        log.error("处理发送权限变更事件失败", e);
+                    }
+                }
+            });
+        } catch (Exception e) {
+            log.error("Failed to start receiving permission change events", e);
+        }
+    }
+
+    public static void init() {
+        startReceiveMessage();
+    }
+}
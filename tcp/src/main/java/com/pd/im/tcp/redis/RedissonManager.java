@@ -1,7 +1,6 @@
 package com.pd.im.tcp.redis;
 
 import com.pd.im.codec.config.ImBootstrapConfig;
-import com.pd.im.tcp.redis.receiver.UserLoginMessageListener;
 import lombok.extern.slf4j.Slf4j;
 import org.redisson.api.RedissonClient;
 
@@ -16,11 +15,10 @@ import org.redisson.api.RedissonClient;
 @Slf4j
 public class RedissonManager {
     private static volatile RedissonClient redissonClient;
-    private static volatile UserLoginMessageListener loginMessageListener;
     private static final Object INIT_LOCK = new Object();
 
     /**
-     * 初始化Redisson客户端和用户登录监听器
+     * 初始化Redisson客户端
      * <p>
      * 线程安全的初始化方法
      *
@@ -36,11 +34,6 @@ public class RedissonManager {
                         redissonClient = singleClientStrategy.getRedissonClient(config.getIm().getRedis());
                         log.info("Redisson客户端初始化成功");
 
-                        // 初始化用户登录消息监听器
-                        loginMessageListener = new UserLoginMessageListener(config.getIm().getLoginModel());
-                        loginMessageListener.listenUserLogin();
-                        log.info("用户登录监听器初始化成功");
-
                     } catch (Exception e) {
                         log.error("初始化Redisson客户端失败", e);
                         throw new RuntimeException("Redis连接初始化失败", e);
@@ -74,7 +67,6 @@ public class RedissonManager {
                         log.info("开始关闭Redisson客户端...");
                         redissonClient.shutdown();
                         redissonClient = null;
-                        loginMessageListener = null;
                         log.info("Redisson客户端已关闭");
                     } catch (Exception e) {
                         log.error("关闭Redisson客户端失败", e);
@@ -29,6 +29,8 @@ public class SingleClientStrategy {
         }
         StringCodec stringCodec = new StringCodec();
         config.setCodec(stringCodec);
+        // Lua 脚本按 SHA 缓存执行（登录票据校验每次登录都会调用）
+        config.setUseScriptCache(true);
         return Redisson.create(config);
     }
 }
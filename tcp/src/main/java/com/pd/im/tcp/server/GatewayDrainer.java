@@ -0,0 +1,161 @@
+package com.pd.im.tcp.server;
+
+import com.pd.im.codec.config.ImBootstrapConfig;
+import com.pd.im.codec.pack.user.ReconnectPack;
+import com.pd.im.codec.proto.MessagePack;
+import com.pd.im.common.enums.command.SystemCommand;
+import com.pd.im.common.enums.device.ClientType;
+import com.pd.im.common.route.NodeLoad;
+import com.pd.im.common.route.RouteHandler;
+import com.pd.im.common.route.RouteHandlerFactory;
+import com.pd.im.common.route.RouteInfo;
+import com.pd.im.common.util.RouteInfoParser;
+import com.pd.im.tcp.handler.OutboundBackPressureHandler;
+import com.pd.im.tcp.session.ConnectionSession;
+import com.pd.im.tcp.utils.UserChannelRepository;
+import com.pd.im.tcp.zookeeper.ZKit;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOutboundBuffer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 网关摘流
+ * <p>
+ * 网关下线前由关闭流程调用，调用前需已注销 ZK 节点、停止接入新连接并停止消费下行队列：
+ * - 向每个已登录连接下发 {@link SystemCommand#RECONNECT}，建议网关按与业务层相同的路由策略从剩余节点中选出，
+ * 重连延迟在 drainSpreadMillis 窗口内随机打散，避免所有客户端同时重连
+ * - 到达各自的重连时间后，待出站数据全部写出再关闭连接，已交接给连接的推送不会因关闭丢失
+ * - 关闭时只有 Session 仍属于本网关才标记离线并通知，客户端先在新网关登录成功时不会被旧连接的关闭覆盖为离线，
+ * 参见 {@link UserChannelRepository#setOffline}
+ * - 超过 drainTimeoutMillis 仍未关闭的连接直接关闭
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+@Slf4j
+public class GatewayDrainer {
+
+    private static final long CLOSE_CHECK_INTERVAL_MILLIS = 100;
+
+    private final ZKit zKit;
+    private final RouteHandler routeHandler;
+    private final long spreadMillis;
+    private final long timeoutMillis;
+
+    public GatewayDrainer(ImBootstrapConfig.TcpConfig config, ZKit zKit) throws ReflectiveOperationException {
+        this.zKit = zKit;
+        this.routeHandler = RouteHandlerFactory.create(config.getImRouteModel(), config.getConsistentHashModel(),
+                config.getConsistentHashVirtualNodes());
+        this.timeoutMillis = Math.max(0, config.getDrainTimeoutMillis());
+        this.spreadMillis = Math.min(Math.max(0, config.getDrainSpreadMillis()), timeoutMillis);
+    }
+
+    /**
+     * 引导所有连接重连到其他网关，阻塞到连接全部关闭或超时
+     */
+    public void drain() {
+        List<Channel> channels = UserChannelRepository.getAllChannels();
+        if (channels.isEmpty()) {
+            return;
+        }
+        List<String> tcpNodes = queryNodes(zKit::getAllTcpNode, Collections.emptyList());
+        List<String> webNodes = queryNodes(zKit::getAllWebNode, Collections.emptyList());
+        Map<String, NodeLoad> tcpLoads = queryNodes(zKit::getTcpNodeLoads, Collections.emptyMap());
+        Map<String, NodeLoad> webLoads = queryNodes(zKit::getWebNodeLoads, Collections.emptyMap());
+        log.info("开始摘流: connections={}, tcpNodes={}, webNodes={}, spread={}ms, timeout={}ms",
+                channels.size(), tcpNodes.size(), webNodes.size(), spreadMillis, timeoutMillis);
+
+        CountDownLatch closed = new CountDownLatch(channels.size());
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        for (Channel channel : channels) {
+            channel.closeFuture().addListener(f -> closed.countDown());
+            ConnectionSession session = ConnectionSession.get(channel);
+            if (session == null) {
+                // 未登录的连接没有需要交接的推送，直接关闭
+                channel.close();
+                continue;
+            }
+            if (ClientType.WEB.getCode().equals(session.getClientType())) {
+                redirect(channel, session, webNodes, webLoads, deadline);
+            } else {
+                redirect(channel, session, tcpNodes, tcpLoads, deadline);
+            }
+        }
+
+        try {
+            if (!closed.await(timeoutMillis + CLOSE_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                log.warn("摘流超时，剩余连接数: {}", closed.getCount());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("摘流完成");
+    }
+
+    private void redirect(Channel channel, ConnectionSession session, List<String> nodes,
+                          Map<String, NodeLoad> loads, long deadline) {
+        long delayMillis = spreadMillis > 0 ? ThreadLocalRandom.current().nextLong(spreadMillis + 1) : 0;
+
+        ReconnectPack reconnectPack = new ReconnectPack();
+        reconnectPack.setDelayMillis(delayMillis);
+        if (!nodes.isEmpty()) {
+            RouteInfo routeInfo = RouteInfoParser.parse(routeHandler.routeServer(nodes, loads, session.getUserId()));
+            reconnectPack.setIp(routeInfo.getIp());
+            reconnectPack.setPort(routeInfo.getPort());
+        }
+
+        MessagePack<ReconnectPack> pack = new MessagePack<>();
+        pack.setCommand(SystemCommand.RECONNECT.getCommand());
+        pack.setAppId(session.getAppId());
+        pack.setToId(session.getUserId());
+        pack.setUserId(session.getUserId());
+        pack.setClientType(session.getClientType());
+        pack.setImei(session.getImei());
+        pack.setData(reconnectPack);
+        pack.setTimestamp(System.currentTimeMillis());
+        channel.writeAndFlush(pack);
+        channel.eventLoop().schedule(() -> closeWhenFlushed(channel, deadline), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 出站数据全部写出后关闭连接，未写完时定期重试直到超时
+     */
+    private void closeWhenFlushed(Channel channel, long deadline) {
+        if (!channel.isOpen()) {
+            return;
+        }
+        channel.flush();
+        if (isOutboundEmpty(channel) || System.nanoTime() - deadline >= 0) {
+            channel.close();
+            return;
+        }
+        channel.eventLoop().schedule(() -> closeWhenFlushed(channel, deadline),
+                CLOSE_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private static boolean isOutboundEmpty(Channel channel) {
+        ChannelOutboundBuffer buffer = channel.unsafe().outboundBuffer();
+        if (buffer != null && !buffer.isEmpty()) {
+            return false;
+        }
+        OutboundBackPressureHandler backPressure = channel.pipeline().get(OutboundBackPressureHandler.class);
+        return backPressure == null || backPressure.isEmpty();
+    }
+
+    private static <T> T queryNodes(Supplier<T> query, T fallback) {
+        try {
+            return query.get();
+        } catch (Exception e) {
+            log.warn("查询网关节点失败，重连通知不携带建议网关或不参考节点负载", e);
+            return fallback;
+        }
+    }
+}
@@ -1,20 +1,26 @@
 package com.pd.im.tcp.server;
 
+import com.pd.im.codec.EncodedFrameEncoder;
 import com.pd.im.codec.MessageDecoderHandler;
 import com.pd.im.codec.MessageEncoderHandler;
 import com.pd.im.codec.config.ImBootstrapConfig;
+import com.pd.im.tcp.handler.AdmissionControl;
+import com.pd.im.tcp.handler.AdmissionControlHandler;
+import com.pd.im.tcp.handler.FlushCoalescingHandler;
 import com.pd.im.tcp.handler.HeartBeatHandler;
+import com.pd.im.tcp.handler.HeartBeatManager;
 import com.pd.im.tcp.handler.NettyServerHandler;
+import com.pd.im.tcp.handler.OutboundBackPressureHandler;
+import com.pd.im.tcp.handler.SlowConsumerMonitor;
 import io.netty.bootstrap.ServerBootstrap;
-import io.netty.channel.ChannelFuture;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
-import io.netty.channel.ChannelOption;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.handler.timeout.IdleStateHandler;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * TCP服务器
  * <p>
@@ -26,43 +32,39 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class ImServer {
     private final ImBootstrapConfig.TcpConfig config;
-    private final NioEventLoopGroup bossGroup;
-    private final NioEventLoopGroup workerGroup;
+    private final TransportRuntime runtime;
+    private final HeartBeatManager heartBeatManager;
     private final ServerBootstrap bootstrap;
-    private ChannelFuture channelFuture;
+    private List<Channel> serverChannels = Collections.emptyList();
 
-    public ImServer(ImBootstrapConfig.TcpConfig config) {
+    public ImServer(ImBootstrapConfig.TcpConfig config, TransportRuntime runtime, HeartBeatManager heartBeatManager) {
         this.config = config;
-        // 创建主从线程组
-        this.bossGroup = new NioEventLoopGroup(config.getBossThreadSize());
-        this.workerGroup = new NioEventLoopGroup(config.getWorkThreadSize());
-        this.bootstrap = new ServerBootstrap();
+        this.runtime = runtime;
+        this.heartBeatManager = heartBeatManager;
+        // 线程组、传输类型和通用参数由共享的传输层运行时提供
+        this.bootstrap = runtime.newServerBootstrap();
 
-        bootstrap.group(bossGroup, workerGroup)
-                .channel(NioServerSocketChannel.class)
-                // 服务端可连接的最大队列数量
-                .option(ChannelOption.SO_BACKLOG, 10240)
-                // 允许重复使用本地地址和端口
-                .option(ChannelOption.SO_REUSEADDR, true)
-                // 禁用Nagle算法，提高消息实时性
-                .childOption(ChannelOption.TCP_NODELAY, true)
-                // 保活机制
-                .childOption(ChannelOption.SO_KEEPALIVE, true)
-                .childHandler(new ChannelInitializer<SocketChannel>() {
-                    @Override
-                    protected void initChannel(SocketChannel ch) {
-                        // 消息解码
-                        ch.pipeline().addLast(new MessageDecoderHandler());
-                        // 消息编码
-                        ch.pipeline().addLast(new MessageEncoderHandler());
-                        // 心跳检测（读写空闲1秒触发）
-                        ch.pipeline().addLast(new IdleStateHandler(0, 0, 1));
-                        // 心跳处理器
-                        ch.pipeline().addLast(new HeartBeatHandler(config.getHeartBeatTime()));
-                        // 业务逻辑处理器
-                        ch.pipeline().addLast(new NettyServerHandler(config.getBrokerId(), config.getLogicUrl()));
-                    }
-                });
+        bootstrap.childHandler(new ChannelInitializer<SocketChannel>() {
+            @Override
+            protected void initChannel(SocketChannel ch) {
+                // 出站 flush 合并（放在最前面，拦截所有出站 flush）
+                ch.pipeline().addLast(new FlushCoalescingHandler(config));
+                // 心跳处理器（任何入站数据都刷新最后读取时间，超时由时间轮统一检测）
+                ch.pipeline().addLast(new HeartBeatHandler(heartBeatManager));
+                // 消息解码
+                ch.pipeline().addLast(new MessageDecoderHandler(config));
+                // 消息编码
+                ch.pipeline().addLast(new MessageEncoderHandler());
+                // 业务层预编码帧直接写出
+                ch.pipeline().addLast(new EncodedFrameEncoder());
+                // 单用户、单命令速率控制
+                ch.pipeline().addLast(new AdmissionControlHandler(AdmissionControl.getInstance()));
+                // 业务逻辑处理器
+                ch.pipeline().addLast(new NettyServerHandler(config.getBrokerId(), config.getCheckMaxPendingPerChannel()));
+                // 出站背压（放在最后面，出站消息在编码前先经过这里）
+                ch.pipeline().addLast(new OutboundBackPressureHandler(SlowConsumerMonitor.getInstance()));
+            }
+        });
     }
 
     /**
@@ -70,8 +72,8 @@ public class ImServer {
      */
     public void start() {
         try {
-            channelFuture = bootstrap.bind(config.getTcpPort()).sync();
-            log.info("TCP服务器启动成功，端口: {}", config.getTcpPort());
+            serverChannels = runtime.bind(bootstrap, config.getTcpPort());
+            log.info("TCP服务器启动成功，端口: {}, acceptor数量: {}", config.getTcpPort(), serverChannels.size());
         } catch (InterruptedException e) {
             log.error("TCP服务器启动失败", e);
             Thread.currentThread().interrupt();
@@ -86,23 +88,15 @@ public class ImServer {
         log.info("开始关闭TCP服务器...");
 
         try {
-            // 关闭服务器Channel
-            if (channelFuture != null && channelFuture.channel() != null) {
-                channelFuture.channel().close().sync();
+            // 关闭服务器Channel，线程组由传输层运行时统一关闭
+            for (Channel serverChannel : serverChannels) {
+                serverChannel.close().sync();
             }
         } catch (InterruptedException e) {
             log.error("关闭服务器Channel时被中断", e);
             Thread.currentThread().interrupt();
         }
 
-        // 优雅关闭线程组
-        if (workerGroup != null) {
-            workerGroup.shutdownGracefully();
-        }
-        if (bossGroup != null) {
-            bossGroup.shutdownGracefully();
-        }
-
         log.info("TCP服务器已关闭");
     }
 }
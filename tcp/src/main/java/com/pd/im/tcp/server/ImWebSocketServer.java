@@ -3,21 +3,28 @@ package com.pd.im.tcp.server;
 import com.pd.im.codec.WebSocketMessageDecoderHandler;
 import com.pd.im.codec.WebSocketMessageEncoderHandler;
 import com.pd.im.codec.config.ImBootstrapConfig;
+import com.pd.im.tcp.handler.AdmissionControl;
+import com.pd.im.tcp.handler.AdmissionControlHandler;
+import com.pd.im.tcp.handler.FlushCoalescingHandler;
+import com.pd.im.tcp.handler.HeartBeatHandler;
+import com.pd.im.tcp.handler.HeartBeatManager;
 import com.pd.im.tcp.handler.NettyServerHandler;
+import com.pd.im.tcp.handler.OutboundBackPressureHandler;
+import com.pd.im.tcp.handler.SlowConsumerMonitor;
 import io.netty.bootstrap.ServerBootstrap;
-import io.netty.channel.ChannelFuture;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
-import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpServerCodec;
 import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
 import io.netty.handler.stream.ChunkedWriteHandler;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * WebSocket服务器
  * <p>
@@ -29,47 +36,45 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class ImWebSocketServer {
     private final ImBootstrapConfig.TcpConfig config;
-    private final NioEventLoopGroup bossGroup;
-    private final NioEventLoopGroup workerGroup;
+    private final TransportRuntime runtime;
+    private final HeartBeatManager heartBeatManager;
     private final ServerBootstrap bootstrap;
-    private ChannelFuture channelFuture;
+    private List<Channel> serverChannels = Collections.emptyList();
 
-    public ImWebSocketServer(ImBootstrapConfig.TcpConfig config) {
+    public ImWebSocketServer(ImBootstrapConfig.TcpConfig config, TransportRuntime runtime, HeartBeatManager heartBeatManager) {
         this.config = config;
-        // 创建主从线程组
-        this.bossGroup = new NioEventLoopGroup(config.getBossThreadSize());
-        this.workerGroup = new NioEventLoopGroup(config.getWorkThreadSize());
-        this.bootstrap = new ServerBootstrap();
+        this.runtime = runtime;
+        this.heartBeatManager = heartBeatManager;
+        // 线程组、传输类型和通用参数由共享的传输层运行时提供
+        this.bootstrap = runtime.newServerBootstrap();
 
-        bootstrap.group(bossGroup, workerGroup)
-                .channel(NioServerSocketChannel.class)
-                // 服务端可连接的最大队列数量
-                .option(ChannelOption.SO_BACKLOG, 10240)
-                // 允许重复使用本地地址和端口
-                .option(ChannelOption.SO_REUSEADDR, true)
-                // 禁用Nagle算法，提高消息实时性
-                .childOption(ChannelOption.TCP_NODELAY, true)
-                // 保活机制
-                .childOption(ChannelOption.SO_KEEPALIVE, true)
-                .childHandler(new ChannelInitializer<SocketChannel>() {
-                    @Override
-                    protected void initChannel(SocketChannel socketChannel) {
-                        ChannelPipeline pipeline = socketChannel.pipeline();
-                        // HTTP编解码器
-                        pipeline.addLast("http-codec", new HttpServerCodec());
-                        // 支持大数据流写入
-                        pipeline.addLast("http-chunked", new ChunkedWriteHandler());
-                        // HTTP消息聚合
-                        pipeline.addLast("aggregator", new HttpObjectAggregator(65535));
-                        // WebSocket协议处理器（路由: /ws）
-                        pipeline.addLast(new WebSocketServerProtocolHandler("/ws"));
-                        // 自定义消息编解码器
-                        pipeline.addLast(new WebSocketMessageDecoderHandler());
-                        pipeline.addLast(new WebSocketMessageEncoderHandler());
-                        // 业务逻辑处理器
-                        pipeline.addLast(new NettyServerHandler(config.getBrokerId(), config.getLogicUrl()));
-                    }
-                });
+        bootstrap.childHandler(new ChannelInitializer<SocketChannel>() {
+            @Override
+            protected void initChannel(SocketChannel socketChannel) {
+                ChannelPipeline pipeline = socketChannel.pipeline();
+                // 出站 flush 合并（放在最前面，拦截所有出站 flush）
+                pipeline.addLast(new FlushCoalescingHandler(config));
+                // 心跳处理器（与TCP共用同一个心跳管理器）
+                pipeline.addLast(new HeartBeatHandler(heartBeatManager));
+                // HTTP编解码器
+                pipeline.addLast("http-codec", new HttpServerCodec());
+                // 支持大数据流写入
+                pipeline.addLast("http-chunked", new ChunkedWriteHandler());
+                // HTTP消息聚合
+                pipeline.addLast("aggregator", new HttpObjectAggregator(65535));
+                // WebSocket协议处理器（路由: /ws）
+                pipeline.addLast(new WebSocketServerProtocolHandler("/ws"));
+                // 自定义消息编解码器
+                pipeline.addLast(new WebSocketMessageDecoderHandler(config.isLazyDecode()));
+                pipeline.addLast(new WebSocketMessageEncoderHandler());
+                // 单用户、单命令速率控制
+                pipeline.addLast(new AdmissionControlHandler(AdmissionControl.getInstance()));
+                // 业务逻辑处理器
+                pipeline.addLast(new NettyServerHandler(config.getBrokerId(), config.getCheckMaxPendingPerChannel()));
+                // 出站背压（放在最后面，出站消息在编码前先经过这里）
+                pipeline.addLast(new OutboundBackPressureHandler(SlowConsumerMonitor.getInstance()));
+            }
+        });
     }
 
     /**
@@ -77,8 +82,8 @@ public class ImWebSocketServer {
      */
     public void start() {
         try {
-            channelFuture = bootstrap.bind(config.getWebSocketPort()).sync();
-            log.info("WebSocket服务器启动成功，端口: {}", config.getWebSocketPort());
+            serverChannels = runtime.bind(bootstrap, config.getWebSocketPort());
+            log.info("WebSocket服务器启动成功，端口: {}, acceptor数量: {}", config.getWebSocketPort(), serverChannels.size());
         } catch (InterruptedException e) {
             log.error("WebSocket服务器启动失败", e);
             Thread.currentThread().interrupt();
@@ -93,23 +98,15 @@ public class ImWebSocketServer {
         log.info("开始关闭WebSocket服务器...");
 
         try {
-            // 关闭服务器Channel
-            if (channelFuture != null && channelFuture.channel() != null) {
-                channelFuture.channel().close().sync();
+            // 关闭服务器Channel，线程组由传输层运行时统一关闭
+            for (Channel serverChannel : serverChannels) {
+                serverChannel.close().sync();
             }
         } catch (InterruptedException e) {
             log.error("关闭服务器Channel时被中断", e);
             Thread.currentThread().interrupt();
         }
 
-        // 优雅关闭线程组
-        if (workerGroup != null) {
-            workerGroup.shutdownGracefully();
-        }
-        if (bossGroup != null) {
-            bossGroup.shutdownGracefully();
-        }
-
         log.info("WebSocket服务器已关闭");
     }
 }
@@ -0,0 +1,159 @@
+package com.pd.im.tcp.server;
+
+import com.pd.im.codec.config.ImBootstrapConfig;
+import com.pd.im.tcp.handler.AcceptGovernorHandler;
+import com.pd.im.tcp.handler.AdmissionControl;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 网关传输层运行时
+ * <p>
+ * TCP 与 WebSocket 两个监听共用同一组 boss/worker 线程，避免同一台网关上两套 worker 争抢 CPU：
+ * - Linux 下优先使用原生 epoll，不可用时回退 NIO
+ * - 开启 SO_REUSEPORT 时同一端口绑定多个 acceptor，由内核分散新连接
+ * - 子连接统一设置写缓冲水位和池化直接内存分配器
+ *
+ * @author Parker
+ * @date 12/3/25
+ */
+@Slf4j
+public class TransportRuntime {
+    private final ImBootstrapConfig.TcpConfig config;
+    private final boolean epoll;
+    private final int acceptorCount;
+    private final EventLoopGroup bossGroup;
+    private final EventLoopGroup workerGroup;
+    private final ByteBufAllocator allocator;
+
+    public TransportRuntime(ImBootstrapConfig.TcpConfig config) {
+        this.config = config;
+        this.epoll = config.isNativeTransport() && Epoll.isAvailable();
+        if (config.isNativeTransport() && !epoll) {
+            log.warn("epoll不可用，回退NIO传输: {}", String.valueOf(Epoll.unavailabilityCause()));
+        }
+
+        // SO_REUSEPORT 只在 epoll 下有意义，否则只能绑定一次
+        this.acceptorCount = epoll && config.isReusePort() ? positive(config.getAcceptorCount(), 1) : 1;
+        int bossThreads = Math.max(positive(config.getBossThreadSize(), 1), acceptorCount);
+        int workerThreads = positive(config.getWorkThreadSize(), Runtime.getRuntime().availableProcessors());
+
+        this.bossGroup = newEventLoopGroup(bossThreads, "im-boss");
+        this.workerGroup = newEventLoopGroup(workerThreads, "im-worker");
+        this.allocator = config.isPooledDirectAllocator()
+                ? new PooledByteBufAllocator(true)
+                : ByteBufAllocator.DEFAULT;
+
+        log.info("传输层初始化完成: transport={}, bossThreads={}, workerThreads={}, acceptorCount={}, pooledDirect={}",
+                epoll ? "epoll" : "nio", bossThreads, workerThreads, acceptorCount, config.isPooledDirectAllocator());
+    }
+
+    /**
+     * 创建已配置好线程组、Channel 类型和通用参数的 ServerBootstrap
+     * <p>
+     * 调用方只需设置 childHandler
+     *
+     * @return ServerBootstrap
+     */
+    public ServerBootstrap newServerBootstrap() {
+        ServerBootstrap bootstrap = new ServerBootstrap();
+        bootstrap.group(bossGroup, workerGroup)
+                .channel(serverChannelClass())
+                // 服务端可连接的最大队列数量
+                .option(ChannelOption.SO_BACKLOG, positive(config.getSoBacklog(), 10240))
+                // 允许重复使用本地地址和端口
+                .option(ChannelOption.SO_REUSEADDR, true)
+                .option(ChannelOption.ALLOCATOR, allocator)
+                // 新连接注册到 worker 线程之前做接入速率控制
+                .handler(new AcceptGovernorHandler(AdmissionControl.getInstance()))
+                // 禁用Nagle算法，提高消息实时性
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                // 保活机制
+                .childOption(ChannelOption.SO_KEEPALIVE, true)
+                .childOption(ChannelOption.ALLOCATOR, allocator)
+                // 写缓冲水位，超过高水位后 Channel.isWritable() 返回 false
+                .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(
+                        positive(config.getWriteBufferLowWaterMark(), 32 * 1024),
+                        positive(config.getWriteBufferHighWaterMark(), 64 * 1024)));
+        if (acceptorCount > 1) {
+            bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+        }
+        return bootstrap;
+    }
+
+    /**
+     * 绑定端口
+     * <p>
+     * 开启 SO_REUSEPORT 时绑定 acceptorCount 次，每个 ServerChannel 落在不同的 boss 线程上
+     *
+     * @param bootstrap ServerBootstrap
+     * @param port      端口
+     * @return 绑定成功的 ServerChannel 列表
+     * @throws InterruptedException 绑定被中断
+     */
+    public List<Channel> bind(ServerBootstrap bootstrap, int port) throws InterruptedException {
+        List<Channel> channels = new ArrayList<>(acceptorCount);
+        for (int i = 0; i < acceptorCount; i++) {
+            channels.add(bootstrap.bind(port).sync().channel());
+        }
+        return channels;
+    }
+
+    /**
+     * 优雅关闭线程组
+     * <p>
+     * 必须在所有监听关闭之后调用
+     */
+    public void shutdown() {
+        workerGroup.shutdownGracefully();
+        bossGroup.shutdownGracefully();
+        log.info("传输层线程组已关闭");
+    }
+
+    public EventLoopGroup getWorkerGroup() {
+        return workerGroup;
+    }
+
+    public boolean isEpoll() {
+        return epoll;
+    }
+
+    /**
+     * 子连接使用的分配器，连接之外需要分配出站缓冲时使用
+     */
+    public ByteBufAllocator getAllocator() {
+        return allocator;
+    }
+
+    private Class<? extends ServerChannel> serverChannelClass() {
+        return epoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+    }
+
+    private EventLoopGroup newEventLoopGroup(int threads, String poolName) {
+        DefaultThreadFactory threadFactory = new DefaultThreadFactory(poolName);
+        return epoll
+                ? new EpollEventLoopGroup(threads, threadFactory)
+                : new NioEventLoopGroup(threads, threadFactory);
+    }
+
+    private static int positive(Integer value, int defaultValue) {
+        return value == null || value <= 0 ? defaultValue : value;
+    }
+}
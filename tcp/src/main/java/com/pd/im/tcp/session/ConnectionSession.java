@@ -0,0 +1,133 @@
+package com.pd.im.tcp.session;
+
+import com.pd.im.common.ResponseVO;
+import com.pd.im.common.constant.Constants;
+import com.pd.im.common.model.UserClientDto;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 连接会话
+ * <p>
+ * 登录成功后通过唯一的 {@link #KEY} 挂在 Channel 上，替代按字符串逐个查找 userId、appId、clientType、imei 等属性：
+ * - 身份字段不可变，appId/clientType 使用基本类型，userId/imei 驻留到常量池，同一用户的多个连接共享字符串
+ * - 关闭原因标志位使用 volatile，可在任意线程读取
+ * - 每条消息只需一次属性查找
+ * - 单聊直投的去重记录、分配序列号的发送校验等按连接的状态也放在这里，只在连接所属的 EventLoop 上访问
+ *
+ * @author Parker
+ * @date 12/5/25
+ */
+@Getter
+public final class ConnectionSession {
+
+    public static final AttributeKey<ConnectionSession> KEY =
+            AttributeKey.valueOf(Constants.ChannelConstants.CONNECTION_SESSION);
+
+    private final int appId;
+    private final int clientType;
+    private final String userId;
+    private final String imei;
+
+    /**
+     * clientType:imei，即 Redis 用户Session中的 field
+     */
+    private final String clientImei;
+
+    /**
+     * 对应的用户客户端信息，同时作为本地映射的Key，调用方不得修改
+     */
+    private final UserClientDto userClientDto;
+
+    /**
+     * 标志位：Channel正在被重新绑定而关闭（同设备重复登录）
+     */
+    private volatile boolean closingByRebind;
+
+    /**
+     * 标志位：Channel已被清理（离线或登出）
+     */
+    private volatile boolean closingByCleanup;
+
+    /**
+     * 单聊同网关直投的去重记录，首次直投时创建，参见 {@link LocalDeliveryDedupe}
+     */
+    @Getter(AccessLevel.NONE)
+    private LocalDeliveryDedupe localDeliveryDedupe;
+
+    /**
+     * 最近一次要求业务层分配序列号的发送校验，同一连接的这类校验串行发出
+     */
+    @Setter
+    private CompletableFuture<ResponseVO> sequencedCheck;
+
+    private ConnectionSession(UserClientDto userClientDto) {
+        this.appId = userClientDto.getAppId();
+        this.clientType = userClientDto.getClientType();
+        this.userId = userClientDto.getUserId().intern();
+        this.imei = userClientDto.getImei().intern();
+        this.clientImei = clientType + ":" + imei;
+        this.userClientDto = UserClientDto.builder()
+                .appId(appId)
+                .clientType(clientType)
+                .userId(userId)
+                .imei(imei)
+                .build();
+    }
+
+    /**
+     * 创建连接会话并挂到 Channel 上
+     *
+     * @param channel       Channel
+     * @param userClientDto 用户客户端信息
+     * @return 连接会话
+     */
+    public static ConnectionSession bind(Channel channel, UserClientDto userClientDto) {
+        ConnectionSession session = new ConnectionSession(userClientDto);
+        channel.attr(KEY).set(session);
+        return session;
+    }
+
+    /**
+     * 获取 Channel 上的连接会话
+     *
+     * @param channel Channel
+     * @return 连接会话，未登录返回 null
+     */
+    public static ConnectionSession get(Channel channel) {
+        return channel.attr(KEY).get();
+    }
+
+    /**
+     * 获取单聊直投的去重记录
+     *
+     * @param create 不存在时是否创建
+     * @return 去重记录，不创建且不存在时返回 null
+     */
+    LocalDeliveryDedupe localDeliveryDedupe(boolean create) {
+        if (localDeliveryDedupe == null && create) {
+            localDeliveryDedupe = new LocalDeliveryDedupe();
+        }
+        return localDeliveryDedupe;
+    }
+
+    public void markClosingByRebind() {
+        this.closingByRebind = true;
+    }
+
+    public void markClosingByCleanup() {
+        this.closingByCleanup = true;
+    }
+
+    /**
+     * 连接是否已进入关闭流程
+     */
+    public boolean isClosing() {
+        return closingByRebind || closingByCleanup;
+    }
+}
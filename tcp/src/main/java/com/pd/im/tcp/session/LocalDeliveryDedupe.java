@@ -0,0 +1,73 @@
+package com.pd.im.tcp.session;
+
+import io.netty.channel.Channel;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 单聊同网关直投的去重记录
+ * <p>
+ * 发送方网关直投给接收方连接的消息按 messageId 记录在该连接上，业务层随后的正常分发携带同一个 messageId，
+ * 命中记录时丢弃并移除记录，每条消息只去重一次：
+ * - 每个连接最多保留 {@link #CAPACITY} 条，超过后淘汰最早的记录，被淘汰的消息最多重复推送一次，由客户端按 messageId 兜底去重
+ * - 记录挂在连接会话上（{@link ConnectionSession}），未登录的连接不做去重
+ * - 记录和查询都在连接所属的 EventLoop 上执行，无需加锁
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+public final class LocalDeliveryDedupe {
+
+    private static final int CAPACITY = 64;
+
+    private final ArrayDeque<String> order = new ArrayDeque<>(CAPACITY);
+    private final Set<String> messageIds = new HashSet<>(CAPACITY * 2);
+
+    LocalDeliveryDedupe() {
+    }
+
+    /**
+     * 记录已直投给该连接的消息，需在连接所属的 EventLoop 上调用
+     *
+     * @param channel   接收方连接
+     * @param messageId 消息ID
+     * @return 该消息此前已直投过时返回 false；连接未登录时不记录，返回 true
+     */
+    public static boolean markDelivered(Channel channel, String messageId) {
+        ConnectionSession session = ConnectionSession.get(channel);
+        if (session == null) {
+            return true;
+        }
+        LocalDeliveryDedupe dedupe = session.localDeliveryDedupe(true);
+        if (!dedupe.messageIds.add(messageId)) {
+            return false;
+        }
+        if (dedupe.order.size() >= CAPACITY) {
+            dedupe.messageIds.remove(dedupe.order.poll());
+        }
+        dedupe.order.add(messageId);
+        return true;
+    }
+
+    /**
+     * 消息是否已直投给该连接，命中时移除记录，需在连接所属的 EventLoop 上调用
+     *
+     * @param channel   接收方连接
+     * @param messageId 消息ID，为空时视为未直投
+     * @return 已直投过返回 true
+     */
+    public static boolean consume(Channel channel, String messageId) {
+        if (messageId == null) {
+            return false;
+        }
+        ConnectionSession session = ConnectionSession.get(channel);
+        LocalDeliveryDedupe dedupe = session != null ? session.localDeliveryDedupe(false) : null;
+        if (dedupe == null || !dedupe.messageIds.remove(messageId)) {
+            return false;
+        }
+        dedupe.order.remove(messageId);
+        return true;
+    }
+}
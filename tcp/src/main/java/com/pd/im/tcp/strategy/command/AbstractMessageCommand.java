@@ -1,26 +1,30 @@
 package com.pd.im.tcp.strategy.command;
 
+import com.pd.im.codec.proto.ChatMessageRoute;
 import com.pd.im.codec.proto.Message;
 import com.pd.im.codec.proto.MessagePack;
 import com.pd.im.codec.proto.generated.ChatMessageAck;
-import com.pd.im.codec.proto.generated.ChatMessagePack;
+import com.pd.im.codec.util.MessageCodecUtils;
 import com.pd.im.common.ResponseVO;
 import com.pd.im.common.model.message.CheckSendMessageReq;
-import com.pd.im.tcp.feign.FeignMessageService;
+import com.pd.im.tcp.feign.MessageCheckClient;
 import com.pd.im.tcp.rabbitmq.publish.MqMessageProducer;
 import com.pd.im.tcp.strategy.command.model.CommandContext;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.concurrent.CompletableFuture;
+
 import static com.pd.im.common.constant.Constants.MsgPackConstants.*;
 
 /**
  * 消息校验命令抽象类
  * <p>
  * 使用模板方法模式处理消息校验的通用流程：
- * 1. 解析消息
- * 2. 调用业务层校验接口
- * 3. 校验通过则发送到MQ，失败则返回ACK响应
+ * 1. 读取消息路由字段
+ * 2. 异步调用业务层校验接口，不阻塞 EventLoop
+ * 3. 校验结果回到 Channel 所属的 EventLoop，按连接内的发送顺序处理：通过则发送到MQ，失败则返回ACK响应
  *
  * @author Parker
  * @date 12/4/25
@@ -32,19 +36,10 @@ public abstract class AbstractMessageCommand implements CommandStrategy {
     public void execute(CommandContext context) {
         ChannelHandlerContext ctx = context.getCtx();
         Message msg = context.getMsg();
-        FeignMessageService feignMessageService = context.getFeignMessageService();
-
-        Object pack = msg.getMessagePack();
-        String fromId = "";
-        String toId = "";
-        String messageId = "";
-
-        if (pack instanceof ChatMessagePack) {
-            ChatMessagePack chatPack = (ChatMessagePack) pack;
-            fromId = chatPack.getFromId();
-            toId = extractToIdFromProto(chatPack);
-            messageId = chatPack.getMessageId();
-        } else {
+
+        // 只读取路由字段，消息体保持原始字节透传到MQ
+        ChatMessageRoute route = MessageCodecUtils.peekChatMessageRoute(msg);
+        if (route == null) {
             log.error("不支持的数据包类型，期待 ChatMessagePack");
             return;
         }
@@ -53,37 +48,72 @@ public abstract class AbstractMessageCommand implements CommandStrategy {
         CheckSendMessageReq req = CheckSendMessageReq.builder()
                 .appId(msg.getMessageHeader().getAppId())
                 .command(msg.getMessageHeader().getCommand())
-                .fromId(fromId)
-                .toId(toId)
+                .fromId(route.getFromId())
+                .toId(extractToId(route))
+                .messageId(route.getMessageId())
                 .build();
 
-        // 调用业务层校验接口
-        ResponseVO responseVO = validateMessage(feignMessageService, req);
+        // 异步调用业务层校验接口，结果按连接内顺序处理
+        CompletableFuture<ResponseVO> validation = validateMessage(ctx.channel(), MessageCheckClient.getInstance(), req);
+        OrderedSendQueue.of(ctx.channel(), context.getMaxPendingChecks())
+                .submit(this, msg, route.getMessageId(), validation);
+    }
 
+    /**
+     * 处理校验结果，在 Channel 所属的 EventLoop 上按消息接收顺序调用
+     *
+     * @param channel    Channel
+     * @param msg        消息
+     * @param messageId  消息ID
+     * @param responseVO 校验结果
+     */
+    void onValidated(Channel channel, Message msg, String messageId, ResponseVO responseVO) {
         if (responseVO.isSuccess()) {
             // 校验通过，发送到MQ
-            MqMessageProducer.sendMessage(msg, msg.getMessageHeader().getCommand());
+            forward(channel, msg, responseVO);
         } else {
             // 校验失败，返回ACK响应
-            sendAckResponse(ctx, messageId, responseVO);
+            sendAckResponse(channel, messageId, responseVO);
         }
     }
 
-
+    /**
+     * 从消息路由信息中提取目标ID
+     */
+    protected abstract String extractToId(ChatMessageRoute route);
 
     /**
-     * 从 Protobuf 消息体中提取目标ID
+     * 异步调用业务层校验接口
+     *
+     * @param client 校验客户端
+     * @param req    校验请求
+     * @return 校验结果
      */
-    protected abstract String extractToIdFromProto(ChatMessagePack chatPack);
+    protected abstract CompletableFuture<ResponseVO> validateMessage(MessageCheckClient client, CheckSendMessageReq req);
 
     /**
-     * 调用业务层校验接口
+     * 异步调用业务层校验接口，子类需要按连接定制校验请求时覆盖
      *
-     * @param feignMessageService Feign客户端
-     * @param req                 校验请求
+     * @param channel 发送方连接
+     * @param client  校验客户端
+     * @param req     校验请求
      * @return 校验结果
      */
-    protected abstract ResponseVO validateMessage(FeignMessageService feignMessageService, CheckSendMessageReq req);
+    protected CompletableFuture<ResponseVO> validateMessage(Channel channel, MessageCheckClient client,
+                                                            CheckSendMessageReq req) {
+        return validateMessage(client, req);
+    }
+
+    /**
+     * 转发校验通过的消息，在 Channel 所属的 EventLoop 上按消息接收顺序调用
+     *
+     * @param channel    发送方连接
+     * @param msg        消息
+     * @param responseVO 校验结果
+     */
+    protected void forward(Channel channel, Message msg, ResponseVO responseVO) {
+        MqMessageProducer.sendMessage(channel.eventLoop(), msg, msg.getMessageHeader().getCommand());
+    }
 
     /**
      * 获取ACK响应的命令码
@@ -95,21 +125,22 @@ public abstract class AbstractMessageCommand implements CommandStrategy {
     /**
      * 发送ACK响应
      *
-     * @param ctx        Channel上下文
+     * @param channel    Channel
      * @param messageId  消息ID
      * @param responseVO 响应结果
      */
-    private void sendAckResponse(ChannelHandlerContext ctx, String messageId, ResponseVO responseVO) {
+    private void sendAckResponse(Channel channel, String messageId, ResponseVO responseVO) {
         ChatMessageAck chatMessageAck = ChatMessageAck.newBuilder()
                 .setMessageId(messageId != null ? messageId : "")
                 .build();
-        responseVO.setData(chatMessageAck);
+        // ACK 以 JSON 下发，Protobuf 对象先转换为字段 Map
+        responseVO.setData(MessageCodecUtils.toJsonObject(chatMessageAck));
 
         MessagePack<ResponseVO> ack = new MessagePack<>();
         ack.setData(responseVO);
         ack.setCommand(getAckCommand());
         ack.setTimestamp(System.currentTimeMillis());
 
-        ctx.channel().writeAndFlush(ack);
+        channel.writeAndFlush(ack);
     }
 }
@@ -0,0 +1,120 @@
+package com.pd.im.tcp.strategy.command;
+
+import com.pd.im.codec.proto.Message;
+import com.pd.im.common.ResponseVO;
+import com.pd.im.common.constant.Constants;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 单个连接的有序发送队列
+ * <p>
+ * 发送权限校验是异步的，先发出的消息可能后拿到结果。队列按接收顺序保存待校验消息，
+ * 只有队头完成校验才依次处理，保证同一连接的消息按发送顺序进入MQ。
+ * <p>
+ * 所有方法只在连接所属的 EventLoop 上执行，无需加锁。
+ * 待校验消息达到上限时暂停读取该连接（背压），回落到一半以下时恢复读取。
+ *
+ * @author Parker
+ * @date 12/5/25
+ */
+@Slf4j
+class OrderedSendQueue {
+
+    private static final AttributeKey<OrderedSendQueue> KEY =
+            AttributeKey.valueOf(Constants.ChannelConstants.ORDERED_SEND_QUEUE);
+
+    private final Channel channel;
+    private final int maxPending;
+    private final ArrayDeque<PendingSend> queue = new ArrayDeque<>();
+    private boolean readSuspended;
+
+    private OrderedSendQueue(Channel channel, int maxPending) {
+        this.channel = channel;
+        this.maxPending = Math.max(1, maxPending);
+    }
+
+    /**
+     * 获取连接的有序发送队列，不存在时创建
+     */
+    static OrderedSendQueue of(Channel channel, int maxPending) {
+        OrderedSendQueue sendQueue = channel.attr(KEY).get();
+        if (sendQueue == null) {
+            sendQueue = new OrderedSendQueue(channel, maxPending);
+            channel.attr(KEY).set(sendQueue);
+        }
+        return sendQueue;
+    }
+
+    /**
+     * 提交一条待校验消息
+     * <p>
+     * 消息会被 retain，处理完成后释放
+     *
+     * @param command    处理校验结果的命令
+     * @param msg        消息
+     * @param messageId  消息ID
+     * @param validation 校验结果
+     */
+    void submit(AbstractMessageCommand command, Message msg, String messageId,
+                CompletableFuture<ResponseVO> validation) {
+        PendingSend pending = new PendingSend(command, msg.retain(), messageId);
+        queue.add(pending);
+
+        if (!readSuspended && queue.size() >= maxPending) {
+            readSuspended = true;
+            channel.config().setAutoRead(false);
+            log.debug("待校验消息达到上限，暂停读取: channel={}, pending={}", channel.id(), queue.size());
+        }
+
+        validation.whenComplete((result, e) -> {
+            ResponseVO responseVO = result != null ? result : ResponseVO.errorResponse();
+            try {
+                channel.eventLoop().execute(() -> complete(pending, responseVO));
+            } catch (RejectedExecutionException rejected) {
+                // EventLoop 已关闭，连接也随之关闭，只需释放消息
+                pending.msg.release();
+            }
+        });
+    }
+
+    private void complete(PendingSend pending, ResponseVO responseVO) {
+        pending.result = responseVO;
+
+        // 按提交顺序处理已完成校验的队头消息
+        while (!queue.isEmpty() && queue.peek().result != null) {
+            PendingSend head = queue.poll();
+            try {
+                head.command.onValidated(channel, head.msg, head.messageId, head.result);
+            } catch (Exception e) {
+                log.error("处理校验结果失败: channel={}, messageId={}", channel.id(), head.messageId, e);
+            } finally {
+                head.msg.release();
+            }
+        }
+
+        if (readSuspended && queue.size() <= maxPending / 2) {
+            readSuspended = false;
+            channel.config().setAutoRead(true);
+            log.debug("待校验消息回落，恢复读取: channel={}, pending={}", channel.id(), queue.size());
+        }
+    }
+
+    private static final class PendingSend {
+        private final AbstractMessageCommand command;
+        private final Message msg;
+        private final String messageId;
+        private ResponseVO result;
+
+        private PendingSend(AbstractMessageCommand command, Message msg, String messageId) {
+            this.command = command;
+            this.msg = msg;
+            this.messageId = messageId;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.pd.im.tcp.strategy.command.factory;
 
+import com.pd.im.codec.config.ImBootstrapConfig;
 import com.pd.im.common.enums.command.GroupEventCommand;
 import com.pd.im.common.enums.command.MessageCommand;
 import com.pd.im.common.enums.command.SystemCommand;
@@ -27,10 +28,8 @@ public class CommandFactory {
     /**
      * 预创建的策略实例（策略无状态，可复用）
      */
-    private static final LoginCommand LOGIN_COMMAND = new LoginCommand();
     private static final LogoutCommand LOGOUT_COMMAND = new LogoutCommand();
     private static final PingCommand PING_COMMAND = new PingCommand();
-    private static final P2PMsgCommand P2P_MSG_COMMAND = new P2PMsgCommand();
     private static final GroupMsgCommand GROUP_MSG_COMMAND = new GroupMsgCommand();
 
     /**
@@ -57,15 +56,17 @@ public class CommandFactory {
      * 初始化命令策略映射
      * <p>
      * 必须在应用启动时调用
+     *
+     * @param config 配置
      */
-    public static void init() {
+    public static void init(ImBootstrapConfig.TcpConfig config) {
         // 系统命令策略
-        STRATEGY_MAP.put(SystemCommand.LOGIN.getCommand(), LOGIN_COMMAND);
+        STRATEGY_MAP.put(SystemCommand.LOGIN.getCommand(), new LoginCommand(config.isCompactProtocol()));
         STRATEGY_MAP.put(SystemCommand.LOGOUT.getCommand(), LOGOUT_COMMAND);
         STRATEGY_MAP.put(SystemCommand.PING.getCommand(), PING_COMMAND);
 
         // 消息命令策略
-        STRATEGY_MAP.put(MessageCommand.MSG_P2P.getCommand(), P2P_MSG_COMMAND);
+        STRATEGY_MAP.put(MessageCommand.MSG_P2P.getCommand(), new P2PMsgCommand(config.isP2pLocalDelivery()));
         STRATEGY_MAP.put(GroupEventCommand.MSG_GROUP.getCommand(), GROUP_MSG_COMMAND);
     }
 
@@ -1,13 +1,15 @@
 package com.pd.im.tcp.strategy.command.impl;
 
 import com.alibaba.fastjson.JSONObject;
-import com.pd.im.codec.proto.generated.ChatMessagePack;
+import com.pd.im.codec.proto.ChatMessageRoute;
 import com.pd.im.common.ResponseVO;
 import com.pd.im.common.enums.command.GroupEventCommand;
 import com.pd.im.common.model.message.CheckSendMessageReq;
-import com.pd.im.tcp.feign.FeignMessageService;
+import com.pd.im.tcp.feign.MessageCheckClient;
 import com.pd.im.tcp.strategy.command.AbstractMessageCommand;
 
+import java.util.concurrent.CompletableFuture;
+
 import static com.pd.im.common.constant.Constants.MsgPackConstants.GROUP_ID;
 
 /**
@@ -22,13 +24,13 @@ public class GroupMsgCommand extends AbstractMessageCommand {
 
 
     @Override
-    protected String extractToIdFromProto(ChatMessagePack chatPack) {
-        return chatPack.getToId();
+    protected String extractToId(ChatMessageRoute route) {
+        return route.getToId();
     }
 
     @Override
-    protected ResponseVO validateMessage(FeignMessageService feignMessageService, CheckSendMessageReq req) {
-        return feignMessageService.checkGroupSendMessage(req);
+    protected CompletableFuture<ResponseVO> validateMessage(MessageCheckClient client, CheckSendMessageReq req) {
+        return client.checkGroupSendMessage(req);
     }
 
     @Override
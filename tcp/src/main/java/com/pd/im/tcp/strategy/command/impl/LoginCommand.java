@@ -1,11 +1,14 @@
 package com.pd.im.tcp.strategy.command.impl;
 
-import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
+import com.pd.im.codec.pack.user.UserStatusChangeNotifyPack;
 import com.pd.im.codec.proto.Message;
+import com.pd.im.codec.proto.MessageHeader;
 import com.pd.im.codec.proto.MessagePack;
+import com.pd.im.codec.proto.SessionHeader;
 import com.pd.im.codec.proto.generated.LoginAckPack;
 import com.pd.im.codec.proto.generated.LoginPack;
+import com.pd.im.codec.util.MessageCodecUtils;
 import com.pd.im.common.constant.Constants;
 import com.pd.im.common.enums.command.SystemCommand;
 import com.pd.im.common.enums.command.UserEventCommand;
@@ -16,21 +19,34 @@ import com.pd.im.tcp.rabbitmq.publish.MqMessageProducer;
 import com.pd.im.tcp.redis.RedissonManager;
 import com.pd.im.tcp.strategy.command.CommandStrategy;
 import com.pd.im.tcp.strategy.command.model.CommandContext;
+import com.pd.im.tcp.strategy.login.LoginKickRouter;
 import com.pd.im.tcp.utils.UserChannelRepository;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
 import lombok.extern.slf4j.Slf4j;
-import org.redisson.api.RMap;
-import org.redisson.api.RTopic;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.RBatch;
+import org.redisson.api.RFuture;
+import org.redisson.api.RMapAsync;
+import org.redisson.api.RScript;
 import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
 
 /**
  * 用户登录命令
  * <p>
- * 处理用户登录逻辑：
- * 1. 绑定用户与Channel
- * 2. 存储用户Session到Redis
- * 3. 发布用户上线通知
- * 4. 发送在线状态变更消息到MQ
- * 5. 返回登录成功响应
+ * 登录流程全部异步执行，不在 EventLoop 上等待 Redis：
+ * 1. 校验并删除登录票据（一次 Lua 脚本，原子执行）
+ * 2. 回到 Channel 所属的 EventLoop 双向绑定用户与Channel
+ * 3. 存储用户Session并读取已有Session（同一个原子 RBatch，一次往返），按登录策略定向踢出旧设备
+ * 4. 回到 EventLoop 发送在线状态变更消息到MQ，返回登录成功响应
+ * <p>
+ * 登录帧 version 为 {@link MessageCodecUtils#COMPACT_VERSION} 且网关开启紧凑协议时，登录成功后把 appId、clientType、
+ * messageType、imei 绑定到连接（{@link SessionHeader}），并在登录响应中确认协议版本，客户端收到确认后改发紧凑协议帧
  *
  * @author Parker
  * @date 12/3/25
@@ -38,69 +54,154 @@ import org.redisson.api.RedissonClient;
 @Slf4j
 public class LoginCommand implements CommandStrategy {
 
+    /**
+     * 票据校验脚本：票据一致时删除并返回 1，不一致返回 0，不存在返回 -1
+     */
+    private static final String CHECK_AND_DELETE_TICKET_SCRIPT =
+            "local cached = redis.call('get', KEYS[1]) "
+                    + "if cached == false then return -1 end "
+                    + "if cached == ARGV[1] then redis.call('del', KEYS[1]) return 1 end "
+                    + "return 0";
+
+    private static final long TICKET_VALID = 1L;
+    private static final long TICKET_MISSING = -1L;
+
+    /**
+     * 是否接受客户端协商紧凑协议
+     */
+    private final boolean compactProtocol;
+
+    public LoginCommand(boolean compactProtocol) {
+        this.compactProtocol = compactProtocol;
+    }
+
     @Override
     public void execute(CommandContext context) {
-        try {
-            // 参数校验
-            if (context == null || context.getMsg() == null || context.getCtx() == null) {
-                log.error("登录命令执行失败：参数为空");
-                return;
-            }
+        // 参数校验
+        if (context == null || context.getMsg() == null || context.getCtx() == null) {
+            log.error("登录命令执行失败：参数为空");
+            return;
+        }
 
-            Message msg = context.getMsg();
-            Integer brokeId = context.getBrokeId();
+        Message msg = context.getMsg();
+        Channel channel = context.getCtx().channel();
 
-            // 1. 解析登录请求
-            LoginPack loginPack = parseLoginPack(msg);
-            if (loginPack == null || loginPack.getUserId() == null || loginPack.getUserId().trim().isEmpty()) {
-                log.error("登录失败：用户ID为空");
-                sendLoginFailResponse(context, "用户ID不能为空");
-                return;
-            }
+        // 1. 解析登录请求
+        LoginPack loginPack = parseLoginPack(msg);
+        if (loginPack == null || loginPack.getUserId() == null || loginPack.getUserId().trim().isEmpty()) {
+            log.error("登录失败：用户ID为空");
+            sendLoginFailResponse(channel, "用户ID不能为空");
+            return;
+        }
+
+        // 校验消息头
+        MessageHeader header = msg.getMessageHeader();
+        if (!validateMessageHeader(header)) {
+            log.error("登录失败：消息头参数不完整");
+            sendLoginFailResponse(channel, "消息头参数不完整");
+            return;
+        }
+
+        String ticket = loginPack.getTicket();
+        if (ticket == null || ticket.trim().isEmpty()) {
+            log.error("登录失败：Ticket 为空, userId={}", loginPack.getUserId());
+            sendLoginFailResponse(channel, "登录票据无效或已过期");
+            return;
+        }
 
-            // 1.1 校验 Ticket (对齐腾讯云优化)
-            if (!verifyLoginTicket(loginPack, msg)) {
-                log.error("登录失败：Ticket 校验不通过, userId={}", loginPack.getUserId());
-                sendLoginFailResponse(context, "登录票据无效或已过期");
+        // 1.1 校验 Ticket (对齐腾讯云优化)，Message 在 execute 返回后释放，后续只使用已解析的 header 和 loginPack
+        CompletionStage<Long> ticketCheck;
+        try {
+            ticketCheck = checkAndDeleteTicket(loginPack, header);
+        } catch (Exception e) {
+            log.error("登录命令执行异常", e);
+            sendLoginFailResponse(channel, "登录失败");
+            return;
+        }
+        ticketCheck.whenComplete((result, e) -> runOnChannel(channel, () -> {
+            if (e != null) {
+                log.error("登录失败：Ticket 校验异常, userId={}", loginPack.getUserId(), e);
+                sendLoginFailResponse(channel, "登录失败");
                 return;
             }
-
-            // 校验消息头
-            if (!validateMessageHeader(msg.getMessageHeader())) {
-                log.error("登录失败：消息头参数不完整");
-                sendLoginFailResponse(context, "消息头参数不完整");
+            if (result == null || result != TICKET_VALID) {
+                log.error("登录失败：Ticket 校验不通过, userId={}, reason={}", loginPack.getUserId(),
+                        result != null && result == TICKET_MISSING ? "Redis 中未找到 Ticket" : "Ticket 不匹配");
+                sendLoginFailResponse(channel, "登录票据无效或已过期");
                 return;
             }
+            try {
+                onTicketVerified(channel, loginPack, header, context.getBrokeId());
+            } catch (Exception ex) {
+                log.error("登录命令执行异常", ex);
+                sendLoginFailResponse(channel, "登录失败");
+            }
+        }));
+    }
 
-            UserClientDto userClientDto = new UserClientDto();
-            userClientDto.setUserId(loginPack.getUserId());
-            userClientDto.setAppId(msg.getMessageHeader().getAppId());
-            userClientDto.setClientType(msg.getMessageHeader().getClientType());
-            userClientDto.setImei(msg.getMessageHeader().getImei());
-
-            // 2. 双向绑定用户与Channel
-            UserChannelRepository.bind(userClientDto, context.getCtx().channel());
-
-            // 3. 构建用户Session并存储到Redis
-            UserSession userSession = buildUserSession(loginPack, msg, brokeId);
-            saveUserSession(userSession, msg);
+    /**
+     * 票据校验通过，在 Channel 所属的 EventLoop 上执行
+     */
+    private void onTicketVerified(Channel channel, LoginPack loginPack, MessageHeader header, Integer brokeId) {
+        if (!channel.isActive()) {
+            log.info("登录完成前连接已断开: userId={}", loginPack.getUserId());
+            return;
+        }
 
-            // 4. 发布用户上线通知（用于多端登录策略处理）
-            publishUserLoginEvent(userClientDto);
+        UserClientDto userClientDto = new UserClientDto();
+        userClientDto.setUserId(loginPack.getUserId());
+        userClientDto.setAppId(header.getAppId());
+        userClientDto.setClientType(header.getClientType());
+        userClientDto.setImei(header.getImei());
 
-            // 5. 发送用户在线状态变更消息到MQ
-            sendUserStatusChangeMessage(loginPack, msg);
+        // 2. 双向绑定用户与Channel
+        UserChannelRepository.bind(userClientDto, channel);
 
-            // 6. 返回登录成功响应
-            sendLoginAckResponse(context, loginPack, msg);
+        // 3. 存储用户Session，并按登录策略定向踢出其他网关上的旧设备
+        UserSession userSession = buildUserSession(loginPack, header, brokeId);
+        CompletionStage<Map<String, String>> saveSession;
+        try {
+            saveSession = saveSessionAndReadOthers(userSession);
+        } catch (Exception e) {
+            log.error("登录失败：保存用户Session异常, userId={}", loginPack.getUserId(), e);
+            failBoundLogin(channel);
+            return;
+        }
+        saveSession.whenComplete((sessions, e) -> runOnChannel(channel, () -> {
+            if (e != null) {
+                log.error("登录失败：保存用户Session异常, userId={}", loginPack.getUserId(), e);
+                failBoundLogin(channel);
+                return;
+            }
+            LoginKickRouter.getInstance().route(channel.eventLoop(), userClientDto, sessions.values());
+
+            // 4. 发送用户在线状态变更消息到MQ
+            sendUserStatusChangeMessage(channel, loginPack, header);
+
+            // 5. 协商上行协议版本，绑定协议头字段后再返回登录成功响应，客户端收到响应时解码器已能识别紧凑协议帧
+            int protocolVersion = MessageCodecUtils.DEFAULT_VERSION;
+            if (compactProtocol && header.getVersion() == MessageCodecUtils.COMPACT_VERSION) {
+                SessionHeader.bind(channel, header);
+                protocolVersion = MessageCodecUtils.COMPACT_VERSION;
+            } else {
+                // 同一连接以 v1 重新登录，不再接受紧凑协议帧，避免沿用上次登录的身份字段
+                SessionHeader.clear(channel);
+            }
+            sendLoginAckResponse(channel, loginPack, header, protocolVersion);
 
             log.info("用户登录成功: appId={}, userId={}, clientType={}, imei={}, brokerId={}",
-                    msg.getMessageHeader().getAppId(), loginPack.getUserId(),
-                    msg.getMessageHeader().getClientType(), msg.getMessageHeader().getImei(), brokeId);
+                    header.getAppId(), loginPack.getUserId(), header.getClientType(), header.getImei(), brokeId);
+        }));
+    }
 
-        } catch (Exception e) {
-            log.error("登录命令执行异常", e);
-            sendLoginFailResponse(context, "登录失败：" + e.getMessage());
+    /**
+     * 在 Channel 所属的 EventLoop 上执行
+     */
+    private void runOnChannel(Channel channel, Runnable task) {
+        if (channel.eventLoop().inEventLoop()) {
+            task.run();
+        } else {
+            channel.eventLoop().execute(task);
         }
     }
 
@@ -119,19 +220,32 @@ public class LoginCommand implements CommandStrategy {
 
     /**
      * 校验消息头参数
+     * <p>
+     * 消息头字段为基本类型，缺失时解码为 0；clientType 取 0 即 WEBAPI，只排除负数
      */
-    private boolean validateMessageHeader(com.pd.im.codec.proto.MessageHeader header) {
+    private boolean validateMessageHeader(MessageHeader header) {
         return header != null
-                && header.getAppId() != null
-                && header.getClientType() != null
+                && header.getAppId() >= 0
+                && header.getClientType() >= 0
                 && header.getImei() != null
                 && !header.getImei().trim().isEmpty();
     }
 
+    /**
+     * Channel 已与用户绑定后登录失败：发送失败响应，写出后登出并关闭连接，
+     * 客户端已被告知登录失败的连接不再收到该用户的推送
+     */
+    private void failBoundLogin(Channel channel) {
+        sendLoginFailResponse(channel, "登录失败")
+                .addListener(future -> UserChannelRepository.logout(channel));
+    }
+
     /**
      * 发送登录失败响应
+     *
+     * @return 写出结果
      */
-    private void sendLoginFailResponse(CommandContext context, String errorMsg) {
+    private ChannelFuture sendLoginFailResponse(Channel channel, String errorMsg) {
         try {
             // LoginAckPack in Protobuf
             LoginAckPack loginAckPack = LoginAckPack.newBuilder()
@@ -143,22 +257,23 @@ public class LoginCommand implements CommandStrategy {
             loginFail.setData(loginAckPack);
             loginFail.setTimestamp(System.currentTimeMillis());
 
-            context.getCtx().channel().writeAndFlush(loginFail);
+            return channel.writeAndFlush(loginFail);
         } catch (Exception e) {
             log.error("发送登录失败响应异常", e);
+            return channel.newFailedFuture(e);
         }
     }
 
     /**
      * 构建用户Session对象
      */
-    private UserSession buildUserSession(LoginPack loginPack, Message msg, Integer brokeId) {
+    private UserSession buildUserSession(LoginPack loginPack, MessageHeader header, Integer brokeId) {
         UserSession userSession = new UserSession();
         userSession.setUserId(loginPack.getUserId());
-        userSession.setAppId(msg.getMessageHeader().getAppId());
-        userSession.setClientType(msg.getMessageHeader().getClientType());
+        userSession.setAppId(header.getAppId());
+        userSession.setClientType(header.getClientType());
         userSession.setConnectState(ConnectState.CONNECT_STATE_ONLINE.getCode());
-        userSession.setImei(msg.getMessageHeader().getImei());
+        userSession.setImei(header.getImei());
         userSession.setBrokerId(brokeId);
 
         try {
@@ -173,96 +288,80 @@ public class LoginCommand implements CommandStrategy {
     }
 
     /**
-     * 保存用户Session到Redis
+     * 保存用户Session到Redis，并读取写入前用户已有的Session
+     * <p>
+     * 读取和写入放在同一个原子批次（MULTI/EXEC）中，一次网络往返；两台设备同时登录时，
+     * 后执行的一方一定能读到先执行的一方写入的Session
+     *
+     * @return 写入前用户已有的 Session（field -> UserSession JSON）
      */
-    private void saveUserSession(UserSession userSession, Message msg) {
+    private CompletionStage<Map<String, String>> saveSessionAndReadOthers(UserSession userSession) {
         RedissonClient redissonClient = RedissonManager.getRedissonClient();
-        String mapKey = msg.getMessageHeader().getAppId()
+        String mapKey = userSession.getAppId()
                 + Constants.RedisConstants.USER_SESSION
                 + userSession.getUserId();
-        RMap<String, String> map = redissonClient.getMap(mapKey);
-
-        String sessionKey = msg.getMessageHeader().getClientType() + ":" + msg.getMessageHeader().getImei();
-        map.put(sessionKey, JSONObject.toJSONString(userSession));
-    }
-
-    /**
-     * 发布用户上线通知
-     */
-    private void publishUserLoginEvent(UserClientDto userClientDto) {
-        RedissonClient redissonClient = RedissonManager.getRedissonClient();
-        RTopic topic = redissonClient.getTopic(Constants.RedisConstants.USER_LOGIN_CHANNEL);
-        topic.publish(JSONObject.toJSONString(userClientDto));
+        String sessionKey = userSession.getClientType() + ":" + userSession.getImei();
+
+        RBatch batch = redissonClient.createBatch(BatchOptions.defaults()
+                .executionMode(BatchOptions.ExecutionMode.IN_MEMORY_ATOMIC));
+        RMapAsync<String, String> map = batch.getMap(mapKey);
+        RFuture<Map<String, String>> existing = map.readAllMapAsync();
+        map.fastPutAsync(sessionKey, JSONObject.toJSONString(userSession));
+        return batch.executeAsync().thenCompose(result -> existing);
     }
 
     /**
      * 发送用户在线状态变更消息到MQ
      */
-    private void sendUserStatusChangeMessage(LoginPack loginPack, Message msg) {
-        com.pd.im.codec.pack.user.UserStatusChangeNotifyPack userStatusChangeNotifyPack = new com.pd.im.codec.pack.user.UserStatusChangeNotifyPack();
-        userStatusChangeNotifyPack.setAppId(msg.getMessageHeader().getAppId());
+    private void sendUserStatusChangeMessage(Channel channel, LoginPack loginPack, MessageHeader header) {
+        UserStatusChangeNotifyPack userStatusChangeNotifyPack = new UserStatusChangeNotifyPack();
+        userStatusChangeNotifyPack.setAppId(header.getAppId());
         userStatusChangeNotifyPack.setUserId(loginPack.getUserId());
         userStatusChangeNotifyPack.setStatus(ConnectState.CONNECT_STATE_ONLINE.getCode());
 
         MqMessageProducer.sendMessage(
+                channel.eventLoop(),
                 userStatusChangeNotifyPack,
-                msg.getMessageHeader(),
+                header,
                 UserEventCommand.USER_ONLINE_STATUS_CHANGE.getCommand()
         );
     }
 
     /**
-     * 校验登录票据
+     * 校验登录票据，校验通过后立即删除 (一次性使用)
+     *
+     * @return 1 校验通过，0 不匹配，-1 不存在
      */
-    private boolean verifyLoginTicket(LoginPack loginPack, Message msg) {
-        String ticket = loginPack.getTicket();
-        if (ticket == null || ticket.trim().isEmpty()) {
-            log.error("登录失败：Ticket 为空, userId={}", loginPack.getUserId());
-            return false;
-        }
-
+    private CompletionStage<Long> checkAndDeleteTicket(LoginPack loginPack, MessageHeader header) {
         RedissonClient redissonClient = RedissonManager.getRedissonClient();
-        String key = msg.getMessageHeader().getAppId() 
-                + Constants.RedisConstants.USER_LOGIN_TICKET 
-                + loginPack.getUserId() + ":" 
-                + msg.getMessageHeader().getClientType() + ":" 
-                + msg.getMessageHeader().getImei();
-        
-        Object ticketObj = redissonClient.getBucket(key).get();
-        if (ticketObj == null) {
-            log.error("登录失败：Redis 中未找到 Ticket, userId={}, key={}", loginPack.getUserId(), key);
-            return false;
-        }
-        String cachedTicket = ticketObj.toString();
-        log.info("Ticket 校验详情: userId={}, key={}, inputTicket={}, cachedTicket={}", 
-                loginPack.getUserId(), key, ticket, cachedTicket);
-        
-        // 校验成功后立即删除 Ticket (一次性使用)
-        if (ticket.equals(cachedTicket)) {
-            redissonClient.getBucket(key).delete();
-            return true;
-        }
-        
-        log.error("登录失败：Ticket 不匹配, userId={}, input={}, cached={}", 
-                loginPack.getUserId(), ticket, cachedTicket);
-        return false;
+        String key = header.getAppId()
+                + Constants.RedisConstants.USER_LOGIN_TICKET
+                + loginPack.getUserId() + ":"
+                + header.getClientType() + ":"
+                + header.getImei();
+
+        return redissonClient.getScript(StringCodec.INSTANCE).evalAsync(key, RScript.Mode.READ_WRITE,
+                CHECK_AND_DELETE_TICKET_SCRIPT, RScript.ReturnType.INTEGER,
+                Collections.<Object>singletonList(key), loginPack.getTicket());
     }
 
     /**
      * 发送登录成功响应
      */
-    private void sendLoginAckResponse(CommandContext context, LoginPack loginPack, Message msg) {
+    private void sendLoginAckResponse(Channel channel, LoginPack loginPack, MessageHeader header,
+                                      int protocolVersion) {
         LoginAckPack loginAckPack = LoginAckPack.newBuilder()
                 .setUserId(loginPack.getUserId())
+                .setProtocolVersion(protocolVersion)
                 .build();
 
         MessagePack<LoginAckPack> loginSuccess = new MessagePack<>();
         loginSuccess.setCommand(SystemCommand.LOGINACK.getCommand());
         loginSuccess.setData(loginAckPack);
         loginSuccess.setTimestamp(System.currentTimeMillis());
-        loginSuccess.setImei(msg.getMessageHeader().getImei());
-        loginSuccess.setAppId(msg.getMessageHeader().getAppId());
+        loginSuccess.setImei(header.getImei());
+        loginSuccess.setAppId(header.getAppId());
 
-        context.getCtx().channel().writeAndFlush(loginSuccess);
+        channel.writeAndFlush(loginSuccess);
     }
 }
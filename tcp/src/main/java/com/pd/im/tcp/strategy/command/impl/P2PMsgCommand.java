@@ -1,37 +1,180 @@
 package com.pd.im.tcp.strategy.command.impl;
 
+import com.alibaba.fastjson.JSONObject;
+import com.pd.im.codec.proto.ChatMessageRoute;
+import com.pd.im.codec.proto.EncodedFrame;
+import com.pd.im.codec.proto.Message;
+import com.pd.im.codec.proto.MessageHeader;
+import com.pd.im.codec.proto.MessagePack;
 import com.pd.im.codec.proto.generated.ChatMessagePack;
+import com.pd.im.codec.util.MessageCodecUtils;
 import com.pd.im.common.ResponseVO;
 import com.pd.im.common.enums.command.MessageCommand;
 import com.pd.im.common.model.message.CheckSendMessageReq;
-import com.pd.im.tcp.feign.FeignMessageService;
+import com.pd.im.common.model.message.MessageContent;
+import com.pd.im.tcp.feign.MessageCheckClient;
+import com.pd.im.tcp.rabbitmq.publish.MqMessageProducer;
+import com.pd.im.tcp.session.ConnectionSession;
+import com.pd.im.tcp.session.LocalDeliveryDedupe;
 import com.pd.im.tcp.strategy.command.AbstractMessageCommand;
+import com.pd.im.tcp.utils.UserChannelRepository;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
 
-import static com.pd.im.common.constant.Constants.MsgPackConstants.TO_ID;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * P2P消息校验命令
  * <p>
  * 在TCP层校验P2P消息发送方的合法性
+ * <p>
+ * 开启同网关直投（p2pLocalDelivery）且接收方有设备连接在本网关时：
+ * - 校验请求要求业务层分配序列号，业务层放行时在响应中返回，同一连接的这类校验串行发出，序列号与发送顺序一致
+ * - 校验通过后消息携带序列号进入MQ，同时直接推送给接收方在本网关的设备，不等待业务层分发
+ * - 业务层随后的正常分发携带 messageId，已直投过的连接由 {@link LocalDeliveryDedupe} 丢弃
+ * <p>
+ * 业务层未返回序列号（未开启、开启了发送前回调、校验降级放行）时按正常流程转发
  *
  * @author Parker
  * @date 12/3/25
  */
+@Slf4j
 public class P2PMsgCommand extends AbstractMessageCommand {
 
+    private final boolean localDelivery;
+
+    public P2PMsgCommand(boolean localDelivery) {
+        this.localDelivery = localDelivery;
+    }
+
+    @Override
+    protected String extractToId(ChatMessageRoute route) {
+        return route.getToId();
+    }
+
+    @Override
+    protected CompletableFuture<ResponseVO> validateMessage(MessageCheckClient client, CheckSendMessageReq req) {
+        return client.checkP2PSendMessage(req);
+    }
 
     @Override
-    protected String extractToIdFromProto(ChatMessagePack chatPack) {
-        return chatPack.getToId();
+    protected CompletableFuture<ResponseVO> validateMessage(Channel channel, MessageCheckClient client,
+                                                            CheckSendMessageReq req) {
+        ConnectionSession session = ConnectionSession.get(channel);
+        if (!localDelivery || session == null || StringUtils.isEmpty(req.getMessageId())
+                || UserChannelRepository.getUserChannels(req.getAppId(), req.getToId()).isEmpty()) {
+            return validateMessage(client, req);
+        }
+        req.setAssignSequence(true);
+
+        // 在 EventLoop 上执行，上一条分配序列号的校验完成后再发出本条；
+        // 上一条失败或超时不影响本条，每条消息各自校验、各自得到结果
+        CompletableFuture<ResponseVO> previous = session.getSequencedCheck();
+        CompletableFuture<ResponseVO> validation = previous == null || previous.isDone()
+                ? validateMessage(client, req)
+                : previous.handle((r, ex) -> null).thenCompose(ignored -> validateMessage(client, req));
+        session.setSequencedCheck(validation);
+        return validation;
     }
 
     @Override
-    protected ResponseVO validateMessage(FeignMessageService feignMessageService, CheckSendMessageReq req) {
-        return feignMessageService.checkP2PSendMessage(req);
+    protected void forward(Channel channel, Message msg, ResponseVO responseVO) {
+        Long messageSequence = assignedSequence(responseVO);
+        if (messageSequence == null) {
+            super.forward(channel, msg, responseVO);
+            return;
+        }
+        deliverLocally(channel, msg, messageSequence);
+        MqMessageProducer.sendMessage(channel.eventLoop(), msg, msg.getMessageHeader().getCommand(), messageSequence);
     }
 
     @Override
     protected Integer getAckCommand() {
         return MessageCommand.MSG_ACK.getCommand();
     }
+
+    /**
+     * 把消息直接推送给接收方在本网关的设备，客户端帧只编码一次，各连接共享同一块内存写出
+     */
+    private void deliverLocally(Channel channel, Message msg, long messageSequence) {
+        ChatMessagePack pack = chatMessagePack(msg);
+        if (pack == null) {
+            return;
+        }
+        MessageHeader header = msg.getMessageHeader();
+        List<Channel> receivers = new ArrayList<>();
+        for (Channel userChannel : UserChannelRepository.getUserChannels(header.getAppId(), pack.getToId())) {
+            ConnectionSession session = ConnectionSession.get(userChannel);
+            if (session != null && !session.isClosing()) {
+                receivers.add(userChannel);
+            }
+        }
+        if (receivers.isEmpty()) {
+            return;
+        }
+
+        // 与业务层分发的消息内容保持一致，messageKey 在业务层持久化时生成，直投的消息不携带
+        MessageContent content = new MessageContent();
+        content.setAppId(header.getAppId());
+        content.setClientType(header.getClientType());
+        content.setImei(header.getImei());
+        content.setMessageId(pack.getMessageId());
+        content.setFromId(pack.getFromId());
+        content.setToId(pack.getToId());
+        content.setMessageBody(StringUtils.defaultIfEmpty(pack.getMessageBody(), null));
+        content.setMessageTime(pack.getMessageTime() != 0 ? pack.getMessageTime() : null);
+        content.setMessageSequence(messageSequence);
+
+        MessagePack<MessageContent> messagePack = new MessagePack<>();
+        messagePack.setCommand(MessageCommand.MSG_P2P.getCommand());
+        messagePack.setData(content);
+
+        ByteBuf frame = channel.alloc().directBuffer(MessageCodecUtils.calculateEncodedSize(messagePack));
+        try {
+            MessageCodecUtils.encode(messagePack, frame);
+            String messageId = pack.getMessageId();
+            for (Channel receiver : receivers) {
+                ByteBuf duplicate = frame.retainedDuplicate();
+                try {
+                    receiver.eventLoop().execute(() -> {
+                        if (LocalDeliveryDedupe.markDelivered(receiver, messageId)) {
+                            receiver.writeAndFlush(new EncodedFrame(duplicate));
+                        } else {
+                            duplicate.release();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    duplicate.release();
+                }
+            }
+        } catch (Exception e) {
+            log.error("单聊消息直投失败，由业务层正常分发: messageId={}", pack.getMessageId(), e);
+        } finally {
+            frame.release();
+        }
+    }
+
+    private static ChatMessagePack chatMessagePack(Message msg) {
+        Object pack = msg.hasRawBody()
+                ? MessageCodecUtils.parseMessageBody(msg.getMessageHeader(), msg.getBody())
+                : msg.getMessagePack();
+        return pack instanceof ChatMessagePack ? (ChatMessagePack) pack : null;
+    }
+
+    /**
+     * 业务层在校验响应中分配的序列号，未分配时返回 null
+     */
+    private static Long assignedSequence(ResponseVO responseVO) {
+        Object data = responseVO.getData();
+        if (!(data instanceof JSONObject)) {
+            return null;
+        }
+        Long messageSequence = ((JSONObject) data).getLong("messageSequence");
+        return messageSequence != null && messageSequence > 0 ? messageSequence : null;
+    }
 }
@@ -1,14 +1,13 @@
 package com.pd.im.tcp.strategy.command.impl;
 
-import com.pd.im.common.constant.Constants;
 import com.pd.im.tcp.strategy.command.CommandStrategy;
 import com.pd.im.tcp.strategy.command.model.CommandContext;
-import io.netty.util.AttributeKey;
 
 /**
  * 心跳检测命令
  * <p>
- * 更新channel的最后读取时间，用于心跳超时检测
+ * 最后读取时间已由 HeartBeatHandler 在读事件中刷新，这里无需额外处理，
+ * 注册该命令只是为了避免心跳包被转发到MQ
  *
  * @author Parker
  * @date 12/3/25
@@ -17,9 +16,6 @@ public class PingCommand implements CommandStrategy {
 
     @Override
     public void execute(CommandContext context) {
-        // 更新channel的最后读取时间
-        context.getCtx().channel()
-                .attr(AttributeKey.valueOf(Constants.ChannelConstants.READ_TIME))
-                .set(System.currentTimeMillis());
+        // 无需处理
     }
 }
@@ -1,7 +1,6 @@
 package com.pd.im.tcp.strategy.command.model;
 
 import com.pd.im.codec.proto.Message;
-import com.pd.im.tcp.feign.FeignMessageService;
 import io.netty.channel.ChannelHandlerContext;
 import lombok.Data;
 
@@ -18,5 +17,8 @@ public class CommandContext {
     private ChannelHandlerContext ctx;
     private Message msg;
     private Integer brokeId;
-    private FeignMessageService feignMessageService;
+    /**
+     * 单个连接允许的待校验消息数上限，超过后暂停读取该连接
+     */
+    private int maxPendingChecks;
 }
@@ -6,12 +6,10 @@ import com.pd.im.tcp.utils.UserChannelRepository;
 import io.netty.channel.Channel;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.List;
-
 /**
  * 登录策略抽象类
  * <p>
- * 使用模板方法模式，提取公共逻辑，子类只需实现具体的判断逻辑
+ * 使用模板方法模式，提取公共的踢出逻辑，子类只需实现具体的判断逻辑
  *
  * @author Parker
  * @date 12/3/25
@@ -19,22 +17,6 @@ import java.util.List;
 @Slf4j
 public abstract class AbstractLoginStrategy implements LoginStrategy {
 
-    @Override
-    public void handleUserLogin(UserClientDto newLoginDto) {
-        // 获取该用户的所有在线 channel
-        List<Channel> userChannels = getUserChannels(newLoginDto);
-
-        // 遍历所有在线设备，判断是否需要踢出
-        for (Channel oldChannel : userChannels) {
-            UserClientDto oldLoginDto = getUserInfo(oldChannel);
-
-            // 钩子方法：子类实现具体的踢出逻辑
-            if (shouldKickOut(newLoginDto, oldLoginDto)) {
-                kickOut(oldChannel, oldLoginDto, newLoginDto);
-            }
-        }
-    }
-
     /**
      * 钩子方法：判断是否需要踢出旧设备
      * <p>
@@ -44,27 +26,8 @@ public abstract class AbstractLoginStrategy implements LoginStrategy {
      * @param oldLogin 旧设备的信息
      * @return true-需要踢出，false-不需要踢出
      */
-    protected abstract boolean shouldKickOut(UserClientDto newLogin, UserClientDto oldLogin);
-
-    /**
-     * 获取用户的所有在线 channel
-     *
-     * @param dto 用户信息
-     * @return 在线 channel 列表
-     */
-    protected List<Channel> getUserChannels(UserClientDto dto) {
-        return UserChannelRepository.getUserChannels(dto.getAppId(), dto.getUserId());
-    }
-
-    /**
-     * 从 channel 获取用户信息
-     *
-     * @param channel channel
-     * @return 用户信息
-     */
-    protected UserClientDto getUserInfo(Channel channel) {
-        return UserChannelRepository.getUserInfo(channel);
-    }
+    @Override
+    public abstract boolean shouldKickOut(UserClientDto newLogin, UserClientDto oldLogin);
 
     /**
      * 踢出旧设备
@@ -87,7 +50,8 @@ public abstract class AbstractLoginStrategy implements LoginStrategy {
      * @param oldLogin   旧设备信息
      * @param newLogin   新设备信息
      */
-    protected void kickOut(Channel oldChannel, UserClientDto oldLogin, UserClientDto newLogin) {
+    @Override
+    public void kickOut(Channel oldChannel, UserClientDto oldLogin, UserClientDto newLogin) {
         // 1. 发送通知消息（UX优化，尽力而为）
         LoginStrategyUtils.sendMutualLoginMsg(oldChannel, oldLogin.getClientType(), oldLogin.getImei(), newLogin);
 
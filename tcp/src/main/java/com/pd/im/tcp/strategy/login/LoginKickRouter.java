@@ -0,0 +1,123 @@
+package com.pd.im.tcp.strategy.login;
+
+import com.alibaba.fastjson.JSONObject;
+import com.pd.im.codec.config.ImBootstrapConfig;
+import com.pd.im.codec.proto.MessagePack;
+import com.pd.im.common.enums.command.SystemCommand;
+import com.pd.im.common.enums.device.ConnectState;
+import com.pd.im.common.model.UserClientDto;
+import com.pd.im.common.model.UserSession;
+import com.pd.im.tcp.rabbitmq.publish.MqMessageProducer;
+import com.pd.im.tcp.strategy.login.factory.LoginStrategyFactory;
+import com.pd.im.tcp.utils.UserChannelRepository;
+import io.netty.channel.Channel;
+import io.netty.util.concurrent.EventExecutor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * 多端登录踢出路由
+ * <p>
+ * 替代每次登录向所有网关广播上线通知的方式：新设备登录时，用户Session的写入和已有Session的读取在同一个
+ * 原子批次中完成，按登录策略筛选出需要踢出的旧设备后：
+ * - 旧设备在本网关：直接踢出
+ * - 旧设备在其他网关：按旧设备 Session 中的 brokerId 定向发送 MUTALOGIN 指令，只有持有该设备的网关处理
+ * <p>
+ * 两台设备同时登录时，原子批次保证后写入 Session 的一方一定能读到先写入的一方，由后登录的设备完成踢出
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+@Slf4j
+public class LoginKickRouter {
+
+    private static volatile LoginKickRouter instance;
+
+    private final Integer brokerId;
+    private final LoginStrategy loginStrategy;
+
+    private LoginKickRouter(ImBootstrapConfig.TcpConfig config) {
+        this.brokerId = config.getBrokerId();
+        this.loginStrategy = LoginStrategyFactory.getStrategy(config.getLoginModel());
+    }
+
+    /**
+     * 初始化踢出路由，需在 {@link LoginStrategyFactory#init()} 之后调用
+     *
+     * @param config 配置
+     */
+    public static void init(ImBootstrapConfig.TcpConfig config) {
+        instance = new LoginKickRouter(config);
+        log.info("多端登录踢出路由初始化完成: loginModel={}, strategy={}",
+                config.getLoginModel(), instance.loginStrategy.getClass().getSimpleName());
+    }
+
+    public static LoginKickRouter getInstance() {
+        return instance;
+    }
+
+    /**
+     * 按登录策略踢出用户的其他设备
+     *
+     * @param executor 新设备连接的事件循环，定向踢出指令在其上发布
+     * @param newLogin 新登录的设备信息
+     * @param sessions 新设备写入前用户已有的 Session（field 为 clientType:imei，value 为 UserSession JSON）
+     */
+    public void route(EventExecutor executor, UserClientDto newLogin, Collection<String> sessions) {
+        for (String json : sessions) {
+            UserSession session = JSONObject.parseObject(json, UserSession.class);
+            if (session == null || !Objects.equals(ConnectState.CONNECT_STATE_ONLINE.getCode(), session.getConnectState())) {
+                continue;
+            }
+            UserClientDto oldLogin = UserClientDto.builder()
+                    .appId(session.getAppId())
+                    .userId(session.getUserId())
+                    .clientType(session.getClientType())
+                    .imei(session.getImei())
+                    .build();
+            if (!loginStrategy.shouldKickOut(newLogin, oldLogin)) {
+                continue;
+            }
+
+            if (session.getBrokerId() == null || Objects.equals(brokerId, session.getBrokerId())) {
+                kickLocal(oldLogin, newLogin);
+            } else {
+                sendKick(executor, session.getBrokerId(), oldLogin, newLogin);
+            }
+        }
+    }
+
+    /**
+     * 踢出本网关上的旧设备，旧设备已不在本网关时忽略
+     *
+     * @param oldLogin 旧设备信息
+     * @param newLogin 新设备信息
+     */
+    public void kickLocal(UserClientDto oldLogin, UserClientDto newLogin) {
+        Channel oldChannel = UserChannelRepository.getChannel(oldLogin);
+        if (oldChannel == null) {
+            log.debug("旧设备已不在本网关: appId={}, userId={}, clientType={}, imei={}",
+                    oldLogin.getAppId(), oldLogin.getUserId(), oldLogin.getClientType(), oldLogin.getImei());
+            return;
+        }
+        loginStrategy.kickOut(oldChannel, oldLogin, newLogin);
+    }
+
+    private void sendKick(EventExecutor executor, Integer targetBrokerId, UserClientDto oldLogin,
+                          UserClientDto newLogin) {
+        MessagePack<UserClientDto> pack = new MessagePack<>();
+        pack.setCommand(SystemCommand.MUTALOGIN.getCommand());
+        pack.setAppId(oldLogin.getAppId());
+        pack.setToId(oldLogin.getUserId());
+        pack.setUserId(oldLogin.getUserId());
+        pack.setClientType(oldLogin.getClientType());
+        pack.setImei(oldLogin.getImei());
+        pack.setData(newLogin);
+        pack.setTimestamp(System.currentTimeMillis());
+        MqMessageProducer.sendToBroker(executor, targetBrokerId, pack);
+        log.debug("定向踢出旧设备: targetBrokerId={}, appId={}, userId={}, clientType={}, imei={}",
+                targetBrokerId, oldLogin.getAppId(), oldLogin.getUserId(), oldLogin.getClientType(), oldLogin.getImei());
+    }
+}
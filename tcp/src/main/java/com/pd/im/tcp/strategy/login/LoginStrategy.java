@@ -1,11 +1,13 @@
 package com.pd.im.tcp.strategy.login;
 
 import com.pd.im.common.model.UserClientDto;
+import io.netty.channel.Channel;
 
 /**
  * 登录策略接口
  * <p>
- * 定义多端登录的策略行为，不同的策略处理不同的多端登录规则
+ * 定义多端登录的策略行为，不同的策略处理不同的多端登录规则；
+ * 需要踢出的旧设备由 {@link LoginKickRouter} 按用户Session所在的网关定向路由
  *
  * @author Parker
  * @date 12/3/25
@@ -13,9 +15,20 @@ import com.pd.im.common.model.UserClientDto;
 public interface LoginStrategy {
 
     /**
-     * 处理用户登录，根据策略决定是否踢出旧设备
+     * 判断新登录是否需要踢出旧设备
      *
-     * @param dto 新登录的用户客户端信息
+     * @param newLogin 新登录的设备信息
+     * @param oldLogin 旧设备的信息
+     * @return true-需要踢出，false-不需要踢出
      */
-    void handleUserLogin(UserClientDto dto);
+    boolean shouldKickOut(UserClientDto newLogin, UserClientDto oldLogin);
+
+    /**
+     * 踢出本网关上的旧设备
+     *
+     * @param oldChannel 旧设备的 channel
+     * @param oldLogin   旧设备信息
+     * @param newLogin   新设备信息
+     */
+    void kickOut(Channel oldChannel, UserClientDto oldLogin, UserClientDto newLogin);
 }
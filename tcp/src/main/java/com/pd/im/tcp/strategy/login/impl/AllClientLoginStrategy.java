@@ -1,7 +1,7 @@
 package com.pd.im.tcp.strategy.login.impl;
 
 import com.pd.im.common.model.UserClientDto;
-import com.pd.im.tcp.strategy.login.LoginStrategy;
+import com.pd.im.tcp.strategy.login.AbstractLoginStrategy;
 
 /**
  * 多端登录策略
@@ -12,11 +12,12 @@ import com.pd.im.tcp.strategy.login.LoginStrategy;
  * @author Parker
  * @date 12/3/25
  */
-public class AllClientLoginStrategy implements LoginStrategy {
+public class AllClientLoginStrategy extends AbstractLoginStrategy {
 
     @Override
-    public void handleUserLogin(UserClientDto dto) {
+    public boolean shouldKickOut(UserClientDto newLogin, UserClientDto oldLogin) {
         // 放权，允许多设备登录，同端之间也不做逻辑处理
         // 不需要任何踢出逻辑
+        return false;
     }
 }
@@ -16,7 +16,7 @@ import com.pd.im.tcp.strategy.login.utils.LoginStrategyUtils;
 public class OneClientLoginStrategy extends AbstractLoginStrategy {
 
     @Override
-    protected boolean shouldKickOut(UserClientDto newLogin, UserClientDto oldLogin) {
+    public boolean shouldKickOut(UserClientDto newLogin, UserClientDto oldLogin) {
         // 单端登录：只要不是同一个设备，就踢出
         return !LoginStrategyUtils.isSameDevice(newLogin, oldLogin);
     }
@@ -20,7 +20,7 @@ import com.pd.im.tcp.strategy.login.utils.LoginStrategyUtils;
 public class TwoClientLoginStrategy extends AbstractLoginStrategy {
 
     @Override
-    protected boolean shouldKickOut(UserClientDto newLogin, UserClientDto oldLogin) {
+    public boolean shouldKickOut(UserClientDto newLogin, UserClientDto oldLogin) {
         // 同一设备不踢出
         if (LoginStrategyUtils.isSameDevice(newLogin, oldLogin)) {
             return false;
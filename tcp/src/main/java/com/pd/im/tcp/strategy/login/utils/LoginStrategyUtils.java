@@ -1,12 +1,11 @@
 package com.pd.im.tcp.strategy.login.utils;
 
 import com.pd.im.codec.proto.MessagePack;
-import com.pd.im.common.constant.Constants;
 import com.pd.im.common.enums.command.SystemCommand;
 import com.pd.im.common.enums.device.ClientType;
 import com.pd.im.common.model.UserClientDto;
+import com.pd.im.tcp.session.ConnectionSession;
 import io.netty.channel.Channel;
-import io.netty.util.AttributeKey;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.Map;
@@ -64,9 +63,11 @@ public class LoginStrategyUtils {
                 newDto.getAppId(), newDto.getUserId(), newDevice, oldDevice);
 
         // 发送下线通知
+        ConnectionSession oldSession = ConnectionSession.get(oldChannel);
+        String oldUserId = oldSession != null ? oldSession.getUserId() : newDto.getUserId();
         MessagePack<Object> pack = new MessagePack<>();
-        pack.setToId((String) oldChannel.attr(AttributeKey.valueOf(Constants.ChannelConstants.USER_ID)).get());
-        pack.setUserId((String) oldChannel.attr(AttributeKey.valueOf(Constants.ChannelConstants.USER_ID)).get());
+        pack.setToId(oldUserId);
+        pack.setUserId(oldUserId);
         pack.setCommand(SystemCommand.MUTALOGIN.getCommand());
         pack.setTimestamp(System.currentTimeMillis());  // 设置消息时间戳
         oldChannel.writeAndFlush(pack);
@@ -0,0 +1,73 @@
+package com.pd.im.tcp.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * 令牌桶
+ * <p>
+ * 按 GCRA（通用信元速率算法）实现：只保存下一个令牌的理论到达时间，获取令牌时 CAS 推进，
+ * 无锁、无对象分配，可在多个 EventLoop 之间共享
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+public final class TokenBucket {
+
+    private static final AtomicLongFieldUpdater<TokenBucket> TAT =
+            AtomicLongFieldUpdater.newUpdater(TokenBucket.class, "theoreticalArrival");
+
+    /**
+     * 生成一个令牌的间隔（纳秒）
+     */
+    private final long intervalNanos;
+
+    /**
+     * 允许的突发容量对应的时间跨度（纳秒）
+     */
+    private final long burstNanos;
+
+    /**
+     * 下一个令牌的理论到达时间（纳秒）
+     */
+    private volatile long theoreticalArrival;
+
+    /**
+     * @param ratePerSecond 每秒生成的令牌数，必须大于 0
+     * @param burst         桶容量，即允许的突发数量
+     */
+    public TokenBucket(int ratePerSecond, int burst) {
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, ratePerSecond);
+        this.burstNanos = intervalNanos * Math.max(1, burst);
+        this.theoreticalArrival = System.nanoTime();
+    }
+
+    /**
+     * 尝试获取一个令牌
+     *
+     * @return 获取成功返回 true
+     */
+    public boolean tryAcquire() {
+        for (; ; ) {
+            long now = System.nanoTime();
+            long tat = theoreticalArrival;
+            long next = Math.max(tat, now) + intervalNanos;
+            if (next - now > burstNanos) {
+                return false;
+            }
+            if (TAT.compareAndSet(this, tat, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 桶是否已满（长时间未使用）
+     *
+     * @param now 当前时间（纳秒）
+     * @return 已满返回 true
+     */
+    public boolean isIdle(long now) {
+        return theoreticalArrival - now <= 0;
+    }
+}
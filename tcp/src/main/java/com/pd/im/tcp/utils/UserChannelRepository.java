@@ -1,6 +1,7 @@
 package com.pd.im.tcp.utils;
 
 import com.alibaba.fastjson.JSONObject;
+import com.pd.im.codec.config.ImBootstrapConfig;
 import com.pd.im.codec.pack.user.UserStatusChangeNotifyPack;
 import com.pd.im.codec.proto.MessageHeader;
 import com.pd.im.common.constant.Constants;
@@ -10,27 +11,39 @@ import com.pd.im.common.model.UserClientDto;
 import com.pd.im.common.model.UserSession;
 import com.pd.im.tcp.rabbitmq.publish.MqMessageProducer;
 import com.pd.im.tcp.redis.RedissonManager;
+import com.pd.im.tcp.session.ConnectionSession;
 import io.netty.channel.Channel;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.group.DefaultChannelGroup;
-import io.netty.util.AttributeKey;
 import io.netty.util.concurrent.GlobalEventExecutor;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.redisson.api.RMap;
+import org.redisson.api.RScript;
 import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 用户Channel管理仓库
  * <p>
  * 负责用户与Channel的绑定、解绑、状态管理
+ * <p>
+ * 并发设计：
+ * - 设备维度映射 USER_CHANNEL 之外维护 (appId, userId) → 设备Channel 的二级索引，按用户查询只访问该用户的设备
+ * - 绑定/清理按用户分段加锁，不同用户的上下线互不阻塞，同一用户的多个设备仍然串行
+ * - 查询不加锁
+ * <p>
+ * 连接断开时只有 Redis 中的 Session 仍属于本网关才标记离线并发送离线通知：客户端已在其他网关重新登录
+ * （例如网关摘流后重连）时，旧连接的关闭不会覆盖新 Session，也不会在用户上线后再通知离线
  *
  * @author Parker
  * @date 12/3/25
@@ -49,11 +62,50 @@ public class UserChannelRepository {
      */
     private static final Map<UserClientDto, Channel> USER_CHANNEL = new ConcurrentHashMap<>();
 
-    private static final Object BIND_LOCK = new Object();
-    private static final Object UNBIND_LOCK = new Object();
+    /**
+     * 用户设备索引
+     * Key: (appId, userId)
+     * Value: 该用户在本网关上的所有设备 Channel
+     */
+    private static final Map<UserKey, Map<UserClientDto, Channel>> USER_INDEX = new ConcurrentHashMap<>();
+
+    /**
+     * 分段锁数量（2的幂）
+     */
+    private static final int LOCK_STRIPES = 1024;
+
+    private static final Object[] LOCKS = new Object[LOCK_STRIPES];
+
+    /**
+     * Session 比较写入脚本：字段值仍为读取时的值才写入新值并返回 1，否则返回 0
+     */
+    private static final String COMPARE_AND_SET_SESSION_SCRIPT =
+            "if redis.call('hget', KEYS[1], ARGV[1]) == ARGV[2] then "
+                    + "redis.call('hset', KEYS[1], ARGV[1], ARGV[3]) return 1 end "
+                    + "return 0";
+
+    /**
+     * 本网关标识，用于判断 Redis 中的 Session 是否属于本网关
+     */
+    private static volatile Integer brokerId;
+
+    static {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            LOCKS[i] = new Object();
+        }
+    }
 
     // ==================== 公共方法 ====================
 
+    /**
+     * 初始化本网关标识，需在接受登录之前调用
+     *
+     * @param config 配置
+     */
+    public static void init(ImBootstrapConfig.TcpConfig config) {
+        brokerId = config.getBrokerId();
+    }
+
     /**
      * 添加Channel到Channel组
      * <p>
@@ -75,10 +127,10 @@ public class UserChannelRepository {
      * @param channel       Channel
      */
     public static void bind(UserClientDto userClientDto, Channel channel) {
-        synchronized (BIND_LOCK) {
+        synchronized (lockOf(userClientDto.getAppId(), userClientDto.getUserId())) {
             // 检查是否已经有同设备的连接
-            if (USER_CHANNEL.containsKey(userClientDto)) {
-                Channel oldChannel = USER_CHANNEL.get(userClientDto);
+            Channel oldChannel = USER_CHANNEL.get(userClientDto);
+            if (oldChannel != null && oldChannel != channel) {
                 log.info("同设备重复登录，关闭旧连接: appId={}, userId={}, clientType={}, imei={}",
                         userClientDto.getAppId(), userClientDto.getUserId(),
                         userClientDto.getClientType(), userClientDto.getImei());
@@ -88,21 +140,23 @@ public class UserChannelRepository {
                 CHANNEL_GROUP.remove(oldChannel);
 
                 // 设置标志位，避免在channelInactive中重复处理
-                oldChannel.attr(AttributeKey.valueOf(Constants.ChannelConstants.CLOSING_BY_REBIND)).set(true);
+                ConnectionSession oldSession = ConnectionSession.get(oldChannel);
+                if (oldSession != null) {
+                    oldSession.markClosingByRebind();
+                }
 
                 // 关闭旧连接
                 oldChannel.close();
             }
 
-            // 双向绑定：channel -> user properties
-            channel.attr(AttributeKey.valueOf(Constants.ChannelConstants.USER_ID)).set(userClientDto.getUserId());
-            channel.attr(AttributeKey.valueOf(Constants.ChannelConstants.APP_ID)).set(userClientDto.getAppId());
-            channel.attr(AttributeKey.valueOf(Constants.ChannelConstants.CLIENT_TYPE)).set(userClientDto.getClientType());
-            channel.attr(AttributeKey.valueOf(Constants.ChannelConstants.IMEI)).set(userClientDto.getImei());
-            channel.attr(AttributeKey.valueOf(Constants.ChannelConstants.CLIENT_IMEI)).set(userClientDto.getClientType() + ":" + userClientDto.getImei());
+            // 双向绑定：channel -> 连接会话
+            ConnectionSession session = ConnectionSession.bind(channel, userClientDto);
 
             // userClientDto -> channel
-            USER_CHANNEL.put(userClientDto, channel);
+            UserClientDto key = session.getUserClientDto();
+            USER_CHANNEL.put(key, channel);
+            USER_INDEX.computeIfAbsent(userKeyOf(key), k -> new ConcurrentHashMap<>(4))
+                    .put(key, channel);
         }
     }
 
@@ -174,18 +228,20 @@ public class UserChannelRepository {
      * @return 该用户的所有在线Channel列表
      */
     public static List<Channel> getUserChannels(Integer appId, String userId) {
-        List<Channel> channels = new ArrayList<>();
-        Set<UserClientDto> allUsers = USER_CHANNEL.keySet();
-
-        for (UserClientDto user : allUsers) {
-            if (appId.equals(user.getAppId()) && userId.equals(user.getUserId())) {
-                Channel channel = USER_CHANNEL.get(user);
-                if (channel != null) {
-                    channels.add(channel);
-                }
-            }
+        Map<UserClientDto, Channel> devices = USER_INDEX.get(new UserKey(appId, userId));
+        if (devices == null) {
+            return new ArrayList<>();
         }
-        return channels;
+        return new ArrayList<>(devices.values());
+    }
+
+    /**
+     * 获取本网关的所有连接（包括未登录的连接）
+     *
+     * @return 连接列表快照
+     */
+    public static List<Channel> getAllChannels() {
+        return new ArrayList<>(CHANNEL_GROUP);
     }
 
     /**
@@ -195,21 +251,8 @@ public class UserChannelRepository {
      * @return 用户客户端信息，未绑定返回null
      */
     public static UserClientDto getUserInfo(Channel channel) {
-        String userId = (String) channel.attr(AttributeKey.valueOf(Constants.ChannelConstants.USER_ID)).get();
-        Integer appId = (Integer) channel.attr(AttributeKey.valueOf(Constants.ChannelConstants.APP_ID)).get();
-        Integer clientType = (Integer) channel.attr(AttributeKey.valueOf(Constants.ChannelConstants.CLIENT_TYPE)).get();
-        String imei = (String) channel.attr(AttributeKey.valueOf(Constants.ChannelConstants.IMEI)).get();
-
-        if (userId == null || appId == null || clientType == null || imei == null) {
-            return null;
-        }
-
-        return UserClientDto.builder()
-                .userId(userId)
-                .appId(appId)
-                .clientType(clientType)
-                .imei(imei)
-                .build();
+        ConnectionSession session = ConnectionSession.get(channel);
+        return session != null ? session.getUserClientDto() : null;
     }
 
     // ==================== 内部方法 ====================
@@ -224,48 +267,49 @@ public class UserChannelRepository {
      * @param removeSession true-删除Session（登出），false-保留Session（离线）
      */
     private static void doCleanup(Channel channel, String reason, boolean removeSession) {
-        synchronized (UNBIND_LOCK) {
-            // 检查是否已经处理过
-            Boolean alreadyProcessed = (Boolean) channel.attr(
-                    AttributeKey.valueOf(Constants.ChannelConstants.CLOSING_BY_CLEANUP)).get();
-            Boolean closingByRebind = (Boolean) channel.attr(
-                    AttributeKey.valueOf(Constants.ChannelConstants.CLOSING_BY_REBIND)).get();
+        // 获取连接会话
+        ConnectionSession session = ConnectionSession.get(channel);
+        if (session == null) {
+            // 未绑定用户的连接没有共享状态，关闭操作本身是幂等的
+            log.debug("Channel未绑定用户信息，仅关闭连接: reason={}", reason);
+            CHANNEL_GROUP.remove(channel);
+            if (channel.isActive()) {
+                channel.close();
+            }
+            return;
+        }
 
-            if (Boolean.TRUE.equals(alreadyProcessed) || Boolean.TRUE.equals(closingByRebind)) {
+        UserClientDto userInfo = session.getUserClientDto();
+        synchronized (lockOf(session.getAppId(), session.getUserId())) {
+            // 检查是否已经处理过
+            if (session.isClosing()) {
                 log.debug("Channel已被处理，跳过: reason={}", reason);
                 return;
             }
 
             // 设置标志位，防止重复处理
-            channel.attr(AttributeKey.valueOf(Constants.ChannelConstants.CLOSING_BY_CLEANUP)).set(true);
-
-            // 获取用户信息
-            UserClientDto userInfo = getUserInfo(channel);
-            if (userInfo == null) {
-                log.debug("Channel未绑定用户信息，仅关闭连接: reason={}", reason);
-                CHANNEL_GROUP.remove(channel);
-                if (channel.isActive()) {
-                    channel.close();
-                }
-                return;
-            }
+            session.markClosingByCleanup();
 
             log.info("{}: appId={}, userId={}, clientType={}, imei={}, removeSession={}",
                     reason, userInfo.getAppId(), userInfo.getUserId(),
                     userInfo.getClientType(), userInfo.getImei(), removeSession);
 
-            // 1. 处理Redis Session
+            // 1. 处理Redis Session，Session 已被其他网关上的新登录接管时不再通知离线
+            boolean owned = true;
             if (removeSession) {
                 deleteSession(userInfo);
             } else {
-                markSessionOffline(userInfo);
+                owned = markSessionOffline(userInfo);
             }
 
             // 2. 发送用户状态变更通知到MQ
-            sendStatusChangeNotification(userInfo, ConnectState.CONNECT_STATE_OFFLINE.getCode());
+            if (owned) {
+                sendStatusChangeNotification(channel, userInfo, ConnectState.CONNECT_STATE_OFFLINE.getCode());
+            }
 
-            // 3. 从本地映射中移除
-            USER_CHANNEL.remove(userInfo);
+            // 3. 从本地映射中移除（只移除仍指向当前Channel的映射）
+            USER_CHANNEL.remove(userInfo, channel);
+            removeFromIndex(userInfo, channel);
             CHANNEL_GROUP.remove(channel);
 
             // 4. 关闭Channel
@@ -275,10 +319,52 @@ public class UserChannelRepository {
         }
     }
 
+    /**
+     * 从用户设备索引中移除，用户没有设备时删除索引项
+     * <p>
+     * 调用方需持有该用户的分段锁
+     */
+    private static void removeFromIndex(UserClientDto userInfo, Channel channel) {
+        UserKey userKey = userKeyOf(userInfo);
+        Map<UserClientDto, Channel> devices = USER_INDEX.get(userKey);
+        if (devices == null) {
+            return;
+        }
+        devices.remove(userInfo, channel);
+        if (devices.isEmpty()) {
+            USER_INDEX.remove(userKey, devices);
+        }
+    }
+
+    private static Object lockOf(int appId, String userId) {
+        int hash = 31 * appId + userId.hashCode();
+        // 扰动高位，避免 userId 哈希低位分布不均
+        hash ^= (hash >>> 16);
+        return LOCKS[hash & (LOCK_STRIPES - 1)];
+    }
+
+    private static UserKey userKeyOf(UserClientDto userClientDto) {
+        return new UserKey(userClientDto.getAppId(), userClientDto.getUserId());
+    }
+
+    /**
+     * 用户索引Key
+     */
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static final class UserKey {
+        private final int appId;
+        private final String userId;
+    }
+
     /**
      * 标记Session为离线状态（保留Session）
+     * <p>
+     * 只修改仍属于本网关的 Session，读取后被其他登录改写的 Session 由比较写入脚本放弃写入
+     *
+     * @return Session 是否仍属于本网关，已被其他网关上的登录接管时返回 false
      */
-    private static void markSessionOffline(UserClientDto userInfo) {
+    private static boolean markSessionOffline(UserClientDto userInfo) {
         try {
             RedissonClient redissonClient = RedissonManager.getRedissonClient();
             String mapKey = userInfo.getAppId() + Constants.RedisConstants.USER_SESSION + userInfo.getUserId();
@@ -286,17 +372,32 @@ public class UserChannelRepository {
 
             String sessionKey = userInfo.getClientType() + ":" + userInfo.getImei();
             String sessionValue = map.get(sessionKey);
+            if (StringUtils.isBlank(sessionValue)) {
+                return true;
+            }
 
-            if (!StringUtils.isBlank(sessionValue)) {
-                UserSession userSession = JSONObject.parseObject(sessionValue, UserSession.class);
-                userSession.setConnectState(ConnectState.CONNECT_STATE_OFFLINE.getCode());
-                map.put(sessionKey, JSONObject.toJSONString(userSession));
-                log.debug("Session标记为离线: userId={}, clientType={}, imei={}",
+            UserSession userSession = JSONObject.parseObject(sessionValue, UserSession.class);
+            if (brokerId != null && !brokerId.equals(userSession.getBrokerId())) {
+                log.info("Session已由其他网关接管，跳过离线标记: userId={}, clientType={}, imei={}, brokerId={}",
+                        userInfo.getUserId(), userInfo.getClientType(), userInfo.getImei(), userSession.getBrokerId());
+                return false;
+            }
+            userSession.setConnectState(ConnectState.CONNECT_STATE_OFFLINE.getCode());
+            Long updated = redissonClient.getScript(StringCodec.INSTANCE).eval(mapKey, RScript.Mode.READ_WRITE,
+                    COMPARE_AND_SET_SESSION_SCRIPT, RScript.ReturnType.INTEGER,
+                    Collections.<Object>singletonList(mapKey),
+                    sessionKey, sessionValue, JSONObject.toJSONString(userSession));
+            if (updated == null || updated == 0L) {
+                log.info("Session已被新的登录改写，跳过离线标记: userId={}, clientType={}, imei={}",
                         userInfo.getUserId(), userInfo.getClientType(), userInfo.getImei());
+                return false;
             }
+            log.debug("Session标记为离线: userId={}, clientType={}, imei={}",
+                    userInfo.getUserId(), userInfo.getClientType(), userInfo.getImei());
         } catch (Exception e) {
             log.error("标记Session离线失败", e);
         }
+        return true;
     }
 
     /**
@@ -320,7 +421,7 @@ public class UserChannelRepository {
     /**
      * 发送用户状态变更通知到MQ
      */
-    private static void sendStatusChangeNotification(UserClientDto userInfo, Integer status) {
+    private static void sendStatusChangeNotification(Channel channel, UserClientDto userInfo, Integer status) {
         try {
             MessageHeader messageHeader = new MessageHeader();
             messageHeader.setAppId(userInfo.getAppId());
@@ -332,7 +433,7 @@ public class UserChannelRepository {
             notifyPack.setUserId(userInfo.getUserId());
             notifyPack.setStatus(status);
 
-            MqMessageProducer.sendMessage(notifyPack, messageHeader,
+            MqMessageProducer.sendMessage(channel.eventLoop(), notifyPack, messageHeader,
                     UserEventCommand.USER_ONLINE_STATUS_CHANGE.getCommand());
         } catch (Exception e) {
             log.error("发送用户状态变更通知失败", e);
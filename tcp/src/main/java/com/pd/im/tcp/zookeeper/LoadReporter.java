@@ -0,0 +1,147 @@
+package com.pd.im.tcp.zookeeper;
+
+import com.alibaba.fastjson.JSONObject;
+import com.pd.im.codec.config.ImBootstrapConfig;
+import com.pd.im.common.route.NodeLoad;
+import com.pd.im.tcp.utils.UserChannelRepository;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 节点负载上报
+ * <p>
+ * 定期采集本网关的负载写入 ZK 节点数据，供业务层负载感知的路由策略使用：
+ * - connections：当前连接数
+ * - eventLoopUtilisation：worker EventLoop 线程在采集间隔内的平均 CPU 利用率，
+ * EventLoop 空闲时阻塞在 epoll/select 上不占用 CPU，线程 CPU 时间即为忙碌时间
+ * - outboundPendingBytes：所有连接待写出的字节数
+ * - heapUsed / heapMax：堆内存
+ * - brokerId：网关编号，业务层广播时按它向每个网关发布一条消息
+ *
+ * @author Parker
+ * @date 12/6/25
+ */
+@Slf4j
+public class LoadReporter {
+
+    private final RegistryZK registryZK;
+    private final Integer brokerId;
+    private final int weight;
+    private final long intervalMillis;
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private final long[] eventLoopThreadIds;
+    private final ScheduledExecutorService scheduler;
+
+    private long lastSampleNanos;
+    private long lastCpuNanos;
+
+    public LoadReporter(ImBootstrapConfig.TcpConfig config, RegistryZK registryZK, EventLoopGroup workerGroup) {
+        this.registryZK = registryZK;
+        this.brokerId = config.getBrokerId();
+        this.weight = config.getRouteWeight();
+        this.intervalMillis = Math.max(1000, config.getLoadReportIntervalMillis());
+        this.eventLoopThreadIds = eventLoopThreadIds(workerGroup);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("im-load-reporter", true));
+    }
+
+    public void start() {
+        lastSampleNanos = System.nanoTime();
+        lastCpuNanos = eventLoopCpuNanos();
+        scheduler.scheduleWithFixedDelay(this::report, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        log.info("节点负载上报已启动: interval={}ms, weight={}, eventLoops={}",
+                intervalMillis, weight, eventLoopThreadIds.length);
+    }
+
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+
+    private void report() {
+        try {
+            NodeLoad load = sample();
+            registryZK.report(JSONObject.toJSONString(load));
+            if (log.isDebugEnabled()) {
+                log.debug("节点负载上报: {}", load);
+            }
+        } catch (Exception e) {
+            log.warn("节点负载上报失败", e);
+        }
+    }
+
+    private NodeLoad sample() {
+        List<Channel> channels = UserChannelRepository.getAllChannels();
+        long outboundPendingBytes = 0;
+        for (Channel channel : channels) {
+            ChannelOutboundBuffer buffer = channel.unsafe().outboundBuffer();
+            if (buffer != null) {
+                outboundPendingBytes += buffer.totalPendingWriteBytes();
+            }
+        }
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+
+        NodeLoad load = new NodeLoad();
+        load.setBrokerId(brokerId);
+        load.setConnections(channels.size());
+        load.setEventLoopUtilisation(eventLoopUtilisation());
+        load.setOutboundPendingBytes(outboundPendingBytes);
+        load.setHeapUsed(heap.getUsed());
+        load.setHeapMax(heap.getMax());
+        load.setWeight(weight);
+        load.setReportTime(System.currentTimeMillis());
+        load.setReportIntervalMillis(intervalMillis);
+        return load;
+    }
+
+    private double eventLoopUtilisation() {
+        long now = System.nanoTime();
+        long cpuNanos = eventLoopCpuNanos();
+        long wallNanos = (now - lastSampleNanos) * eventLoopThreadIds.length;
+        double utilisation = wallNanos > 0 && cpuNanos >= 0 && lastCpuNanos >= 0
+                ? Math.min(1.0, (double) (cpuNanos - lastCpuNanos) / wallNanos) : 0;
+        lastSampleNanos = now;
+        lastCpuNanos = cpuNanos;
+        return utilisation;
+    }
+
+    /**
+     * EventLoop 线程累计 CPU 时间，不支持线程 CPU 计时时返回 -1
+     */
+    private long eventLoopCpuNanos() {
+        if (eventLoopThreadIds.length == 0 || !threadMXBean.isThreadCpuTimeSupported()) {
+            return -1;
+        }
+        long total = 0;
+        for (long threadId : eventLoopThreadIds) {
+            long cpuTime = threadMXBean.getThreadCpuTime(threadId);
+            if (cpuTime > 0) {
+                total += cpuTime;
+            }
+        }
+        return total;
+    }
+
+    private static long[] eventLoopThreadIds(EventLoopGroup workerGroup) {
+        List<Long> ids = new ArrayList<>();
+        for (EventExecutor executor : workerGroup) {
+            try {
+                ids.add(executor.submit(() -> Thread.currentThread().threadId()).get(1, TimeUnit.SECONDS));
+            } catch (Exception e) {
+                log.warn("获取 EventLoop 线程失败，利用率不包含该线程: {}", executor, e);
+            }
+        }
+        return ids.stream().mapToLong(Long::longValue).toArray();
+    }
+}
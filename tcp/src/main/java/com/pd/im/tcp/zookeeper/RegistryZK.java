@@ -11,24 +11,56 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class RegistryZK implements Runnable {
     private ZKit zKit;
-    private String ip;
-    private ImBootstrapConfig.TcpConfig tcpConfig;
+    private String tcpPath;
+    private String webPath;
+    /**
+     * 节点已创建且未注销，只有此时才上报负载；上报与注销互斥，避免注销后上报又重新创建节点
+     */
+    private volatile boolean registered;
 
     public RegistryZK(ZKit zKit, String ip, ImBootstrapConfig.TcpConfig tcpConfig) {
         this.zKit = zKit;
-        this.ip = ip;
-        this.tcpConfig = tcpConfig;
+        this.tcpPath = Constants.ZKConstants.IM_CORE_ZK_ROOT + Constants.ZKConstants.IM_CORE_ZK_ROOT_TCP + "/" + ip + ":" + tcpConfig.getTcpPort();
+        this.webPath = Constants.ZKConstants.IM_CORE_ZK_ROOT + Constants.ZKConstants.IM_CORE_ZK_ROOT_WEB + "/" + ip + ":" + tcpConfig.getWebSocketPort();
     }
 
     @Override
     public void run() {
         zKit.createRootNode();
-        String tcpPath = Constants.ZKConstants.IM_CORE_ZK_ROOT + Constants.ZKConstants.IM_CORE_ZK_ROOT_TCP + "/" + ip + ":" + tcpConfig.getTcpPort();
         zKit.createNode(tcpPath);
         log.info("Registry zookeeper tcpPath success, msg=[{}]", tcpPath);
 
-        String webPath = Constants.ZKConstants.IM_CORE_ZK_ROOT + Constants.ZKConstants.IM_CORE_ZK_ROOT_WEB + "/" + ip + ":" + tcpConfig.getWebSocketPort();
         zKit.createNode(webPath);
-        log.info("Registry zookeeper webPath success, msg=[{}]", tcpPath);
+        log.info("Registry zookeeper webPath success, msg=[{}]", webPath);
+        registered = true;
+    }
+
+    /**
+     * 把节点负载写入 tcp 和 web 节点数据
+     *
+     * @param load 负载 JSON
+     */
+    public synchronized void report(String load) {
+        if (!registered) {
+            return;
+        }
+        zKit.writeNode(tcpPath, load);
+        zKit.writeNode(webPath, load);
+    }
+
+    /**
+     * 注销节点，摘流时第一步调用，业务层不再把新登录分配到本网关
+     * <p>
+     * 临时节点本来要等 ZK 会话结束才消失，主动删除后无需等待会话超时
+     */
+    public synchronized void deregister() {
+        registered = false;
+        try {
+            zKit.deleteNode(tcpPath);
+            zKit.deleteNode(webPath);
+            log.info("Deregister zookeeper success, tcpPath=[{}], webPath=[{}]", tcpPath, webPath);
+        } catch (Exception e) {
+            log.warn("Deregister zookeeper failed, tcpPath=[{}], webPath=[{}]", tcpPath, webPath, e);
+        }
     }
 }
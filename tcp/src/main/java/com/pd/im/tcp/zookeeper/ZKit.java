@@ -1,7 +1,14 @@
 package com.pd.im.tcp.zookeeper;
 
+import com.alibaba.fastjson.JSONObject;
 import com.pd.im.common.constant.Constants;
+import com.pd.im.common.route.NodeLoad;
 import org.I0Itec.zkclient.ZkClient;
+import org.I0Itec.zkclient.exception.ZkNoNodeException;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * @author Parker
@@ -39,4 +46,69 @@ public class ZKit {
         }
         zkClient.createEphemeral(path);
     }
+
+    /**
+     * 更新临时节点数据，节点因 ZK 会话过期丢失时重新创建
+     *
+     * @param path 节点路径
+     * @param data 节点数据
+     */
+    public void writeNode(String path, String data) {
+        try {
+            zkClient.writeData(path, data);
+        } catch (ZkNoNodeException e) {
+            zkClient.createEphemeral(path, data);
+        }
+    }
+
+    public void deleteNode(String path) {
+        zkClient.delete(path);
+    }
+
+    /**
+     * 从 Zk 获取所有 TCP 服务节点地址
+     *
+     * @return ip:port 列表
+     */
+    public List<String> getAllTcpNode() {
+        return zkClient.getChildren(Constants.ZKConstants.IM_CORE_ZK_ROOT + Constants.ZKConstants.IM_CORE_ZK_ROOT_TCP);
+    }
+
+    /**
+     * 从 Zk 获取所有 WEB 服务节点地址
+     *
+     * @return ip:port 列表
+     */
+    public List<String> getAllWebNode() {
+        return zkClient.getChildren(Constants.ZKConstants.IM_CORE_ZK_ROOT + Constants.ZKConstants.IM_CORE_ZK_ROOT_WEB);
+    }
+
+    /**
+     * 读取所有 TCP 服务节点上报的负载
+     *
+     * @return ip:port -> 负载，未上报的节点不存在
+     */
+    public Map<String, NodeLoad> getTcpNodeLoads() {
+        return getNodeLoads(Constants.ZKConstants.IM_CORE_ZK_ROOT + Constants.ZKConstants.IM_CORE_ZK_ROOT_TCP);
+    }
+
+    /**
+     * 读取所有 WEB 服务节点上报的负载
+     *
+     * @return ip:port -> 负载，未上报的节点不存在
+     */
+    public Map<String, NodeLoad> getWebNodeLoads() {
+        return getNodeLoads(Constants.ZKConstants.IM_CORE_ZK_ROOT + Constants.ZKConstants.IM_CORE_ZK_ROOT_WEB);
+    }
+
+    private Map<String, NodeLoad> getNodeLoads(String parentPath) {
+        Map<String, NodeLoad> loads = new HashMap<>();
+        for (String child : zkClient.getChildren(parentPath)) {
+            Object data = zkClient.readData(parentPath + "/" + child, true);
+            if (data instanceof String) {
+                loads.put(child, JSONObject.parseObject((String) data, NodeLoad.class));
+            }
+        }
+        return loads;
+    }
 }